@@ -0,0 +1,1044 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLEngine;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.Processor;
+import org.glassfish.grizzly.filterchain.FilterChain;
+import org.glassfish.grizzly.http2.Http2ClientFilter;
+import org.glassfish.grizzly.http2.Http2Connection;
+import org.glassfish.grizzly.http2.frames.ErrorCode;
+import org.glassfish.grizzly.impl.FutureImpl;
+import org.glassfish.grizzly.impl.SafeFutureImpl;
+import org.glassfish.grizzly.ssl.SSLBaseFilter;
+import org.glassfish.grizzly.ssl.SSLUtils;
+import org.glassfish.grizzly.utils.Futures;
+
+/**
+ * The HTTP/2 multiplexing pool implementation.
+ * 
+ * Unlike {@link SingleEndpointPool} and {@link MultiEndpointPool}, which hand
+ * out exclusive {@link Connection}s, this pool leases HTTP/2 stream slots
+ * ({@link StreamLease}s) on shared {@link Http2Connection}s, so one
+ * {@link Connection} serves up to <tt>peerMaxConcurrentStreams</tt> requests
+ * simultaneously.
+ * 
+ * A new {@link Connection} to an {@link Endpoint} is opened only if all the
+ * existing ones have reached their concurrent streams limit, or got GOAWAY
+ * from the peer. The {@link Http2Connection}s in GOAWAY state, as well as
+ * {@link Http2Connection}s of the {@link #drain(Endpoint) drained}
+ * endpoints, are not used for new leases and are closed gracefully once
+ * all their active streams are released.
+ * 
+ * There are number of configuration options supported by the <tt>Http2MultiplexingPool</tt>:
+ *      - <tt>maxConnectionsPerEndpoint</tt>: the maximum number of {@link Connection}s
+ *                                            to a single endpoint;
+ *      - <tt>maxStreamsPerConnection</tt>: the maximum number of concurrent streams
+ *                                          to be leased on a single {@link Connection},
+ *                                          the effective value is never greater than
+ *                                          the peer's SETTINGS_MAX_CONCURRENT_STREAMS.
+ * 
+ * The {@link Endpoint}'s {@link Connection}s are expected to speak HTTP/2:
+ * the secure {@link Connection}s have to negotiate it via ALPN, so they're
+ * added to the pool once the TLS handshake is complete, the cleartext
+ * {@link Connection}s are started with prior knowledge by the
+ * {@link Http2ClientFilter} found in the {@link Connection}'s {@link FilterChain}.
+ * {@link #getHttp2Connection(org.glassfish.grizzly.Connection)} could be
+ * overridden to provide custom {@link Http2Connection} resolution logic.
+ * 
+ * @param <E> the address type, for example for TCP transport it's {@link SocketAddress}
+ */
+public class Http2MultiplexingPool<E> {
+    private static final Logger LOGGER = Grizzly.logger(Http2MultiplexingPool.class);
+    
+    /**
+     * The concurrent streams number we expect a pending (connecting)
+     * {@link Connection} to be able to serve, the value recommended by
+     * the HTTP/2 spec.
+     */
+    private static final int DEFAULT_EXPECTED_MAX_CONCURRENT_STREAMS = 100;
+    
+    /**
+     * Returns HTTP/2 multiplexing pool {@link Builder}.
+     * 
+     * @param <T> endpoint type
+     * @param endpointType endpoint address type, for example
+     *        {@link SocketAddress} for TCP transport
+     * @return {@link Builder} 
+     */
+    public static <T> Builder<T> builder(final Class<T> endpointType) {
+        return new Builder<T>();
+    }
+    
+    /**
+     * Maps endpoint -to- the endpoint's {@link Connection}s
+     */
+    private final Map<Endpoint<E>, EndpointConnections<E>> endpointToConnectionsMap =
+            new HashMap<Endpoint<E>, EndpointConnections<E>>();
+    
+    /**
+     * Maps {@link Connection} -to- the pooled connection record
+     */
+    private final Map<Connection, PooledHttp2Connection<E>> connectionsMap =
+            new HashMap<Connection, PooledHttp2Connection<E>>();
+    
+    /**
+     * Maps connected {@link Connection} -to- the record of the TLS handshake
+     * we wait for to complete, before the {@link Connection} could be pooled
+     */
+    private final Map<Connection, PendingHandshake> pendingHandshakesMap =
+            new HashMap<Connection, PendingHandshake>();
+    
+    /**
+     * {@link SSLBaseFilter.HandshakeListener} to be notified once the TLS
+     * handshake of the pending {@link Connection} is complete
+     */
+    private final PoolHandshakeListener handshakeListener =
+            new PoolHandshakeListener();
+    
+    /**
+     * {@link CloseListener} to be notified once pooled {@link Connection} is closed
+     */
+    private final PoolConnectionCloseListener closeListener =
+            new PoolConnectionCloseListener();
+    
+    /**
+     * Sync object
+     */
+    final Object poolSync = new Object();
+    
+    /**
+     * close flag
+     */
+    private boolean isClosed;
+    
+    /**
+     * the maximum number of {@link Connection}s to a single endpoint
+     */
+    private final int maxConnectionsPerEndpoint;
+    
+    /**
+     * the maximum number of concurrent streams to be leased on a single
+     * {@link Connection}, <tt>-1</tt> means the peer's limit is used
+     */
+    private final int maxStreamsPerConnection;
+    
+    /**
+     * Constructs Http2MultiplexingPool instance.
+     * 
+     * @param maxConnectionsPerEndpoint the maximum number of {@link Connection}s to a single endpoint
+     * @param maxStreamsPerConnection the maximum number of concurrent streams to be leased on a single {@link Connection}
+     */
+    protected Http2MultiplexingPool(final int maxConnectionsPerEndpoint,
+            final int maxStreamsPerConnection) {
+        this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+        this.maxStreamsPerConnection = maxStreamsPerConnection;
+    }
+
+    /**
+     * @return the maximum number of {@link Connection}s to a single endpoint
+     */
+    public int getMaxConnectionsPerEndpoint() {
+        return maxConnectionsPerEndpoint;
+    }
+
+    /**
+     * @return the maximum number of concurrent streams to be leased on a single
+     *         {@link Connection}, <tt>-1</tt> means the peer's limit is used
+     */
+    public int getMaxStreamsPerConnection() {
+        return maxStreamsPerConnection;
+    }
+    
+    /**
+     * Returns the number of connected {@link Connection}s to the {@link Endpoint},
+     * including the {@link Connection}s being drained.
+     * 
+     * @param endpoint {@link Endpoint}
+     * @return the number of connected {@link Connection}s to the {@link Endpoint}
+     */
+    public int getOpenConnectionsCount(final Endpoint<E> endpoint) {
+        synchronized (poolSync) {
+            final EndpointConnections<E> ec = endpointToConnectionsMap.get(endpoint);
+            return ec != null ? ec.connections.size() : 0;
+        }
+    }
+    
+    /**
+     * Returns the number of {@link StreamLease}s, which are currently leased
+     * and not released yet on the {@link Endpoint}'s {@link Connection}s.
+     * 
+     * @param endpoint {@link Endpoint}
+     * @return the number of active {@link StreamLease}s
+     */
+    public int getActiveStreamsCount(final Endpoint<E> endpoint) {
+        synchronized (poolSync) {
+            final EndpointConnections<E> ec = endpointToConnectionsMap.get(endpoint);
+            if (ec == null) {
+                return 0;
+            }
+            
+            int count = 0;
+            for (PooledHttp2Connection<E> pc : ec.connections) {
+                count += pc.activeStreams;
+            }
+            
+            return count;
+        }
+    }
+    
+    /**
+     * Returns <tt>true</tt> if the {@link Connection} is registered in the pool,
+     * or <tt>false</tt> otherwise.
+     * 
+     * @param connection {@link Connection}
+     * @return <tt>true</tt> if the {@link Connection} is registered in the pool,
+     *         or <tt>false</tt> otherwise
+     */
+    public boolean isRegistered(final Connection connection) {
+        synchronized (poolSync) {
+            return connectionsMap.containsKey(connection);
+        }
+    }
+    
+    /**
+     * Leases a stream slot on one of the {@link Endpoint}'s {@link Http2Connection}s
+     * in non-blocking/asynchronous fashion.
+     * Returns a {@link GrizzlyFuture} representing the pending result of the
+     * operation. Future's <tt>get</tt> method will return the {@link StreamLease}
+     * once a stream slot becomes available.
+     * 
+     * <p> Note: returned {@link GrizzlyFuture} must be checked and released
+     * properly, the proper release code has to look like:
+     * <pre>
+     * if (!future.cancel(false)) {
+     *     // means the StreamLease is ready
+     *     future.get().release();
+     * }
+     * </pre>
+     * 
+     * @param endpoint {@link Endpoint}, that represents an endpoint
+     * @return {@link GrizzlyFuture}
+     */
+    public GrizzlyFuture<StreamLease<E>> lease(final Endpoint<E> endpoint) {
+        StreamLease<E> lease = null;
+        FutureImpl<StreamLease<E>> future = null;
+        boolean isCreateNewConnection = false;
+        
+        synchronized (poolSync) {
+            if (isClosed) {
+                return Futures.createReadyFuture(
+                        new IOException("The pool is closed"));
+            }
+            
+            final EndpointConnections<E> ec = obtainEndpointConnections(endpoint);
+            final PooledHttp2Connection<E> pc = ec.pickConnection();
+            
+            if (pc != null) {
+                lease = pc.lease();
+            } else {
+                final LeaseFuture<E> leaseFuture = new LeaseFuture<E>(ec);
+                ec.waiters.offerLast(leaseFuture.waiterLink);
+                future = leaseFuture;
+                
+                isCreateNewConnection = ec.checkBeforeOpeningConnection();
+            }
+        }
+        
+        if (lease != null) {
+            return Futures.createReadyFuture(lease);
+        }
+        
+        if (isCreateNewConnection) {
+            connect(endpoint);
+        }
+        
+        return future;
+    }
+
+    /**
+     * Leases a stream slot on one of the {@link Endpoint}'s {@link Http2Connection}s
+     * in non-blocking/asynchronous fashion.
+     * The passed {@link CompletionHandler} will be notified about the result
+     * of the non-blocking/asynchronous obtain task.
+     * 
+     * @param endpoint {@link Endpoint}, that represents an endpoint
+     * @param completionHandler {@link CompletionHandler} to be notified once
+     *        the {@link StreamLease} becomes available
+     */
+    public void lease(final Endpoint<E> endpoint,
+            final CompletionHandler<StreamLease<E>> completionHandler) {
+        if (completionHandler == null) {
+            throw new IllegalArgumentException("The completionHandler argument can not be null");
+        }
+        
+        lease(endpoint).addCompletionHandler(completionHandler);
+    }
+    
+    /**
+     * Stops leasing new stream slots on the {@link Endpoint}'s current
+     * {@link Connection}s. The idle {@link Connection}s are closed immediately,
+     * the busy ones - once all their {@link StreamLease}s are released.
+     * Subsequent {@link #lease(Endpoint)} calls will open new {@link Connection}s.
+     * 
+     * @param endpoint {@link Endpoint}, that represents an endpoint
+     */
+    public void drain(final Endpoint<E> endpoint) {
+        final List<PooledHttp2Connection<E>> connectionsToClose;
+        synchronized (poolSync) {
+            final EndpointConnections<E> ec = endpointToConnectionsMap.get(endpoint);
+            if (ec == null) {
+                return;
+            }
+            
+            connectionsToClose = ec.drainAll();
+        }
+        
+        closeConnections(connectionsToClose);
+    }
+    
+    /**
+     * Closes the pool and gracefully drains all the pooled {@link Connection}s.
+     * The idle {@link Connection}s are closed immediately, the busy ones - once
+     * all their {@link StreamLease}s are released. The pending
+     * {@link #lease(Endpoint)} requests will be failed.
+     */
+    public void close() {
+        final List<PooledHttp2Connection<E>> connectionsToClose =
+                new ArrayList<PooledHttp2Connection<E>>();
+        final List<FutureImpl<StreamLease<E>>> waitersToFail =
+                new ArrayList<FutureImpl<StreamLease<E>>>();
+        
+        synchronized (poolSync) {
+            if (isClosed) {
+                return;
+            }
+            
+            isClosed = true;
+            
+            for (EndpointConnections<E> ec : endpointToConnectionsMap.values()) {
+                connectionsToClose.addAll(ec.drainAll());
+                
+                Link<FutureImpl<StreamLease<E>>> link;
+                while ((link = ec.waiters.pollFirst()) != null) {
+                    waitersToFail.add(link.getValue());
+                }
+            }
+        }
+        
+        closeConnections(connectionsToClose);
+        
+        final IOException e = new IOException("The pool is closed");
+        for (FutureImpl<StreamLease<E>> waiter : waitersToFail) {
+            waiter.failure(e);
+        }
+    }
+    
+    /**
+     * Returns the {@link Http2Connection} associated with the newly connected
+     * {@link Connection}, or <tt>null</tt> if HTTP/2 is not supported by
+     * the {@link Connection}.
+     * If the cleartext {@link Connection} hasn't started HTTP/2 yet - the
+     * {@link Http2ClientFilter} is asked to start it with prior knowledge.
+     * For the secure {@link Connection}s the method is called once the TLS
+     * handshake is complete, so <tt>null</tt> means ALPN didn't select HTTP/2.
+     * The method could be overridden to customize the {@link Http2Connection}
+     * resolution logic.
+     * 
+     * @param connection {@link Connection}
+     * @return {@link Http2Connection} or <tt>null</tt>
+     */
+    protected Http2Connection getHttp2Connection(final Connection connection) {
+        final Http2Connection http2Connection = Http2Connection.get(connection);
+        if (http2Connection != null) {
+            return http2Connection;
+        }
+        
+        final Processor processor = connection.getProcessor();
+        if (!(processor instanceof FilterChain)) {
+            return null;
+        }
+        
+        final FilterChain filterChain = (FilterChain) processor;
+        final int http2FilterIdx = filterChain.indexOfType(Http2ClientFilter.class);
+        if (http2FilterIdx == -1
+                || filterChain.indexOfType(SSLBaseFilter.class) != -1) {
+            // no HTTP/2 support, or ALPN didn't select HTTP/2
+            return null;
+        }
+        
+        return ((Http2ClientFilter) filterChain.get(http2FilterIdx))
+                .startPriorKnowledge(connection);
+    }
+    
+    /**
+     * Called by {@link StreamLease#release()}.
+     */
+    void release0(final StreamLease<E> lease) {
+        final PooledHttp2Connection<E> pc = lease.pooledConnection;
+        final List<StreamLease<E>> leases = new ArrayList<StreamLease<E>>(1);
+        final List<FutureImpl<StreamLease<E>>> waiters =
+                new ArrayList<FutureImpl<StreamLease<E>>>(1);
+        boolean isClose = false;
+        
+        synchronized (poolSync) {
+            pc.activeStreams--;
+            
+            if (pc.isDraining() || !pc.isRegistered) {
+                isClose = pc.isRegistered && pc.activeStreams == 0;
+            } else {
+                pc.endpointConnections.serveWaiters(pc, leases, waiters);
+            }
+        }
+        
+        if (isClose) {
+            pc.close();
+        }
+        
+        notifyWaiters(leases, waiters);
+    }
+    
+    private EndpointConnections<E> obtainEndpointConnections(
+            final Endpoint<E> endpoint) {
+        EndpointConnections<E> ec = endpointToConnectionsMap.get(endpoint);
+        if (ec == null) {
+            ec = new EndpointConnections<E>(this, endpoint);
+            endpointToConnectionsMap.put(endpoint, ec);
+        }
+        
+        return ec;
+    }
+    
+    private void connect(final Endpoint<E> endpoint) {
+        final GrizzlyFuture<Connection> future = endpoint.connect();
+        future.addCompletionHandler(new ConnectCompletionHandler(endpoint));
+    }
+    
+    private void onConnected(final Endpoint<E> endpoint,
+            final Connection connection) {
+        final SSLBaseFilter sslFilter = getSSLFilter(connection);
+        if (sslFilter != null && !isHandshakeComplete(connection)) {
+            // the ALPN result is unknown until the handshake is complete
+            awaitHandshake(endpoint, connection, sslFilter);
+            return;
+        }
+        
+        onReady(endpoint, connection);
+    }
+    
+    private void awaitHandshake(final Endpoint<E> endpoint,
+            final Connection connection, final SSLBaseFilter sslFilter) {
+        final PendingHandshake pendingHandshake =
+                new PendingHandshake(endpoint, sslFilter);
+        
+        synchronized (poolSync) {
+            pendingHandshakesMap.put(connection, pendingHandshake);
+            sslFilter.addHandshakeListener(handshakeListener);
+        }
+        
+        connection.addCloseListener(pendingHandshake);
+        
+        // the handshake might have been completed, or the connection closed,
+        // before we started listening
+        if (isHandshakeComplete(connection)) {
+            onHandshakeComplete(connection, null);
+        } else if (!connection.isOpen()) {
+            onHandshakeComplete(connection, new IOException(
+                    "Connection was closed during TLS handshake"));
+        }
+    }
+    
+    private void onHandshakeComplete(final Connection connection,
+            final Throwable error) {
+        final PendingHandshake pendingHandshake;
+        synchronized (poolSync) {
+            pendingHandshake = pendingHandshakesMap.remove(connection);
+            if (pendingHandshake == null) {
+                return;
+            }
+            
+            if (!isListenedBy(pendingHandshake.sslFilter)) {
+                pendingHandshake.sslFilter.removeHandshakeListener(
+                        handshakeListener);
+            }
+        }
+        
+        connection.removeCloseListener(pendingHandshake);
+        
+        if (error != null) {
+            connection.closeSilently();
+            onConnectFailed(pendingHandshake.endpoint, error);
+            return;
+        }
+        
+        onReady(pendingHandshake.endpoint, connection);
+    }
+    
+    /**
+     * Has to be called in synchronized(poolSync) {...} scope.
+     */
+    private boolean isListenedBy(final SSLBaseFilter sslFilter) {
+        for (PendingHandshake pendingHandshake : pendingHandshakesMap.values()) {
+            if (pendingHandshake.sslFilter == sslFilter) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private void onReady(final Endpoint<E> endpoint,
+            final Connection connection) {
+        final Http2Connection http2Connection = getHttp2Connection(connection);
+        if (http2Connection == null) {
+            connection.closeSilently();
+            onConnectFailed(endpoint, new IOException(
+                    "HTTP/2 is not supported by the connection: " + connection));
+            return;
+        }
+        
+        final List<StreamLease<E>> leases = new ArrayList<StreamLease<E>>();
+        final List<FutureImpl<StreamLease<E>>> waiters =
+                new ArrayList<FutureImpl<StreamLease<E>>>();
+        
+        final PooledHttp2Connection<E> pc;
+        synchronized (poolSync) {
+            final EndpointConnections<E> ec = obtainEndpointConnections(endpoint);
+            ec.pendingConnections--;
+            
+            if (isClosed) {
+                pc = null;
+            } else {
+                pc = new PooledHttp2Connection<E>(ec, connection,
+                        http2Connection);
+                ec.connections.add(pc);
+                connectionsMap.put(connection, pc);
+                
+                ec.serveWaiters(pc, leases, waiters);
+            }
+        }
+        
+        if (pc == null) {
+            connection.closeSilently();
+            return;
+        }
+        
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Pool connection is established {0}",
+                    connection);
+        }
+        
+        connection.addCloseListener(closeListener);
+        notifyWaiters(leases, waiters);
+    }
+    
+    private static SSLBaseFilter getSSLFilter(final Connection connection) {
+        final Processor processor = connection.getProcessor();
+        if (!(processor instanceof FilterChain)) {
+            return null;
+        }
+        
+        final FilterChain filterChain = (FilterChain) processor;
+        final int idx = filterChain.indexOfType(SSLBaseFilter.class);
+        return idx != -1 ? (SSLBaseFilter) filterChain.get(idx) : null;
+    }
+    
+    private static boolean isHandshakeComplete(final Connection connection) {
+        final SSLEngine sslEngine = SSLUtils.getSSLEngine(connection);
+        return sslEngine != null && !SSLUtils.isHandshaking(sslEngine)
+                && sslEngine.getSession().isValid();
+    }
+    
+    private void onConnectFailed(final Endpoint<E> endpoint,
+            final Throwable error) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Pool connect operation failed", error);
+        }
+        
+        final List<FutureImpl<StreamLease<E>>> waitersToFail =
+                new ArrayList<FutureImpl<StreamLease<E>>>();
+        
+        synchronized (poolSync) {
+            final EndpointConnections<E> ec = obtainEndpointConnections(endpoint);
+            ec.pendingConnections--;
+            
+            // fail the waiters, which have no chance to be served
+            if (ec.pendingConnections == 0 && ec.connections.isEmpty()) {
+                Link<FutureImpl<StreamLease<E>>> link;
+                while ((link = ec.waiters.pollFirst()) != null) {
+                    waitersToFail.add(link.getValue());
+                }
+            }
+        }
+        
+        for (FutureImpl<StreamLease<E>> waiter : waitersToFail) {
+            waiter.failure(error);
+        }
+    }
+    
+    private void onClosed(final Connection connection) {
+        final EndpointConnections<E> ec;
+        final boolean isCreateNewConnection;
+        
+        synchronized (poolSync) {
+            final PooledHttp2Connection<E> pc = connectionsMap.remove(connection);
+            if (pc == null) {
+                return;
+            }
+            
+            pc.isRegistered = false;
+            ec = pc.endpointConnections;
+            ec.connections.remove(pc);
+            
+            isCreateNewConnection = !isClosed
+                    && ec.checkBeforeOpeningConnection();
+        }
+        
+        if (isCreateNewConnection) {
+            connect(ec.endpoint);
+        }
+    }
+    
+    private void notifyWaiters(final List<StreamLease<E>> leases,
+            final List<FutureImpl<StreamLease<E>>> waiters) {
+        for (int i = 0; i < leases.size(); i++) {
+            final FutureImpl<StreamLease<E>> waiter = waiters.get(i);
+            final StreamLease<E> lease = leases.get(i);
+            waiter.result(lease);
+            
+            // the waiter might have been cancelled concurrently
+            if (waiter.isCancelled()) {
+                lease.release();
+            }
+        }
+    }
+    
+    private void closeConnections(final List<PooledHttp2Connection<E>> connections) {
+        for (PooledHttp2Connection<E> pc : connections) {
+            pc.close();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + 
+                "{" +
+                "maxConnectionsPerEndpoint=" + maxConnectionsPerEndpoint +
+                ", maxStreamsPerConnection=" + maxStreamsPerConnection +
+                ", isClosed=" + isClosed +
+                "}";
+    }
+    
+    /**
+     * The set of {@link Connection}s and waiters related to a single {@link Endpoint}.
+     */
+    private static final class EndpointConnections<E> {
+        private final Http2MultiplexingPool<E> pool;
+        private final Endpoint<E> endpoint;
+        
+        private final List<PooledHttp2Connection<E>> connections =
+                new ArrayList<PooledHttp2Connection<E>>(2);
+        private final Chain<FutureImpl<StreamLease<E>>> waiters =
+                new Chain<FutureImpl<StreamLease<E>>>();
+        
+        private int pendingConnections;
+
+        private EndpointConnections(final Http2MultiplexingPool<E> pool,
+                final Endpoint<E> endpoint) {
+            this.pool = pool;
+            this.endpoint = endpoint;
+        }
+        
+        /**
+         * Returns the least loaded {@link Connection}, which is able to accept
+         * one more stream, or <tt>null</tt> if there is no such.
+         * Must be called within poolSync.
+         */
+        private PooledHttp2Connection<E> pickConnection() {
+            PooledHttp2Connection<E> candidate = null;
+            
+            for (int i = 0; i < connections.size(); i++) {
+                final PooledHttp2Connection<E> pc = connections.get(i);
+                if (pc.canLease() &&
+                        (candidate == null
+                        || pc.activeStreams < candidate.activeStreams)) {
+                    candidate = pc;
+                }
+            }
+            
+            return candidate;
+        }
+        
+        /**
+         * Assigns the {@link Connection}'s free stream slots to the waiters.
+         * Must be called within poolSync.
+         */
+        private void serveWaiters(final PooledHttp2Connection<E> pc,
+                final List<StreamLease<E>> leases,
+                final List<FutureImpl<StreamLease<E>>> waitersToNotify) {
+            while (!waiters.isEmpty() && pc.canLease()) {
+                waitersToNotify.add(waiters.pollFirst().getValue());
+                leases.add(pc.lease());
+            }
+        }
+        
+        /**
+         * Returns <tt>true</tt> if a new {@link Connection} has to be opened
+         * to serve the waiters, the pending connections counter is incremented
+         * in this case.
+         * Must be called within poolSync.
+         */
+        private boolean checkBeforeOpeningConnection() {
+            if (waiters.isEmpty()) {
+                return false;
+            }
+            
+            if (pool.maxConnectionsPerEndpoint >= 0 &&
+                    activeConnectionsCount() + pendingConnections
+                            >= pool.maxConnectionsPerEndpoint) {
+                return false;
+            }
+            
+            final int expectedStreams = pool.maxStreamsPerConnection > 0
+                    ? pool.maxStreamsPerConnection
+                    : DEFAULT_EXPECTED_MAX_CONCURRENT_STREAMS;
+            
+            if (pendingConnections * expectedStreams >= waiters.size()) {
+                return false;
+            }
+            
+            pendingConnections++;
+            return true;
+        }
+        
+        /**
+         * @return the number of the {@link Connection}s, which are not being drained
+         */
+        private int activeConnectionsCount() {
+            int count = 0;
+            for (int i = 0; i < connections.size(); i++) {
+                if (!connections.get(i).isDraining()) {
+                    count++;
+                }
+            }
+            
+            return count;
+        }
+        
+        /**
+         * Marks all the {@link Connection}s as draining and returns the idle ones.
+         * Must be called within poolSync.
+         */
+        private List<PooledHttp2Connection<E>> drainAll() {
+            final List<PooledHttp2Connection<E>> idleConnections =
+                    new ArrayList<PooledHttp2Connection<E>>();
+            for (int i = 0; i < connections.size(); i++) {
+                final PooledHttp2Connection<E> pc = connections.get(i);
+                pc.isDraining = true;
+                if (pc.activeStreams == 0) {
+                    idleConnections.add(pc);
+                }
+            }
+            
+            return idleConnections;
+        }
+    }
+    
+    /**
+     * The {@link FutureImpl} representing a pending lease request, which
+     * removes itself from the waiting list once cancelled.
+     */
+    private static final class LeaseFuture<E> extends SafeFutureImpl<StreamLease<E>> {
+        private final EndpointConnections<E> endpointConnections;
+        private final Link<FutureImpl<StreamLease<E>>> waiterLink;
+
+        private LeaseFuture(final EndpointConnections<E> endpointConnections) {
+            this.endpointConnections = endpointConnections;
+            this.waiterLink = new Link<FutureImpl<StreamLease<E>>>(this);
+        }
+
+        @Override
+        protected void onComplete() {
+            if (isCancelled()) {
+                synchronized (endpointConnections.pool.poolSync) {
+                    endpointConnections.waiters.remove(waiterLink);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Pooled {@link Http2Connection} record.
+     */
+    static final class PooledHttp2Connection<E> {
+        final Http2MultiplexingPool<E> pool;
+        final Endpoint<E> endpoint;
+        final Connection connection;
+        final Http2Connection http2Connection;
+        
+        private final EndpointConnections<E> endpointConnections;
+        
+        private int activeStreams;
+        private boolean isDraining;
+        private boolean isRegistered = true;
+
+        private PooledHttp2Connection(final EndpointConnections<E> endpointConnections,
+                final Connection connection,
+                final Http2Connection http2Connection) {
+            this.endpointConnections = endpointConnections;
+            this.pool = endpointConnections.pool;
+            this.endpoint = endpointConnections.endpoint;
+            this.connection = connection;
+            this.http2Connection = http2Connection;
+        }
+        
+        /**
+         * Must be called within poolSync.
+         */
+        private boolean isDraining() {
+            if (!isDraining && http2Connection.isGoAway()) {
+                // GOAWAY was received - the connection will be closed once
+                // all the active streams are complete
+                isDraining = true;
+            }
+            
+            return isDraining;
+        }
+        
+        /**
+         * Must be called within poolSync.
+         */
+        private boolean canLease() {
+            return !isDraining() && activeStreams < getMaxStreams();
+        }
+        
+        /**
+         * Must be called within poolSync.
+         */
+        private StreamLease<E> lease() {
+            activeStreams++;
+            return new StreamLease<E>(this);
+        }
+        
+        private int getMaxStreams() {
+            final int peerMaxConcurrentStreams =
+                    http2Connection.getPeerMaxConcurrentStreams();
+            return pool.maxStreamsPerConnection > 0
+                    ? Math.min(pool.maxStreamsPerConnection, peerMaxConcurrentStreams)
+                    : peerMaxConcurrentStreams;
+        }
+        
+        private void close() {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Closing drained pool connection {0}",
+                        connection);
+            }
+            
+            http2Connection.goAway(ErrorCode.NO_ERROR);
+            connection.closeSilently();
+        }
+    }
+    
+    /**
+     * {@link CompletionHandler} to be notified once new {@link Connection} is
+     * connected or failed to connect.
+     */
+    private final class ConnectCompletionHandler
+            implements CompletionHandler<Connection> {
+        private final Endpoint<E> endpoint;
+
+        private ConnectCompletionHandler(final Endpoint<E> endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        @Override
+        public void cancelled() {
+            onConnectFailed(endpoint, new IOException("Connect was cancelled"));
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            onConnectFailed(endpoint, throwable);
+        }
+
+        @Override
+        public void completed(final Connection connection) {
+            onConnected(endpoint, connection);
+        }
+
+        @Override
+        public void updated(final Connection result) {
+        }
+    }
+    
+    /**
+     * The record of the TLS handshake the connected {@link Connection} has to
+     * complete before it could be pooled. Fails the connect operation if the
+     * {@link Connection} is closed before the handshake is complete.
+     */
+    private final class PendingHandshake
+            implements CloseListener<Connection, CloseType> {
+        private final Endpoint<E> endpoint;
+        private final SSLBaseFilter sslFilter;
+
+        private PendingHandshake(final Endpoint<E> endpoint,
+                final SSLBaseFilter sslFilter) {
+            this.endpoint = endpoint;
+            this.sslFilter = sslFilter;
+        }
+
+        @Override
+        public void onClosed(final Connection connection, final CloseType type)
+                throws IOException {
+            onHandshakeComplete(connection, new IOException(
+                    "Connection was closed during TLS handshake"));
+        }
+    }
+    
+    /**
+     * The {@link SSLBaseFilter.HandshakeListener} to track the TLS handshakes
+     * of the pending {@link Connection}s.
+     */
+    private final class PoolHandshakeListener
+            implements SSLBaseFilter.HandshakeListener {
+
+        @Override
+        public void onStart(final Connection connection) {
+        }
+
+        @Override
+        public void onComplete(final Connection connection) {
+            onHandshakeComplete(connection, null);
+        }
+
+        @Override
+        public void onFailure(final Connection connection, final Throwable t) {
+            onHandshakeComplete(connection, t);
+        }
+    }
+    
+    /**
+     * The {@link CloseListener} to track pooled {@link Connection}s close
+     * events.
+     */
+    private final class PoolConnectionCloseListener
+            implements CloseListener<Connection, CloseType> {
+
+        @Override
+        public void onClosed(final Connection connection, final CloseType type)
+                throws IOException {
+            Http2MultiplexingPool.this.onClosed(connection);
+        }
+    }
+    
+    /**
+     * The Builder class responsible for constructing {@link Http2MultiplexingPool}.
+     * 
+     * @param <E> endpoint address type, for example {@link SocketAddress} for TCP transport
+     */
+    public static class Builder<E> {
+        /**
+         * the maximum number of {@link Connection}s to a single endpoint
+         */
+        private int maxConnectionsPerEndpoint = 4;
+        /**
+         * the maximum number of concurrent streams to be leased on a single
+         * {@link Connection}
+         */
+        private int maxStreamsPerConnection = -1;
+
+        /**
+         * Sets the maximum number of {@link Connection}s to a single endpoint
+         * the pool is allowed to have. The negative value means no limit.
+         * 
+         * Default value is 4.
+         * 
+         * @param maxConnectionsPerEndpoint
+         * @return this {@link Builder}
+         */
+        public Builder<E> maxConnectionsPerEndpoint(final int maxConnectionsPerEndpoint) {
+            this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum number of concurrent streams to be leased on
+         * a single {@link Connection}. The effective value is never greater
+         * than the peer's SETTINGS_MAX_CONCURRENT_STREAMS.
+         * 
+         * By default only the peer's limit is applied.
+         * 
+         * @param maxStreamsPerConnection
+         * @return this {@link Builder}
+         */
+        public Builder<E> maxStreamsPerConnection(final int maxStreamsPerConnection) {
+            this.maxStreamsPerConnection = maxStreamsPerConnection;
+            return this;
+        }
+        
+        /**
+         * Constructs {@link Http2MultiplexingPool}.
+         * @return {@link Http2MultiplexingPool}
+         */
+        public Http2MultiplexingPool<E> build() {
+            if (maxConnectionsPerEndpoint == 0) {
+                throw new IllegalStateException("Max connections per endpoint must not be 0");
+            }
+            
+            return new Http2MultiplexingPool<E>(maxConnectionsPerEndpoint,
+                    maxStreamsPerConnection);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.Closeable;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http2.Http2Connection;
+import org.glassfish.grizzly.http2.Http2Stream;
+
+/**
+ * The stream slot leased from {@link Http2MultiplexingPool}.
+ * 
+ * The lease gives a right to open one {@link Http2Stream} on the
+ * {@link Http2Connection} returned by {@link #getHttp2Connection()}.
+ * Once the stream is complete - the lease has to be returned back to the pool
+ * either explicitly, using {@link #release()}, or automatically, by
+ * {@link #bind(org.glassfish.grizzly.http.HttpRequestPacket) binding} the
+ * request to be sent to the lease, or by
+ * {@link #attach(org.glassfish.grizzly.http2.Http2Stream) attaching} the
+ * opened stream to the lease.
+ * 
+ * @param <E> the address type, for example for TCP transport it's {@link java.net.SocketAddress}
+ */
+public final class StreamLease<E> {
+    final Http2MultiplexingPool.PooledHttp2Connection<E> pooledConnection;
+    
+    private final AtomicBoolean isReleased = new AtomicBoolean();
+    
+    private final CloseListener<Closeable, CloseType> streamCloseListener =
+            new CloseListener<Closeable, CloseType>() {
+
+        @Override
+        public void onClosed(final Closeable closeable, final CloseType type)
+                throws IOException {
+            release();
+        }
+    };
+
+    StreamLease(final Http2MultiplexingPool.PooledHttp2Connection<E> pooledConnection) {
+        this.pooledConnection = pooledConnection;
+    }
+
+    /**
+     * @return the {@link Http2Connection} the stream has to be opened on
+     */
+    public Http2Connection getHttp2Connection() {
+        return pooledConnection.http2Connection;
+    }
+
+    /**
+     * @return the underlying transport {@link Connection}
+     */
+    public Connection getConnection() {
+        return pooledConnection.connection;
+    }
+
+    /**
+     * @return the {@link Endpoint} this lease belongs to
+     */
+    public Endpoint<E> getEndpoint() {
+        return pooledConnection.endpoint;
+    }
+    
+    /**
+     * Binds the {@link Http2Stream} to this lease, so the lease will be
+     * released automatically once the stream is closed.
+     * 
+     * @param stream the {@link Http2Stream} opened using this lease
+     */
+    public void attach(final Http2Stream stream) {
+        stream.addCloseListener(streamCloseListener);
+    }
+    
+    /**
+     * Binds the {@link HttpRequestPacket} to this lease, so the lease will be
+     * released automatically once the {@link Http2Stream}, opened to send the
+     * request, is closed.
+     * If the request fails before the stream is opened - the lease has to be
+     * released explicitly.
+     * 
+     * @param request the {@link HttpRequestPacket} to be sent using this lease
+     */
+    public void bind(final HttpRequestPacket request) {
+        request.setAttribute(Http2Stream.HTTP2_STREAM_CLOSE_LISTENER_ATTRIBUTE,
+                streamCloseListener);
+    }
+    
+    /**
+     * Returns the stream slot back to the {@link Http2MultiplexingPool}.
+     * 
+     * @return <tt>true</tt> if the lease was released as the result of this
+     *         call, or <tt>false</tt> if it had been released before
+     */
+    public boolean release() {
+        if (!isReleased.compareAndSet(false, true)) {
+            return false;
+        }
+        
+        pooledConnection.pool.release0(this);
+        return true;
+    }
+    
+    /**
+     * @return <tt>true</tt> if the lease has been released, or <tt>false</tt>
+     *         otherwise
+     */
+    public boolean isReleased() {
+        return isReleased.get();
+    }
+
+    @Override
+    public String toString() {
+        return "StreamLease{"
+                + "connection=" + pooledConnection.connection
+                + ", isReleased=" + isReleased
+                + "} " + super.toString();
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.connectionpool;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URL;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChain;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.http.HttpClientFilter;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http2.AlpnSupport;
+import org.glassfish.grizzly.http2.Http2AddOn;
+import org.glassfish.grizzly.http2.Http2ClientFilter;
+import org.glassfish.grizzly.http2.Http2Connection;
+import org.glassfish.grizzly.http2.frames.ErrorCode;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.ssl.SSLContextConfigurator;
+import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
+import org.glassfish.grizzly.ssl.SSLFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The {@link Http2MultiplexingPool} tests against the HTTP/2 server speaking
+ * cleartext HTTP/2 with prior knowledge, and HTTP/2 negotiated via TLS ALPN.
+ */
+public class Http2MultiplexingPoolTest {
+    private static final int PORT = 18335;
+    private static final int SECURE_PORT = 18336;
+    
+    private HttpServer server;
+    private TCPNIOTransport clientTransport;
+    private Endpoint<SocketAddress> endpoint;
+    
+    private final BlockingQueue<HttpResponsePacket> responses =
+            new LinkedBlockingQueue<HttpResponsePacket>();
+    private volatile CountDownLatch serviceLatch = new CountDownLatch(0);
+    
+    private HttpServer secureServer;
+    private TCPNIOTransport secureClientTransport;
+    
+    @Before
+    public void init() throws IOException {
+        server = HttpServer.createSimpleServer(null, PORT);
+        server.getListener("grizzly").registerAddOn(new Http2AddOn());
+        server.getServerConfiguration().addHttpHandler(createHttpHandler(), "/");
+        server.start();
+        
+        clientTransport = TCPNIOTransportBuilder.newInstance().build();
+        clientTransport.setProcessor(createClientFilterChain(null));
+        clientTransport.start();
+        
+        endpoint = Endpoint.Factory.<SocketAddress>create(
+                new InetSocketAddress("localhost", PORT), clientTransport);
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        serviceLatch.countDown();
+        
+        if (clientTransport != null) {
+            clientTransport.shutdownNow();
+        }
+        
+        if (server != null) {
+            server.shutdownNow();
+        }
+        
+        if (secureClientTransport != null) {
+            secureClientTransport.shutdownNow();
+        }
+        
+        if (secureServer != null) {
+            secureServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSecureStreamsMultiplexing() throws Exception {
+        if (!AlpnSupport.isEnabled()) {
+            return;
+        }
+        
+        final Endpoint<SocketAddress> secureEndpoint = startSecure(true);
+        final Http2MultiplexingPool<SocketAddress> pool = createPool(1, 2);
+        
+        try {
+            final StreamLease<SocketAddress> l1 = pool.lease(secureEndpoint).get(10, TimeUnit.SECONDS);
+            final StreamLease<SocketAddress> l2 = pool.lease(secureEndpoint).get(10, TimeUnit.SECONDS);
+            assertSame(l1.getConnection(), l2.getConnection());
+            assertSame(Http2Connection.get(l1.getConnection()), l1.getHttp2Connection());
+            assertEquals(1, pool.getOpenConnectionsCount(secureEndpoint));
+            
+            l1.getConnection().write(createRequest(l1));
+            final HttpResponsePacket response = responses.poll(10, TimeUnit.SECONDS);
+            assertNotNull(response);
+            assertEquals(200, response.getStatus());
+            assertEquals(Protocol.HTTP_2_0, response.getProtocol());
+            
+            l2.release();
+        } finally {
+            pool.close();
+        }
+    }
+    
+    @Test
+    public void testSecureNoHttp2() throws Exception {
+        if (!AlpnSupport.isEnabled()) {
+            return;
+        }
+        
+        final Endpoint<SocketAddress> secureEndpoint = startSecure(false);
+        final Http2MultiplexingPool<SocketAddress> pool = createPool(1, 2);
+        
+        try {
+            pool.lease(secureEndpoint).get(10, TimeUnit.SECONDS);
+            fail("ExecutionException had to be thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals(0, pool.getOpenConnectionsCount(secureEndpoint));
+        } finally {
+            pool.close();
+        }
+    }
+    
+    private HttpHandler createHttpHandler() {
+        return new HttpHandler() {
+            @Override
+            public void service(final Request request, final Response response)
+                    throws Exception {
+                serviceLatch.await(10, TimeUnit.SECONDS);
+                response.getWriter().write("OK");
+            }
+        };
+    }
+    
+    private Endpoint<SocketAddress> startSecure(final boolean isHttp2)
+            throws IOException {
+        final SSLContextConfigurator sslContextConfigurator =
+                createSSLContextConfigurator();
+        
+        secureServer = HttpServer.createSimpleServer(null, SECURE_PORT);
+        final NetworkListener listener = secureServer.getListener("grizzly");
+        listener.setSecure(true);
+        listener.setSSLEngineConfig(new SSLEngineConfigurator(
+                sslContextConfigurator.createSSLContext(), false, false, false));
+        if (isHttp2) {
+            listener.registerAddOn(new Http2AddOn());
+        }
+        secureServer.getServerConfiguration().addHttpHandler(createHttpHandler(), "/");
+        secureServer.start();
+        
+        secureClientTransport = TCPNIOTransportBuilder.newInstance().build();
+        secureClientTransport.setProcessor(createClientFilterChain(
+                new SSLFilter(null, new SSLEngineConfigurator(
+                sslContextConfigurator.createSSLContext(), true, false, false))));
+        secureClientTransport.start();
+        
+        return Endpoint.Factory.<SocketAddress>create(
+                new InetSocketAddress("localhost", SECURE_PORT),
+                secureClientTransport);
+    }
+    
+    private FilterChain createClientFilterChain(final SSLFilter sslFilter) {
+        final FilterChainBuilder builder = FilterChainBuilder.stateless()
+                .add(new TransportFilter());
+        if (sslFilter != null) {
+            builder.add(sslFilter);
+        }
+        
+        return builder.add(new HttpClientFilter())
+                .add(new Http2ClientFilter())
+                .add(new BaseFilter() {
+                    @Override
+                    public NextAction handleRead(final FilterChainContext ctx)
+                            throws IOException {
+                        final HttpContent httpContent = ctx.getMessage();
+                        if (httpContent.isLast()) {
+                            responses.add((HttpResponsePacket) httpContent.getHttpHeader());
+                        }
+                        
+                        return ctx.getStopAction();
+                    }
+                })
+                .build();
+    }
+    
+    private static SSLContextConfigurator createSSLContextConfigurator() {
+        final SSLContextConfigurator sslContextConfigurator =
+                new SSLContextConfigurator();
+        final ClassLoader cl = Http2MultiplexingPoolTest.class.getClassLoader();
+        
+        final URL cacertsUrl = cl.getResource("ssltest-cacerts.jks");
+        if (cacertsUrl != null) {
+            sslContextConfigurator.setTrustStoreFile(cacertsUrl.getFile());
+            sslContextConfigurator.setTrustStorePass("changeit");
+        }
+
+        final URL keystoreUrl = cl.getResource("ssltest-keystore.jks");
+        if (keystoreUrl != null) {
+            sslContextConfigurator.setKeyStoreFile(keystoreUrl.getFile());
+            sslContextConfigurator.setKeyStorePass("changeit");
+        }
+
+        return sslContextConfigurator;
+    }
+
+    @Test
+    public void testStreamsMultiplexing() throws Exception {
+        final Http2MultiplexingPool<SocketAddress> pool = createPool(2, 2);
+        
+        try {
+            final StreamLease<SocketAddress> l1 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            final StreamLease<SocketAddress> l2 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            assertSame(l1.getConnection(), l2.getConnection());
+            assertSame(Http2Connection.get(l1.getConnection()), l1.getHttp2Connection());
+            assertEquals(1, pool.getOpenConnectionsCount(endpoint));
+            assertEquals(2, pool.getActiveStreamsCount(endpoint));
+            
+            // the first connection reached its streams limit
+            final StreamLease<SocketAddress> l3 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            assertNotSame(l1.getConnection(), l3.getConnection());
+            assertEquals(2, pool.getOpenConnectionsCount(endpoint));
+            
+            final StreamLease<SocketAddress> l4 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            assertSame(l3.getConnection(), l4.getConnection());
+            
+            // max connections per endpoint limit is reached
+            final GrizzlyFuture<StreamLease<SocketAddress>> l5Future =
+                    pool.lease(endpoint);
+            try {
+                l5Future.get(1, TimeUnit.SECONDS);
+                fail("TimeoutException had to be thrown");
+            } catch (TimeoutException e) {
+            }
+            
+            assertTrue(l2.release());
+            assertFalse(l2.release());
+            
+            final StreamLease<SocketAddress> l5 = l5Future.get(10, TimeUnit.SECONDS);
+            assertSame(l1.getConnection(), l5.getConnection());
+            assertEquals(2, pool.getOpenConnectionsCount(endpoint));
+            assertEquals(4, pool.getActiveStreamsCount(endpoint));
+            
+            l1.release();
+            l3.release();
+            l4.release();
+            l5.release();
+            assertEquals(0, pool.getActiveStreamsCount(endpoint));
+            assertEquals(2, pool.getOpenConnectionsCount(endpoint));
+        } finally {
+            pool.close();
+        }
+    }
+    
+    @Test
+    public void testStreamCloseReleasesLease() throws Exception {
+        final Http2MultiplexingPool<SocketAddress> pool = createPool(1, 2);
+        serviceLatch = new CountDownLatch(1);
+        
+        try {
+            final StreamLease<SocketAddress> l1 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            final StreamLease<SocketAddress> l2 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            assertSame(l1.getConnection(), l2.getConnection());
+            
+            l1.getConnection().write(createRequest(l1));
+            l2.getConnection().write(createRequest(l2));
+            
+            // both the requests are being served over the same connection
+            final GrizzlyFuture<StreamLease<SocketAddress>> l3Future =
+                    pool.lease(endpoint);
+            assertFalse(l3Future.isDone());
+            assertEquals(2, pool.getActiveStreamsCount(endpoint));
+            
+            serviceLatch.countDown();
+            for (int i = 0; i < 2; i++) {
+                final HttpResponsePacket response = responses.poll(10, TimeUnit.SECONDS);
+                assertNotNull(response);
+                assertEquals(200, response.getStatus());
+            }
+            
+            // the streams are closed - the leases are returned to the pool
+            final StreamLease<SocketAddress> l3 = l3Future.get(10, TimeUnit.SECONDS);
+            for (int i = 0; i < 100 && !(l1.isReleased() && l2.isReleased()); i++) {
+                Thread.sleep(100);
+            }
+            
+            assertTrue(l1.isReleased());
+            assertTrue(l2.isReleased());
+            assertSame(l1.getConnection(), l3.getConnection());
+            assertEquals(1, pool.getActiveStreamsCount(endpoint));
+            
+            l3.release();
+        } finally {
+            pool.close();
+        }
+    }
+    
+    @Test
+    public void testGoAway() throws Exception {
+        final Http2MultiplexingPool<SocketAddress> pool = createPool(2, 10);
+        
+        try {
+            final StreamLease<SocketAddress> l1 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            final Connection c1 = l1.getConnection();
+            
+            l1.getHttp2Connection().goAway(ErrorCode.NO_ERROR);
+            
+            final StreamLease<SocketAddress> l2 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+            assertNotSame(c1, l2.getConnection());
+            
+            // the connection has to be closed once the last stream is released
+            l1.release();
+            waitForConnectionsCount(pool, 1);
+            assertFalse(pool.isRegistered(c1));
+            assertTrue(pool.isRegistered(l2.getConnection()));
+            
+            l2.release();
+        } finally {
+            pool.close();
+        }
+    }
+    
+    @Test
+    public void testDrainAndClose() throws Exception {
+        final Http2MultiplexingPool<SocketAddress> pool = createPool(1, 1);
+        
+        final StreamLease<SocketAddress> l1 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+        final Connection c1 = l1.getConnection();
+        
+        pool.drain(endpoint);
+        assertTrue(c1.isOpen());
+        
+        // drained connection is not counted, so the new one could be opened
+        final StreamLease<SocketAddress> l2 = pool.lease(endpoint).get(10, TimeUnit.SECONDS);
+        assertNotSame(c1, l2.getConnection());
+        
+        l1.release();
+        waitForConnectionsCount(pool, 1);
+        
+        final GrizzlyFuture<StreamLease<SocketAddress>> l3Future =
+                pool.lease(endpoint);
+        
+        pool.close();
+        
+        try {
+            l3Future.get(10, TimeUnit.SECONDS);
+            fail("ExecutionException had to be thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        
+        assertTrue(l2.getConnection().isOpen());
+        l2.release();
+        waitForConnectionsCount(pool, 0);
+    }
+    
+    private static HttpContent createRequest(
+            final StreamLease<SocketAddress> lease) {
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/")
+                .protocol(Protocol.HTTP_1_1)
+                .header("Host", "localhost:" + PORT)
+                .build();
+        lease.bind(request);
+        
+        return HttpContent.builder(request)
+                .content(Buffers.EMPTY_BUFFER)
+                .last(true)
+                .build();
+    }
+    
+    private static Http2MultiplexingPool<SocketAddress> createPool(
+            final int maxConnectionsPerEndpoint,
+            final int maxStreamsPerConnection) {
+        return Http2MultiplexingPool.builder(SocketAddress.class)
+                .maxConnectionsPerEndpoint(maxConnectionsPerEndpoint)
+                .maxStreamsPerConnection(maxStreamsPerConnection)
+                .build();
+    }
+    
+    private void waitForConnectionsCount(
+            final Http2MultiplexingPool<SocketAddress> pool,
+            final int count) throws InterruptedException {
+        
+        for (int i = 0; i < 100 && pool.getOpenConnectionsCount(endpoint) != count; i++) {
+            Thread.sleep(100);
+        }
+        
+        assertEquals(count, pool.getOpenConnectionsCount(endpoint));
+    }
+}
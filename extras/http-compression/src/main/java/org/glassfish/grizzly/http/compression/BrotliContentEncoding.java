@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.compression;
+
+import org.glassfish.grizzly.http.EncodingFilter;
+
+/**
+ * Brotli (<tt>br</tt>) {@link org.glassfish.grizzly.http.ContentEncoding}
+ * implementation.
+ * 
+ * The content is encoded using the native
+ * <tt>com.aayushatharva.brotli4j:brotli4j</tt> binding, if it's available on
+ * the classpath, and decoded using either the native binding or the pure-Java
+ * <tt>org.brotli:dec</tt> decoder. If neither is available -
+ * the encoding is never applied.
+ * 
+ * @since 2.3.23
+ */
+public class BrotliContentEncoding extends StreamContentEncoding {
+    public static final String NAME = "br";
+    
+    /**
+     * The default Brotli quality. Quality 5 gives better compression ratio than
+     * the default gzip level at the comparable CPU cost, the higher qualities
+     * are more suitable for the pre-compressed static resources.
+     */
+    public static final int DEFAULT_QUALITY = 5;
+    
+    private static final String[] ALIASES = {"br"};
+
+    /**
+     * Construct <tt>BrotliContentEncoding</tt>, which only decodes the content.
+     */
+    public BrotliContentEncoding() {
+        this(null);
+    }
+
+    /**
+     * Construct <tt>BrotliContentEncoding</tt> using the default quality.
+     * 
+     * @param encodingFilter {@link EncodingFilter}, which will decide if
+     *          <tt>BrotliContentEncoding</tt> should be applied to encode/decode
+     *          specific {@link org.glassfish.grizzly.http.HttpHeader} packet.
+     */
+    public BrotliContentEncoding(final EncodingFilter encodingFilter) {
+        this(encodingFilter, DEFAULT_QUALITY);
+    }
+
+    /**
+     * Construct <tt>BrotliContentEncoding</tt>.
+     * 
+     * @param encodingFilter {@link EncodingFilter}, which will decide if
+     *          <tt>BrotliContentEncoding</tt> should be applied to encode/decode
+     *          specific {@link org.glassfish.grizzly.http.HttpHeader} packet.
+     * @param quality the Brotli quality 0-11.
+     */
+    public BrotliContentEncoding(final EncodingFilter encodingFilter,
+            final int quality) {
+        super(NAME, ALIASES, CompressionBindings.brotli(), quality,
+                encodingFilter);
+        
+        if (quality < 0 || quality > 11) {
+            throw new IllegalArgumentException("Invalid quality: " + quality);
+        }
+    }
+
+    /**
+     * @return the Brotli {@link CompressionCodec} found on the classpath.
+     */
+    public static CompressionCodec getBrotliCodec() {
+        return CompressionBindings.brotli();
+    }
+    
+    public static String[] getBrotliAliases() {
+        return ALIASES.clone();
+    }
+}
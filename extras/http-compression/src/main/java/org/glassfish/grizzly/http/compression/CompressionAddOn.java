@@ -0,0 +1,257 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.http.CompressionConfig;
+import org.glassfish.grizzly.http.ContentEncoding;
+import org.glassfish.grizzly.http.HttpCodecFilter;
+import org.glassfish.grizzly.http.HttpHeader;
+import org.glassfish.grizzly.http.server.AddOn;
+import org.glassfish.grizzly.http.server.CompressionEncodingFilter;
+import org.glassfish.grizzly.http.server.NetworkListener;
+
+/**
+ * {@link AddOn}, which registers the {@link BrotliContentEncoding} and
+ * {@link ZstdContentEncoding} on the {@link NetworkListener}, if the
+ * corresponding bindings are available on the classpath.
+ * 
+ * The responses are compressed according to the {@link NetworkListener}'s
+ * {@link CompressionConfig}. The request content is not decoded by default,
+ * because the compressed content has to be accumulated before it's decoded,
+ * the decoding could be enabled using {@link #setRequestDecodingEnabled(boolean)}
+ * and is limited by {@link #getMaxEncodedSize()} and {@link #getMaxDecodedSize()}.
+ * The encodings are registered before the ones configured by the
+ * {@link org.glassfish.grizzly.http.server.HttpServer} (gzip, lzma),
+ * so if the client accepts several encodings with the same q-value,
+ * Brotli and Zstandard are preferred; otherwise the encoding with the highest
+ * Accept-Encoding q-value is used.
+ * 
+ * @since 2.3.23
+ */
+public class CompressionAddOn implements AddOn {
+    private static final Logger LOGGER = Grizzly.logger(CompressionAddOn.class);
+    
+    private int brotliQuality = BrotliContentEncoding.DEFAULT_QUALITY;
+    private int zstdLevel = ZstdContentEncoding.DEFAULT_LEVEL;
+    private boolean isRequestDecodingEnabled;
+    private int maxEncodedSize = StreamContentEncoding.DEFAULT_MAX_ENCODED_SIZE;
+    private int maxDecodedSize = StreamContentEncoding.DEFAULT_MAX_DECODED_SIZE;
+
+    /**
+     * @return the Brotli quality used to compress the responses.
+     */
+    public int getBrotliQuality() {
+        return brotliQuality;
+    }
+
+    /**
+     * Sets the Brotli quality used to compress the responses.
+     * 
+     * @param brotliQuality the Brotli quality 0-11.
+     */
+    public void setBrotliQuality(final int brotliQuality) {
+        this.brotliQuality = brotliQuality;
+    }
+
+    /**
+     * @return the Zstandard level used to compress the responses.
+     */
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    /**
+     * Sets the Zstandard level used to compress the responses.
+     * 
+     * @param zstdLevel the Zstandard level 1-22.
+     */
+    public void setZstdLevel(final int zstdLevel) {
+        this.zstdLevel = zstdLevel;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the Brotli and Zstandard encoded request
+     *          content is decoded, or <tt>false</tt> otherwise.
+     */
+    public boolean isRequestDecodingEnabled() {
+        return isRequestDecodingEnabled;
+    }
+
+    /**
+     * Enables or disables the Brotli and Zstandard encoded request content
+     * decoding. The decoding is disabled by default.
+     * 
+     * @param isRequestDecodingEnabled <tt>true</tt> to decode the request content.
+     */
+    public void setRequestDecodingEnabled(final boolean isRequestDecodingEnabled) {
+        this.isRequestDecodingEnabled = isRequestDecodingEnabled;
+    }
+
+    /**
+     * @return the max size of the compressed request content to be decoded.
+     */
+    public int getMaxEncodedSize() {
+        return maxEncodedSize;
+    }
+
+    /**
+     * Sets the max size of the compressed request content to be decoded.
+     * 
+     * @param maxEncodedSize the max size in bytes.
+     */
+    public void setMaxEncodedSize(final int maxEncodedSize) {
+        this.maxEncodedSize = maxEncodedSize;
+    }
+
+    /**
+     * @return the max size of the decompressed request content.
+     */
+    public int getMaxDecodedSize() {
+        return maxDecodedSize;
+    }
+
+    /**
+     * Sets the max size of the decompressed request content.
+     * 
+     * @param maxDecodedSize the max size in bytes.
+     */
+    public void setMaxDecodedSize(final int maxDecodedSize) {
+        this.maxDecodedSize = maxDecodedSize;
+    }
+
+    @Override
+    public void setup(final NetworkListener networkListener,
+            final FilterChainBuilder builder) {
+        final int codecFilterIdx = builder.indexOfType(
+                org.glassfish.grizzly.http.HttpServerFilter.class);
+        if (codecFilterIdx == -1) {
+            return;
+        }
+        
+        final HttpCodecFilter codecFilter =
+                (HttpCodecFilter) builder.get(codecFilterIdx);
+        final CompressionConfig compressionConfig =
+                networkListener.getCompressionConfig();
+        
+        final List<StreamContentEncoding> encodings =
+                new ArrayList<StreamContentEncoding>(2);
+        if (isAvailable(BrotliContentEncoding.getBrotliCodec())) {
+            encodings.add(new BrotliContentEncoding(
+                    new AddOnEncodingFilter(compressionConfig,
+                            BrotliContentEncoding.getBrotliAliases(),
+                            isRequestDecodingEnabled),
+                    brotliQuality));
+        }
+        
+        if (isAvailable(ZstdContentEncoding.getZstdCodec())) {
+            encodings.add(new ZstdContentEncoding(
+                    new AddOnEncodingFilter(compressionConfig,
+                            ZstdContentEncoding.getZstdAliases(),
+                            isRequestDecodingEnabled),
+                    zstdLevel));
+        }
+        
+        if (encodings.isEmpty()) {
+            LOGGER.log(Level.WARNING, "No usable Brotli or Zstandard binding"
+                    + " is available, listener {0} is not affected",
+                    networkListener.getName());
+            return;
+        }
+        
+        // register the new encodings first, so they're preferred
+        // if the client accepts several encodings with the same q-value
+        final ContentEncoding[] registeredEncodings =
+                codecFilter.getContentEncodings();
+        for (ContentEncoding encoding : registeredEncodings) {
+            codecFilter.removeContentEncoding(encoding);
+        }
+        
+        for (StreamContentEncoding encoding : encodings) {
+            encoding.setMaxEncodedSize(maxEncodedSize);
+            encoding.setMaxDecodedSize(maxDecodedSize);
+            codecFilter.addContentEncoding(encoding);
+        }
+        
+        for (ContentEncoding encoding : registeredEncodings) {
+            codecFilter.addContentEncoding(encoding);
+        }
+        
+        if (LOGGER.isLoggable(Level.FINE)) {
+            for (StreamContentEncoding encoding : encodings) {
+                final CompressionCodec codec = encoding.getCodec();
+                LOGGER.log(Level.FINE, "{0} content encoding uses {1} (native={2}, encoding={3})",
+                        new Object[] {encoding.getName(), codec.getName(),
+                            codec.isNative(), codec.isEncodingSupported()});
+            }
+        }
+    }
+    
+    private boolean isAvailable(final CompressionCodec codec) {
+        return codec.isEncodingSupported()
+                || (isRequestDecodingEnabled && codec.isDecodingSupported());
+    }
+    
+    /**
+     * {@link CompressionEncodingFilter}, which also allows the request
+     * content decoding, if it's enabled.
+     */
+    private static final class AddOnEncodingFilter
+            extends CompressionEncodingFilter {
+        private final boolean isDecodingEnabled;
+
+        private AddOnEncodingFilter(final CompressionConfig compressionConfig,
+                final String[] aliases, final boolean isDecodingEnabled) {
+            super(compressionConfig, aliases);
+            this.isDecodingEnabled = isDecodingEnabled;
+        }
+
+        @Override
+        public boolean applyDecoding(final HttpHeader httpPacket) {
+            return isDecodingEnabled;
+        }
+    }
+}
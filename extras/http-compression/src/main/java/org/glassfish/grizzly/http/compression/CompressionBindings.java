@@ -0,0 +1,280 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+
+/**
+ * The Brotli and Zstandard {@link CompressionCodec}s, which use the bindings
+ * found on the classpath at runtime.
+ * 
+ * Brotli: the native <tt>com.aayushatharva.brotli4j:brotli4j</tt> binding is
+ * used for encoding and decoding, if it's not available - the pure-Java
+ * <tt>org.brotli:dec</tt> decoder is used for decoding.
+ * 
+ * Zstandard: the native <tt>com.github.luben:zstd-jni</tt> binding is
+ * used for encoding and decoding, if it's not available - the pure-Java
+ * <tt>io.airlift:aircompressor</tt> decoder is used for decoding.
+ */
+final class CompressionBindings {
+    private static final Logger LOGGER = Grizzly.logger(CompressionBindings.class);
+    
+    private static final CompressionCodec BROTLI = createBrotliCodec();
+    private static final CompressionCodec ZSTD = createZstdCodec();
+
+    private CompressionBindings() {
+    }
+    
+    static CompressionCodec brotli() {
+        return BROTLI;
+    }
+
+    static CompressionCodec zstd() {
+        return ZSTD;
+    }
+    
+    private static CompressionCodec createBrotliCodec() {
+        EncoderFactory encoderFactory = null;
+        Constructor<?> decoderConstructor = null;
+        try {
+            final Class<?> loaderClass = Class.forName(
+                    "com.aayushatharva.brotli4j.Brotli4jLoader");
+            if ((Boolean) loaderClass.getMethod("isAvailable").invoke(null)) {
+                final Class<?> parametersClass = Class.forName(
+                        "com.aayushatharva.brotli4j.encoder.Encoder$Parameters");
+                final Method setQualityMethod =
+                        parametersClass.getMethod("setQuality", int.class);
+                final Constructor<?> encoderConstructor = Class.forName(
+                        "com.aayushatharva.brotli4j.encoder.BrotliOutputStream")
+                        .getConstructor(OutputStream.class, parametersClass);
+                
+                encoderFactory = new EncoderFactory() {
+                    @Override
+                    OutputStream create(final OutputStream sink, final int level)
+                            throws Exception {
+                        final Object parameters = parametersClass.newInstance();
+                        setQualityMethod.invoke(parameters, level);
+                        return (OutputStream) encoderConstructor.newInstance(
+                                sink, parameters);
+                    }
+                };
+                
+                decoderConstructor = Class.forName(
+                        "com.aayushatharva.brotli4j.decoder.BrotliInputStream")
+                        .getConstructor(InputStream.class);
+            } else {
+                logUnavailable("brotli4j", (Throwable) loaderClass.getMethod(
+                        "getUnavailabilityCause").invoke(null));
+            }
+        } catch (InvocationTargetException e) {
+            logUnavailable("brotli4j", e.getCause());
+        } catch (Throwable t) {
+            logUnavailable("brotli4j", t);
+        }
+        
+        if (encoderFactory != null) {
+            return new ReflectiveCodec("brotli4j", true, encoderFactory,
+                    decoderConstructor);
+        }
+        
+        return createBrotliDecoderCodec();
+    }
+    
+    /**
+     * @return the pure-Java Brotli decoder {@link CompressionCodec}.
+     */
+    static CompressionCodec createBrotliDecoderCodec() {
+        return new ReflectiveCodec("org.brotli.dec", false, null,
+                findDecoderConstructor("org.brotli.dec.BrotliInputStream"));
+    }
+    
+    private static CompressionCodec createZstdCodec() {
+        EncoderFactory encoderFactory = null;
+        Constructor<?> decoderConstructor = null;
+        try {
+            // throws UnsatisfiedLinkError if the native library can't be loaded
+            Class.forName("com.github.luben.zstd.util.Native")
+                    .getMethod("load").invoke(null);
+            
+            final Constructor<?> encoderConstructor = Class.forName(
+                    "com.github.luben.zstd.ZstdOutputStream")
+                    .getConstructor(OutputStream.class, int.class);
+            
+            encoderFactory = new EncoderFactory() {
+                @Override
+                OutputStream create(final OutputStream sink, final int level)
+                        throws Exception {
+                    return (OutputStream) encoderConstructor.newInstance(
+                            sink, level);
+                }
+            };
+            
+            decoderConstructor = Class.forName(
+                    "com.github.luben.zstd.ZstdInputStream")
+                    .getConstructor(InputStream.class);
+        } catch (InvocationTargetException e) {
+            logUnavailable("zstd-jni", e.getCause());
+        } catch (Throwable t) {
+            logUnavailable("zstd-jni", t);
+        }
+        
+        if (encoderFactory != null) {
+            return new ReflectiveCodec("zstd-jni", true, encoderFactory,
+                    decoderConstructor);
+        }
+        
+        return createZstdDecoderCodec();
+    }
+    
+    /**
+     * @return the pure-Java Zstandard decoder {@link CompressionCodec}.
+     */
+    static CompressionCodec createZstdDecoderCodec() {
+        return new ReflectiveCodec("aircompressor", false, null,
+                findDecoderConstructor("io.airlift.compress.zstd.ZstdInputStream"));
+    }
+    
+    private static Constructor<?> findDecoderConstructor(final String className) {
+        try {
+            return Class.forName(className).getConstructor(InputStream.class);
+        } catch (Throwable t) {
+            logUnavailable(className, t);
+            return null;
+        }
+    }
+    
+    private static void logUnavailable(final String binding, final Throwable cause) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Compression binding " + binding
+                    + " is not available", cause);
+        }
+    }
+    
+    private static IOException toIOException(final Exception e) {
+        final Throwable cause = e instanceof InvocationTargetException
+                ? e.getCause()
+                : e;
+        return cause instanceof IOException
+                ? (IOException) cause
+                : new IOException(cause);
+    }
+    
+    private abstract static class EncoderFactory {
+        abstract OutputStream create(OutputStream sink, int level) throws Exception;
+    }
+    
+    private static final class ReflectiveCodec implements CompressionCodec {
+        private final String name;
+        private final boolean isNative;
+        private final EncoderFactory encoderFactory;
+        private final Constructor<?> decoderConstructor;
+
+        private ReflectiveCodec(final String name, final boolean isNative,
+                final EncoderFactory encoderFactory,
+                final Constructor<?> decoderConstructor) {
+            this.name = name;
+            this.isNative = isNative;
+            this.encoderFactory = encoderFactory;
+            this.decoderConstructor = decoderConstructor;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isNative() {
+            return isNative;
+        }
+
+        @Override
+        public boolean isEncodingSupported() {
+            return encoderFactory != null;
+        }
+
+        @Override
+        public boolean isDecodingSupported() {
+            return decoderConstructor != null;
+        }
+
+        @Override
+        public OutputStream createEncoder(final OutputStream sink,
+                final int level) throws IOException {
+            if (encoderFactory == null) {
+                throw new IOException("Encoding is not supported by " + name);
+            }
+            
+            try {
+                return encoderFactory.create(sink, level);
+            } catch (Exception e) {
+                throw toIOException(e);
+            }
+        }
+
+        @Override
+        public InputStream createDecoder(final InputStream source)
+                throws IOException {
+            if (decoderConstructor == null) {
+                throw new IOException("Decoding is not supported by " + name);
+            }
+            
+            try {
+                return (InputStream) decoderConstructor.newInstance(source);
+            } catch (Exception e) {
+                throw toIOException(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The compression algorithm binding used by {@link StreamContentEncoding}.
+ * 
+ * The encoder and decoder are independent, so the binding may be able
+ * to decode only, for example when the native library is not available
+ * and the pure-Java decoder is used.
+ * 
+ * @since 2.3.23
+ */
+public interface CompressionCodec {
+    /**
+     * @return the binding name, for example the library name.
+     */
+    String getName();
+    
+    /**
+     * @return <tt>true</tt>, if the encoder is backed by a native library.
+     */
+    boolean isNative();
+    
+    /**
+     * @return <tt>true</tt>, if the binding is able to compress the data.
+     */
+    boolean isEncodingSupported();
+    
+    /**
+     * @return <tt>true</tt>, if the binding is able to decompress the data.
+     */
+    boolean isDecodingSupported();
+    
+    /**
+     * Creates the compressing {@link OutputStream}, which writes
+     * the compressed data to the sink.
+     * 
+     * @param sink the compressed data sink.
+     * @param level the algorithm specific compression level.
+     * @return the compressing {@link OutputStream}.
+     * @throws IOException if the encoder can't be created.
+     */
+    OutputStream createEncoder(OutputStream sink, int level) throws IOException;
+    
+    /**
+     * Creates the decompressing {@link InputStream}, which reads
+     * the compressed data from the source.
+     * 
+     * @param source the compressed data source.
+     * @return the decompressing {@link InputStream}.
+     * @throws IOException if the decoder can't be created.
+     */
+    InputStream createDecoder(InputStream source) throws IOException;
+}
@@ -0,0 +1,394 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.http.ContentEncoding;
+import org.glassfish.grizzly.http.EncodingFilter;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpHeader;
+import org.glassfish.grizzly.http.ParsingResult;
+import org.glassfish.grizzly.http.ReleasableContentEncoding;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.BufferInputStream;
+import org.glassfish.grizzly.utils.BufferOutputStream;
+
+/**
+ * {@link ContentEncoding} implementation, which compresses/decompresses
+ * HTTP content using the stream based {@link CompressionCodec}.
+ * 
+ * The content is compressed on the fly: each {@link HttpContent} chunk is
+ * written to the codec's encoder and the compressed data produced so far
+ * is passed downstream.
+ * 
+ * The codec decoders are pull based, so the compressed content is
+ * accumulated until the last {@link HttpContent} chunk is received
+ * and then decoded at once. The amount of the accumulated compressed
+ * content and the decompressed content size are limited by
+ * {@link #getMaxEncodedSize()} and {@link #getMaxDecodedSize()}
+ * respectively.
+ * 
+ * The codec encoder of the message, which hasn't been completely encoded
+ * (for example the response has been aborted), is closed once the message's
+ * {@link HttpHeader} is reset, so the native codec state is freed right away.
+ * 
+ * @since 2.3.23
+ */
+public class StreamContentEncoding implements ReleasableContentEncoding {
+    /**
+     * The default max size of the compressed content to be decoded.
+     */
+    public static final int DEFAULT_MAX_ENCODED_SIZE = 256 * 1024;
+    
+    /**
+     * The default max size of the decompressed content.
+     */
+    public static final int DEFAULT_MAX_DECODED_SIZE = 1024 * 1024;
+    
+    private static final int DECODE_CHUNK_SIZE = 8192;
+    
+    private final String name;
+    private final String[] aliases;
+    private final CompressionCodec codec;
+    private final int level;
+    private final EncodingFilter encodingFilter;
+    
+    private final Attribute<OutputStream> encoderAttr;
+    private final Attribute<BufferOutputStream> sinkAttr;
+    
+    private int maxEncodedSize = DEFAULT_MAX_ENCODED_SIZE;
+    private int maxDecodedSize = DEFAULT_MAX_DECODED_SIZE;
+
+    /**
+     * Constructs <tt>StreamContentEncoding</tt>.
+     * 
+     * @param name the <tt>ContentEncoding</tt> name.
+     * @param aliases the <tt>ContentEncoding</tt> aliases, including the name.
+     * @param codec {@link CompressionCodec}
+     * @param level the codec specific compression level.
+     * @param encodingFilter {@link EncodingFilter}, which will decide if
+     *          the <tt>ContentEncoding</tt> should be applied to encode/decode
+     *          specific {@link HttpHeader} packet. If <tt>null</tt> - the
+     *          content is decoded, but never encoded.
+     */
+    public StreamContentEncoding(final String name, final String[] aliases,
+            final CompressionCodec codec, final int level,
+            final EncodingFilter encodingFilter) {
+        this.name = name;
+        this.aliases = aliases.clone();
+        this.codec = codec;
+        this.level = level;
+
+        if (encodingFilter != null) {
+            this.encodingFilter = encodingFilter;
+        } else {
+            this.encodingFilter = new EncodingFilter() {
+                @Override
+                public boolean applyEncoding(final HttpHeader httpPacket) {
+                    return false;
+                }
+
+                @Override
+                public boolean applyDecoding(final HttpHeader httpPacket) {
+                    return true;
+                }
+            };
+        }
+        
+        final String attrPrefix = StreamContentEncoding.class.getName()
+                + '.' + name;
+        encoderAttr = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+                attrPrefix + ".encoder");
+        sinkAttr = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+                attrPrefix + ".sink");
+    }
+
+    /**
+     * @return the {@link CompressionCodec}.
+     */
+    public CompressionCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return the codec specific compression level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the max size of the accumulated compressed content to be decoded.
+     */
+    public int getMaxEncodedSize() {
+        return maxEncodedSize;
+    }
+
+    /**
+     * Sets the max size of the accumulated compressed content to be decoded.
+     * 
+     * @param maxEncodedSize the max size in bytes.
+     */
+    public void setMaxEncodedSize(final int maxEncodedSize) {
+        this.maxEncodedSize = maxEncodedSize;
+    }
+
+    /**
+     * @return the max size of the decompressed content.
+     */
+    public int getMaxDecodedSize() {
+        return maxDecodedSize;
+    }
+
+    /**
+     * Sets the max size of the decompressed content.
+     * 
+     * @param maxDecodedSize the max size in bytes.
+     */
+    public void setMaxDecodedSize(final int maxDecodedSize) {
+        this.maxDecodedSize = maxDecodedSize;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String[] getAliases() {
+        return aliases.clone();
+    }
+
+    @Override
+    public boolean wantDecode(final HttpHeader header) {
+        return codec.isDecodingSupported()
+                && encodingFilter.applyDecoding(header);
+    }
+
+    @Override
+    public boolean wantEncode(final HttpHeader header) {
+        return codec.isEncodingSupported()
+                && encodingFilter.applyEncoding(header);
+    }
+
+    @Override
+    public ParsingResult decode(final Connection connection,
+            final HttpContent httpContent) {
+        final Buffer input = httpContent.getContent();
+        if (input.remaining() > maxEncodedSize) {
+            input.tryDispose();
+            throw new IllegalStateException(name
+                    + " encoded content exceeds the max size: " + maxEncodedSize);
+        }
+        
+        if (!httpContent.isLast()) {
+            // keep accumulating the compressed content
+            input.shrink();
+            return ParsingResult.create(null, input);
+        }
+        
+        final MemoryManager memoryManager = connection.getMemoryManager();
+        final BufferOutputStream decoded = new BufferOutputStream(memoryManager);
+        
+        InputStream decoder = null;
+        try {
+            decoder = codec.createDecoder(new BufferInputStream(input));
+            
+            final byte[] chunk = new byte[DECODE_CHUNK_SIZE];
+            long decodedSize = 0;
+            int len;
+            while ((len = decoder.read(chunk)) != -1) {
+                decodedSize += len;
+                if (decodedSize > maxDecodedSize) {
+                    throw new IllegalStateException(name
+                            + " decoded content exceeds the max size: "
+                            + maxDecodedSize);
+                }
+                
+                decoded.write(chunk, 0, len);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(name + " decode error", e);
+        } finally {
+            if (decoder != null) {
+                try {
+                    decoder.close();
+                } catch (IOException ignored) {
+                }
+            }
+            
+            input.tryDispose();
+        }
+        
+        httpContent.setContent(toResult(decoded));
+        return ParsingResult.create(httpContent, null);
+    }
+
+    @Override
+    public HttpContent encode(final Connection connection,
+            final HttpContent httpContent) {
+        final HttpHeader httpHeader = httpContent.getHttpHeader();
+        
+        final Buffer input = httpContent.getContent();
+
+        final boolean isLast = httpContent.isLast();
+        if (!(isLast || input.hasRemaining())) {
+            // the content is empty and is not last
+            return httpContent;
+        }
+        
+        BufferOutputStream sink = sinkAttr.get(httpHeader);
+        OutputStream encoder = encoderAttr.get(httpHeader);
+        
+        try {
+            if (encoder == null) {
+                sink = new BufferOutputStream(connection.getMemoryManager());
+                encoder = codec.createEncoder(sink, level);
+                sinkAttr.set(httpHeader, sink);
+                encoderAttr.set(httpHeader, encoder);
+            }
+            
+            if (input.hasRemaining()) {
+                write(encoder, input);
+            }
+            
+            if (isLast) {
+                encoder.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(name + " encode error", e);
+        } finally {
+            if (isLast) {
+                sinkAttr.remove(httpHeader);
+                encoderAttr.remove(httpHeader);
+            }
+        }
+        
+        input.tryDispose();
+
+        final Buffer encoded = toResult(sink);
+        if (encoded.hasRemaining() || isLast) {
+            httpContent.setContent(encoded);
+            return httpContent;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Closes the codec encoder of the message, which hasn't been completely
+     * encoded, the compressed data produced so far is discarded.
+     * 
+     * @param httpHeader {@link HttpHeader} being reset.
+     */
+    @Override
+    public void release(final HttpHeader httpHeader) {
+        final OutputStream encoder = encoderAttr.remove(httpHeader);
+        final BufferOutputStream sink = sinkAttr.remove(httpHeader);
+        
+        if (encoder != null) {
+            try {
+                encoder.close();
+            } catch (IOException ignored) {
+            }
+        }
+        
+        if (sink != null) {
+            sink.getBuffer().tryDispose();
+            sink.reset();
+        }
+    }
+    
+    private static void write(final OutputStream encoder, final Buffer input)
+            throws IOException {
+        if (input.hasArray()) {
+            encoder.write(input.array(), input.arrayOffset() + input.position(),
+                    input.remaining());
+        } else {
+            final byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+            encoder.write(bytes);
+        }
+        
+        input.position(input.limit());
+    }
+    
+    /**
+     * Returns the data written to the {@link BufferOutputStream} so far
+     * and resets the stream.
+     */
+    private static Buffer toResult(final BufferOutputStream stream) {
+        final Buffer buffer = stream.getBuffer();
+        if (buffer.position() == 0) {
+            return Buffers.EMPTY_BUFFER;
+        }
+        
+        stream.reset();
+        buffer.trim();
+        return buffer;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final StreamContentEncoding other = (StreamContentEncoding) obj;
+        return getName().equals(other.getName());
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 53 * hash + (getName().hashCode());
+        return hash;
+    }
+}
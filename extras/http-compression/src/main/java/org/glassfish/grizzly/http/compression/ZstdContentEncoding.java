@@ -0,0 +1,113 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.compression;
+
+import org.glassfish.grizzly.http.EncodingFilter;
+
+/**
+ * Zstandard (<tt>zstd</tt>) {@link org.glassfish.grizzly.http.ContentEncoding}
+ * implementation.
+ * 
+ * The content is encoded using the native
+ * <tt>com.github.luben:zstd-jni</tt> binding, if it's available on
+ * the classpath, and decoded using either the native binding or the pure-Java
+ * <tt>io.airlift:aircompressor</tt> decoder. If neither is available -
+ * the encoding is never applied.
+ * 
+ * @since 2.3.23
+ */
+public class ZstdContentEncoding extends StreamContentEncoding {
+    public static final String NAME = "zstd";
+    
+    /**
+     * The default Zstandard compression level.
+     */
+    public static final int DEFAULT_LEVEL = 3;
+    
+    private static final String[] ALIASES = {"zstd"};
+
+    /**
+     * Construct <tt>ZstdContentEncoding</tt>, which only decodes the content.
+     */
+    public ZstdContentEncoding() {
+        this(null);
+    }
+
+    /**
+     * Construct <tt>ZstdContentEncoding</tt> using the default level.
+     * 
+     * @param encodingFilter {@link EncodingFilter}, which will decide if
+     *          <tt>ZstdContentEncoding</tt> should be applied to encode/decode
+     *          specific {@link org.glassfish.grizzly.http.HttpHeader} packet.
+     */
+    public ZstdContentEncoding(final EncodingFilter encodingFilter) {
+        this(encodingFilter, DEFAULT_LEVEL);
+    }
+
+    /**
+     * Construct <tt>ZstdContentEncoding</tt>.
+     * 
+     * @param encodingFilter {@link EncodingFilter}, which will decide if
+     *          <tt>ZstdContentEncoding</tt> should be applied to encode/decode
+     *          specific {@link org.glassfish.grizzly.http.HttpHeader} packet.
+     * @param level the Zstandard compression level 1-22.
+     */
+    public ZstdContentEncoding(final EncodingFilter encodingFilter,
+            final int level) {
+        super(NAME, ALIASES, CompressionBindings.zstd(), level,
+                encodingFilter);
+        
+        if (level < 1 || level > 22) {
+            throw new IllegalArgumentException("Invalid level: " + level);
+        }
+    }
+
+    /**
+     * @return the Zstandard {@link CompressionCodec} found on the classpath.
+     */
+    public static CompressionCodec getZstdCodec() {
+        return CompressionBindings.zstd();
+    }
+    
+    public static String[] getZstdAliases() {
+        return ALIASES.clone();
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.Filter;
+import org.glassfish.grizzly.http.CompressionConfig;
+import org.glassfish.grizzly.http.ContentEncoding;
+import org.glassfish.grizzly.http.HttpCodecFilter;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpHeader;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.ProcessingState;
+import org.glassfish.grizzly.http.server.CompressionEncodingFilter;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link StreamContentEncoding} and {@link CompressionAddOn} tests.
+ * The encoding negotiation and chunked decoding are tested using the JDK
+ * deflate codec, the Brotli/Zstandard tests use the bindings from
+ * the test classpath.
+ */
+public class StreamContentEncodingTest {
+    private static final int PORT = 18905;
+    private static final String TEST_ENCODING = "x-test";
+    
+    @Test
+    public void testBindingsAvailability() {
+        final BrotliContentEncoding brotli = new BrotliContentEncoding();
+        assertEquals("br", brotli.getName());
+        assertEquals(BrotliContentEncoding.getBrotliCodec().isDecodingSupported(),
+                brotli.wantDecode(null));
+        assertFalse(brotli.wantEncode(null));
+        
+        final ZstdContentEncoding zstd = new ZstdContentEncoding();
+        assertEquals("zstd", zstd.getName());
+        assertEquals(ZstdContentEncoding.getZstdCodec().isDecodingSupported(),
+                zstd.wantDecode(null));
+        assertFalse(zstd.wantEncode(null));
+        
+        try {
+            new BrotliContentEncoding(null, 12);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+    
+    @Test
+    public void testBrotliRoundTrip() throws Exception {
+        doTestRoundTrip(BrotliContentEncoding.NAME,
+                BrotliContentEncoding.getBrotliCodec());
+    }
+    
+    @Test
+    public void testZstdRoundTrip() throws Exception {
+        doTestRoundTrip(ZstdContentEncoding.NAME,
+                ZstdContentEncoding.getZstdCodec());
+    }
+    
+    @Test
+    public void testRequestDecodingDisabledByDefault() throws Exception {
+        final CompressionAddOn addOn = new CompressionAddOn();
+        assertFalse(addOn.isRequestDecodingEnabled());
+        
+        final CompressionCodec codec = BrotliContentEncoding.getBrotliCodec();
+        assertTrue(codec.isEncodingSupported());
+        
+        final HttpServer server = createServer(addOn);
+        try {
+            server.start();
+            
+            final byte[] encoded = encode(codec,
+                    createContent(2000).getBytes(Charsets.ASCII_CHARSET));
+            // the content is passed to the application as it is
+            assertEquals(String.valueOf(encoded.length),
+                    post(BrotliContentEncoding.NAME, encoded, false));
+        } finally {
+            server.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testPureJavaDecoders() throws Exception {
+        final byte[] body = createContent(2000).getBytes(Charsets.ASCII_CHARSET);
+        
+        final CompressionCodec brotliDecoder =
+                CompressionBindings.createBrotliDecoderCodec();
+        assertFalse(brotliDecoder.isNative());
+        assertFalse(brotliDecoder.isEncodingSupported());
+        assertTrue(brotliDecoder.isDecodingSupported());
+        assertEquals(new String(body, Charsets.ASCII_CHARSET),
+                decode(brotliDecoder,
+                        encode(BrotliContentEncoding.getBrotliCodec(), body)));
+        
+        final CompressionCodec zstdDecoder =
+                CompressionBindings.createZstdDecoderCodec();
+        assertFalse(zstdDecoder.isNative());
+        assertFalse(zstdDecoder.isEncodingSupported());
+        assertTrue(zstdDecoder.isDecodingSupported());
+        assertEquals(new String(body, Charsets.ASCII_CHARSET),
+                decode(zstdDecoder,
+                        encode(ZstdContentEncoding.getZstdCodec(), body)));
+    }
+    
+    @Test
+    public void testAcceptEncodingNegotiation() throws Exception {
+        final HttpServer server = createServer();
+        try {
+            server.start();
+            registerTestEncoding(server.getListener("grizzly"));
+            
+            // gzip is registered first, so it wins the tie
+            assertEquals("gzip", get("gzip, x-test"));
+            assertEquals(TEST_ENCODING, get("gzip;q=0.5, x-test"));
+            assertEquals(TEST_ENCODING, get("gzip;q=0.5, x-test;q=0.8"));
+            assertEquals("gzip", get("x-test;q=0, gzip"));
+            assertEquals(TEST_ENCODING, get("x-test"));
+            assertNull(get("identity"));
+        } finally {
+            server.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testChunkedRequestDecoding() throws Exception {
+        final HttpServer server = createServer();
+        try {
+            server.start();
+            registerTestEncoding(server.getListener("grizzly"));
+            
+            final byte[] body = createContent(2000).getBytes(Charsets.ASCII_CHARSET);
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final DeflaterOutputStream dos = new DeflaterOutputStream(baos);
+            dos.write(body);
+            dos.close();
+            
+            final HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://localhost:" + PORT + "/").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            // small chunks, so the encoded content arrives in several parts
+            connection.setChunkedStreamingMode(64);
+            connection.setRequestProperty("Content-Encoding", TEST_ENCODING);
+            final OutputStream os = connection.getOutputStream();
+            os.write(baos.toByteArray());
+            os.close();
+            
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(String.valueOf(body.length),
+                    connection.getHeaderField("X-Decoded-Length"));
+            assertEquals("true", connection.getHeaderField("X-Decoded-Valid"));
+            connection.disconnect();
+        } finally {
+            server.shutdownNow();
+        }
+    }
+    
+    /**
+     * The encoder of the aborted response has to be closed, once the response
+     * is recycled.
+     */
+    @Test
+    public void testAbortedResponseReleasesEncoder() throws Exception {
+        final AtomicInteger closedEncoders = new AtomicInteger();
+        final StreamContentEncoding encoding = new StreamContentEncoding(
+                TEST_ENCODING, new String[] {TEST_ENCODING},
+                new CloseTrackingCodec(new DeflateCodec(), closedEncoders),
+                6, null);
+        
+        final HttpServer server = createServer();
+        Connection connection = null;
+        try {
+            server.start();
+            connection = server.getListener("grizzly").getTransport()
+                    .connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+            
+            final TestResponse response = new TestResponse(encoding);
+            final HttpContent chunk = encoding.encode(connection,
+                    HttpContent.builder(response)
+                    .content(Buffers.wrap(connection.getMemoryManager(),
+                            createContent(100)))
+                    .build());
+            if (chunk != null) {
+                chunk.getContent().tryDispose();
+            }
+            assertEquals(0, closedEncoders.get());
+            
+            // the last chunk is never encoded
+            response.recycle();
+            assertEquals(1, closedEncoders.get());
+            
+            response.recycle();
+            assertEquals(1, closedEncoders.get());
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            
+            server.shutdownNow();
+        }
+    }
+    
+    private void doTestRoundTrip(final String encoding,
+            final CompressionCodec codec) throws Exception {
+        assertTrue(codec.isNative());
+        assertTrue(codec.isEncodingSupported());
+        assertTrue(codec.isDecodingSupported());
+        
+        final CompressionAddOn addOn = new CompressionAddOn();
+        addOn.setRequestDecodingEnabled(true);
+        final HttpServer server = createServer(addOn);
+        try {
+            server.start();
+            
+            assertEquals(encoding, get(encoding));
+            
+            final byte[] body = createContent(2000).getBytes(Charsets.ASCII_CHARSET);
+            assertEquals(String.valueOf(body.length),
+                    post(encoding, encode(codec, body), true));
+        } finally {
+            server.shutdownNow();
+        }
+    }
+    
+    /**
+     * Sends the encoded content using the POST request and returns
+     * the content length seen by the application.
+     */
+    private static String post(final String contentEncoding,
+            final byte[] content, final boolean isDecodingExpected)
+            throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + PORT + "/").openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Encoding", contentEncoding);
+            final OutputStream os = connection.getOutputStream();
+            os.write(content);
+            os.close();
+            
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(String.valueOf(isDecodingExpected),
+                    connection.getHeaderField("X-Decoded-Valid"));
+            return connection.getHeaderField("X-Decoded-Length");
+        } finally {
+            connection.disconnect();
+        }
+    }
+    
+    private static byte[] encode(final CompressionCodec codec,
+            final byte[] content) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final OutputStream encoder = codec.createEncoder(baos, 5);
+        encoder.write(content);
+        encoder.close();
+        
+        return baos.toByteArray();
+    }
+    
+    private static String decode(final CompressionCodec codec,
+            final byte[] content) throws IOException {
+        return readAll(codec.createDecoder(new ByteArrayInputStream(content)));
+    }
+    
+    /**
+     * Sends the GET request and returns the response Content-Encoding, the
+     * response content is checked after decoding.
+     */
+    private static String get(final String acceptEncoding) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL("http://localhost:" + PORT + "/").openConnection();
+        try {
+            connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+            assertEquals(200, connection.getResponseCode());
+            
+            final String contentEncoding =
+                    connection.getHeaderField("Content-Encoding");
+            InputStream is = connection.getInputStream();
+            if ("gzip".equals(contentEncoding)) {
+                is = new GZIPInputStream(is);
+            } else if (TEST_ENCODING.equals(contentEncoding)) {
+                is = new InflaterInputStream(is);
+            } else if (BrotliContentEncoding.NAME.equals(contentEncoding)) {
+                is = BrotliContentEncoding.getBrotliCodec().createDecoder(is);
+            } else if (ZstdContentEncoding.NAME.equals(contentEncoding)) {
+                is = ZstdContentEncoding.getZstdCodec().createDecoder(is);
+            }
+            
+            assertEquals(createContent(1000), readAll(is));
+            return contentEncoding;
+        } finally {
+            connection.disconnect();
+        }
+    }
+    
+    private static HttpServer createServer() {
+        return createServer(new CompressionAddOn());
+    }
+    
+    private static HttpServer createServer(final CompressionAddOn addOn) {
+        final HttpServer server = HttpServer.createSimpleServer(null, PORT);
+        final NetworkListener listener = server.getListener("grizzly");
+        listener.getCompressionConfig().setCompressionMode(
+                CompressionConfig.CompressionMode.ON);
+        listener.getCompressionConfig().setCompressionMinSize(1);
+        listener.registerAddOn(addOn);
+        
+        server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(final Request request, final Response response)
+                    throws Exception {
+                if ("POST".equals(request.getMethod().getMethodString())) {
+                    final String body = readAll(request.getInputStream());
+                    response.setHeader("X-Decoded-Length",
+                            String.valueOf(body.length()));
+                    response.setHeader("X-Decoded-Valid",
+                            String.valueOf(createContent(2000).equals(body)));
+                    return;
+                }
+                
+                response.setContentType("text/plain");
+                response.getWriter().write(createContent(1000));
+            }
+        }, "/");
+        
+        return server;
+    }
+    
+    private static void registerTestEncoding(final NetworkListener listener) {
+        for (Filter filter : listener.getFilterChain()) {
+            if (filter instanceof org.glassfish.grizzly.http.HttpServerFilter) {
+                ((HttpCodecFilter) filter).addContentEncoding(
+                        new StreamContentEncoding(TEST_ENCODING,
+                        new String[] {TEST_ENCODING}, new DeflateCodec(), 6,
+                        new CompressionEncodingFilter(
+                                listener.getCompressionConfig(),
+                                new String[] {TEST_ENCODING}) {
+                    @Override
+                    public boolean applyDecoding(final HttpHeader httpPacket) {
+                        return true;
+                    }
+                }));
+                return;
+            }
+        }
+        
+        fail("HttpServerFilter is not found");
+    }
+    
+    private static String createContent(final int linesCount) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < linesCount; i++) {
+            sb.append("{\"id\":").append(i).append(",\"status\":\"active\"}\n");
+        }
+        
+        return sb.toString();
+    }
+    
+    private static String readAll(final InputStream is) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buf = new byte[1024];
+        int len;
+        while ((len = is.read(buf)) != -1) {
+            baos.write(buf, 0, len);
+        }
+        
+        return new String(baos.toByteArray(), Charsets.ASCII_CHARSET);
+    }
+    
+    private static final class TestResponse extends HttpResponsePacket {
+        private final ProcessingState processingState = new ProcessingState();
+        
+        private TestResponse(final ContentEncoding encoding) {
+            addContentEncoding(encoding);
+        }
+        
+        @Override
+        public ProcessingState getProcessingState() {
+            return processingState;
+        }
+    }
+    
+    private static final class CloseTrackingCodec implements CompressionCodec {
+        private final CompressionCodec codec;
+        private final AtomicInteger closedEncoders;
+
+        private CloseTrackingCodec(final CompressionCodec codec,
+                final AtomicInteger closedEncoders) {
+            this.codec = codec;
+            this.closedEncoders = closedEncoders;
+        }
+
+        @Override
+        public String getName() {
+            return codec.getName();
+        }
+
+        @Override
+        public boolean isNative() {
+            return codec.isNative();
+        }
+
+        @Override
+        public boolean isEncodingSupported() {
+            return codec.isEncodingSupported();
+        }
+
+        @Override
+        public boolean isDecodingSupported() {
+            return codec.isDecodingSupported();
+        }
+
+        @Override
+        public OutputStream createEncoder(final OutputStream sink,
+                final int level) throws IOException {
+            return new FilterOutputStream(codec.createEncoder(sink, level)) {
+                @Override
+                public void close() throws IOException {
+                    closedEncoders.incrementAndGet();
+                    super.close();
+                }
+            };
+        }
+
+        @Override
+        public InputStream createDecoder(final InputStream source)
+                throws IOException {
+            return codec.createDecoder(source);
+        }
+    }
+    
+    private static final class DeflateCodec implements CompressionCodec {
+
+        @Override
+        public String getName() {
+            return "jdk-deflate";
+        }
+
+        @Override
+        public boolean isNative() {
+            return false;
+        }
+
+        @Override
+        public boolean isEncodingSupported() {
+            return true;
+        }
+
+        @Override
+        public boolean isDecodingSupported() {
+            return true;
+        }
+
+        @Override
+        public OutputStream createEncoder(final OutputStream sink,
+                final int level) {
+            return new DeflaterOutputStream(sink);
+        }
+
+        @Override
+        public InputStream createDecoder(final InputStream source) {
+            return new InflaterInputStream(source);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.multipart;
+
+import java.util.Arrays;
+import org.glassfish.grizzly.Buffer;
+
+/**
+ * Boyer-Moore-Horspool based multipart boundary delimiter finder,
+ * which searches the delimiter (<tt>LF--boundary</tt>) directly over
+ * the raw {@link Buffer} content.
+ * 
+ * @since 2.3.23
+ */
+final class BoundaryFinder {
+    private final byte[] pattern;
+    private final int[] shifts = new int[256];
+
+    BoundaryFinder(final String boundary) {
+        final int boundaryLength = boundary.length();
+        pattern = new byte[boundaryLength + 3];
+        pattern[0] = '\n';
+        pattern[1] = '-';
+        pattern[2] = '-';
+        for (int i = 0; i < boundaryLength; i++) {
+            pattern[i + 3] = (byte) boundary.charAt(i);
+        }
+
+        final int last = pattern.length - 1;
+        Arrays.fill(shifts, pattern.length);
+        for (int i = 0; i < last; i++) {
+            shifts[pattern[i] & 0xFF] = last - i;
+        }
+    }
+
+    /**
+     * @return the delimiter length (<tt>LF--boundary</tt>).
+     */
+    int length() {
+        return pattern.length;
+    }
+
+    /**
+     * @return the delimiter byte at the given index.
+     */
+    byte get(final int idx) {
+        return pattern[idx];
+    }
+    
+    /**
+     * Searches the delimiter in the {@link Buffer} region.
+     * 
+     * @param buffer the {@link Buffer} to search in
+     * @param from the region start position (inclusive)
+     * @param to the region end position (exclusive)
+     * @return the delimiter position, or <tt>-1</tt> if the region
+     * doesn't contain the entire delimiter
+     */
+    int indexOf(final Buffer buffer, final int from, final int to) {
+        if (buffer.hasArray()) {
+            final int offset = buffer.arrayOffset();
+            final int idx = indexOf(buffer.array(), offset + from, offset + to);
+            return idx != -1 ? idx - offset : -1;
+        }
+        
+        final byte[] p = pattern;
+        final int last = p.length - 1;
+        
+        int i = from;
+        while (i + last < to) {
+            final byte b = buffer.get(i + last);
+            if (b == p[last]) {
+                int j = last - 1;
+                while (j >= 0 && buffer.get(i + j) == p[j]) {
+                    j--;
+                }
+                
+                if (j < 0) {
+                    return i;
+                }
+            }
+            
+            i += shifts[b & 0xFF];
+        }
+        
+        return -1;
+    }
+    
+    private int indexOf(final byte[] array, final int from, final int to) {
+        final byte[] p = pattern;
+        final int last = p.length - 1;
+        
+        int i = from;
+        while (i + last < to) {
+            final byte b = array[i + last];
+            if (b == p[last]) {
+                int j = last - 1;
+                while (j >= 0 && array[i + j] == p[j]) {
+                    j--;
+                }
+                
+                if (j < 0) {
+                    return i;
+                }
+            }
+            
+            i += shifts[b & 0xFF];
+        }
+        
+        return -1;
+    }
+}
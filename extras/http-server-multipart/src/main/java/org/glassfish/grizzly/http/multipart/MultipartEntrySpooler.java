@@ -0,0 +1,306 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.multipart;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.ReadHandler;
+import org.glassfish.grizzly.ThreadCache;
+import org.glassfish.grizzly.http.io.NIOInputStream;
+
+/**
+ * {@link ReadHandler}, which stores the {@link MultipartEntry} content
+ * either in memory or, if the content size exceeds the configured
+ * threshold, in a temporary file.
+ * 
+ * The file is written using positional {@link FileChannel} writes directly
+ * from the request {@link Buffer}s (if they are direct) or via cached direct
+ * {@link ByteBuffer}s. The next chunk of the content is requested only after
+ * the previous one has been written, so the request content isn't
+ * accumulated in the heap if the disk is slower than the network.
+ * 
+ * <pre>
+ * public void handle(final MultipartEntry entry) {
+ *     MultipartEntrySpooler.spool(entry, 64 * 1024, uploadDir,
+ *             new EmptyCompletionHandler&lt;SpooledMultipartEntry&gt;() {
+ *                 public void completed(SpooledMultipartEntry result) {
+ *                     ...
+ *                 }
+ *             });
+ * }
+ * </pre>
+ * 
+ * @since 2.3.23
+ */
+public final class MultipartEntrySpooler implements ReadHandler {
+    private static final Logger LOGGER = Grizzly.logger(MultipartEntrySpooler.class);
+
+    /**
+     * The default max size of the content to be kept in memory.
+     */
+    public static final int DEFAULT_MEMORY_THRESHOLD = 64 * 1024;
+
+    private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+    
+    private static final ThreadCache.CachedTypeIndex<ByteBuffer> DIRECT_BUFFER_CACHE_IDX =
+            ThreadCache.obtainIndex(MultipartEntrySpooler.class.getName() + ".direct-buffer",
+            ByteBuffer.class, 2);
+    
+    private final MultipartEntry multipartEntry;
+    private final NIOInputStream inputStream;
+    private final int memoryThreshold;
+    private final File directory;
+    private final CompletionHandler<SpooledMultipartEntry> completionHandler;
+    
+    private byte[] content;
+    private long size;
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel fileChannel;
+    
+    private boolean isDone;
+    
+    /**
+     * Spools the {@link MultipartEntry} content asynchronously and
+     * notifies the {@link CompletionHandler} once the content has been
+     * completely stored.
+     * 
+     * @param multipartEntry the {@link MultipartEntry} to spool
+     * @param memoryThreshold the max content size to be kept in memory,
+     *                        the bigger content is spooled to the file
+     * @param directory the directory to create the temporary file in,
+     *                  or <tt>null</tt> to use the default temporary-file
+     *                  directory
+     * @param completionHandler the {@link CompletionHandler} to be notified
+     */
+    public static void spool(final MultipartEntry multipartEntry,
+            final int memoryThreshold, final File directory,
+            final CompletionHandler<SpooledMultipartEntry> completionHandler) {
+        if (memoryThreshold < 0) {
+            throw new IllegalArgumentException("memoryThreshold can't be negative");
+        }
+        
+        final MultipartEntrySpooler spooler = new MultipartEntrySpooler(
+                multipartEntry, memoryThreshold, directory, completionHandler);
+        spooler.inputStream.notifyAvailable(spooler);
+    }
+    
+    private MultipartEntrySpooler(final MultipartEntry multipartEntry,
+            final int memoryThreshold, final File directory,
+            final CompletionHandler<SpooledMultipartEntry> completionHandler) {
+        this.multipartEntry = multipartEntry;
+        this.inputStream = multipartEntry.getNIOInputStream();
+        this.memoryThreshold = memoryThreshold;
+        this.directory = directory;
+        this.completionHandler = completionHandler;
+    }
+
+    @Override
+    public void onDataAvailable() throws Exception {
+        drain();
+        inputStream.notifyAvailable(this);
+    }
+
+    @Override
+    public void onAllDataRead() throws Exception {
+        if (isDone) {
+            return;
+        }
+        
+        drain();
+        isDone = true;
+
+        final SpooledMultipartEntry result;
+        if (fileChannel != null) {
+            close();
+            result = new SpooledMultipartEntry(multipartEntry, null, file, size);
+        } else {
+            result = new SpooledMultipartEntry(multipartEntry,
+                    content != null && content.length == size
+                    ? content
+                    : Arrays.copyOf(content != null ? content : new byte[0], (int) size),
+                    null, size);
+        }
+        
+        content = null;
+        
+        if (completionHandler != null) {
+            completionHandler.completed(result);
+        }
+    }
+
+    @Override
+    public void onError(final Throwable t) {
+        if (isDone) {
+            return;
+        }
+        
+        isDone = true;
+        content = null;
+        
+        if (fileChannel != null) {
+            close();
+        }
+        
+        if (file != null && !file.delete()) {
+            LOGGER.log(Level.FINE, "Can not delete the file {0}", file);
+        }
+        
+        if (completionHandler != null) {
+            completionHandler.failed(t);
+        }
+    }
+    
+    private void drain() throws IOException {
+        while (inputStream.isReady()) {
+            final Buffer buffer = inputStream.readBuffer();
+            try {
+                write(buffer);
+            } finally {
+                buffer.tryDispose();
+            }
+        }
+    }
+
+    private void write(final Buffer buffer) throws IOException {
+        final int length = buffer.remaining();
+        
+        if (fileChannel == null) {
+            if (size + length <= memoryThreshold) {
+                if (content == null || content.length < size + length) {
+                    final int newLength = (int) Math.min(memoryThreshold,
+                            Math.max((size + length) * 3 / 2, 1024));
+                    content = content == null
+                            ? new byte[newLength]
+                            : Arrays.copyOf(content, newLength);
+                }
+                
+                buffer.get(content, (int) size, length);
+                size += length;
+                return;
+            }
+
+            openFile();
+        }
+        
+        if (buffer.isComposite()) {
+            final ByteBuffer[] byteBuffers = buffer.toByteBufferArray().getArray();
+            for (ByteBuffer byteBuffer : byteBuffers) {
+                if (byteBuffer == null) {
+                    break;
+                }
+                
+                write(byteBuffer);
+            }
+        } else {
+            write(buffer.toByteBuffer());
+        }
+    }
+
+    private void write(final ByteBuffer byteBuffer) throws IOException {
+        if (byteBuffer.isDirect()) {
+            writeFully(byteBuffer);
+            return;
+        }
+
+        ByteBuffer directBuffer = ThreadCache.takeFromCache(DIRECT_BUFFER_CACHE_IDX);
+        if (directBuffer == null) {
+            directBuffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+
+        try {
+            final int oldLimit = byteBuffer.limit();
+            while (byteBuffer.hasRemaining()) {
+                directBuffer.clear();
+                byteBuffer.limit(Math.min(oldLimit,
+                        byteBuffer.position() + directBuffer.remaining()));
+                directBuffer.put(byteBuffer);
+                byteBuffer.limit(oldLimit);
+                directBuffer.flip();
+                writeFully(directBuffer);
+            }
+        } finally {
+            directBuffer.clear();
+            ThreadCache.putToCache(DIRECT_BUFFER_CACHE_IDX, directBuffer);
+        }
+    }
+    
+    private void writeFully(final ByteBuffer byteBuffer) throws IOException {
+        while (byteBuffer.hasRemaining()) {
+            size += fileChannel.write(byteBuffer, size);
+        }
+    }
+
+    private void openFile() throws IOException {
+        file = File.createTempFile("grizzly-multipart", ".tmp", directory);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        fileChannel = randomAccessFile.getChannel();
+        
+        if (size > 0) {
+            final long contentSize = size;
+            size = 0;
+            write(ByteBuffer.wrap(content, 0, (int) contentSize));
+        }
+        
+        content = null;
+    }
+
+    private void close() {
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Can not close the file " + file, e);
+        }
+        
+        fileChannel = null;
+        randomAccessFile = null;
+    }
+}
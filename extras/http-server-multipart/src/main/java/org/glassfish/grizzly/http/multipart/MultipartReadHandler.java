@@ -61,6 +61,10 @@ import org.glassfish.grizzly.http.util.Header;
  */
 public class MultipartReadHandler implements ReadHandler {
 
+    // checkBoundaryLine() results
+    private static final int NO_BOUNDARY = -1;
+    private static final int NEED_MORE_DATA = -2;
+    
     private enum State {
         PREAMBLE, PARSE_MULTIPART_ENTRY_HEADERS, START_BODY, BODY, RESET
     }
@@ -76,6 +80,7 @@ public class MultipartReadHandler implements ReadHandler {
     private final MultipartEntryHandler multipartHandler;
     private final MultipartContext multipartContext;
     private final String boundary;
+    private final BoundaryFinder boundaryFinder;
 
     private final Line line = new Line();
 
@@ -87,6 +92,9 @@ public class MultipartReadHandler implements ReadHandler {
 
     private boolean isMultipartMixed;
     
+    // true, if no content bytes of the current entry have been checked yet
+    private boolean isBodyStart;
+    
     public MultipartReadHandler(final Request request,
             final MultipartEntryHandler multipartHandler,
             final CompletionHandler<Request> completionHandler,
@@ -96,6 +104,7 @@ public class MultipartReadHandler implements ReadHandler {
         this.requestCompletionHandler = completionHandler;
         this.multipartContext = multipartContext;
         this.boundary = multipartContext.getBoundary();
+        this.boundaryFinder = new BoundaryFinder(boundary);
         this.parentInputStream = request.getNIOInputStream();
 
         multipartMixedCompletionHandler = null;
@@ -113,6 +122,7 @@ public class MultipartReadHandler implements ReadHandler {
         this.multipartMixedCompletionHandler = completionHandler;
         this.multipartContext = multipartContext;
         this.boundary = multipartContext.getBoundary();
+        this.boundaryFinder = new BoundaryFinder(boundary);
 
         this.parentInputStream = parentMultipartEntry.getNIOInputStream();
 
@@ -239,62 +249,168 @@ public class MultipartReadHandler implements ReadHandler {
         } while (true);
     }
 
-    @SuppressWarnings({"ResultOfMethodCallIgnored"})
+    /**
+     * Makes the entry content available for the {@link MultipartEntry}.
+     * The content is searched for the boundary delimiter using
+     * {@link BoundaryFinder}, the bytes, which could be a part of
+     * the delimiter, are reserved until more data comes.
+     */
     private void feedMultipartEntry() throws Exception {
-//        int available = 0;
-        boolean isComplete;
+        final Buffer buffer = parentInputStream.getBuffer();
+        final int position = buffer.position();
+        final int limit = position + parentInputStream.readyData();
+        final int delimiterLength = boundaryFinder.length();
+
+        // the first byte, which hasn't been made available for the entry yet
+        final int base = position + multipartEntry.availableBytes();
+
+        if (isBodyStart) {
+            // the delimiter's LF is a part of the headers terminator,
+            // so check if the entry content is empty
+            final int lineEnd = checkBoundaryLine(buffer, base, limit, 1);
+            if (lineEnd == NEED_MORE_DATA) {
+                multipartEntry.setReservedBytes(limit - base);
+                return;
+            }
+
+            isBodyStart = false;
+            if (lineEnd >= 0) {
+                finishMultipartEntry(base, base, lineEnd);
+                return;
+            }
+        }
+
+        // the end of the content, which can be made available
+        int contentEnd;
+        int from = base;
         
         do {
-            line.offset = multipartEntry.availableBytes() + multipartEntry.getReservedBytes();
+            final int idx = boundaryFinder.indexOf(buffer, from, limit);
+            if (idx == -1) {
+                // reserve the bytes, which might be the delimiter prefix
+                // (with the preceding CR)
+                contentEnd = Math.max(base, limit - delimiterLength);
+                break;
+            }
 
-            readLine();
+            final int lineEnd = checkBoundaryLine(buffer,
+                    idx + delimiterLength, limit, delimiterLength);
+            if (lineEnd >= 0) {
+                finishMultipartEntry(base,
+                        contentEnd(buffer, base, idx), lineEnd);
+                return;
+            } else if (lineEnd == NEED_MORE_DATA) {
+                contentEnd = contentEnd(buffer, base, idx);
+                break;
+            }
 
-            isComplete = line.isComplete;
-//            System.out.println("Line=" + line.toString() + " " + isComplete);
-            
-            if (isComplete) {
-                if (line.isBoundary()) {
-                    isFinished = line.isFinalBoundary;
-                    
-                    multipartEntry.onFinished();
-
-                    try {
-                        // Skip the boundary + all the leftovers from the prev.
-                        // multipart entry
-                        parentInputStream.skip(multipartEntry.availableBytes()
-                                + multipartEntry.getReservedBytes() + line.len);
-                    } catch (IOException ignored) {
-                        // should never happen
-                    }
+            from = idx + 1;
+        } while (true);
 
-//                    line.skip();
-                    line.reset();
-                    return;
-                } else {
-                    final int lineTerminatorLength = line.getLineTerminatorLength();
+        multipartEntry.addAvailableBytes(contentEnd - base);
+        multipartEntry.setReservedBytes(limit - contentEnd);
+        multipartEntry.onDataReceived();
+    }
 
-                    multipartEntry.addAvailableBytes(line.len +
-                            multipartEntry.getReservedBytes() - lineTerminatorLength);
+    @SuppressWarnings({"ResultOfMethodCallIgnored"})
+    private void finishMultipartEntry(final int base, final int contentEnd,
+            final int lineEnd) throws Exception {
+        multipartEntry.addAvailableBytes(contentEnd - base);
+        multipartEntry.setReservedBytes(0);
+        
+        final int boundaryLineLength = lineEnd - contentEnd;
+        multipartEntry.onFinished();
+
+        try {
+            // Skip the boundary + all the leftovers from the
+            // multipart entry
+            parentInputStream.skip(multipartEntry.availableBytes()
+                    + boundaryLineLength);
+        } catch (IOException ignored) {
+            // should never happen
+        }
+    }
 
-                    multipartEntry.setReservedBytes(lineTerminatorLength);
-//                    available += line.len;
-                    line.reset();
-                }
-            } else {
-                // if line is incomplete - we always make available line.len - 1
-                // bytes (cause the last byte can be CR).
-                // Also we have to make sure the incomplete line is not a boundary
-                if (line.len > 1 && !line.couldBeBoundary()) {
-                    multipartEntry.addAvailableBytes((line.len - 1) +
-                            multipartEntry.getReservedBytes());
-
-                    line.len = 1;
-                    multipartEntry.setReservedBytes(0);
+    /**
+     * Checks if the bytes starting at the given position complete
+     * the boundary line, <tt>--boundary[--](CRLF|LF)</tt>.
+     * 
+     * @return the boundary line end position, {@link #NO_BOUNDARY} or
+     * {@link #NEED_MORE_DATA}
+     */
+    private int checkBoundaryLine(final Buffer buffer, int idx,
+            final int limit, int delimiterIdx) {
+        final int delimiterLength = boundaryFinder.length();
+        for (; delimiterIdx < delimiterLength; delimiterIdx++, idx++) {
+            if (idx >= limit) {
+                return NEED_MORE_DATA;
+            }
+
+            if (buffer.get(idx) != boundaryFinder.get(delimiterIdx)) {
+                return NO_BOUNDARY;
+            }
+        }
+
+        if (idx >= limit) {
+            return NEED_MORE_DATA;
+        }
+
+        boolean isFinal = false;
+        byte b = buffer.get(idx);
+        if (b == '-') {
+            if (idx + 1 >= limit) {
+                return NEED_MORE_DATA;
+            }
+
+            if (buffer.get(idx + 1) != '-') {
+                return NO_BOUNDARY;
+            }
+
+            isFinal = true;
+            idx += 2;
+            if (idx >= limit) {
+                if (!parentInputStream.isFinished()) {
+                    return NEED_MORE_DATA;
                 }
+
+                // the final boundary isn't followed by the line terminator
+                isFinished = true;
+                return idx;
             }
-        } while (isComplete);
 
-        multipartEntry.onDataReceived();
+            b = buffer.get(idx);
+        }
+
+        if (b == Constants.CR) {
+            if (idx + 1 >= limit) {
+                return NEED_MORE_DATA;
+            }
+
+            if (buffer.get(idx + 1) != Constants.LF) {
+                return NO_BOUNDARY;
+            }
+
+            idx += 2;
+        } else if (b == Constants.LF) {
+            idx++;
+        } else {
+            return NO_BOUNDARY;
+        }
+
+        isFinished = isFinal;
+        return idx;
+    }
+
+    /**
+     * @return the entry content end position for the delimiter found
+     * at the given position (the CR preceding the delimiter's LF is not
+     * a part of the content).
+     */
+    private static int contentEnd(final Buffer buffer, final int base,
+            final int delimiterIdx) {
+        return delimiterIdx > base && buffer.get(delimiterIdx - 1) == Constants.CR
+                ? delimiterIdx - 1
+                : delimiterIdx;
     }
 
     private boolean skipPreamble() {
@@ -344,6 +460,7 @@ public class MultipartReadHandler implements ReadHandler {
 
     private void finishHeadersParsing() {
         state = State.START_BODY;
+        isBodyStart = true;
 
         if (isMultipartMixed) {
             multipartEntry.initialize(multipartMixedEntry.getNIOInputStream());
@@ -462,9 +579,6 @@ public class MultipartReadHandler implements ReadHandler {
         int len;
         int offset;
 
-        // Offset, which remembers where the last couldBeBoundary check was finished
-        int couldBeBoundaryOffset;
-
         boolean isBoundary;
         boolean isFinalBoundary;
 
@@ -473,7 +587,6 @@ public class MultipartReadHandler implements ReadHandler {
             isComplete = false;
             len = 0;
             offset = 0;
-            couldBeBoundaryOffset = 0;
             isBoundary = false;
             isFinalBoundary = false;
         }
@@ -499,19 +612,11 @@ public class MultipartReadHandler implements ReadHandler {
             final Buffer buffer = parentInputStream.getBuffer();
             final int position = buffer.position() + offset;
 
-            // if we called couldBeBoundary() for the incomplete boundary line - let's reuse its findings
-            int checkIdx = couldBeBoundaryOffset;
-
-            if (checkIdx < 2) {
-                if (buffer.get(position) != '-' || buffer.get(position + 1) != '-') {
-                    return false;
-                }
-
-                checkIdx = 2;
+            if (buffer.get(position) != '-' || buffer.get(position + 1) != '-') {
+                return false;
             }
 
-            // if we called couldBeBoundary() for the incomplete boundary line - let's reuse its findings
-            for (int i = checkIdx; i < boundaryLength + 2; i++) {
+            for (int i = 2; i < boundaryLength + 2; i++) {
                 // '+ 2' because of '--' prefix
                 if (buffer.get(position + i) != boundary.charAt(i - 2)) {
                     return false;
@@ -530,31 +635,6 @@ public class MultipartReadHandler implements ReadHandler {
             return true;
         }
 
-        private boolean couldBeBoundary() {
-            // 2 + 4 means 2 bytes for line terminator, 4 - for prefix and postfix '--'.
-            if (len > boundary.length() + 2 + 4) {
-                return false;
-            }
-            
-            final Buffer buffer = parentInputStream.getBuffer();
-            final int position = buffer.position();
-
-            for (; couldBeBoundaryOffset < 2 && couldBeBoundaryOffset < len; couldBeBoundaryOffset++) {
-                if (buffer.get(offset + position + couldBeBoundaryOffset) != '-') {
-                    return false;
-                }
-            }
-
-            final int boundaryLength = boundary.length();
-            for (; couldBeBoundaryOffset < line.len && couldBeBoundaryOffset < boundaryLength; couldBeBoundaryOffset++) {
-                if (buffer.get(offset + position + couldBeBoundaryOffset) != boundary.charAt(couldBeBoundaryOffset - 2)) {
-                    return false;
-                }
-            }
-
-            return true;
-        }
-        
         private int getLineTerminatorLength() {
             return 1 + (isCrLf ? 1 : 0);
         }
@@ -0,0 +1,141 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.multipart;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@link MultipartEntry} content spooled by {@link MultipartEntrySpooler}.
+ * Small entries are kept in memory, bigger ones are stored in a temporary
+ * file, which has to be removed by {@link #delete()} once it's not needed.
+ * 
+ * @since 2.3.23
+ */
+public final class SpooledMultipartEntry {
+    private final String contentType;
+    private final ContentDisposition contentDisposition;
+    private final byte[] content;
+    private final File file;
+    private final long size;
+
+    SpooledMultipartEntry(final MultipartEntry multipartEntry,
+            final byte[] content, final File file, final long size) {
+        this.contentType = multipartEntry.getContentType();
+        this.contentDisposition = multipartEntry.getContentDisposition();
+        this.content = content;
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * @return the {@link MultipartEntry} content type.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the {@link MultipartEntry} {@link ContentDisposition},
+     * or <tt>null</tt> if it wasn't set.
+     */
+    public ContentDisposition getContentDisposition() {
+        return contentDisposition;
+    }
+
+    /**
+     * @return the content size in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return <tt>true</tt> if the content is kept in memory, or <tt>false</tt>
+     * if it was spooled to the {@link #getFile()}.
+     */
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    /**
+     * @return the file the content was spooled to, or <tt>null</tt>
+     * if the content is kept in memory.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the content bytes.
+     * @throws IllegalStateException if the content was spooled to the file.
+     */
+    public byte[] getBytes() {
+        if (file != null) {
+            throw new IllegalStateException("The content was spooled to the file");
+        }
+        
+        return content;
+    }
+    
+    /**
+     * @return {@link InputStream} to read the content.
+     * @throws IOException 
+     */
+    public InputStream getInputStream() throws IOException {
+        return file == null
+                ? new ByteArrayInputStream(content, 0, (int) size)
+                : new FileInputStream(file);
+    }
+
+    /**
+     * Removes the file the content was spooled to, if any.
+     * 
+     * @return <tt>true</tt> if the file was removed, or the content
+     * was kept in memory.
+     */
+    public boolean delete() {
+        return file == null || !file.exists() || file.delete();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.multipart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link BoundaryFinder} and {@link MultipartEntrySpooler} tests.
+ */
+public class MultipartEntrySpoolerTest {
+    private static final int PORT = 18204;
+    private static final String BOUNDARY = "----GrizzlySpoolerBoundary42";
+
+    @Test
+    public void testBoundaryFinder() {
+        final BoundaryFinder finder = new BoundaryFinder("abc");
+        assertEquals(6, finder.length());
+        
+        final String text = "xx\n--ab\n--abd\r\n--abc--";
+        assertEquals(14, finder.indexOf(wrap(text), 0, text.length()));
+        assertEquals(14, finder.indexOf(wrap(text), 14, text.length()));
+        assertEquals(-1, finder.indexOf(wrap(text), 15, text.length()));
+        assertEquals(-1, finder.indexOf(wrap(text), 0, 19));
+        
+        // composite buffer
+        final Buffer composite = Buffers.appendBuffers(
+                MemoryManager.DEFAULT_MEMORY_MANAGER,
+                wrap("xx\n--a"), wrap("bc"));
+        assertEquals(2, finder.indexOf(composite, 0, composite.remaining()));
+    }
+    
+    @Test
+    public void testSpooling() throws Exception {
+        final Random random = new Random(7);
+        final byte[] small = "small value".getBytes(Charsets.ASCII_CHARSET);
+        final byte[] large = new byte[300 * 1024];
+        random.nextBytes(large);
+        // boundary-like sequences inside the content
+        final byte[] fake = ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(Charsets.ASCII_CHARSET);
+        System.arraycopy(fake, 0, large, 1000, fake.length);
+        final byte[] fakeFull = ("\r\n--" + BOUNDARY + "x").getBytes(Charsets.ASCII_CHARSET);
+        System.arraycopy(fakeFull, 0, large, 5000, fakeFull.length);
+        
+        final File directory = new File(System.getProperty("java.io.tmpdir"));
+        final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>();
+        
+        final HttpServer httpServer = new HttpServer();
+        httpServer.addListener(new NetworkListener("Grizzly", "0.0.0.0", PORT));
+        httpServer.getServerConfiguration().addHttpHandler(new HttpHandler() {
+
+            @Override
+            public void service(final Request request, final Response response)
+                    throws Exception {
+                response.suspend();
+
+                MultipartScanner.scan(request, new MultipartEntryHandler() {
+                    @Override
+                    public void handle(final MultipartEntry part) throws Exception {
+                        MultipartEntrySpooler.spool(part, 1024, directory,
+                                new EmptyCompletionHandler<SpooledMultipartEntry>() {
+                            @Override
+                            public void completed(final SpooledMultipartEntry result) {
+                                results.add(result);
+                            }
+
+                            @Override
+                            public void failed(final Throwable throwable) {
+                                results.add(throwable);
+                            }
+                        });
+                    }
+                }, new EmptyCompletionHandler<Request>() {
+                    @Override
+                    public void completed(final Request result) {
+                        response.resume();
+                    }
+
+                    @Override
+                    public void failed(final Throwable throwable) {
+                        results.add(throwable);
+                        response.resume();
+                    }
+                });
+            }
+        }, "/");
+
+        final List<SpooledMultipartEntry> entries = new ArrayList<SpooledMultipartEntry>();
+        Socket socket = null;
+        try {
+            httpServer.start();
+
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            body.write("preamble\r\n".getBytes(Charsets.ASCII_CHARSET));
+            writePart(body, "small", small);
+            writePart(body, "empty", new byte[0]);
+            writePart(body, "large", large);
+            body.write(("--" + BOUNDARY + "--\r\n").getBytes(Charsets.ASCII_CHARSET));
+
+            final byte[] header = ("POST / HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Type: multipart/form-data; boundary=" + BOUNDARY + "\r\n"
+                    + "Content-Length: " + body.size() + "\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(Charsets.ASCII_CHARSET);
+            
+            socket = new Socket("localhost", PORT);
+            final OutputStream os = socket.getOutputStream();
+            os.write(header);
+            
+            // send the body in odd-sized chunks to split the boundaries
+            final byte[] bodyBytes = body.toByteArray();
+            for (int i = 0; i < bodyBytes.length; i += 8191) {
+                os.write(bodyBytes, i, Math.min(8191, bodyBytes.length - i));
+                os.flush();
+            }
+
+            for (int i = 0; i < 3; i++) {
+                final Object result = results.poll(10, TimeUnit.SECONDS);
+                if (result instanceof Throwable) {
+                    throw new AssertionError(result);
+                }
+                
+                assertNotNull(result);
+                entries.add((SpooledMultipartEntry) result);
+            }
+            
+            final SpooledMultipartEntry smallEntry = entries.get(0);
+            assertEquals("small", smallEntry.getContentDisposition()
+                    .getDispositionParamUnquoted("name"));
+            assertTrue(smallEntry.isInMemory());
+            assertArrayEquals(small, smallEntry.getBytes());
+            
+            final SpooledMultipartEntry emptyEntry = entries.get(1);
+            assertTrue(emptyEntry.isInMemory());
+            assertEquals(0, emptyEntry.getSize());
+            
+            final SpooledMultipartEntry largeEntry = entries.get(2);
+            assertFalse(largeEntry.isInMemory());
+            assertEquals(large.length, largeEntry.getSize());
+            assertEquals(large.length, largeEntry.getFile().length());
+            assertTrue(Arrays.equals(large, readFully(largeEntry.getInputStream())));
+        } finally {
+            for (SpooledMultipartEntry entry : entries) {
+                entry.delete();
+            }
+            
+            if (socket != null) {
+                socket.close();
+            }
+            
+            httpServer.shutdownNow();
+        }
+    }
+
+    private static void writePart(final OutputStream os, final String name,
+            final byte[] content) throws IOException {
+        os.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n")
+                .getBytes(Charsets.ASCII_CHARSET));
+        os.write(content);
+        os.write("\r\n".getBytes(Charsets.ASCII_CHARSET));
+    }
+    
+    private static byte[] readFully(final InputStream is) throws IOException {
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final byte[] buf = new byte[8192];
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                baos.write(buf, 0, len);
+            }
+            
+            return baos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+    
+    private static Buffer wrap(final String s) {
+        return Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, s);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nativetls;
+
+import org.glassfish.grizzly.ssl.SSLContextConfigurator;
+import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
+
+/**
+ * {@link SSLEngineConfigurator}, which creates native (BoringSSL based)
+ * {@link javax.net.ssl.SSLEngine}s, if the native TLS implementation is
+ * available (see {@link NativeTls}), otherwise falls back to JSSE.
+ * 
+ * The configurator could be used anywhere a regular
+ * {@link SSLEngineConfigurator} is expected:
+ * <pre>
+ * SSLContextConfigurator sslContextConfigurator = ...;
+ * SSLFilter sslFilter = new SSLFilter(
+ *         new NativeSSLEngineConfigurator(sslContextConfigurator, false, false, false),
+ *         null);
+ * </pre>
+ * The native engine wraps and unwraps direct {@link java.nio.ByteBuffer}s
+ * without extra copying, so it's recommended to use a direct
+ * {@link org.glassfish.grizzly.memory.MemoryManager}
+ * (like <tt>new ByteBufferManager(true)</tt>) for the transport.
+ * 
+ * @since 2.3.23
+ */
+public class NativeSSLEngineConfigurator extends SSLEngineConfigurator {
+    private final boolean isNative;
+
+    /**
+     * Creates the configurator for the client side {@link javax.net.ssl.SSLEngine}s.
+     * 
+     * Note: the passed {@link SSLContextConfigurator} is configured to use the
+     * native security {@link java.security.Provider}, if it's available.
+     * 
+     * @param sslContextConfiguration {@link SSLContextConfigurator}
+     */
+    public NativeSSLEngineConfigurator(
+            final SSLContextConfigurator sslContextConfiguration) {
+        this(sslContextConfiguration, true, false, false);
+    }
+
+    /**
+     * Creates the configurator.
+     * 
+     * Note: the passed {@link SSLContextConfigurator} is configured to use the
+     * native security {@link java.security.Provider}, if it's available.
+     * 
+     * @param sslContextConfiguration {@link SSLContextConfigurator}
+     * @param clientMode
+     * @param needClientAuth
+     * @param wantClientAuth 
+     */
+    public NativeSSLEngineConfigurator(
+            final SSLContextConfigurator sslContextConfiguration,
+            final boolean clientMode,
+            final boolean needClientAuth, final boolean wantClientAuth) {
+        super(sslContextConfiguration, clientMode, needClientAuth,
+                wantClientAuth);
+        isNative = NativeTls.configure(sslContextConfiguration);
+    }
+
+    protected NativeSSLEngineConfigurator(
+            final NativeSSLEngineConfigurator pattern) {
+        super(pattern);
+        isNative = pattern.isNative;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the native {@link javax.net.ssl.SSLEngine}s
+     *         are created, or <tt>false</tt> if the configurator fell back
+     *         to JSSE.
+     */
+    public boolean isNative() {
+        return isNative;
+    }
+
+    @Override
+    public NativeSSLEngineConfigurator copy() {
+        return new NativeSSLEngineConfigurator(this);
+    }
+
+    @Override
+    public String toString() {
+        return "NativeSSLEngineConfigurator{" + "isNative=" + isNative
+                + ", " + super.toString() + '}';
+    }
+}
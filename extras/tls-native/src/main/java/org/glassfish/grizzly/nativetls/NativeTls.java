@@ -0,0 +1,184 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nativetls;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.Provider;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLEngine;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.ssl.SSLContextConfigurator;
+
+/**
+ * Native TLS implementation support.
+ * 
+ * The native {@link SSLEngine} is provided by
+ * <a href="https://github.com/google/conscrypt">Conscrypt</a>, which is backed
+ * by BoringSSL via JNI and implements the standard JSSE API, so the engines
+ * it creates plug into {@link org.glassfish.grizzly.ssl.SSLBaseFilter},
+ * <tt>SNIFilter</tt> and the HTTP/2 ALPN support unchanged.
+ * Conscrypt is looked up at runtime, so it's enough to add the platform
+ * specific Conscrypt artifact (for example
+ * <tt>org.conscrypt:conscrypt-openjdk-uber</tt>) to the classpath.
+ * If Conscrypt or its native library is not available, or the
+ * {@value #DISABLED_PROPERTY} system property is set to <tt>true</tt>,
+ * the JSSE implementation is used.
+ * 
+ * @since 2.3.23
+ */
+public final class NativeTls {
+    private static final Logger LOGGER = Grizzly.logger(NativeTls.class);
+    
+    /**
+     * The system property, which disables native TLS, if set to <tt>true</tt>.
+     */
+    public static final String DISABLED_PROPERTY =
+            NativeTls.class.getName() + ".disabled";
+    
+    private static final String CONSCRYPT_CLASS_NAME = "org.conscrypt.Conscrypt";
+    
+    private static final Provider PROVIDER;
+    private static final Method IS_NATIVE_ENGINE_METHOD;
+    private static final Throwable UNAVAILABILITY_CAUSE;
+    
+    static {
+        Provider provider = null;
+        Method isNativeEngineMethod = null;
+        Throwable cause = null;
+        
+        if (Boolean.getBoolean(DISABLED_PROPERTY)) {
+            cause = new IllegalStateException("Native TLS is disabled using "
+                    + DISABLED_PROPERTY + " system property");
+        } else {
+            try {
+                final Class<?> conscryptClass = Class.forName(CONSCRYPT_CLASS_NAME);
+                // throws UnsatisfiedLinkError if the native library can't be loaded
+                conscryptClass.getMethod("checkAvailability").invoke(null);
+                
+                provider = (Provider) conscryptClass.getMethod("newProvider")
+                        .invoke(null);
+                isNativeEngineMethod = conscryptClass.getMethod("isConscrypt",
+                        SSLEngine.class);
+            } catch (InvocationTargetException e) {
+                cause = e.getCause();
+            } catch (Throwable t) {
+                cause = t;
+            }
+        }
+        
+        if (cause != null) {
+            provider = null;
+            isNativeEngineMethod = null;
+            
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Native TLS is not available, JSSE will be used", cause);
+            }
+        }
+        
+        PROVIDER = provider;
+        IS_NATIVE_ENGINE_METHOD = isNativeEngineMethod;
+        UNAVAILABILITY_CAUSE = cause;
+    }
+
+    private NativeTls() {
+    }
+
+    /**
+     * @return <tt>true</tt>, if the native TLS implementation is available.
+     */
+    public static boolean isAvailable() {
+        return PROVIDER != null;
+    }
+
+    /**
+     * @return the reason the native TLS implementation is not available, or
+     *         <tt>null</tt> if it's available.
+     */
+    public static Throwable getUnavailabilityCause() {
+        return UNAVAILABILITY_CAUSE;
+    }
+    
+    /**
+     * @return the native TLS security {@link Provider}, or <tt>null</tt> if
+     *         it's not available.
+     */
+    public static Provider getProvider() {
+        return PROVIDER;
+    }
+    
+    /**
+     * Configures the {@link SSLContextConfigurator} to create native
+     * {@link javax.net.ssl.SSLContext}s, if the native TLS implementation is
+     * available, otherwise the configurator is not changed.
+     * 
+     * @param sslContextConfigurator {@link SSLContextConfigurator}
+     * @return <tt>true</tt>, if the configurator has been configured to
+     *         use the native TLS implementation.
+     */
+    public static boolean configure(
+            final SSLContextConfigurator sslContextConfigurator) {
+        if (!isAvailable()) {
+            return false;
+        }
+        
+        sslContextConfigurator.setSecurityProvider(PROVIDER);
+        return true;
+    }
+    
+    /**
+     * @param sslEngine {@link SSLEngine}
+     * @return <tt>true</tt>, if the {@link SSLEngine} is backed by the native
+     *         TLS implementation.
+     */
+    public static boolean isNative(final SSLEngine sslEngine) {
+        if (IS_NATIVE_ENGINE_METHOD == null) {
+            return false;
+        }
+        
+        try {
+            return (Boolean) IS_NATIVE_ENGINE_METHOD.invoke(null, sslEngine);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
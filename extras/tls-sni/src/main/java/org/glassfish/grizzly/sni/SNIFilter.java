@@ -212,8 +212,8 @@ public class SNIFilter extends SSLFilter {
                 configurator.createSSLEngine();
         
         sslCtx.configure(sslEngine);
-        sslEngine.beginHandshake();
         notifyHandshakeStart(c);
+        sslEngine.beginHandshake();
         
         return ctx.getInvokeAction();
     }
@@ -282,8 +282,8 @@ public class SNIFilter extends SSLFilter {
                 
                 final SSLEngine sslEngine = configurator.createSSLEngine();
                 sslCtx.configure(sslEngine);
-                sslEngine.beginHandshake();
                 notifyHandshakeStart(c);
+                sslEngine.beginHandshake();
             }
         }
         
@@ -49,6 +49,8 @@ import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.monitoring.MonitoringAware;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.ConnectionFlightRecorder;
+import org.glassfish.grizzly.monitoring.LatencyRecorder;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
 import org.glassfish.grizzly.utils.StateHolder;
@@ -156,6 +158,17 @@ public abstract class AbstractTransport implements Transport {
     protected final DefaultMonitoringConfig<ThreadPoolProbe> threadPoolMonitoringConfig =
             new DefaultMonitoringConfig<ThreadPoolProbe>(ThreadPoolProbe.class);
 
+    /**
+     * Request processing stages latency recorder
+     */
+    protected final LatencyRecorder latencyRecorder = new LatencyRecorder();
+
+    /**
+     * Sampled connections flight recorder
+     */
+    protected final ConnectionFlightRecorder flightRecorder =
+            new ConnectionFlightRecorder();
+
     public AbstractTransport(String name) {
         this.name = name;
         state = new StateHolder<State>(State.STOPPED);
@@ -485,6 +498,26 @@ public abstract class AbstractTransport implements Transport {
         return threadPoolMonitoringConfig;
     }
 
+    /**
+     * Returns the {@link LatencyRecorder}, which measures the latency of the
+     * request processing stages on this transport.
+     * 
+     * @return the {@link LatencyRecorder}.
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * Returns the {@link ConnectionFlightRecorder}, which records the
+     * history of the sampled connections of this transport.
+     * 
+     * @return the {@link ConnectionFlightRecorder}.
+     */
+    public ConnectionFlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
     /**
      * {@inheritDoc}
      */
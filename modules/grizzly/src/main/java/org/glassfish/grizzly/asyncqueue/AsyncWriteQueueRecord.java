@@ -41,6 +41,7 @@
 package org.glassfish.grizzly.asyncqueue;
 
 import org.glassfish.grizzly.*;
+import org.glassfish.grizzly.monitoring.LatencyRecorder;
 import org.glassfish.grizzly.utils.DebugPoint;
 
 /**
@@ -83,6 +84,7 @@ public class AsyncWriteQueueRecord extends AsyncQueueRecord<RecordWriteResult> {
     private boolean isUncountable;
     private Object dstAddress;
     private PushBackHandler pushBackHandler;
+    private long queuedTimeNanos;
 
     private final RecordWriteResult writeResult = new RecordWriteResult();
     
@@ -109,6 +111,7 @@ public class AsyncWriteQueueRecord extends AsyncQueueRecord<RecordWriteResult> {
         this.isUncountable = isUncountable;
         this.initialMessageSize = message != null ? message.remaining() : 0;
         this.pushBackHandler = pushBackHandler;
+        this.queuedTimeNanos = 0;
         
         writeResult.set(connection, message, dstAddress, 0);
     }
@@ -157,6 +160,23 @@ public class AsyncWriteQueueRecord extends AsyncQueueRecord<RecordWriteResult> {
         return pushBackHandler;
     }
     
+    /**
+     * @return the {@link System#nanoTime()} timestamp the record has been
+     *          queued at, or <tt>0</tt> if the queueing time is not tracked.
+     */
+    public long getQueuedTimeNanos() {
+        return queuedTimeNanos;
+    }
+
+    /**
+     * Sets the {@link System#nanoTime()} timestamp the record has been
+     * queued at, so the write queue residency time will be reported to the
+     * {@link LatencyRecorder} once the record is completed.
+     */
+    public void setQueuedTimeNanos(final long queuedTimeNanos) {
+        this.queuedTimeNanos = queuedTimeNanos;
+    }
+    
     public boolean canBeAggregated() {
         return !getWritableMessage().isExternal();
     }
@@ -169,6 +189,15 @@ public class AsyncWriteQueueRecord extends AsyncQueueRecord<RecordWriteResult> {
 
         final WritableMessage messageLocal = getWritableMessage();
 
+        if (queuedTimeNanos != 0) {
+            final LatencyRecorder latencyRecorder =
+                    LatencyRecorder.get(connection);
+            if (latencyRecorder != null) {
+                latencyRecorder.recordSince(LatencyRecorder.Stage.WRITE_QUEUE,
+                        queuedTimeNanos);
+            }
+        }
+        
         if (completionHandlerLocal != null) {
             completionHandlerLocal.completed(writeResult);
         }
@@ -56,6 +56,11 @@ import org.glassfish.grizzly.memory.MemoryManager;
 /**
  * This class implements a {@link org.glassfish.grizzly.Transformer} which decodes data
  * represented in the GZIP format.
+ * 
+ * The {@link Inflater}s are taken from the {@link ZLibPool} (by default
+ * {@link ZLibPool#getDefault()}) and are returned back to the pool once
+ * the GZIP member is decoded or the decoding state is
+ * {@link #release(AttributeStorage) released}.
  *
  * @author Alexey Stashok
  */
@@ -76,6 +81,9 @@ public class GZipDecoder extends AbstractTransformer<Buffer, Buffer> {
     private final static int FCOMMENT	= 16;	// File comment
 
     private final int bufferSize;
+    
+    private byte[] dictionary;
+    private ZLibPool pool = ZLibPool.getDefault();
 
     public GZipDecoder() {
         this(512);
@@ -85,6 +93,69 @@ public class GZipDecoder extends AbstractTransformer<Buffer, Buffer> {
         this.bufferSize = bufferSize;
     }
 
+    /**
+     * @return the preset dictionary, or <tt>null</tt> if not set.
+     * 
+     * @since 2.3.23
+     */
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Sets the preset dictionary, which has to be the same as the one
+     * used by the encoding side, see {@link GZipEncoder#setDictionary(byte[])}.
+     * 
+     * @param dictionary the preset dictionary, or <tt>null</tt> to disable
+     *          the dictionary mode.
+     * 
+     * @since 2.3.23
+     */
+    public void setDictionary(byte[] dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return the {@link ZLibPool} the {@link Inflater}s are taken from.
+     * 
+     * @since 2.3.23
+     */
+    public ZLibPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the {@link ZLibPool} the {@link Inflater}s are taken from.
+     * 
+     * @param pool {@link ZLibPool}
+     * 
+     * @since 2.3.23
+     */
+    public void setPool(ZLibPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool can't be null");
+        }
+        
+        this.pool = pool;
+    }
+
+    /**
+     * Releases the decoding state associated with the storage and returns
+     * the {@link Inflater} back to the {@link ZLibPool}, if the GZIP member
+     * hasn't been decoded completely.
+     * 
+     * @param storage {@link AttributeStorage}
+     */
+    @Override
+    public void release(AttributeStorage storage) {
+        final GZipInputState state = (GZipInputState) stateAttr.get(storage);
+        if (state != null) {
+            releaseInflater(state);
+        }
+        
+        super.release(storage);
+    }
+
 
     /**
      * {@inheritDoc}
@@ -135,6 +206,7 @@ public class GZipDecoder extends AbstractTransformer<Buffer, Buffer> {
             if (decodeTrailer(input, state)) {
                 state.setDecodeStatus(DecodeStatus.DONE);
                 state.setInitialized(false);
+                releaseInflater(state);
             }
         }
 
@@ -233,16 +305,22 @@ public class GZipDecoder extends AbstractTransformer<Buffer, Buffer> {
     private boolean initializeInput(final Buffer buffer,
             final GZipInputState state) {
 
-        Inflater inflater = state.getInflater();
-        if (inflater == null) {
-            inflater = new Inflater(true);
-            final CRC32 crc32 = new CRC32();
-            crc32.reset();
+        if (state.getInflater() == null) {
+            final Inflater inflater = pool.takeInflater();
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            
             state.setInflater(inflater);
-            state.setCrc32(crc32);
-        } else if (state.getDecodeStatus() == DecodeStatus.DONE) {
+            state.setInflaterPool(pool);
+            
+            if (state.getCrc32() == null) {
+                state.setCrc32(new CRC32());
+            }
+        }
+        
+        if (state.getDecodeStatus() == DecodeStatus.DONE) {
             state.setDecodeStatus(DecodeStatus.INITIAL);
-            inflater.reset();
             state.getCrc32().reset();
         }
         if (!parseHeader(buffer, state)) {
@@ -255,6 +333,21 @@ public class GZipDecoder extends AbstractTransformer<Buffer, Buffer> {
         return true;
     }
 
+    private static void releaseInflater(final GZipInputState state) {
+        final Inflater inflater = state.getInflater();
+        if (inflater != null) {
+            final ZLibPool inflaterPool = state.getInflaterPool();
+            state.setInflater(null);
+            state.setInflaterPool(null);
+            
+            if (inflaterPool != null) {
+                inflaterPool.releaseInflater(inflater);
+            } else {
+                inflater.end();
+            }
+        }
+    }
+
     /*
      * Reads GZIP member header.
      */
@@ -434,6 +527,11 @@ public class GZipDecoder extends AbstractTransformer<Buffer, Buffer> {
          * Decompressor for this stream.
          */
         private Inflater inflater;
+        
+        /**
+         * The pool the inflater has been taken from.
+         */
+        private ZLibPool inflaterPool;
 
         private DecodeStatus decodeStatus = DecodeStatus.INITIAL;
 
@@ -457,6 +555,20 @@ public class GZipDecoder extends AbstractTransformer<Buffer, Buffer> {
             this.inflater = inflater;
         }
 
+        /**
+         * @since 2.3.23
+         */
+        public ZLibPool getInflaterPool() {
+            return inflaterPool;
+        }
+
+        /**
+         * @since 2.3.23
+         */
+        public void setInflaterPool(ZLibPool inflaterPool) {
+            this.inflaterPool = inflaterPool;
+        }
+
         public CRC32 getCrc32() {
             return crc32;
         }
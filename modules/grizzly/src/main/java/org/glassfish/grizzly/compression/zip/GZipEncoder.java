@@ -55,6 +55,16 @@ import org.glassfish.grizzly.memory.MemoryManager;
 /**
  * This class implements a {@link org.glassfish.grizzly.Transformer} which encodes plain data to
  * the GZIP format.
+ * 
+ * The {@link Deflater}s are taken from the {@link ZLibPool} (by default
+ * {@link ZLibPool#getDefault()}) and are returned back to the pool once
+ * the GZIP member is {@link #finish(AttributeStorage) finished} or
+ * the encoding state is {@link #release(AttributeStorage) released}.
+ * 
+ * If the preset dictionary is {@link #setDictionary(byte[]) set}, the encoded
+ * data could be decoded only by {@link GZipDecoder} configured with the same
+ * dictionary; the mode is meant for the peers, which exchange the known
+ * payload families and shouldn't be used for HTTP <tt>Content-Encoding</tt>.
  *
  * @author Alexey Stashok
  */
@@ -67,6 +77,11 @@ public class GZipEncoder extends AbstractTransformer<Buffer, Buffer> {
     private static final int TRAILER_SIZE = 8;
 
     private final int bufferSize;
+    
+    private int compressionLevel;
+    private int strategy = Deflater.DEFAULT_STRATEGY;
+    private byte[] dictionary;
+    private ZLibPool pool = ZLibPool.getDefault();
 
     private static final Buffer header;
 
@@ -91,7 +106,114 @@ public class GZipEncoder extends AbstractTransformer<Buffer, Buffer> {
     }
 
     public GZipEncoder(int bufferSize) {
+        this(bufferSize, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Constructs <tt>GZipEncoder</tt> with the specific compression level.
+     * 
+     * @param bufferSize the output buffer size.
+     * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * 
+     * @since 2.3.23
+     */
+    public GZipEncoder(int bufferSize, int compressionLevel) {
         this.bufferSize = bufferSize;
+        setCompressionLevel(compressionLevel);
+    }
+
+    /**
+     * @return the default compression level.
+     * 
+     * @since 2.3.23
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the default compression level, which is used unless
+     * {@link #getCompressionLevel(AttributeStorage)} is overridden.
+     * 
+     * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * 
+     * @since 2.3.23
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        checkCompressionLevel(compressionLevel);
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return the compression strategy.
+     * 
+     * @since 2.3.23
+     */
+    public int getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Sets the compression strategy.
+     * 
+     * @param strategy {@link Deflater#DEFAULT_STRATEGY},
+     *          {@link Deflater#FILTERED} or {@link Deflater#HUFFMAN_ONLY}.
+     * 
+     * @since 2.3.23
+     */
+    public void setStrategy(int strategy) {
+        if (strategy < Deflater.DEFAULT_STRATEGY || strategy > Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("Invalid strategy: " + strategy);
+        }
+        
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return the preset dictionary, or <tt>null</tt> if not set.
+     * 
+     * @since 2.3.23
+     */
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Sets the preset dictionary, which contains the byte sequences
+     * commonly found in the encoded payloads. The decoding side has
+     * to use the same dictionary, see {@link GZipDecoder#setDictionary(byte[])}.
+     * 
+     * @param dictionary the preset dictionary, or <tt>null</tt> to disable
+     *          the dictionary mode.
+     * 
+     * @since 2.3.23
+     */
+    public void setDictionary(byte[] dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return the {@link ZLibPool} the {@link Deflater}s are taken from.
+     * 
+     * @since 2.3.23
+     */
+    public ZLibPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the {@link ZLibPool} the {@link Deflater}s are taken from.
+     * 
+     * @param pool {@link ZLibPool}
+     * 
+     * @since 2.3.23
+     */
+    public void setPool(ZLibPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool can't be null");
+        }
+        
+        this.pool = pool;
     }
 
 
@@ -130,7 +252,8 @@ public class GZipEncoder extends AbstractTransformer<Buffer, Buffer> {
         final GZipOutputState state = (GZipOutputState) obtainStateObject(storage);
 
         if (!state.isInitialized) {
-            state.initialize();
+            state.initialize(pool, getCompressionLevel(storage), strategy,
+                    dictionary);
         }
 
         Buffer encodedBuffer = null;
@@ -201,6 +324,46 @@ public class GZipEncoder extends AbstractTransformer<Buffer, Buffer> {
 
         return resultBuffer;
     }
+
+    /**
+     * Releases the encoding state associated with the storage and returns
+     * the {@link Deflater} back to the {@link ZLibPool}, if the GZIP member
+     * hasn't been {@link #finish(AttributeStorage) finished}.
+     * 
+     * @param storage {@link AttributeStorage}
+     */
+    @Override
+    public void release(AttributeStorage storage) {
+        final GZipOutputState state = (GZipOutputState) stateAttr.get(storage);
+        if (state != null && state.isInitialized) {
+            state.reset();
+        }
+        
+        super.release(storage);
+    }
+
+    /**
+     * Returns the compression level to be used for the new GZIP member
+     * associated with the storage. By default returns the
+     * {@link #getCompressionLevel()}, could be overridden to make
+     * the level depend on the encoded content.
+     * 
+     * @param storage {@link AttributeStorage}
+     * @return {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * 
+     * @since 2.3.23
+     */
+    protected int getCompressionLevel(AttributeStorage storage) {
+        return compressionLevel;
+    }
+    
+    static void checkCompressionLevel(final int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION
+                || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(
+                    "Invalid compression level: " + compressionLevel);
+        }
+    }
     
     private Buffer getHeader() {
         final Buffer headerToWrite = header.duplicate();
@@ -318,13 +481,32 @@ public class GZipEncoder extends AbstractTransformer<Buffer, Buffer> {
          * Compressor for this stream.
          */
         private Deflater deflater;
-
-        private void initialize() {
-            final Deflater newDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
-            final CRC32 newCrc32 = new CRC32();
-            newCrc32.reset();
+        
+        /**
+         * The pool the deflater has been taken from and the pool key.
+         */
+        private ZLibPool pool;
+        private int level;
+        private int strategy;
+
+        private void initialize(final ZLibPool pool, final int level,
+                final int strategy, final byte[] dictionary) {
+            checkCompressionLevel(level);
+            final Deflater newDeflater = pool.takeDeflater(level, strategy);
+            if (dictionary != null) {
+                newDeflater.setDictionary(dictionary);
+            }
+            
+            if (crc32 == null) {
+                crc32 = new CRC32();
+            } else {
+                crc32.reset();
+            }
+            
             deflater = newDeflater;
-            crc32 = newCrc32;
+            this.pool = pool;
+            this.level = level;
+            this.strategy = strategy;
             isInitialized = true;
         }
         
@@ -332,8 +514,13 @@ public class GZipEncoder extends AbstractTransformer<Buffer, Buffer> {
             isInitialized = false;
             isHeaderWritten = false;
             
-            crc32 = null;
+            final Deflater deflaterLocal = deflater;
             deflater = null;
+            if (deflaterLocal != null) {
+                pool.releaseDeflater(deflaterLocal, level, strategy);
+            }
+            
+            pool = null;
         }
     }
 }
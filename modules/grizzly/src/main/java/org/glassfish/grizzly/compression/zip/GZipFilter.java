@@ -48,6 +48,7 @@ import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
 import org.glassfish.grizzly.memory.Buffers;
 import java.io.IOException;
+import java.util.zip.Deflater;
 
 /**
  * This class implements a {@link org.glassfish.grizzly.filterchain.Filter} which
@@ -73,8 +74,28 @@ public class GZipFilter extends BaseFilter {
      * @param outBufferSize output buffer size
      */
     public GZipFilter(int inBufferSize, int outBufferSize) {
+        this(inBufferSize, outBufferSize, Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    /**
+     * Construct <tt>GZipFilter</tt> using specific buffer sizes, compression
+     * level and preset dictionary.
+     * Please note, if the dictionary is set, the peer has to use the same
+     * dictionary to decode/encode the data.
+     * 
+     * @param inBufferSize input buffer size
+     * @param outBufferSize output buffer size
+     * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * @param dictionary the preset dictionary, or <tt>null</tt>.
+     * 
+     * @since 2.3.23
+     */
+    public GZipFilter(int inBufferSize, int outBufferSize,
+            int compressionLevel, byte[] dictionary) {
         this.decoder = new GZipDecoder(inBufferSize);
-        this.encoder = new GZipEncoder(outBufferSize);
+        this.encoder = new GZipEncoder(outBufferSize, compressionLevel);
+        decoder.setDictionary(dictionary);
+        encoder.setDictionary(dictionary);
     }
 
     /**
@@ -0,0 +1,383 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.compression.zip;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The bounded pool of raw (nowrap) {@link Deflater}s and {@link Inflater}s.
+ * 
+ * Each {@link Deflater} and {@link Inflater} holds the native zlib state
+ * (~256K for the deflater with the default settings and ~40K for the inflater),
+ * which is allocated off-heap and is freed either by explicit <tt>end()</tt>
+ * or by the finalizer. The pool makes it possible to reset and reuse
+ * the instances across GZIP streams, so the native memory isn't churned per
+ * connection or HTTP message.
+ * 
+ * {@link Deflater}s are pooled per compression level/strategy pair, the number
+ * of idle instances per pair is limited by the {@link #getMaxPooledPerKey()},
+ * the extra instances are released using <tt>end()</tt>.
+ * 
+ * The default pool instance, which is used by {@link GZipEncoder} and
+ * {@link GZipDecoder}, could be configured using the
+ * <tt>org.glassfish.grizzly.compression.zip.ZLibPool.max-pooled</tt> system
+ * property (default: 32); the value of 0 disables pooling.
+ * 
+ * @since 2.3.23
+ */
+public final class ZLibPool {
+    /**
+     * The estimated native memory footprint of the {@link Deflater} with
+     * the default window and memory level settings.
+     */
+    public static final long DEFLATER_NATIVE_SIZE = 268 * 1024;
+    
+    /**
+     * The estimated native memory footprint of the {@link Inflater}
+     * with the default window size.
+     */
+    public static final long INFLATER_NATIVE_SIZE = 40 * 1024;
+    
+    /**
+     * The system property to configure the max number of the idle instances
+     * per key in the default pool.
+     */
+    public static final String MAX_POOLED_PROPERTY =
+            ZLibPool.class.getName() + ".max-pooled";
+    
+    private static final int STRATEGIES_COUNT = 3;
+    private static final int LEVELS_COUNT = 11; // -1 (default) .. 9
+    
+    private static final ZLibPool DEFAULT = new ZLibPool(
+            Math.max(0, Integer.getInteger(MAX_POOLED_PROPERTY, 32)));
+    
+    private final int maxPooledPerKey;
+    
+    private final Slot<Deflater>[] deflaterSlots;
+    private final Slot<Inflater> inflaterSlot = new Slot<Inflater>();
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicInteger deflatersInUse = new AtomicInteger();
+    private final AtomicInteger inflatersInUse = new AtomicInteger();
+    
+    /**
+     * @return the default <tt>ZLibPool</tt> instance shared by the
+     *          {@link GZipEncoder}s and {@link GZipDecoder}s.
+     */
+    public static ZLibPool getDefault() {
+        return DEFAULT;
+    }
+    
+    /**
+     * Constructs the <tt>ZLibPool</tt>.
+     * 
+     * @param maxPooledPerKey the max number of idle instances per
+     *          compression level/strategy pair (and the max number of idle
+     *          {@link Inflater}s); 0 disables pooling.
+     */
+    @SuppressWarnings("unchecked")
+    public ZLibPool(final int maxPooledPerKey) {
+        if (maxPooledPerKey < 0) {
+            throw new IllegalArgumentException(
+                    "maxPooledPerKey can't be negative");
+        }
+        
+        this.maxPooledPerKey = maxPooledPerKey;
+        deflaterSlots = new Slot[LEVELS_COUNT * STRATEGIES_COUNT];
+        for (int i = 0; i < deflaterSlots.length; i++) {
+            deflaterSlots[i] = new Slot<Deflater>();
+        }
+    }
+    
+    /**
+     * @return the max number of idle instances per compression level/strategy pair.
+     */
+    public int getMaxPooledPerKey() {
+        return maxPooledPerKey;
+    }
+    
+    /**
+     * Takes the raw (nowrap) {@link Deflater} with the given compression level
+     * and strategy from the pool, or creates a new one if there is no idle
+     * instance available.
+     * The {@link Deflater} has to be returned using
+     * {@link #releaseDeflater(Deflater, int, int)} with the same level
+     * and strategy.
+     * 
+     * @param level the compression level: {@link Deflater#DEFAULT_COMPRESSION}
+     *          or 0-9.
+     * @param strategy {@link Deflater#DEFAULT_STRATEGY},
+     *          {@link Deflater#FILTERED} or {@link Deflater#HUFFMAN_ONLY}.
+     * @return {@link Deflater}
+     */
+    public Deflater takeDeflater(final int level, final int strategy) {
+        final Slot<Deflater> slot = deflaterSlots[slotIndex(level, strategy)];
+        
+        Deflater deflater = slot.poll();
+        if (deflater != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            deflater = new Deflater(level, true);
+            if (strategy != Deflater.DEFAULT_STRATEGY) {
+                deflater.setStrategy(strategy);
+            }
+        }
+        
+        deflatersInUse.incrementAndGet();
+        return deflater;
+    }
+    
+    /**
+     * Resets the {@link Deflater} and returns it to the pool. If the pool
+     * is full - the {@link Deflater}'s native resources are released.
+     * 
+     * @param deflater {@link Deflater} taken using {@link #takeDeflater(int, int)}.
+     * @param level the compression level the {@link Deflater} was taken with.
+     * @param strategy the strategy the {@link Deflater} was taken with.
+     */
+    public void releaseDeflater(final Deflater deflater, final int level,
+            final int strategy) {
+        deflatersInUse.decrementAndGet();
+        
+        final Slot<Deflater> slot = deflaterSlots[slotIndex(level, strategy)];
+        if (slot.reserve(maxPooledPerKey)) {
+            deflater.reset();
+            slot.offer(deflater);
+        } else {
+            discarded.incrementAndGet();
+            deflater.end();
+        }
+    }
+    
+    /**
+     * Takes the raw (nowrap) {@link Inflater} from the pool, or creates
+     * a new one if there is no idle instance available.
+     * The {@link Inflater} has to be returned using {@link #releaseInflater(Inflater)}.
+     * 
+     * @return {@link Inflater}
+     */
+    public Inflater takeInflater() {
+        Inflater inflater = inflaterSlot.poll();
+        if (inflater != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            inflater = new Inflater(true);
+        }
+        
+        inflatersInUse.incrementAndGet();
+        return inflater;
+    }
+    
+    /**
+     * Resets the {@link Inflater} and returns it to the pool. If the pool
+     * is full - the {@link Inflater}'s native resources are released.
+     * 
+     * @param inflater {@link Inflater} taken using {@link #takeInflater()}.
+     */
+    public void releaseInflater(final Inflater inflater) {
+        inflatersInUse.decrementAndGet();
+        
+        if (inflaterSlot.reserve(maxPooledPerKey)) {
+            inflater.reset();
+            inflaterSlot.offer(inflater);
+        } else {
+            discarded.incrementAndGet();
+            inflater.end();
+        }
+    }
+    
+    /**
+     * Releases the native resources of all the idle pooled instances.
+     */
+    public void clear() {
+        for (Slot<Deflater> slot : deflaterSlots) {
+            Deflater deflater;
+            while ((deflater = slot.poll()) != null) {
+                deflater.end();
+            }
+        }
+        
+        Inflater inflater;
+        while ((inflater = inflaterSlot.poll()) != null) {
+            inflater.end();
+        }
+    }
+    
+    /**
+     * @return the number of take requests served by the idle pooled instances.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+    
+    /**
+     * @return the number of take requests, which caused a new instance creation.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+    
+    /**
+     * @return the hit ratio in the [0, 1] range, or 0 if nothing
+     *          has been taken yet.
+     */
+    public double getHitRatio() {
+        final long hitsLocal = hits.get();
+        final long total = hitsLocal + misses.get();
+        return total == 0 ? 0 : (double) hitsLocal / total;
+    }
+    
+    /**
+     * @return the number of returned instances, which were released
+     *          because the pool was full.
+     */
+    public long getDiscardedCount() {
+        return discarded.get();
+    }
+    
+    /**
+     * @return the number of idle pooled {@link Deflater}s.
+     */
+    public int getPooledDeflatersCount() {
+        int count = 0;
+        for (Slot<Deflater> slot : deflaterSlots) {
+            count += slot.size.get();
+        }
+        
+        return count;
+    }
+    
+    /**
+     * @return the number of idle pooled {@link Inflater}s.
+     */
+    public int getPooledInflatersCount() {
+        return inflaterSlot.size.get();
+    }
+    
+    /**
+     * @return the number of {@link Deflater}s taken and not returned yet.
+     *          {@link GZipEncoder} returns the {@link Deflater} when the GZIP
+     *          member is finished or the encoding state is released.
+     */
+    public int getDeflatersInUseCount() {
+        return deflatersInUse.get();
+    }
+    
+    /**
+     * @return the number of {@link Inflater}s taken and not returned yet.
+     *          {@link GZipDecoder} returns the {@link Inflater} when the GZIP
+     *          member is decoded or the decoding state is released.
+     */
+    public int getInflatersInUseCount() {
+        return inflatersInUse.get();
+    }
+    
+    /**
+     * Returns the estimated native memory (in bytes) held by the pooled
+     * and taken instances. The estimation is based on the default zlib
+     * window and memory level settings.
+     * The taken instances are counted until they're returned to the pool,
+     * an instance, which is never returned, stays counted even after it's
+     * garbage collected.
+     * 
+     * @return the estimated native memory size in bytes.
+     */
+    public long getEstimatedNativeMemory() {
+        return (getPooledDeflatersCount() + (long) deflatersInUse.get())
+                * DEFLATER_NATIVE_SIZE
+                + (getPooledInflatersCount() + (long) inflatersInUse.get())
+                * INFLATER_NATIVE_SIZE;
+    }
+    
+    private static int slotIndex(final int level, final int strategy) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        
+        if (strategy < Deflater.DEFAULT_STRATEGY || strategy > Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("Invalid strategy: " + strategy);
+        }
+        
+        return (level + 1) * STRATEGIES_COUNT + strategy;
+    }
+    
+    /**
+     * The queue of idle instances with the bounded size.
+     */
+    private static final class Slot<E> {
+        private final Queue<E> queue = new ConcurrentLinkedQueue<E>();
+        private final AtomicInteger size = new AtomicInteger();
+        
+        private boolean reserve(final int max) {
+            int current;
+            do {
+                current = size.get();
+                if (current >= max) {
+                    return false;
+                }
+            } while (!size.compareAndSet(current, current + 1));
+            
+            return true;
+        }
+        
+        private void offer(final E element) {
+            queue.offer(element);
+        }
+        
+        private E poll() {
+            final E element = queue.poll();
+            if (element != null) {
+                size.decrementAndGet();
+            }
+            
+            return element;
+        }
+    }
+}
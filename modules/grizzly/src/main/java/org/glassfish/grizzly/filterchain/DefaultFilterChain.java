@@ -54,6 +54,8 @@ import org.glassfish.grizzly.filterchain.FilterChainContext.Operation;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.localization.LogMessages;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.monitoring.FlightRecording;
+import org.glassfish.grizzly.monitoring.LatencyRecorder;
 import org.glassfish.grizzly.utils.Exceptions;
 import org.glassfish.grizzly.utils.Futures;
 import org.glassfish.grizzly.utils.NullaryFunction;
@@ -127,6 +129,12 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         final FiltersState filtersState = obtainFiltersState(connection);
         final int end = ctx.getEndIdx();
 
+        final LatencyRecorder latencyRecorder =
+                ctx.getOperation() == Operation.READ
+                ? LatencyRecorder.getIfEnabled(connection)
+                : null;
+        final long startNanos = latencyRecorder != null ? System.nanoTime() : 0;
+        
         try {
             do {
                 final FilterExecution execution = executeChainPart(ctx,
@@ -159,6 +167,11 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
             ctx.getCloseable().closeWithReason(Exceptions.makeIOException(e));
 
             return ProcessorResult.createError(e);
+        } finally {
+            if (latencyRecorder != null) {
+                latencyRecorder.recordSince(
+                        LatencyRecorder.Stage.FILTER_CHAIN_READ, startNanos);
+            }
         }
 
         return ProcessorResult.createComplete();
@@ -273,6 +286,9 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
             final Filter currentFilter, final FilterChainContext ctx)
             throws IOException {
 
+        final FlightRecording flightRecording =
+                FlightRecording.get(ctx.getConnection());
+        
         NextAction nextNextAction;
         do {
             if (LOGGER.isLoggable(Level.FINEST)) {
@@ -280,7 +296,17 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
                         new Object[]{currentFilter, ctx});
             }
             // execute the task
-            nextNextAction = executor.execute(currentFilter, ctx);
+            if (flightRecording == null) {
+                nextNextAction = executor.execute(currentFilter, ctx);
+            } else {
+                final long startNanos = System.nanoTime();
+                try {
+                    nextNextAction = executor.execute(currentFilter, ctx);
+                } finally {
+                    flightRecording.recordFilter(currentFilter,
+                            System.nanoTime() - startNanos);
+                }
+            }
 
             if (LOGGER.isLoggable(Level.FINEST)) {
                 LOGGER.log(Level.FINE, "after execute filter. filter={0} context={1} nextAction={2}",
@@ -488,6 +514,39 @@ public final class DefaultFilterChain extends ListFacadeFilterChain {
         return new DefaultFilterChain(filters.subList(fromIndex, toIndex));
     }
 
+    /**
+     * Moves the {@link Connection} messages (remainders), stored by the first
+     * <tt>filtersCount</tt> {@link Filter}s of this chain, to the target
+     * chain, which has the same {@link Filter}s at the same positions.
+     * The method has to be called, when the {@link Connection}'s
+     * {@link Processor} is being switched to the target chain, so the stored
+     * messages are not lost.
+     * 
+     * @param connection {@link Connection}
+     * @param target the target {@link DefaultFilterChain}
+     * @param filtersCount the number of the first {@link Filter}s, whose
+     *        stored messages have to be moved
+     * @since 2.3.23
+     */
+    public void moveFiltersState(final Connection connection,
+            final DefaultFilterChain target, final int filtersCount) {
+        final FiltersState srcState = obtainFiltersState(connection);
+        final FiltersState dstState = target.obtainFiltersState(connection);
+        
+        for (int opIdx = 0; opIdx < FiltersState.OPERATIONS_NUM; opIdx++) {
+            final FilterStateElement[] srcElements = srcState.state[opIdx];
+            final FilterStateElement[] dstElements = dstState.state[opIdx];
+            
+            for (int i = 0; i < filtersCount; i++) {
+                final FilterStateElement elem = srcElements[i];
+                if (elem != null && elem.isValid) {
+                    dstElements[i] = elem;
+                    srcElements[i] = null;
+                }
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private FiltersState obtainFiltersState(final Connection connection) {
         return (FiltersState) connection.obtainProcessorState(this, filtersStateFactory);
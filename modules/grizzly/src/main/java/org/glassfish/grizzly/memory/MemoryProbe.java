@@ -77,7 +77,7 @@ public interface MemoryProbe {
      * @since 2.1.9
      */
     @SuppressWarnings("UnusedDeclaration")
-    public static class Adapter implements MemoryProbe {
+    public static class Adapter implements BufferCopyProbe {
 
 
         // -------------------------------------------- Methods from MemoryProbe
@@ -100,5 +100,11 @@ public interface MemoryProbe {
         @Override
         public void onBufferReleaseToPoolEvent(int size) {}
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onBufferCopyEvent(int size) {}
+
     } // END Adapter
 }
@@ -42,6 +42,8 @@ package org.glassfish.grizzly.memory;
 
 import java.nio.ByteBuffer;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
 
 /**
  * Class has useful methods to simplify the work with {@link Buffer}s.
@@ -77,4 +79,23 @@ public class MemoryUtils {
             ((ByteBufferAware) memoryManager).releaseByteBuffer(byteBuffer);
         }
     }
+
+    /**
+     * Notifies the {@link BufferCopyProbe}s registered on the
+     * {@link MemoryManager} about the bytes copied between buffers.
+     * 
+     * @param memoryManager {@link MemoryManager}
+     * @param size the number of copied bytes
+     * @since 2.3.23
+     */
+    public static void notifyBufferCopied(final MemoryManager<?> memoryManager,
+            final int size) {
+        final MonitoringConfig<MemoryProbe> config =
+                memoryManager.getMonitoringConfig();
+        
+        ProbeNotifier.notifyBufferCopied(config instanceof DefaultMonitoringConfig
+                ? ((DefaultMonitoringConfig<MemoryProbe>) config).getProbesUnsafe()
+                : config.getProbes(),
+                size);
+    }
 }
@@ -101,4 +101,21 @@ final class ProbeNotifier {
         }
     }
 
+    /**
+     * Notify registered {@link BufferCopyProbe}s about the "copy" event.
+     *
+     * @param probes the registered probes
+     * @param size the number of copied bytes
+     */
+    static void notifyBufferCopied(final MemoryProbe[] probes,
+            final int size) {
+
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                if (probe instanceof BufferCopyProbe) {
+                    ((BufferCopyProbe) probe).onBufferCopyEvent(size);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.Transport;
+import org.glassfish.grizzly.nio.NIOConnection;
+
+/**
+ * The {@link Transport}'s flight recorder, which keeps the history of the
+ * sampled {@link Connection}s in the form of {@link FlightRecording}s.
+ * The recorded history includes IO readiness, bytes read/written, async
+ * write queue depth, filter execution durations and HTTP request
+ * suspend/resume events.
+ * 
+ * The recorder is disabled by default. Once enabled (either via
+ * {@link #setEnabled(boolean)} or the
+ * <tt>org.glassfish.grizzly.monitoring.ConnectionFlightRecorder.enabled</tt>
+ * system property) every N-th new {@link Connection} gets recorded, where N
+ * is the {@link #getSamplingRate()}. Specific {@link Connection}s could
+ * be recorded regardless of the sampling using
+ * {@link #startRecording(org.glassfish.grizzly.Connection)}.
+ * 
+ * When the recorded {@link Connection} gets closed - the
+ * {@link FlightRecording} is passed to the registered {@link Listener}s,
+ * and, if the {@link Level#FINE} level is enabled, is logged.
+ */
+public class ConnectionFlightRecorder {
+    private static final Logger LOGGER = Grizzly.logger(ConnectionFlightRecorder.class);
+    
+    /**
+     * The system property to enable the flight recorder by default.
+     */
+    public static final String ENABLED_PROPERTY =
+            ConnectionFlightRecorder.class.getName() + ".enabled";
+    
+    /**
+     * The system property to set the default sampling rate.
+     */
+    public static final String SAMPLING_RATE_PROPERTY =
+            ConnectionFlightRecorder.class.getName() + ".samplingRate";
+    
+    public static final int DEFAULT_SAMPLING_RATE = 100;
+    public static final int DEFAULT_CAPACITY = 256;
+    
+    /**
+     * The listener, which is notified, when the {@link FlightRecording}
+     * is completed.
+     */
+    public interface Listener {
+        /**
+         * The method is called, when the recorded {@link Connection}
+         * gets closed.
+         * 
+         * @param connection the closed {@link Connection}.
+         * @param recording the {@link Connection}'s {@link FlightRecording}.
+         */
+        void onRecordingComplete(Connection connection, FlightRecording recording);
+    }
+    
+    private volatile boolean isEnabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    private volatile int samplingRate = Math.max(1, Integer.getInteger(
+            SAMPLING_RATE_PROPERTY, DEFAULT_SAMPLING_RATE));
+    private volatile int capacity = DEFAULT_CAPACITY;
+    
+    private final AtomicLong connectionsCounter = new AtomicLong();
+    
+    private final CopyOnWriteArrayList<Listener> listeners =
+            new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * @return <tt>true</tt> if the new {@link Connection}s are sampled.
+     */
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Enables or disables the new {@link Connection}s sampling.
+     * The {@link Connection}s, which are already being recorded,
+     * are not affected.
+     * 
+     * @param isEnabled <tt>true</tt> to enable the sampling.
+     */
+    public void setEnabled(final boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * @return the sampling rate: every N-th new {@link Connection} is recorded.
+     */
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Sets the sampling rate: every N-th new {@link Connection} is recorded.
+     * The value <tt>1</tt> means every {@link Connection} is recorded.
+     * 
+     * @param samplingRate the sampling rate.
+     */
+    public void setSamplingRate(final int samplingRate) {
+        if (samplingRate < 1) {
+            throw new IllegalArgumentException("samplingRate has to be positive");
+        }
+        
+        this.samplingRate = samplingRate;
+    }
+
+    /**
+     * @return the max number of the latest events kept per {@link Connection}.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the max number of the latest events kept per {@link Connection}.
+     * 
+     * @param capacity the max number of events per {@link Connection}.
+     */
+    public void setCapacity(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity has to be positive");
+        }
+        
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Adds the {@link Listener}.
+     * 
+     * @param listener {@link Listener}
+     */
+    public void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes the {@link Listener}.
+     * 
+     * @param listener {@link Listener}
+     * @return <tt>true</tt> if the {@link Listener} has been removed.
+     */
+    public boolean removeListener(final Listener listener) {
+        return listeners.remove(listener);
+    }
+    
+    /**
+     * The method is called by the {@link Transport} for each new
+     * {@link Connection} and decides whether the {@link Connection}
+     * has to be recorded.
+     * 
+     * @param connection the new {@link Connection}.
+     */
+    public void sample(final Connection connection) {
+        if (isEnabled
+                && connectionsCounter.getAndIncrement() % samplingRate == 0) {
+            startRecording(connection);
+        }
+    }
+    
+    /**
+     * Starts the {@link Connection} recording. If the {@link Connection}
+     * is already being recorded - returns the existing {@link FlightRecording}.
+     * 
+     * @param connection {@link Connection}
+     * @return the {@link FlightRecording}, or <tt>null</tt> if the
+     *          {@link Connection} doesn't support recording.
+     */
+    public FlightRecording startRecording(final Connection connection) {
+        if (!(connection instanceof NIOConnection)) {
+            return null;
+        }
+        
+        final NIOConnection nioConnection = (NIOConnection) connection;
+        synchronized (this) {
+            FlightRecording recording = nioConnection.getFlightRecording();
+            if (recording == null) {
+                recording = new FlightRecording(this, capacity);
+                nioConnection.getMonitoringConfig().addProbes(recording);
+                nioConnection.setFlightRecording(recording);
+            }
+            
+            return recording;
+        }
+    }
+    
+    /**
+     * Stops the {@link Connection} recording.
+     * 
+     * @param connection {@link Connection}
+     * @return the stopped {@link FlightRecording}, or <tt>null</tt> if
+     *          the {@link Connection} hasn't been recorded.
+     */
+    public FlightRecording stopRecording(final Connection connection) {
+        if (!(connection instanceof NIOConnection)) {
+            return null;
+        }
+        
+        final NIOConnection nioConnection = (NIOConnection) connection;
+        synchronized (this) {
+            final FlightRecording recording = nioConnection.getFlightRecording();
+            if (recording != null) {
+                nioConnection.setFlightRecording(null);
+                nioConnection.getMonitoringConfig().removeProbes(recording);
+            }
+            
+            return recording;
+        }
+    }
+    
+    void onRecordingComplete(final Connection connection,
+            final FlightRecording recording) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Connection {0} closed. {1}",
+                    new Object[] {connection, recording});
+        }
+        
+        for (Listener listener : listeners) {
+            try {
+                listener.onRecordingComplete(connection, recording);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING,
+                        "Flight recorder listener error", e);
+            }
+        }
+    }
+}
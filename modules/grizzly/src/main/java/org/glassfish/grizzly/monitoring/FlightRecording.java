@@ -0,0 +1,333 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.ConnectionProbe;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.nio.NIOConnection;
+
+/**
+ * The history of a single {@link Connection}: the bounded ring of the
+ * latest {@link Event}s, which happened on the {@link Connection}.
+ * 
+ * The recording is created by the {@link ConnectionFlightRecorder}, when
+ * the {@link Connection} gets sampled, or explicitly via
+ * {@link ConnectionFlightRecorder#startRecording(org.glassfish.grizzly.Connection)}.
+ * The IO events are collected by the recording itself, being registered
+ * as the {@link Connection}'s {@link ConnectionProbe}; the other events
+ * are reported by the instrumented code, which checks
+ * {@link #get(org.glassfish.grizzly.Connection)} for <tt>null</tt>,
+ * so the cost for the {@link Connection}s, which are not recorded,
+ * is a single branch.
+ */
+public final class FlightRecording extends ConnectionProbe.Adapter {
+    
+    /**
+     * The recorded event types.
+     */
+    public enum EventType {
+        /**
+         * The {@link IOEvent} is ready, the value is the {@link IOEvent} ordinal.
+         */
+        IO_EVENT_READY,
+        /**
+         * The data has been read, the value is the number of bytes.
+         */
+        READ,
+        /**
+         * The data has been written, the value is the number of bytes.
+         */
+        WRITE,
+        /**
+         * The message has been added to the async write queue, the value
+         * is the number of bytes pending in the queue.
+         */
+        WRITE_QUEUE,
+        /**
+         * The filter has been executed, the value is the execution duration
+         * in nanoseconds.
+         */
+        FILTER,
+        /**
+         * The request processing has been suspended.
+         */
+        SUSPEND,
+        /**
+         * The request processing has been resumed.
+         */
+        RESUME,
+        /**
+         * The {@link Connection} error.
+         */
+        ERROR,
+        /**
+         * The {@link Connection} has been closed.
+         */
+        CLOSE
+    }
+    
+    private static final EventType[] EVENT_TYPES = EventType.values();
+    private static final IOEvent[] IO_EVENTS = IOEvent.values();
+    
+    private final ConnectionFlightRecorder recorder;
+    private final long startTimeMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    
+    // the ring buffer, guarded by this
+    private final long[] timestamps;
+    private final byte[] types;
+    private final long[] values;
+    private final Object[] details;
+    private long eventsCount;
+    
+    FlightRecording(final ConnectionFlightRecorder recorder, final int capacity) {
+        this.recorder = recorder;
+        timestamps = new long[capacity];
+        types = new byte[capacity];
+        values = new long[capacity];
+        details = new Object[capacity];
+    }
+    
+    /**
+     * Returns the {@link Connection}'s {@link FlightRecording}, or
+     * <tt>null</tt>, if the {@link Connection} is not being recorded.
+     * 
+     * @param connection {@link Connection}
+     * @return {@link FlightRecording} or <tt>null</tt>
+     */
+    public static FlightRecording get(final Connection connection) {
+        return connection instanceof NIOConnection
+                ? ((NIOConnection) connection).getFlightRecording()
+                : null;
+    }
+    
+    /**
+     * @return the time (in milliseconds) the recording has been started at.
+     */
+    public long getStartTimeMillis() {
+        return startTimeMillis;
+    }
+    
+    /**
+     * @return the total number of the recorded events, including the ones,
+     *          which have been overwritten.
+     */
+    public synchronized long getEventsCount() {
+        return eventsCount;
+    }
+    
+    /**
+     * Returns the latest recorded {@link Event}s in the chronological order.
+     * 
+     * @return the latest recorded {@link Event}s.
+     */
+    public synchronized List<Event> getEvents() {
+        final int capacity = timestamps.length;
+        final int size = (int) Math.min(eventsCount, capacity);
+        final List<Event> events = new ArrayList<Event>(size);
+        
+        for (long i = eventsCount - size; i < eventsCount; i++) {
+            final int idx = (int) (i % capacity);
+            events.add(new Event(EVENT_TYPES[types[idx]],
+                    timestamps[idx], values[idx], details[idx]));
+        }
+        
+        return events;
+    }
+    
+    /**
+     * Records the async write queue depth.
+     * 
+     * @param pendingBytes the number of bytes pending in the write queue.
+     */
+    public void recordWriteQueue(final int pendingBytes) {
+        record(EventType.WRITE_QUEUE, pendingBytes, null);
+    }
+    
+    /**
+     * Records the filter execution.
+     * 
+     * @param filter the executed filter.
+     * @param durationNanos the execution duration in nanoseconds.
+     */
+    public void recordFilter(final Object filter, final long durationNanos) {
+        record(EventType.FILTER, durationNanos, filter.getClass().getName());
+    }
+    
+    /**
+     * Records the request processing suspend.
+     * 
+     * @param request the suspended request description.
+     */
+    public void recordSuspend(final Object request) {
+        record(EventType.SUSPEND, 0, request);
+    }
+
+    /**
+     * Records the request processing resume.
+     * 
+     * @param request the resumed request description.
+     */
+    public void recordResume(final Object request) {
+        record(EventType.RESUME, 0, request);
+    }
+    
+    @Override
+    public void onIOEventReadyEvent(final Connection connection,
+            final IOEvent ioEvent) {
+        record(EventType.IO_EVENT_READY, ioEvent.ordinal(), null);
+    }
+
+    @Override
+    public void onReadEvent(final Connection connection, final Buffer data,
+            final int size) {
+        record(EventType.READ, size, null);
+    }
+
+    @Override
+    public void onWriteEvent(final Connection connection, final Buffer data,
+            final long size) {
+        record(EventType.WRITE, size, null);
+    }
+
+    @Override
+    public void onErrorEvent(final Connection connection, final Throwable error) {
+        record(EventType.ERROR, 0, error.toString());
+    }
+
+    @Override
+    public void onCloseEvent(final Connection connection) {
+        record(EventType.CLOSE, 0, null);
+        recorder.onRecordingComplete(connection, this);
+    }
+
+    private synchronized void record(final EventType type, final long value,
+            final Object detail) {
+        final int idx = (int) (eventsCount++ % timestamps.length);
+        timestamps[idx] = System.nanoTime() - startNanos;
+        types[idx] = (byte) type.ordinal();
+        values[idx] = value;
+        details[idx] = detail != null ? detail.toString() : null;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("FlightRecording{startTimeMillis=").append(startTimeMillis)
+                .append(", eventsCount=").append(getEventsCount()).append('}');
+        for (Event event : getEvents()) {
+            sb.append("\n    ").append(event);
+        }
+        
+        return sb.toString();
+    }
+    
+    /**
+     * The recorded event.
+     */
+    public static final class Event {
+        private final EventType type;
+        private final long timeOffsetNanos;
+        private final long value;
+        private final Object detail;
+
+        private Event(final EventType type, final long timeOffsetNanos,
+                final long value, final Object detail) {
+            this.type = type;
+            this.timeOffsetNanos = timeOffsetNanos;
+            this.value = value;
+            this.detail = detail;
+        }
+
+        /**
+         * @return the {@link EventType}.
+         */
+        public EventType getType() {
+            return type;
+        }
+
+        /**
+         * @return the time (in nanoseconds) passed since the recording start.
+         */
+        public long getTimeOffsetNanos() {
+            return timeOffsetNanos;
+        }
+
+        /**
+         * @return the event value, see {@link EventType} for the meaning.
+         */
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * @return the event detail: filter name, request, error or <tt>null</tt>.
+         */
+        public Object getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(64);
+            sb.append('+').append(TimeUnit.NANOSECONDS.toMicros(timeOffsetNanos))
+                    .append("us ").append(type);
+            
+            if (type == EventType.IO_EVENT_READY) {
+                sb.append(' ').append(IO_EVENTS[(int) value]);
+            } else if (type != EventType.SUSPEND && type != EventType.RESUME
+                    && type != EventType.ERROR && type != EventType.CLOSE) {
+                sb.append(' ').append(value);
+            }
+            
+            if (detail != null) {
+                sb.append(' ').append(detail);
+            }
+            
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Low-overhead latency histogram.
+ * 
+ * The recordings are spread across a fixed number of counter stripes,
+ * the stripe is chosen based on the recording thread, so different threads
+ * rarely contend on the same stripe. The stripes are merged when the
+ * {@link Snapshot} is taken. The values are stored in
+ * microseconds using log-linear buckets (similar to HdrHistogram)
+ * with 16 sub-buckets per power of two, so the relative error of the
+ * reported values doesn't exceed ~6%.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+    private static final int MAX_MAGNITUDE = 38; // ~76 hours in micros
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    
+    static final int BUCKETS_COUNT = LINEAR_LIMIT +
+            (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    
+    private static final int STRIPES;
+    
+    static {
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < cpus && stripes < 16) {
+            stripes <<= 1;
+        }
+        
+        STRIPES = stripes;
+    }
+    
+    // per-stripe stats indexes
+    private static final int COUNT_IDX = 0;
+    private static final int SUM_IDX = 1;
+    private static final int MAX_IDX = 2;
+    private static final int MIN_IDX = 3;
+    
+    private final String name;
+    
+    // the stripes are created lazily on first recording
+    private final AtomicReferenceArray<Recorder> recorders =
+            new AtomicReferenceArray<Recorder>(STRIPES);
+
+    public LatencyHistogram(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the histogram name.
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Records the latency value.
+     * 
+     * @param value the latency value.
+     * @param unit the value {@link TimeUnit}.
+     */
+    public void record(final long value, final TimeUnit unit) {
+        recordMicros(unit.toMicros(value));
+    }
+    
+    /**
+     * Records the latency measured from the given {@link System#nanoTime()}
+     * timestamp till now.
+     * 
+     * @param startNanos the {@link System#nanoTime()} timestamp the
+     *                   measurement has been started at.
+     */
+    public void recordSince(final long startNanos) {
+        recordMicros((System.nanoTime() - startNanos) / 1000);
+    }
+    
+    /**
+     * Records the latency value in microseconds.
+     * 
+     * @param micros the latency value in microseconds.
+     */
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        } else if (micros > MAX_VALUE) {
+            micros = MAX_VALUE;
+        }
+        
+        getRecorder(stripeIndex()).record(micros);
+    }
+    
+    /**
+     * Merges the striped counters and returns the {@link Snapshot}.
+     * The snapshot is not atomic in respect to concurrent recordings, but
+     * each recorded value is either fully included or not.
+     * 
+     * @return the {@link Snapshot}.
+     */
+    public Snapshot snapshot() {
+        final long[] buckets = new long[BUCKETS_COUNT];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        long min = Long.MAX_VALUE;
+        
+        for (int i = 0; i < STRIPES; i++) {
+            final Recorder recorder = recorders.get(i);
+            if (recorder == null) {
+                continue;
+            }
+            
+            final AtomicLongArray stats = recorder.stats;
+            final long recorderCount = stats.get(COUNT_IDX);
+            if (recorderCount == 0) {
+                continue;
+            }
+            
+            count += recorderCount;
+            sum += stats.get(SUM_IDX);
+            max = Math.max(max, stats.get(MAX_IDX));
+            min = Math.min(min, stats.get(MIN_IDX));
+            
+            final AtomicLongArray recorderBuckets = recorder.buckets;
+            for (int j = 0; j < BUCKETS_COUNT; j++) {
+                buckets[j] += recorderBuckets.get(j);
+            }
+        }
+        
+        return new Snapshot(name, buckets, count, sum,
+                count > 0 ? min : 0, max);
+    }
+    
+    /**
+     * Resets the histogram. Values recorded concurrently with the reset
+     * might be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            final Recorder recorder = recorders.get(i);
+            if (recorder != null) {
+                recorder.reset();
+            }
+        }
+    }
+    
+    private Recorder getRecorder(final int idx) {
+        final Recorder recorder = recorders.get(idx);
+        if (recorder != null) {
+            return recorder;
+        }
+        
+        final Recorder newRecorder = new Recorder();
+        return recorders.compareAndSet(idx, null, newRecorder)
+                ? newRecorder
+                : recorders.get(idx);
+    }
+    
+    private static int stripeIndex() {
+        final long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        h ^= h >>> 16;
+        
+        return h & (STRIPES - 1);
+    }
+    
+    static int bucketIndex(final long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+    
+    static long bucketHighestValue(final int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        
+        final int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+        final int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        
+        return (((long) (SUB_BUCKET_COUNT + subBucket) + 1) << shift) - 1;
+    }
+    
+    /**
+     * The counters stripe, which might be shared by several threads.
+     */
+    private static final class Recorder {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_COUNT);
+        private final AtomicLongArray stats = new AtomicLongArray(4);
+
+        private Recorder() {
+            stats.set(MIN_IDX, Long.MAX_VALUE);
+        }
+        
+        private void record(final long value) {
+            buckets.incrementAndGet(bucketIndex(value));
+            
+            long current;
+            while (value > (current = stats.get(MAX_IDX))) {
+                if (stats.compareAndSet(MAX_IDX, current, value)) {
+                    break;
+                }
+            }
+            while (value < (current = stats.get(MIN_IDX))) {
+                if (stats.compareAndSet(MIN_IDX, current, value)) {
+                    break;
+                }
+            }
+            
+            stats.addAndGet(SUM_IDX, value);
+            // the count is updated last, so the reader, which sees the count,
+            // sees the bucket as well
+            stats.incrementAndGet(COUNT_IDX);
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS_COUNT; i++) {
+                buckets.set(i, 0);
+            }
+            
+            stats.set(COUNT_IDX, 0);
+            stats.set(SUM_IDX, 0);
+            stats.set(MAX_IDX, 0);
+            stats.set(MIN_IDX, Long.MAX_VALUE);
+        }
+    }
+    
+    /**
+     * The immutable point-in-time view of the {@link LatencyHistogram}.
+     * All the values are in microseconds.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(final String name, final long[] buckets,
+                final long count, final long sum,
+                final long min, final long max) {
+            this.name = name;
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @return the histogram name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of recorded values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the sum of recorded values in microseconds.
+         */
+        public long getSum() {
+            return sum;
+        }
+        
+        /**
+         * @return the min recorded value in microseconds.
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * @return the max recorded value in microseconds.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the mean value in microseconds.
+         */
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+        
+        /**
+         * Returns the value (in microseconds) at the given percentile.
+         * 
+         * @param percentile the percentile in the range [0..100].
+         * @return the value (in microseconds) at the given percentile.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            
+            final double p = Math.min(Math.max(percentile, 0), 100);
+            final long countAtPercentile =
+                    Math.max(1, (long) Math.ceil(p / 100 * count));
+            
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                total += buckets[i];
+                if (total >= countAtPercentile) {
+                    return Math.min(bucketHighestValue(i), max);
+                }
+            }
+            
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count
+                    + " min=" + min
+                    + " mean=" + (long) getMean()
+                    + " p50=" + getValueAtPercentile(50)
+                    + " p90=" + getValueAtPercentile(90)
+                    + " p99=" + getValueAtPercentile(99)
+                    + " p99.9=" + getValueAtPercentile(99.9)
+                    + " max=" + max + " (us)";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.util.EnumMap;
+import java.util.Map;
+import org.glassfish.grizzly.AbstractTransport;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Transport;
+
+/**
+ * The set of {@link LatencyHistogram}s, which measure the latency of
+ * the different request processing {@link Stage}s of a {@link Transport}.
+ * 
+ * The recorder is disabled by default, in which case the instrumented code
+ * pays just a volatile read. It could be enabled either programmatically,
+ * using {@link #setEnabled(boolean)}, or for all the transports using
+ * the <tt>org.glassfish.grizzly.monitoring.LatencyRecorder.enabled</tt>
+ * system property.
+ * 
+ * The collected statistics is available via {@link #snapshot()} and JMX.
+ */
+public class LatencyRecorder {
+    /**
+     * The system property to enable latency recording by default.
+     */
+    public static final String ENABLED_PROPERTY =
+            LatencyRecorder.class.getName() + ".enabled";
+    
+    /**
+     * The request processing stages, which latency is measured.
+     */
+    public enum Stage {
+        /**
+         * The time an IO event spends in the worker thread pool queue,
+         * after it has been dispatched by a selector thread.
+         */
+        WORKER_QUEUE,
+        /**
+         * The time spent in the FilterChain processing a READ event.
+         */
+        FILTER_CHAIN_READ,
+        /**
+         * The time a message spends in the connection async write queue
+         * before it has been completely written.
+         */
+        WRITE_QUEUE,
+        /**
+         * The time from the beginning of the HTTP request parsing till
+         * the HTTP response headers get serialized.
+         */
+        HTTP_FIRST_RESPONSE_BYTE,
+        /**
+         * The time from the beginning of the HTTP request parsing till
+         * the HTTP response is completed.
+         */
+        HTTP_REQUEST
+    }
+    
+    private static final Stage[] STAGES = Stage.values();
+    
+    private final LatencyHistogram[] histograms =
+            new LatencyHistogram[STAGES.length];
+    
+    private volatile boolean isEnabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    public LatencyRecorder() {
+        for (Stage stage : STAGES) {
+            histograms[stage.ordinal()] =
+                    new LatencyHistogram(stage.name().toLowerCase().replace('_', '-'));
+        }
+    }
+    
+    /**
+     * Returns the {@link LatencyRecorder} associated with the
+     * {@link Connection}'s {@link Transport}, or <tt>null</tt>, if the
+     * {@link Transport} doesn't support latency recording.
+     * 
+     * @param connection {@link Connection}
+     * @return {@link LatencyRecorder} or <tt>null</tt>
+     */
+    public static LatencyRecorder get(final Connection connection) {
+        final Transport transport = connection.getTransport();
+        return transport instanceof AbstractTransport
+                ? ((AbstractTransport) transport).getLatencyRecorder()
+                : null;
+    }
+    
+    /**
+     * Returns the {@link LatencyRecorder} associated with the
+     * {@link Connection}'s {@link Transport}, if it's enabled, or
+     * <tt>null</tt> otherwise.
+     * 
+     * @param connection {@link Connection}
+     * @return enabled {@link LatencyRecorder} or <tt>null</tt>
+     */
+    public static LatencyRecorder getIfEnabled(final Connection connection) {
+        final LatencyRecorder recorder = get(connection);
+        return recorder != null && recorder.isEnabled ? recorder : null;
+    }
+    
+    /**
+     * @return <tt>true</tt> if the latency recording is enabled.
+     */
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Enables or disables the latency recording.
+     * 
+     * @param isEnabled <tt>true</tt> to enable the latency recording.
+     */
+    public void setEnabled(final boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+    
+    /**
+     * @param stage {@link Stage}
+     * @return the {@link LatencyHistogram} for the given {@link Stage}.
+     */
+    public LatencyHistogram getHistogram(final Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+    
+    /**
+     * Records the {@link Stage} latency measured from the given
+     * {@link System#nanoTime()} timestamp till now.
+     * 
+     * @param stage {@link Stage}
+     * @param startNanos the {@link System#nanoTime()} timestamp the
+     *                   measurement has been started at.
+     */
+    public void recordSince(final Stage stage, final long startNanos) {
+        histograms[stage.ordinal()].recordSince(startNanos);
+    }
+    
+    /**
+     * Returns the {@link LatencyHistogram.Snapshot}s of all the {@link Stage}s.
+     * 
+     * @return the {@link LatencyHistogram.Snapshot}s of all the {@link Stage}s.
+     */
+    public Map<Stage, LatencyHistogram.Snapshot> snapshot() {
+        final Map<Stage, LatencyHistogram.Snapshot> result =
+                new EnumMap<Stage, LatencyHistogram.Snapshot>(Stage.class);
+        for (Stage stage : STAGES) {
+            result.put(stage, histograms[stage.ordinal()].snapshot());
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Resets all the {@link LatencyHistogram}s.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+    
+    /**
+     * Creates the JMX management object for this recorder.
+     * 
+     * @return the JMX management object, or <tt>null</tt>, if the JMX
+     *          module is not available.
+     */
+    public Object createManagementObject() {
+        return MonitoringUtils.loadJmxObject(
+                "org.glassfish.grizzly.monitoring.jmx.LatencyRecorder",
+                this, LatencyRecorder.class);
+    }
+}
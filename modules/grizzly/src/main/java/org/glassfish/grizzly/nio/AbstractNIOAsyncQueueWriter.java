@@ -59,6 +59,7 @@ import org.glassfish.grizzly.asyncqueue.PushBackHandler;
 import org.glassfish.grizzly.asyncqueue.RecordWriteResult;
 import org.glassfish.grizzly.asyncqueue.TaskQueue;
 import org.glassfish.grizzly.asyncqueue.WritableMessage;
+import org.glassfish.grizzly.monitoring.FlightRecording;
 
 
 /**
@@ -225,6 +226,11 @@ public abstract class AbstractNIOAsyncQueueWriter
         final int pendingBytes = writeTaskQueue.reserveSpace(bytesToReserve);
         final boolean isCurrent = (pendingBytes == bytesToReserve);
 
+        final FlightRecording flightRecording = nioConnection.getFlightRecording();
+        if (flightRecording != null) {
+            flightRecording.recordWriteQueue(pendingBytes);
+        }
+
         final boolean isLogFine = LOGGER.isLoggable(Level.FINEST);
 
         if (isLogFine) {
@@ -243,6 +249,7 @@ public abstract class AbstractNIOAsyncQueueWriter
 
                 queueRecord.setMessage(
                         cloneRecordIfNeeded(nioConnection, cloner, message));
+                markQueued(queueRecord);
 
                 if (isCurrent) { //current but can't write because of maxReentrants limit
                     writeTaskQueue.setCurrentElement(queueRecord);
@@ -286,6 +293,7 @@ public abstract class AbstractNIOAsyncQueueWriter
 
             queueRecord.setMessage(
                     cloneRecordIfNeeded(nioConnection, cloner, message));
+            markQueued(queueRecord);
 
             if (isLogFine) {
                 doFineLog("AsyncQueueWriter.write queuing connection={0}, record={1}, "
@@ -450,6 +458,12 @@ public abstract class AbstractNIOAsyncQueueWriter
         }
     }
     
+    private void markQueued(final AsyncWriteQueueRecord queueRecord) {
+        if (transport.getLatencyRecorder().isEnabled()) {
+            queueRecord.setQueuedTimeNanos(System.nanoTime());
+        }
+    }
+    
     private static WritableMessage cloneRecordIfNeeded(
             final Connection connection,
             final MessageCloner<WritableMessage> cloner,
@@ -65,6 +65,7 @@ import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.FlightRecording;
 import org.glassfish.grizzly.utils.CompletionHandlerAdapter;
 import org.glassfish.grizzly.utils.DataStructures;
 import org.glassfish.grizzly.utils.Futures;
@@ -118,6 +119,12 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
     private final Queue<org.glassfish.grizzly.CloseListener> closeListeners =
             new ConcurrentLinkedQueue<org.glassfish.grizzly.CloseListener>();
     
+    /**
+     * The tasks to be run once the graceful close is scheduled.
+     */
+    private final Queue<Runnable> closeScheduledTasks =
+            new ConcurrentLinkedQueue<Runnable>();
+    
     /**
      * Storage contains states of different Processors this Connection is associated with.
      */
@@ -130,6 +137,11 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
     protected final DefaultMonitoringConfig<ConnectionProbe> monitoringConfig =
         new DefaultMonitoringConfig<ConnectionProbe>(ConnectionProbe.class);
 
+    /**
+     * The flight recording, if the connection is being recorded
+     */
+    private volatile FlightRecording flightRecording;
+    
     public NIOConnection(final NIOTransport transport) {
         this.transport = transport;
         asyncReadQueue = TaskQueue.createTaskQueue(null);
@@ -516,6 +528,8 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
             
             final CloseReason finalReason = closeReason;
             
+            runCloseScheduledTasks();
+            
             transport.getWriter(this).write(this, Buffers.EMPTY_BUFFER,
                     new EmptyCompletionHandler<WriteResult<Buffer, SocketAddress>>() {
 
@@ -544,6 +558,41 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
         }
     }
     
+    /**
+     * Adds the task to be run once the graceful close of this {@link Connection}
+     * is scheduled, right before the close marker is queued to the transport
+     * writer. So the task still could write the data, which is held outside
+     * of the write queue (for example by a {@link org.glassfish.grizzly.filterchain.Filter}),
+     * and the data is not lost.
+     * 
+     * @param task the task
+     * @return <tt>true</tt> if the task has been added, or <tt>false</tt>
+     *         if the close has been already scheduled
+     * @since 2.3.23
+     */
+    public boolean addCloseScheduledTask(final Runnable task) {
+        if (isCloseScheduled.get()) {
+            return false;
+        }
+        
+        closeScheduledTasks.add(task);
+        
+        // if the close has been scheduled concurrently - make sure the task
+        // is either run or reported as not added
+        return !isCloseScheduled.get() || !closeScheduledTasks.remove(task);
+    }
+    
+    private void runCloseScheduledTasks() {
+        Runnable task;
+        while ((task = closeScheduledTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Close scheduled task error", e);
+            }
+        }
+    }
+    
     protected void terminate0(final CompletionHandler<Closeable> completionHandler,
             final CloseReason closeReason) {
         
@@ -660,6 +709,27 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
         return monitoringConfig;
     }
 
+    /**
+     * Returns the {@link FlightRecording}, if this connection is being
+     * recorded by the {@link org.glassfish.grizzly.monitoring.ConnectionFlightRecorder}, or <tt>null</tt>
+     * otherwise.
+     * 
+     * @return {@link FlightRecording} or <tt>null</tt>.
+     */
+    public final FlightRecording getFlightRecording() {
+        return flightRecording;
+    }
+
+    /**
+     * Sets the {@link FlightRecording}. The method is not supposed to be
+     * used directly, please use {@link org.glassfish.grizzly.monitoring.ConnectionFlightRecorder} instead.
+     * 
+     * @param flightRecording {@link FlightRecording}
+     */
+    public final void setFlightRecording(final FlightRecording flightRecording) {
+        this.flightRecording = flightRecording;
+    }
+
     /**
      * Notify registered {@link ConnectionProbe}s about the bind event.
      *
@@ -705,6 +705,7 @@ public abstract class NIOTransport extends AbstractTransport
         if (connectionMonitoringConfig.hasProbes()) {
             connection.setMonitoringProbes(connectionMonitoringConfig.getProbes());
         }
+        flightRecorder.sample(connection);
     }
 
     public boolean isReuseAddress() {
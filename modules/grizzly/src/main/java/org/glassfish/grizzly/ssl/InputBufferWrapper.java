@@ -40,35 +40,141 @@
 
 package org.glassfish.grizzly.ssl;
 
+import java.nio.ByteBuffer;
+import org.glassfish.grizzly.ThreadCache;
+import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.ByteBufferWrapper;
-import org.glassfish.grizzly.nio.DirectByteBufferRecord;
 
 /**
  * Input {@link org.glassfish.grizzly.Buffer} to read SSL packets to.
  * This {@link org.glassfish.grizzly.Buffer} has to be used by a Transport
  * to read data.
  * 
+ * The underlying direct {@link ByteBuffer} is taken from the thread-local
+ * cache and is returned there, once the wrapper gets disposed.
+ * An incomplete TLS record, left after the input processing, could be kept
+ * in the direct {@link ByteBuffer} (see {@link #keepRemainder(int)}), so the
+ * next read appends the rest of the record right after it.
+ * 
  * @author Alexey Stashok
  */
 final class InputBufferWrapper extends ByteBufferWrapper {
-    private DirectByteBufferRecord record;
+    private static final ThreadCache.CachedTypeIndex<ByteBuffer> DIRECT_INPUT_BUFFER_IDX =
+            ThreadCache.obtainIndex(InputBufferWrapper.class.getName() + ".direct-buffer-cache",
+            ByteBuffer.class, 1);
+    
+    private ByteBuffer directBuffer;
+    // the offset of the visible buffer in the direct buffer
+    private int visibleOffset;
+    
+    // the kept remainder
+    private int remainderOffset;
+    private int remainderSize;
 
     public InputBufferWrapper() {
     }
 
     public InputBufferWrapper prepare(final int size) {
-        final DirectByteBufferRecord recordLocal = DirectByteBufferRecord.get();
-        this.record = recordLocal;
-        this.visible = recordLocal.allocate(size);
+        ByteBuffer byteBuffer = directBuffer;
+        
+        if (byteBuffer != null && remainderSize > 0) {
+            // the remainder has been kept, read right after it
+            if (remainderOffset == 0) {
+                byteBuffer.clear();
+                visible = byteBuffer;
+            } else {
+                Buffers.setPositionLimit(byteBuffer, remainderOffset,
+                        byteBuffer.capacity());
+                visible = byteBuffer.slice();
+                byteBuffer.clear();
+            }
+            
+            visible.position(remainderSize);
+            visibleOffset = remainderOffset;
+            remainderOffset = 0;
+            remainderSize = 0;
+            
+            return this;
+        }
+        
+        if (byteBuffer == null) {
+            byteBuffer = ThreadCache.takeFromCache(DIRECT_INPUT_BUFFER_IDX);
+        }
+        
+        if (byteBuffer == null || byteBuffer.capacity() < size) {
+            byteBuffer = ByteBuffer.allocateDirect(size);
+        } else {
+            byteBuffer.clear();
+        }
+        
+        this.directBuffer = byteBuffer;
+        this.visible = byteBuffer;
+        this.visibleOffset = 0;
         
         return this;
     }
 
+    /**
+     * @return <tt>true</tt>, if the wrapper keeps the remainder of the
+     *         previously read data.
+     */
+    public boolean hasRemainder() {
+        return remainderSize > 0;
+    }
+    
+    /**
+     * Keeps the wrapper's remaining data in the direct buffer, so the next
+     * {@link #prepare(int)} call will append the new data to it.
+     * If there's less than <tt>minReadSpace</tt> bytes left after the
+     * remaining data - the data gets moved to the beginning of the direct
+     * buffer.
+     * 
+     * @param minReadSpace the minimum space to be available for the next read
+     * @return the number of copied bytes, or <tt>-1</tt> if the remainder
+     *         can't be kept.
+     */
+    public int keepRemainder(final int minReadSpace) {
+        final ByteBuffer byteBuffer = directBuffer;
+        if (byteBuffer == null || visible == null) {
+            return -1;
+        }
+        
+        final int start = visibleOffset + visible.position();
+        final int end = visibleOffset + visible.limit();
+        final int size = end - start;
+        
+        if (byteBuffer.capacity() - size < minReadSpace) {
+            return -1;
+        }
+        
+        int copied = 0;
+        if (byteBuffer.capacity() - end < minReadSpace) {
+            final ByteBuffer duplicate = byteBuffer.duplicate();
+            Buffers.setPositionLimit(duplicate, start, end);
+            duplicate.compact();
+            remainderOffset = 0;
+            copied = size;
+        } else {
+            remainderOffset = start;
+        }
+        
+        remainderSize = size;
+        visible = byteBuffer;
+        return copied;
+    }
+    
     @Override
     public void dispose() {
-        record.release();
-        record = null;
+        final ByteBuffer byteBuffer = directBuffer;
+        directBuffer = null;
+        visibleOffset = 0;
+        remainderOffset = 0;
+        remainderSize = 0;
         super.dispose();
+        
+        if (byteBuffer != null) {
+            ThreadCache.putToCache(DIRECT_INPUT_BUFFER_IDX, byteBuffer);
+        }
     }
     
 }
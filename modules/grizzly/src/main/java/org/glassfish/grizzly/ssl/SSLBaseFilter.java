@@ -47,7 +47,11 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Filter;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,6 +62,7 @@ import javax.net.ssl.SSLEngineResult.Status;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Context;
 import org.glassfish.grizzly.FileTransfer;
@@ -66,6 +71,7 @@ import org.glassfish.grizzly.IOEvent;
 import org.glassfish.grizzly.IOEventLifeCycleListener;
 import org.glassfish.grizzly.ProcessorExecutor;
 import org.glassfish.grizzly.ReadResult;
+import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.asyncqueue.MessageCloner;
 import org.glassfish.grizzly.filterchain.BaseFilter;
 import org.glassfish.grizzly.filterchain.FilterChain;
@@ -77,7 +83,10 @@ import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.monitoring.LatencyHistogram;
 import org.glassfish.grizzly.ssl.SSLConnectionContext.Allocator;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.grizzly.utils.DataStructures;
 
 import static org.glassfish.grizzly.ssl.SSLUtils.*;
@@ -122,6 +131,17 @@ public class SSLBaseFilter extends BaseFilter {
             DataStructures.<HandshakeListener, Boolean>getConcurrentMap(2));
     
     private long handshakeTimeoutMillis = -1;
+    
+    private volatile boolean isWriteCoalescing;
+    private volatile boolean isDynamicRecordSizing;
+    private volatile boolean isDirectInputBuffers;
+    
+    private volatile Executor handshakeExecutor;
+    private final AtomicInteger handshakeQueueSize = new AtomicInteger();
+    private final LatencyHistogram handshakeQueueLatency =
+            new LatencyHistogram("ssl-handshake-queue");
+    private final LatencyHistogram handshakeTaskLatency =
+            new LatencyHistogram("ssl-handshake-task");
         
     private SSLTransportFilterWrapper optimizedTransportFilter;
     
@@ -221,6 +241,179 @@ public class SSLBaseFilter extends BaseFilter {
         }
     }
 
+    /**
+     * @return <tt>true</tt>, if small writes are coalesced into full TLS records
+     *         while the connection's previous output is still being written.
+     * 
+     * @since 2.3.23
+     */
+    public boolean isWriteCoalescing() {
+        return isWriteCoalescing;
+    }
+
+    /**
+     * Enables/disables TLS write coalescing. If enabled, small messages
+     * written while the connection's previous TLS output is still pending in
+     * the transport write queue are held and merged into full TLS records
+     * (up to 16 KiB of plain text), which are wrapped and written as soon
+     * as the pending output is written. This reduces the per-record overhead
+     * and the number of {@link SSLEngine#wrap(java.nio.ByteBuffer, java.nio.ByteBuffer)}
+     * calls for protocols, which produce many small writes (HTTP/2 frames,
+     * websocket messages). Blocking writes are never held.
+     * 
+     * @param isWriteCoalescing <tt>true</tt> to enable write coalescing.
+     * 
+     * @since 2.3.23
+     */
+    public void setWriteCoalescing(final boolean isWriteCoalescing) {
+        this.isWriteCoalescing = isWriteCoalescing;
+    }
+
+    /**
+     * @return <tt>true</tt>, if dynamic TLS record sizing is enabled.
+     * 
+     * @since 2.3.23
+     */
+    public boolean isDynamicRecordSizing() {
+        return isDynamicRecordSizing;
+    }
+
+    /**
+     * Enables/disables dynamic TLS record sizing. If enabled, the first
+     * megabyte of a connection output (or the output after the connection
+     * was idle for a second) is sent using small TLS records, which fit
+     * a single TCP segment, so the peer could start processing the data
+     * without waiting for the entire 16 KiB record. After that the max
+     * record size is used to minimize the TLS overhead.
+     * 
+     * @param isDynamicRecordSizing <tt>true</tt> to enable dynamic record sizing.
+     * 
+     * @since 2.3.23
+     */
+    public void setDynamicRecordSizing(final boolean isDynamicRecordSizing) {
+        this.isDynamicRecordSizing = isDynamicRecordSizing;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the TLS records are read into pooled direct
+     *         buffers.
+     * 
+     * @since 2.3.23
+     */
+    public boolean isDirectInputBuffers() {
+        return isDirectInputBuffers;
+    }
+
+    /**
+     * Enables/disables reading the TLS records into pooled direct buffers,
+     * sized according to the {@link SSLEngine} packet buffer size.
+     * {@link SSLEngine} implementations decrypt direct buffers without
+     * copying them into their internal buffers, so the mode saves a copy of
+     * each incoming record. Records split among several buffers are copied
+     * into a direct buffer one by one, without flattening the entire input.
+     * The number of copied bytes is reported to the
+     * {@link org.glassfish.grizzly.memory.BufferCopyProbe}s registered on the
+     * connection's {@link MemoryManager}.
+     * 
+     * Note: the mode is applied, when the filter is used together with the
+     * transport filter.
+     * 
+     * @param isDirectInputBuffers <tt>true</tt> to read the TLS records into
+     *        pooled direct buffers.
+     * 
+     * @since 2.3.23
+     */
+    public void setDirectInputBuffers(final boolean isDirectInputBuffers) {
+        this.isDirectInputBuffers = isDirectInputBuffers;
+    }
+
+    /**
+     * @return the {@link Executor} the {@link SSLEngine} delegated handshake
+     *         tasks are offloaded to, or <tt>null</tt> if the tasks are
+     *         executed by the thread, which processes the read event (default).
+     * 
+     * @since 2.3.23
+     */
+    public Executor getHandshakeExecutor() {
+        return handshakeExecutor;
+    }
+
+    /**
+     * Sets the {@link Executor} the {@link SSLEngine} delegated handshake
+     * tasks (key exchange, certificate signing and validation) have to be
+     * offloaded to. While the tasks are being executed the
+     * {@link Connection}'s read interest is disabled, once they are
+     * completed the handshake processing is resumed on the
+     * <tt>handshakeExecutor</tt> thread.
+     * 
+     * The offloading keeps CPU-heavy handshakes from blocking the selector
+     * (or worker) threads, which serve the other connections. It's applied
+     * to the non-blocking handshake mode only
+     * (see {@link #setHandshakeTimeout(long, java.util.concurrent.TimeUnit)}).
+     * If the executor rejects a task, the task is executed by the current thread.
+     * The executor lifecycle is managed by the caller.
+     * 
+     * @param handshakeExecutor the handshake {@link Executor}, or <tt>null</tt>
+     *        to execute the delegated tasks on the current thread.
+     * @see #createHandshakeExecutor(int)
+     * 
+     * @since 2.3.23
+     */
+    public void setHandshakeExecutor(final Executor handshakeExecutor) {
+        this.handshakeExecutor = handshakeExecutor;
+    }
+
+    /**
+     * @return the number of delegated handshake task batches, which are waiting
+     *         for the handshake {@link Executor}.
+     * 
+     * @since 2.3.23
+     */
+    public int getHandshakeQueueSize() {
+        return handshakeQueueSize.get();
+    }
+
+    /**
+     * @return the {@link LatencyHistogram} of the time delegated handshake
+     *         tasks spent waiting for the handshake {@link Executor}.
+     * 
+     * @since 2.3.23
+     */
+    public LatencyHistogram getHandshakeQueueLatency() {
+        return handshakeQueueLatency;
+    }
+
+    /**
+     * @return the {@link LatencyHistogram} of the offloaded delegated
+     *         handshake tasks execution time.
+     * 
+     * @since 2.3.23
+     */
+    public LatencyHistogram getHandshakeTaskLatency() {
+        return handshakeTaskLatency;
+    }
+
+    /**
+     * Creates a bounded handshake {@link ExecutorService} with the number of
+     * threads equal to the number of available processors.
+     * 
+     * @param queueLimit the max number of the pending tasks, <tt>-1</tt>
+     *        means unbounded queue.
+     * @return the handshake {@link ExecutorService}.
+     * @see #setHandshakeExecutor(java.util.concurrent.Executor)
+     * 
+     * @since 2.3.23
+     */
+    public static ExecutorService createHandshakeExecutor(final int queueLimit) {
+        final int threadsCount = Runtime.getRuntime().availableProcessors();
+        return GrizzlyExecutorService.createInstance(
+                ThreadPoolConfig.defaultConfig().copy()
+                .setPoolName("Grizzly-ssl-handshake")
+                .setCorePoolSize(threadsCount)
+                .setMaxPoolSize(threadsCount)
+                .setQueueLimit(queueLimit));
+    }
+
     protected SSLTransportFilterWrapper getOptimizedTransportFilter(
             final TransportFilter childFilter) {
         if (optimizedTransportFilter == null ||
@@ -291,9 +484,11 @@ public class SSLBaseFilter extends BaseFilter {
         } else {
             if (sslEngine == null) {
                 sslEngine = serverSSLEngineConfigurator.createSSLEngine();
-                sslEngine.beginHandshake();
                 sslCtx.configure(sslEngine);
+                // the listeners might configure the SSLEngine (like ALPN),
+                // which has to be done before the handshake is started
                 notifyHandshakeStart(connection);
+                sslEngine.beginHandshake();
             }
 
             final Buffer buffer;
@@ -301,8 +496,21 @@ public class SSLBaseFilter extends BaseFilter {
                 buffer = doHandshakeSync(sslCtx, ctx, (Buffer) ctx.getMessage(),
                         handshakeTimeoutMillis);
             } else {
-                buffer = makeInputRemainder(sslCtx, ctx,
-                        doHandshakeStep(sslCtx, ctx, (Buffer) ctx.getMessage()));
+                final Executor executor = handshakeExecutor;
+                // keep the pre-2.3.23 overload in the path, unless offloading
+                // is enabled, so the subclasses' customizations still apply
+                final Buffer remainder = executor == null
+                        ? doHandshakeStep(sslCtx, ctx,
+                                (Buffer) ctx.getMessage(), null)
+                        : doHandshakeStep(sslCtx, ctx,
+                                (Buffer) ctx.getMessage(), null, true);
+                buffer = makeInputRemainder(sslCtx, ctx, remainder);
+                
+                if (executor != null && sslEngine.getHandshakeStatus()
+                        == HandshakeStatus.NEED_TASK) {
+                    return offloadDelegatedTasks(ctx, sslEngine, buffer,
+                            executor);
+                }
             }
         
             final boolean hasRemaining = buffer != null && buffer.hasRemaining();
@@ -354,11 +562,16 @@ public class SSLBaseFilter extends BaseFilter {
         final Connection connection = ctx.getConnection();
         
         synchronized(connection) {
-            final Buffer output =
-                    wrapAll(ctx, obtainSslConnectionContext(connection));
-
+            final SSLConnectionContext sslCtx =
+                    obtainSslConnectionContext(connection);
             final FilterChainContext.TransportContext transportContext =
                     ctx.getTransportContext();
+            
+            if (isWriteCoalescing) {
+                return coalesceWrite(ctx, sslCtx, transportContext);
+            }
+            
+            final Buffer output = wrapAll(ctx, sslCtx);
 
             ctx.write(null, output,
                     transportContext.getCompletionHandler(),
@@ -370,6 +583,27 @@ public class SSLBaseFilter extends BaseFilter {
         }
     }
 
+    @Override
+    public NextAction handleClose(final FilterChainContext ctx)
+            throws IOException {
+        final Connection connection = ctx.getConnection();
+        final SSLConnectionContext sslCtx = getSslConnectionContext(connection);
+        
+        if (sslCtx != null) {
+            synchronized (connection) {
+                final SSLWriteCoalescer coalescer = sslCtx.peekWriteCoalescer();
+                if (coalescer != null && coalescer.hasPending()) {
+                    // the connection has been closed without the graceful
+                    // close, so the held messages can't reach the peer, but
+                    // their CompletionHandlers still have to be notified
+                    flushCoalescedWrites(connection, coalescer);
+                }
+            }
+        }
+        
+        return ctx.getInvokeAction();
+    }
+    
     // ------------------------------------------------------- Protected Methods
 
     protected NextAction unwrapAll(final FilterChainContext ctx,
@@ -431,11 +665,12 @@ public class SSLBaseFilter extends BaseFilter {
 
             if (output.hasRemaining() || isClosed) {
                 ctx.setMessage(output);
-                return ctx.getInvokeAction(makeInputRemainder(sslCtx, ctx, input));
+                return ctx.getInvokeAction(
+                        makeInputRemainder(sslCtx, ctx, input, true));
             }
         }
 
-        return ctx.getStopAction(makeInputRemainder(sslCtx, ctx, input));
+        return ctx.getStopAction(makeInputRemainder(sslCtx, ctx, input, true));
     }
 
     protected Buffer wrapAll(final FilterChainContext ctx,
@@ -443,13 +678,88 @@ public class SSLBaseFilter extends BaseFilter {
         
         final Buffer input = ctx.getMessage();
         
-        final Buffer output = sslCtx.wrapAll(input, OUTPUT_BUFFER_ALLOCATOR);
+        final Buffer output = sslCtx.wrapAll(input, OUTPUT_BUFFER_ALLOCATOR,
+                isDynamicRecordSizing);
 
         input.tryDispose();
 
         return output;
     }
 
+    /**
+     * Has to be called in synchronized(connection) {...} block.
+     */
+    @SuppressWarnings("unchecked")
+    private NextAction coalesceWrite(final FilterChainContext ctx,
+            final SSLConnectionContext sslCtx,
+            final FilterChainContext.TransportContext transportContext)
+            throws SSLException {
+        
+        final Connection connection = ctx.getConnection();
+        final SSLWriteCoalescer coalescer = sslCtx.getWriteCoalescer();
+        final Buffer message = ctx.getMessage();
+        
+        if (!transportContext.isBlocking()
+                && transportContext.getPushBackHandler() == null) {
+            final MessageCloner<Buffer> cloner = transportContext.getMessageCloner();
+            final Buffer heldMessage = cloner != null
+                    ? cloner.clone(connection, message)
+                    : message;
+            
+            if (coalescer.offer(heldMessage,
+                    transportContext.getCompletionHandler(), this)) {
+                return ctx.getStopAction();
+            } else if (heldMessage != message) {
+                heldMessage.tryDispose();
+            }
+        }
+        
+        coalescer.setFilterChain(ctx.getFilterChain(), ctx.getFilterIdx());
+        ctx.setMessage(coalescer.drain(message));
+        
+        final Buffer output = wrapAll(ctx, sslCtx);
+        
+        ctx.write(null, output,
+                coalescer.trackWrite(transportContext.getCompletionHandler(), this),
+                transportContext.getPushBackHandler(),
+                COPY_CLONER,
+                transportContext.isBlocking());
+
+        return ctx.getStopAction();
+    }
+
+    /**
+     * Wraps and writes the messages held by the {@link SSLWriteCoalescer}.
+     * Has to be called in synchronized(connection) {...} block.
+     */
+    @SuppressWarnings("unchecked")
+    void flushCoalescedWrites(final Connection connection,
+            final SSLWriteCoalescer coalescer) {
+        
+        final FilterChain filterChain = coalescer.getFilterChain();
+        final int filterIdx = coalescer.getFilterIdx();
+        final FilterChainContext ctx = filterChain.obtainFilterChainContext(
+                connection, filterIdx, filterIdx + 1, filterIdx);
+        
+        try {
+            ctx.setMessage(coalescer.drain(null));
+            final Buffer output = wrapAll(ctx,
+                    obtainSslConnectionContext(connection));
+            
+            ctx.write(null, output, coalescer.trackWrite(null, this),
+                    null, COPY_CLONER, false);
+        } catch (Exception e) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Error flushing coalesced writes", e);
+            }
+            
+            coalescer.trackWrite(null, this).failed(e);
+            connection.closeWithReason(new IOException(e));
+        } finally {
+            ctx.completeAndRecycle();
+        }
+    }
+
 //    protected Buffer doHandshakeStep1(final SSLConnectionContext sslCtx,
 //                                     final FilterChainContext ctx,
 //                                     Buffer inputBuffer)
@@ -589,9 +899,41 @@ public class SSLBaseFilter extends BaseFilter {
             
     protected Buffer doHandshakeStep(final SSLConnectionContext sslCtx,
                                      final FilterChainContext ctx,
-                                     Buffer inputBuffer,
+                                     final Buffer inputBuffer,
                                      final Buffer tmpAppBuffer0)
             throws IOException {
+        return doHandshakeStep(sslCtx, ctx, inputBuffer, tmpAppBuffer0, false);
+    }
+    
+    /**
+     * Performs the handshake step.
+     * 
+     * If the handshake {@link Executor} is set, the non-blocking handshake
+     * calls this method directly, bypassing the other
+     * <tt>doHandshakeStep</tt> overloads, so the subclasses, which customize
+     * the handshake step, have to override this method as well.
+     * 
+     * @param sslCtx the {@link SSLConnectionContext}
+     * @param ctx the {@link FilterChainContext}
+     * @param inputBuffer the network input data
+     * @param tmpAppBuffer0 the temporary application {@link Buffer}, or
+     *        <tt>null</tt> if it has to be allocated on demand
+     * @param stopOnTask if <tt>true</tt>, the step is interrupted once
+     *        {@link SSLEngine} requires delegated tasks to be executed
+     *        ({@link HandshakeStatus#NEED_TASK}), so the caller could offload
+     *        the tasks to another thread
+     * @return the remaining input data
+     * @throws IOException
+     * 
+     * @see #setHandshakeExecutor(java.util.concurrent.Executor)
+     * @since 2.3.23
+     */
+    protected Buffer doHandshakeStep(final SSLConnectionContext sslCtx,
+                                     final FilterChainContext ctx,
+                                     Buffer inputBuffer,
+                                     final Buffer tmpAppBuffer0,
+                                     final boolean stopOnTask)
+            throws IOException {
 
         final SSLEngine sslEngine = sslCtx.getSslEngine();
         final Connection connection = ctx.getConnection();
@@ -670,6 +1012,11 @@ public class SSLBaseFilter extends BaseFilter {
                         if (isLoggingFinest) {
                             LOGGER.log(Level.FINEST, "NEED_TASK Engine: {0}", sslEngine);
                         }
+                        
+                        if (stopOnTask) {
+                            break _exitWhile;
+                        }
+                        
                         executeDelegatedTask(sslEngine);
                         handshakeStatus = sslEngine.getHandshakeStatus();
                         break;
@@ -712,6 +1059,54 @@ public class SSLBaseFilter extends BaseFilter {
         return inputBuffer;
     }
     
+    /**
+     * Offloads the {@link SSLEngine} delegated tasks to the handshake
+     * {@link Executor}. The {@link FilterChainContext} is suspended and
+     * resumed, once the tasks are completed, so the handshake processing
+     * will be continued by this filter.
+     */
+    private NextAction offloadDelegatedTasks(final FilterChainContext ctx,
+            final SSLEngine sslEngine, final Buffer remainder,
+            final Executor executor) {
+        
+        ctx.setMessage(remainder != null ? remainder : Buffers.EMPTY_BUFFER);
+        
+        final NextAction suspendAction = ctx.getSuspendAction();
+        ctx.suspend();
+
+        final long queuedNanos = System.nanoTime();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                handshakeQueueSize.decrementAndGet();
+                final long startNanos = System.nanoTime();
+                handshakeQueueLatency.recordMicros(
+                        (startNanos - queuedNanos) / 1000);
+                try {
+                    executeDelegatedTask(sslEngine);
+                } catch (Throwable t) {
+                    // the SSLEngine will report the error on the next wrap/unwrap
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE, "Delegated task error", t);
+                    }
+                } finally {
+                    handshakeTaskLatency.recordSince(startNanos);
+                }
+                
+                ctx.resume();
+            }
+        };
+        
+        handshakeQueueSize.incrementAndGet();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+        
+        return suspendAction;
+    }
+    
     /**
      * Performs an SSL renegotiation.
      *
@@ -1060,12 +1455,13 @@ public class SSLBaseFilter extends BaseFilter {
             
             if (sslCtx.getSslEngine() == null) {
                 final SSLEngine sslEngine = serverSSLEngineConfigurator.createSSLEngine();
-                sslEngine.beginHandshake();
                 sslCtx.configure(sslEngine);
                 notifyHandshakeStart(connection);
+                sslEngine.beginHandshake();
             }
             
-            ctx.setMessage(allowDispose(allocateInputBuffer(sslCtx)));
+            ctx.setMessage(allowDispose(
+                    allocateInputBuffer(sslCtx, isDirectInputBuffers)));
             
             return wrappedFilter.handleRead(ctx);
         }
@@ -50,10 +50,12 @@ import javax.net.ssl.SSLSession;
 import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.ThreadCache;
 import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.ByteBufferArray;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.memory.MemoryUtils;
 
 import static org.glassfish.grizzly.ssl.SSLUtils.*;
 
@@ -80,6 +82,32 @@ public final class SSLConnectionContext {
         BUFFER_SIZE_COEF = coeff;
     }
     
+    /**
+     * The plain text size of the TLS records produced by dynamic record sizing
+     * in the "slow start" phase, so each record fits single TCP segment and
+     * could be decrypted by the peer as soon as it's received.
+     */
+    static final int SMALL_RECORD_SIZE = 1369;
+    
+    /**
+     * The number of plain text bytes to be sent using small TLS records,
+     * before switching to the max record size.
+     */
+    static final long SMALL_RECORDS_THRESHOLD = 1024 * 1024;
+    
+    /**
+     * The idle time, after which dynamic record sizing starts over using
+     * small TLS records.
+     */
+    static final long DYNAMIC_RECORD_SIZING_IDLE_MILLIS = 1000;
+    
+    private static final ThreadCache.CachedTypeIndex<ByteBuffer> HEAP_RECORD_BUFFER_IDX =
+            ThreadCache.obtainIndex(SSLConnectionContext.class.getName() + ".heap-record-buffer",
+            ByteBuffer.class, 1);
+    private static final ThreadCache.CachedTypeIndex<ByteBuffer> DIRECT_RECORD_BUFFER_IDX =
+            ThreadCache.obtainIndex(SSLConnectionContext.class.getName() + ".direct-record-buffer",
+            ByteBuffer.class, 1);
+    
     final ByteBufferArray outputByteBufferArray =
             ByteBufferArray.create();
     
@@ -98,6 +126,13 @@ public final class SSLConnectionContext {
     
     private final Connection connection;
     private FilterChain newConnectionFilterChain;
+    
+    private long smallRecordsBytes;
+    private long lastWrapMillis;
+    
+    private SSLWriteCoalescer writeCoalescer;
+    
+    private ByteBuffer recordBuffer;
 
     public SSLConnectionContext(Connection connection) {
         this.connection = connection;
@@ -147,6 +182,22 @@ public final class SSLConnectionContext {
         this.newConnectionFilterChain = newConnectionFilterChain;
     }
 
+    SSLWriteCoalescer getWriteCoalescer() {
+        if (writeCoalescer == null) {
+            writeCoalescer = new SSLWriteCoalescer(connection);
+        }
+        
+        return writeCoalescer;
+    }
+
+    /**
+     * @return the {@link SSLWriteCoalescer}, if it's been created, otherwise
+     *         <tt>null</tt>
+     */
+    SSLWriteCoalescer peekWriteCoalescer() {
+        return writeCoalescer;
+    }
+    
     Buffer resetLastOutputBuffer() {
         final Buffer tmp = lastOutputBuffer;
         lastOutputBuffer = null;
@@ -163,6 +214,14 @@ public final class SSLConnectionContext {
         return tmp;
     }
 
+    /**
+     * @return <tt>true</tt>, if an incomplete TLS record is kept in the direct
+     *         input buffer, waiting for the rest of the record to be read.
+     */
+    boolean hasInputRemainder() {
+        return inputBuffer.hasRemainder();
+    }
+
     InputBufferWrapper useInputBuffer() {
         lastInputBuffer = inputBuffer;
         return lastInputBuffer;
@@ -181,10 +240,14 @@ public final class SSLConnectionContext {
         final int inPos = input.position();
         final int outPos = output.position();
         
-        final ByteBuffer inputByteBuffer = input.toByteBuffer();
+        final boolean isComposite = input.isComposite();
         final SSLEngineResult sslEngineResult;
         
         try {
+            final ByteBuffer inputByteBuffer = !isComposite
+                    ? input.toByteBuffer()
+                    : toRecordByteBuffer(input);
+            
             if (!output.isComposite()) {
                 sslEngineResult = sslEngineUnwrap(sslEngine, inputByteBuffer,
                         output.toByteBuffer());
@@ -204,6 +267,10 @@ public final class SSLConnectionContext {
             }
         } catch (SSLException e) {
             return new SslResult(output, e);
+        } finally {
+            if (isComposite) {
+                releaseRecordBuffer();
+            }
         }
         
         final Status status = sslEngineResult.getStatus();
@@ -228,8 +295,101 @@ public final class SSLConnectionContext {
         return new SslResult(output, sslEngineResult);
     }
 
+    /**
+     * Returns the composite input's current TLS record as a single
+     * {@link ByteBuffer}, which could be passed to {@link SSLEngine#unwrap}.
+     * The record is sliced without copying, if it fits one of the composite's
+     * buffers, otherwise only the record (not the entire composite) is copied
+     * into the thread-local record buffer, which is direct if the input has
+     * been read into the direct input buffer.
+     * The record buffer has to be released using {@link #releaseRecordBuffer()}.
+     */
+    private ByteBuffer toRecordByteBuffer(final Buffer input)
+            throws SSLException {
+        final int pos = input.position();
+        final int len = getSSLPacketSize(input);
+        final int lim = len > 0 && len <= input.remaining()
+                ? pos + len
+                : input.limit();
+        
+        final ByteBufferArray bba =
+                input.toByteBufferArray(inputByteBufferArray, pos, lim);
+        try {
+            final ByteBuffer[] array = bba.getArray();
+            final int size = bba.size();
+            
+            if (size == 1) {
+                // the record is not fragmented
+                return array[0].duplicate();
+            }
+            
+            final int recordSize = lim - pos;
+            final boolean isDirect = lastInputBuffer != null;
+            final ThreadCache.CachedTypeIndex<ByteBuffer> idx = isDirect
+                    ? DIRECT_RECORD_BUFFER_IDX
+                    : HEAP_RECORD_BUFFER_IDX;
+            
+            ByteBuffer buffer = ThreadCache.takeFromCache(idx);
+            if (buffer == null || buffer.capacity() < recordSize) {
+                final int capacity = Math.max(recordSize, netBufferSize);
+                buffer = isDirect
+                        ? ByteBuffer.allocateDirect(capacity)
+                        : ByteBuffer.allocate(capacity);
+            } else {
+                buffer.clear();
+            }
+            
+            for (int i = 0; i < size; i++) {
+                buffer.put(array[i]);
+            }
+            
+            buffer.flip();
+            recordBuffer = buffer;
+            MemoryUtils.notifyBufferCopied(connection.getMemoryManager(),
+                    recordSize);
+            
+            return buffer;
+        } finally {
+            bba.restore();
+            bba.reset();
+        }
+    }
+    
+    /**
+     * Returns the record buffer, used by the last
+     * {@link #toRecordByteBuffer(org.glassfish.grizzly.Buffer)} call, to the
+     * thread-local cache.
+     */
+    private void releaseRecordBuffer() {
+        final ByteBuffer buffer = recordBuffer;
+        if (buffer != null) {
+            recordBuffer = null;
+            ThreadCache.putToCache(buffer.isDirect()
+                    ? DIRECT_RECORD_BUFFER_IDX
+                    : HEAP_RECORD_BUFFER_IDX, buffer);
+        }
+    }
+    
     Buffer wrapAll(final Buffer input,
             final Allocator allocator) throws SSLException {
+        return wrapAll(input, allocator, false);
+    }
+    
+    /**
+     * Wraps the entire input.
+     * 
+     * @param input the plain text input
+     * @param allocator the output {@link Buffer} allocator
+     * @param dynamicRecordSizing if <tt>true</tt>, the first
+     *        {@link #SMALL_RECORDS_THRESHOLD} bytes of the connection (or the
+     *        first bytes after idle period) are wrapped into small TLS records
+     *        to reduce the time to first byte
+     * @return the TLS output
+     * @throws SSLException 
+     */
+    Buffer wrapAll(final Buffer input,
+            final Allocator allocator,
+            final boolean dynamicRecordSizing) throws SSLException {
         final MemoryManager memoryManager = connection.getMemoryManager();
         
         final ByteBufferArray bba =
@@ -237,10 +397,13 @@ public final class SSLConnectionContext {
         final ByteBuffer[] inputArray = bba.getArray();
         final int inputArraySize = bba.size();
         
+        boolean isSmallRecords = dynamicRecordSizing && startSmallRecords();
+        
         Buffer output = null;
         SslResult result = null;
         try {
-            result = wrap(input, inputArray, inputArraySize, null, allocator);
+            result = wrap(input, inputArray, inputArraySize, null, allocator,
+                    isSmallRecords);
             
             if (result.isError()) {
                 throw result.getError();
@@ -249,10 +412,14 @@ public final class SSLConnectionContext {
             output = result.getOutput();
             output.trim();
             
+            if (isSmallRecords) {
+                isSmallRecords = countSmallRecord(result);
+            }
+            
             if (input.hasRemaining()) {
                 do {
                     result = wrap(input, inputArray, inputArraySize,
-                            null, allocator);
+                            null, allocator, isSmallRecords);
                     
                     if (result.isError()) {
                         throw result.getError();
@@ -261,6 +428,10 @@ public final class SSLConnectionContext {
                     final Buffer newOutput = result.getOutput();
                     newOutput.trim();
                     
+                    if (isSmallRecords) {
+                        isSmallRecords = countSmallRecord(result);
+                    }
+                    
                     output = Buffers.appendBuffers(memoryManager, output,
                             newOutput);
                 } while (input.hasRemaining());
@@ -280,10 +451,32 @@ public final class SSLConnectionContext {
         }
     }
     
+    /**
+     * @return <tt>true</tt>, if the next TLS records have to be small.
+     */
+    private boolean startSmallRecords() {
+        final long now = System.currentTimeMillis();
+        if (now - lastWrapMillis > DYNAMIC_RECORD_SIZING_IDLE_MILLIS) {
+            smallRecordsBytes = 0;
+        }
+        
+        lastWrapMillis = now;
+        return smallRecordsBytes < SMALL_RECORDS_THRESHOLD;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the next TLS records still have to be small.
+     */
+    private boolean countSmallRecord(final SslResult result) {
+        smallRecordsBytes += result.getSslEngineResult().bytesConsumed();
+        return smallRecordsBytes < SMALL_RECORDS_THRESHOLD;
+    }
+    
     private SslResult wrap(final Buffer input, final ByteBuffer[] inputArray,
             final int inputArraySize,
             Buffer output,
-            final Allocator allocator) {
+            final Allocator allocator,
+            final boolean isSmallRecord) {
             
         output = ensureBufferSize(output, netBufferSize, allocator);
 
@@ -299,9 +492,12 @@ public final class SSLConnectionContext {
         final SSLEngineResult sslEngineResult;
         
         try {
-            sslEngineResult = sslEngineWrap(sslEngine,
-                    inputArray, 0, inputArraySize,
-                    outputByteBuffer);
+            sslEngineResult = isSmallRecord
+                    ? sslEngineWrapLimited(sslEngine, inputArray, inputArraySize,
+                            SMALL_RECORD_SIZE, outputByteBuffer)
+                    : sslEngineWrap(sslEngine,
+                            inputArray, 0, inputArraySize,
+                            outputByteBuffer);
         } catch (SSLException e) {
             return new SslResult(output, e);
         }
@@ -317,7 +513,8 @@ public final class SSLConnectionContext {
         if (allocator != null && isOverflow) {
             updateBufferSizes();
             output = ensureBufferSize(output, netBufferSize, allocator);
-            return wrap(input, inputArray, inputArraySize, output, null);
+            return wrap(input, inputArray, inputArraySize, output, null,
+                    isSmallRecord);
         } else if (isOverflow || status == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
             return new SslResult(output, new SSLException("SSL wrap error: " + status));
         }
@@ -50,6 +50,7 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.Provider;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.Properties;
@@ -57,6 +58,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManagerFactory;
 import org.glassfish.grizzly.Grizzly;
 
@@ -120,6 +122,10 @@ public class SSLContextConfigurator {
     private String keyManagerFactoryAlgorithm;
 
     private String securityProtocol = "TLS";
+    private Provider securityProvider;
+
+    private int sessionCacheSize = -1;
+    private int sessionTimeout = -1;
 
     /**
      * Default constructor. Reads configuration properties from
@@ -319,6 +325,78 @@ public class SSLContextConfigurator {
         this.securityProtocol = securityProtocol;
     }
 
+    /**
+     * @return the security {@link Provider} the {@link SSLContext} is created
+     *         with, or <tt>null</tt> if the most preferred provider is used.
+     * 
+     * @since 2.3.23
+     */
+    public Provider getSecurityProvider() {
+        return securityProvider;
+    }
+
+    /**
+     * Sets the security {@link Provider} the {@link SSLContext} has to be
+     * created with, for example the provider of a native (OpenSSL or
+     * BoringSSL based) TLS implementation. If <tt>null</tt> (default),
+     * the most preferred provider, which supports the security protocol,
+     * is used.
+     *
+     * @param securityProvider the security {@link Provider}.
+     * 
+     * @since 2.3.23
+     */
+    public void setSecurityProvider(Provider securityProvider) {
+        this.securityProvider = securityProvider;
+    }
+
+    /**
+     * @return the max number of TLS sessions cached by the created
+     *         {@link SSLContext}, or <tt>-1</tt> if the provider default is used.
+     * 
+     * @since 2.3.23
+     */
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    /**
+     * Sets the max number of TLS sessions, which will be cached by the created
+     * {@link SSLContext} (both server and client side) and could be resumed
+     * using an abbreviated handshake. <tt>0</tt> means no limit,
+     * <tt>-1</tt> (default) keeps the provider default.
+     *
+     * @param sessionCacheSize the session cache size.
+     * 
+     * @since 2.3.23
+     */
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    /**
+     * @return the TLS session timeout (in seconds), or <tt>-1</tt> if the
+     *         provider default is used.
+     * 
+     * @since 2.3.23
+     */
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Sets the time (in seconds) a cached TLS session could be resumed for.
+     * <tt>0</tt> means no limit, <tt>-1</tt> (default) keeps the
+     * provider default.
+     *
+     * @param sessionTimeout the session timeout in seconds.
+     * 
+     * @since 2.3.23
+     */
+    public void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
     /**
      * Validates {@link SSLContextConfigurator} configuration.
      *
@@ -625,11 +703,15 @@ public class SSLContextConfigurator {
             if (securityProtocol != null) {
                 secProtocol = securityProtocol;
             }
-            sslContext = SSLContext.getInstance(secProtocol);
+            sslContext = securityProvider != null
+                    ? SSLContext.getInstance(secProtocol, securityProvider)
+                    : SSLContext.getInstance(secProtocol);
             sslContext.init(keyManagerFactory != null ? keyManagerFactory
                     .getKeyManagers() : null,
                     trustManagerFactory != null ? trustManagerFactory
                             .getTrustManagers() : null, null);
+            configureSessionContext(sslContext.getServerSessionContext());
+            configureSessionContext(sslContext.getClientSessionContext());
         } catch (KeyManagementException e) {
             LOGGER.log(Level.FINE, "Key management error.", e);
         } catch (NoSuchAlgorithmException e) {
@@ -639,6 +721,19 @@ public class SSLContextConfigurator {
         return sslContext;
     }
 
+    private void configureSessionContext(final SSLSessionContext sessionContext) {
+        if (sessionContext == null) {
+            return;
+        }
+        
+        if (sessionCacheSize >= 0) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+        }
+        if (sessionTimeout >= 0) {
+            sessionContext.setSessionTimeout(sessionTimeout);
+        }
+    }
+    
     public void retrieve(Properties props) {
         trustStoreProvider = props.getProperty(TRUST_STORE_PROVIDER);
         keyStoreProvider = props.getProperty(KEY_STORE_PROVIDER);
@@ -324,10 +324,12 @@ public class SSLFilter extends SSLBaseFilter {
     protected Buffer doHandshakeStep(final SSLConnectionContext sslCtx,
                                      final FilterChainContext ctx,
                                      final Buffer inputBuffer,
-                                     final Buffer tmpAppBuffer0)
+                                     final Buffer tmpAppBuffer0,
+                                     final boolean stopOnTask)
     throws IOException {
         try {
-            return super.doHandshakeStep(sslCtx, ctx, inputBuffer, tmpAppBuffer0);
+            return super.doHandshakeStep(sslCtx, ctx, inputBuffer,
+                    tmpAppBuffer0, stopOnTask);
         } catch (IOException ioe) {
             SSLHandshakeContext context =
                     handshakeContextAttr.get(ctx.getConnection());
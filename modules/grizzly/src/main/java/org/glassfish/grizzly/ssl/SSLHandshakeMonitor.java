@@ -0,0 +1,193 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.monitoring.LatencyHistogram;
+
+/**
+ * {@link SSLBaseFilter.HandshakeListener}, which collects TLS handshake
+ * statistics: the number of full, resumed (abbreviated) and failed handshakes
+ * and their latency distributions.
+ * 
+ * A handshake is considered resumed if the negotiated {@link SSLSession}
+ * had been created before the handshake started, which is the case for
+ * both session-id and session-ticket based resumption.
+ * A low resumed/full ratio on the server side usually means the
+ * session cache is too small or the session timeout is too short
+ * (see {@link SSLContextConfigurator#setSessionCacheSize(int)} and
+ * {@link SSLContextConfigurator#setSessionTimeout(int)}).
+ * 
+ * Usage:
+ * <pre>
+ * SSLHandshakeMonitor monitor = new SSLHandshakeMonitor();
+ * sslFilter.addHandshakeListener(monitor);
+ * ...
+ * monitor.getResumedCount();
+ * monitor.getFullHandshakeLatency().snapshot().getValueAtPercentile(99);
+ * </pre>
+ * 
+ * @since 2.3.23
+ */
+public class SSLHandshakeMonitor implements SSLBaseFilter.HandshakeListener {
+    private static final Attribute<HandshakeStart> HANDSHAKE_START_ATTR =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            SSLHandshakeMonitor.class + ".handshake-start");
+    
+    private final AtomicLong fullCount = new AtomicLong();
+    private final AtomicLong resumedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    
+    private final LatencyHistogram fullHandshakeLatency =
+            new LatencyHistogram("ssl-full-handshake");
+    private final LatencyHistogram resumedHandshakeLatency =
+            new LatencyHistogram("ssl-resumed-handshake");
+
+    @Override
+    public void onStart(final Connection connection) {
+        HANDSHAKE_START_ATTR.set(connection, new HandshakeStart());
+    }
+
+    @Override
+    public void onComplete(final Connection connection) {
+        final HandshakeStart start = HANDSHAKE_START_ATTR.get(connection);
+        if (start == null) {
+            return;
+        }
+        
+        if (isResumed(connection, start)) {
+            resumedCount.incrementAndGet();
+            resumedHandshakeLatency.recordSince(start.nanos);
+        } else {
+            fullCount.incrementAndGet();
+            fullHandshakeLatency.recordSince(start.nanos);
+        }
+    }
+
+    @Override
+    public void onFailure(final Connection connection, final Throwable t) {
+        failedCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of completed full handshakes.
+     */
+    public long getFullCount() {
+        return fullCount.get();
+    }
+
+    /**
+     * @return the number of completed abbreviated (resumed) handshakes.
+     */
+    public long getResumedCount() {
+        return resumedCount.get();
+    }
+
+    /**
+     * @return the number of failed handshakes.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the ratio of resumed handshakes to all the completed handshakes,
+     *         or <tt>0</tt> if there were no completed handshakes.
+     */
+    public double getResumptionRatio() {
+        final long resumed = resumedCount.get();
+        final long total = resumed + fullCount.get();
+        return total == 0 ? 0 : (double) resumed / total;
+    }
+    
+    /**
+     * @return the full handshake {@link LatencyHistogram}.
+     */
+    public LatencyHistogram getFullHandshakeLatency() {
+        return fullHandshakeLatency;
+    }
+
+    /**
+     * @return the resumed handshake {@link LatencyHistogram}.
+     */
+    public LatencyHistogram getResumedHandshakeLatency() {
+        return resumedHandshakeLatency;
+    }
+
+    /**
+     * Resets the collected statistics.
+     */
+    public void reset() {
+        fullCount.set(0);
+        resumedCount.set(0);
+        failedCount.set(0);
+        fullHandshakeLatency.reset();
+        resumedHandshakeLatency.reset();
+    }
+    
+    @Override
+    public String toString() {
+        return "SSLHandshakeMonitor{" + "full=" + fullCount
+                + ", resumed=" + resumedCount
+                + ", failed=" + failedCount + '}';
+    }
+    
+    private static boolean isResumed(final Connection connection,
+            final HandshakeStart start) {
+        final SSLEngine sslEngine = SSLUtils.getSSLEngine(connection);
+        if (sslEngine == null) {
+            return false;
+        }
+        
+        final SSLSession session = sslEngine.getSession();
+        return session != null && session.getCreationTime() < start.millis;
+    }
+    
+    private static final class HandshakeStart {
+        private final long nanos = System.nanoTime();
+        private final long millis = System.currentTimeMillis();
+    }
+}
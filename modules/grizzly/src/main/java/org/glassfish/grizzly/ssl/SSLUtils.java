@@ -55,6 +55,7 @@ import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.ByteBufferWrapper;
 import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.memory.MemoryUtils;
 
 /**
  * Utility class, which implements the set of useful SSL related operations.
@@ -373,15 +374,33 @@ public final class SSLUtils {
     }
     
     public static Buffer allocateInputBuffer(final SSLConnectionContext sslCtx) {
+        return allocateInputBuffer(sslCtx, false);
+    }
+    
+    /**
+     * Allocates the {@link Buffer} to read the TLS records to.
+     * 
+     * @param sslCtx {@link SSLConnectionContext}
+     * @param isDirect if <tt>true</tt> - the pooled direct {@link Buffer} will
+     *        be allocated, so the {@link SSLEngine} doesn't have to copy the
+     *        network data into its internal direct buffers
+     * @return the input {@link Buffer}
+     * @since 2.3.23
+     */
+    public static Buffer allocateInputBuffer(final SSLConnectionContext sslCtx,
+            final boolean isDirect) {
         
         final SSLEngine sslEngine = sslCtx.getSslEngine();
         if (sslEngine == null) {
             return null;
         }
         
-        // Direct buffer input
-//        final InputBufferWrapper buffer = sslCtx.useInputBuffer();
-//        return buffer.prepare(sslCtx.getNetBufferSize() * 2);
+        if (isDirect || sslCtx.hasInputRemainder()) {
+            // Direct buffer input
+            final InputBufferWrapper buffer = sslCtx.useInputBuffer();
+            return buffer.prepare(sslCtx.getNetBufferSize() * 2);
+        }
+        
         // Heap buffer input
         return allocateOutputBuffer(sslCtx.getNetBufferSize() * 2);
     }
@@ -390,6 +409,29 @@ public final class SSLUtils {
             final SSLConnectionContext sslCtx,
             final FilterChainContext context,
             final Buffer buffer) {
+        return makeInputRemainder(sslCtx, context, buffer, false);
+    }
+    
+    /**
+     * Makes the input remainder, which will be stored by the
+     * {@link org.glassfish.grizzly.filterchain.FilterChain} until more data
+     * comes.
+     * 
+     * @param sslCtx {@link SSLConnectionContext}
+     * @param context {@link FilterChainContext}
+     * @param buffer the input {@link Buffer}
+     * @param keepIncompleteRecord if <tt>true</tt> and the remainder is an
+     *        incomplete TLS record read into the direct input buffer, the
+     *        remainder is kept in the direct input buffer, so the next read
+     *        completes the record in place
+     * @return the remainder, or <tt>null</tt> if there's no remainder or it's
+     *         kept in the direct input buffer
+     */
+    static Buffer makeInputRemainder(
+            final SSLConnectionContext sslCtx,
+            final FilterChainContext context,
+            final Buffer buffer,
+            final boolean keepIncompleteRecord) {
         
         if (buffer == null) {
             return null;
@@ -400,20 +442,46 @@ public final class SSLUtils {
             return null;
         }
         
-        final Buffer inputBuffer = sslCtx.resetLastInputBuffer();
+        final InputBufferWrapper inputBuffer = sslCtx.resetLastInputBuffer();
         if (inputBuffer == null) { // SSLTransportWrapper hasn't been used
             final Buffer remainder = buffer.split(buffer.position());
             buffer.tryDispose();
             return remainder;
-        } else {
-            return move(context.getMemoryManager(), buffer);
+        }
+        
+        if (keepIncompleteRecord && buffer == inputBuffer
+                && !hasCompleteRecord(buffer)) {
+            final int copied = inputBuffer.keepRemainder(
+                    sslCtx.getNetBufferSize());
+            if (copied >= 0) {
+                if (copied > 0) {
+                    MemoryUtils.notifyBufferCopied(context.getMemoryManager(),
+                            copied);
+                }
+                
+                return null;
+            }
+        }
+        
+        return move(context.getMemoryManager(), buffer);
+    }
+    
+    private static boolean hasCompleteRecord(final Buffer buffer) {
+        try {
+            final int len = getSSLPacketSize(buffer);
+            return len != -1 && len <= buffer.remaining();
+        } catch (SSLException e) {
+            // let the SSLEngine report the error
+            return true;
         }
     }
     
     static Buffer copy(final MemoryManager memoryManager,
             final Buffer buffer) {
-        final Buffer tmpBuf = memoryManager.allocate(buffer.remaining());
+        final int size = buffer.remaining();
+        final Buffer tmpBuf = memoryManager.allocate(size);
         tmpBuf.put(buffer);
+        MemoryUtils.notifyBufferCopied(memoryManager, size);
 
         return tmpBuf.flip();
 
@@ -455,6 +523,48 @@ public final class SSLUtils {
                 : engine.wrap(in, inOffs, inLen, out);
     }
 
+    /**
+     * Wraps at most <tt>maxInputSize</tt> bytes of the input array into a
+     * single TLS record.
+     */
+    static SSLEngineResult sslEngineWrapLimited(final SSLEngine engine,
+            final ByteBuffer[] in, final int inLen, final int maxInputSize,
+            final ByteBuffer out) throws SSLException {
+        int from = 0;
+        while (from < inLen && !in[from].hasRemaining()) {
+            from++;
+        }
+        
+        int to = from;
+        int remaining = maxInputSize;
+        ByteBuffer cutBuffer = null;
+        int cutBufferLimit = 0;
+        
+        while (to < inLen) {
+            final ByteBuffer byteBuffer = in[to++];
+            final int bufferRemaining = byteBuffer.remaining();
+            if (bufferRemaining >= remaining) {
+                if (bufferRemaining > remaining) {
+                    cutBuffer = byteBuffer;
+                    cutBufferLimit = byteBuffer.limit();
+                    byteBuffer.limit(byteBuffer.position() + remaining);
+                }
+                
+                break;
+            }
+            
+            remaining -= bufferRemaining;
+        }
+        
+        try {
+            return sslEngineWrap(engine, in, from, to - from, out);
+        } finally {
+            if (cutBuffer != null) {
+                cutBuffer.limit(cutBufferLimit);
+            }
+        }
+    }
+
     static SSLEngineResult sslEngineUnwrap(final SSLEngine engine,
             final ByteBuffer in, final ByteBuffer out) throws SSLException {
         return engine.unwrap(in, out);
@@ -0,0 +1,305 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.filterchain.FilterChain;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.nio.NIOConnection;
+
+/**
+ * Per-connection TLS write coalescing state.
+ * 
+ * Small plain text messages, which are written while the connection's
+ * previous TLS output is still pending in the transport write queue, are
+ * held and merged, so they could be wrapped into full TLS records
+ * (up to {@link #MAX_RECORD_SIZE} bytes) once the pending output is written.
+ * Holding the messages doesn't add latency, because the socket isn't able
+ * to accept more data at that moment anyway.
+ * The held messages are flushed, when the connection's graceful close is
+ * scheduled, so they're written before the connection is closed, and no
+ * more messages are held after that.
+ * 
+ * All the methods have to be called in <tt>synchronized(connection)</tt>
+ * block.
+ * 
+ * @since 2.3.23
+ */
+final class SSLWriteCoalescer {
+    /**
+     * The max TLS record plain text size.
+     */
+    static final int MAX_RECORD_SIZE = 16384;
+    
+    private final Connection connection;
+    
+    private int writesInFlight;
+    
+    private Buffer pending;
+    private final List<CompletionHandler<WriteResult>> pendingHandlers =
+            new ArrayList<CompletionHandler<WriteResult>>(4);
+    
+    private FilterChain filterChain;
+    private int filterIdx;
+    
+    private boolean isCloseTaskAdded;
+    private boolean isClosing;
+
+    SSLWriteCoalescer(final Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Holds the message, if there is TLS output in-flight and the message
+     * fits the current TLS record.
+     * 
+     * @return <tt>true</tt>, if the message has been held, or <tt>false</tt>
+     *         if the message has to be written now.
+     */
+    boolean offer(final Buffer message,
+            final CompletionHandler<WriteResult> completionHandler,
+            final SSLBaseFilter filter) {
+        if (writesInFlight == 0 || !watchClose(filter)) {
+            return false;
+        }
+        
+        final int pendingSize = pending != null ? pending.remaining() : 0;
+        if (pendingSize + message.remaining() > MAX_RECORD_SIZE) {
+            return false;
+        }
+
+        pending = Buffers.appendBuffers(connection.getMemoryManager(),
+                pending, message);
+        if (completionHandler != null) {
+            pendingHandlers.add(completionHandler);
+        }
+        
+        return true;
+    }
+
+    /**
+     * Makes sure the held messages will be flushed before the connection
+     * close marker is queued.
+     * 
+     * @return <tt>false</tt>, if the messages must not be held, because
+     *         the connection is being closed, or its close can't be tracked.
+     */
+    private boolean watchClose(final SSLBaseFilter filter) {
+        if (isClosing) {
+            return false;
+        }
+        
+        if (!isCloseTaskAdded) {
+            if (!(connection instanceof NIOConnection)) {
+                return false;
+            }
+            
+            isCloseTaskAdded = true;
+            
+            if (!((NIOConnection) connection).addCloseScheduledTask(
+                    new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (connection) {
+                        isClosing = true;
+                        if (pending != null) {
+                            filter.flushCoalescedWrites(connection,
+                                    SSLWriteCoalescer.this);
+                        }
+                    }
+                }
+            })) {
+                isClosing = true;
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Remembers the {@link FilterChain} and SSL {@link org.glassfish.grizzly.filterchain.Filter}
+     * index, which will be used to write the held messages.
+     */
+    void setFilterChain(final FilterChain filterChain, final int filterIdx) {
+        this.filterChain = filterChain;
+        this.filterIdx = filterIdx;
+    }
+
+    FilterChain getFilterChain() {
+        return filterChain;
+    }
+
+    int getFilterIdx() {
+        return filterIdx;
+    }
+    
+    boolean hasPending() {
+        return pending != null;
+    }
+
+    /**
+     * @return the held messages merged with the passed one, or the passed
+     *         message if there are no held messages.
+     */
+    Buffer drain(final Buffer message) {
+        final Buffer result = pending == null
+                ? message
+                : message == null
+                ? pending
+                : Buffers.appendBuffers(connection.getMemoryManager(),
+                        pending, message);
+        pending = null;
+        return result;
+    }
+
+    /**
+     * Creates the {@link CompletionHandler} for the TLS output write,
+     * which notifies the held messages' handlers and the passed one and
+     * tracks the in-flight writes.
+     */
+    CompletionHandler<WriteResult> trackWrite(
+            final CompletionHandler<WriteResult> completionHandler,
+            final SSLBaseFilter filter) {
+        
+        final List<CompletionHandler<WriteResult>> handlers;
+        if (pendingHandlers.isEmpty()) {
+            handlers = completionHandler != null
+                    ? Collections.singletonList(completionHandler)
+                    : null;
+        } else {
+            if (completionHandler != null) {
+                pendingHandlers.add(completionHandler);
+            }
+            handlers = new ArrayList<CompletionHandler<WriteResult>>(
+                    pendingHandlers);
+            pendingHandlers.clear();
+        }
+        
+        writesInFlight++;
+        return new TrackingCompletionHandler(handlers, filter);
+    }
+    
+    /**
+     * @return <tt>true</tt>, if there are no more in-flight writes and the
+     *         held messages have to be flushed.
+     */
+    private boolean onWriteDone() {
+        writesInFlight--;
+        return writesInFlight == 0 && pending != null;
+    }
+
+    private final class TrackingCompletionHandler
+            implements CompletionHandler<WriteResult> {
+        private final List<CompletionHandler<WriteResult>> handlers;
+        private final SSLBaseFilter filter;
+
+        private TrackingCompletionHandler(
+                final List<CompletionHandler<WriteResult>> handlers,
+                final SSLBaseFilter filter) {
+            this.handlers = handlers;
+            this.filter = filter;
+        }
+
+        @Override
+        public void cancelled() {
+            try {
+                if (handlers != null) {
+                    for (CompletionHandler<WriteResult> handler : handlers) {
+                        handler.cancelled();
+                    }
+                }
+            } finally {
+                done();
+            }
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            try {
+                if (handlers != null) {
+                    for (CompletionHandler<WriteResult> handler : handlers) {
+                        handler.failed(throwable);
+                    }
+                }
+            } finally {
+                done();
+            }
+        }
+
+        @Override
+        public void completed(final WriteResult result) {
+            try {
+                if (handlers != null) {
+                    for (CompletionHandler<WriteResult> handler : handlers) {
+                        handler.completed(result);
+                    }
+                }
+            } finally {
+                done();
+            }
+        }
+
+        @Override
+        public void updated(final WriteResult result) {
+            if (handlers != null) {
+                for (CompletionHandler<WriteResult> handler : handlers) {
+                    handler.updated(result);
+                }
+            }
+        }
+        
+        private void done() {
+            synchronized (connection) {
+                if (onWriteDone()) {
+                    filter.flushCoalescedWrites(connection,
+                            SSLWriteCoalescer.this);
+                }
+            }
+        }
+    }
+}
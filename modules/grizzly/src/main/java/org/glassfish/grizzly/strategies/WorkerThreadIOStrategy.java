@@ -46,6 +46,7 @@ import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.IOEvent;
 import org.glassfish.grizzly.IOEventLifeCycleListener;
 import org.glassfish.grizzly.Processor;
+import org.glassfish.grizzly.monitoring.LatencyRecorder;
 import java.util.logging.Logger;
 
 /**
@@ -97,8 +98,12 @@ public final class WorkerThreadIOStrategy extends AbstractIOStrategy {
 
         final Executor threadPool = getThreadPoolFor(connection, ioEvent);
         if (threadPool != null) {
-            threadPool.execute(
-                    new WorkerThreadRunnable(connection, ioEvent, listener));
+            final LatencyRecorder latencyRecorder =
+                    LatencyRecorder.getIfEnabled(connection);
+            threadPool.execute(latencyRecorder == null
+                    ? new WorkerThreadRunnable(connection, ioEvent, listener)
+                    : new TimedWorkerThreadRunnable(connection, ioEvent,
+                            listener, latencyRecorder));
         } else {
             run0(connection, ioEvent, listener);
         }
@@ -137,5 +142,31 @@ public final class WorkerThreadIOStrategy extends AbstractIOStrategy {
             run0(connection, ioEvent, lifeCycleListener);
         }        
     }
+    
+    private static final class TimedWorkerThreadRunnable implements Runnable {
+        final Connection connection;
+        final IOEvent ioEvent;
+        final IOEventLifeCycleListener lifeCycleListener;
+        final LatencyRecorder latencyRecorder;
+        final long submitTimeNanos;
+        
+        private TimedWorkerThreadRunnable(final Connection connection,
+                final IOEvent ioEvent,
+                final IOEventLifeCycleListener lifeCycleListener,
+                final LatencyRecorder latencyRecorder) {
+            this.connection = connection;
+            this.ioEvent = ioEvent;
+            this.lifeCycleListener = lifeCycleListener;
+            this.latencyRecorder = latencyRecorder;
+            this.submitTimeNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            latencyRecorder.recordSince(LatencyRecorder.Stage.WORKER_QUEUE,
+                    submitTimeNanos);
+            run0(connection, ioEvent, lifeCycleListener);
+        }        
+    }
 
 }
@@ -0,0 +1,231 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.compression.zip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.TransformationResult;
+import org.glassfish.grizzly.attributes.AttributeHolder;
+import org.glassfish.grizzly.attributes.AttributeStorage;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ZLibPool} and pooled {@link GZipEncoder}/{@link GZipDecoder} tests.
+ */
+public class ZLibPoolTest {
+    private static final byte[] DICTIONARY =
+            ("{\"id\":,\"name\":\"\",\"status\":\"active\",\"tags\":[]}")
+            .getBytes(Charsets.ASCII_CHARSET);
+    
+    @Test
+    public void testDeflaterReuse() {
+        final ZLibPool pool = new ZLibPool(1);
+        
+        final Deflater d1 = pool.takeDeflater(1, Deflater.DEFAULT_STRATEGY);
+        final Deflater d2 = pool.takeDeflater(1, Deflater.DEFAULT_STRATEGY);
+        assertEquals(2, pool.getMissCount());
+        assertEquals(2, pool.getDeflatersInUseCount());
+        
+        pool.releaseDeflater(d1, 1, Deflater.DEFAULT_STRATEGY);
+        pool.releaseDeflater(d2, 1, Deflater.DEFAULT_STRATEGY);
+        assertEquals(1, pool.getPooledDeflatersCount());
+        assertEquals(1, pool.getDiscardedCount());
+        assertEquals(ZLibPool.DEFLATER_NATIVE_SIZE, pool.getEstimatedNativeMemory());
+        
+        // different level - different key
+        final Deflater d3 = pool.takeDeflater(9, Deflater.DEFAULT_STRATEGY);
+        assertNotSame(d1, d3);
+        assertEquals(3, pool.getMissCount());
+        
+        assertSame(d1, pool.takeDeflater(1, Deflater.DEFAULT_STRATEGY));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(0, pool.getPooledDeflatersCount());
+        
+        final Inflater i1 = pool.takeInflater();
+        pool.releaseInflater(i1);
+        assertSame(i1, pool.takeInflater());
+        assertEquals(2, pool.getHitCount());
+        assertEquals(4, pool.getMissCount());
+        assertEquals(2.0 / 6, pool.getHitRatio(), 0.001);
+        
+        pool.releaseInflater(i1);
+        pool.clear();
+        assertEquals(0, pool.getPooledInflatersCount());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new ZLibPool(1).takeDeflater(10, Deflater.DEFAULT_STRATEGY);
+    }
+    
+    @Test
+    public void testPooledEncodeDecode() throws Exception {
+        final ZLibPool pool = new ZLibPool(4);
+        final GZipEncoder encoder = new GZipEncoder(512, Deflater.BEST_COMPRESSION);
+        encoder.setPool(pool);
+        final GZipDecoder decoder = new GZipDecoder(512);
+        decoder.setPool(pool);
+        
+        final String message = createMessage(100);
+        for (int i = 0; i < 3; i++) {
+            final AttributeStorage storage = createStorage();
+            final Buffer encoded = encode(encoder, storage, message);
+            assertEquals(0, pool.getDeflatersInUseCount());
+            
+            // the output has to be the standard GZIP
+            assertEquals(message, gunzip(encoded));
+            assertEquals(message, decode(decoder, createStorage(), encoded));
+            assertEquals(0, pool.getInflatersInUseCount());
+        }
+        
+        assertEquals(2, pool.getMissCount());
+        assertEquals(4, pool.getHitCount());
+        assertEquals(1, pool.getPooledDeflatersCount());
+        assertEquals(1, pool.getPooledInflatersCount());
+    }
+    
+    @Test
+    public void testReleaseUnfinished() {
+        final ZLibPool pool = new ZLibPool(4);
+        final GZipEncoder encoder = new GZipEncoder();
+        encoder.setPool(pool);
+        
+        final AttributeStorage storage = createStorage();
+        encoder.transform(storage, Buffers.wrap(
+                MemoryManager.DEFAULT_MEMORY_MANAGER, "hello")).recycle();
+        assertEquals(1, pool.getDeflatersInUseCount());
+        
+        encoder.release(storage);
+        assertEquals(0, pool.getDeflatersInUseCount());
+        assertEquals(1, pool.getPooledDeflatersCount());
+    }
+    
+    @Test
+    public void testPresetDictionary() throws Exception {
+        final String message = "{\"id\":1,\"name\":\"a\",\"status\":\"active\",\"tags\":[]}";
+        
+        final GZipEncoder plainEncoder = new GZipEncoder();
+        final GZipEncoder dictEncoder = new GZipEncoder();
+        dictEncoder.setDictionary(DICTIONARY);
+        final GZipDecoder dictDecoder = new GZipDecoder();
+        dictDecoder.setDictionary(DICTIONARY);
+        
+        final Buffer plain = encode(plainEncoder, createStorage(), message);
+        final Buffer withDict = encode(dictEncoder, createStorage(), message);
+        assertTrue(withDict.remaining() < plain.remaining());
+        
+        final AttributeStorage storage = createStorage();
+        assertEquals(message, decode(dictDecoder, storage, withDict));
+        // the next GZIP member on the same storage
+        assertEquals(message, decode(dictDecoder, storage,
+                encode(dictEncoder, createStorage(), message)));
+    }
+    
+    private static Buffer encode(final GZipEncoder encoder,
+            final AttributeStorage storage, final String message) {
+        final MemoryManager mm = MemoryManager.DEFAULT_MEMORY_MANAGER;
+        final TransformationResult<Buffer, Buffer> result =
+                encoder.transform(storage, Buffers.wrap(mm, message));
+        final Buffer encoded = Buffers.appendBuffers(mm, result.getMessage(),
+                encoder.finish(storage));
+        result.recycle();
+        
+        return encoded;
+    }
+    
+    private static String decode(final GZipDecoder decoder,
+            final AttributeStorage storage, final Buffer encoded) {
+        final TransformationResult<Buffer, Buffer> result =
+                decoder.transform(storage, encoded);
+        assertEquals(TransformationResult.Status.COMPLETE, result.getStatus());
+        final String decoded = result.getMessage().toStringContent(
+                Charsets.ASCII_CHARSET);
+        result.recycle();
+        
+        return decoded;
+    }
+    
+    private static String gunzip(final Buffer encoded) throws Exception {
+        final byte[] bytes = new byte[encoded.remaining()];
+        encoded.duplicate().get(bytes);
+        
+        final GZIPInputStream gzis =
+                new GZIPInputStream(new ByteArrayInputStream(bytes));
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] buf = new byte[512];
+        int len;
+        while ((len = gzis.read(buf)) != -1) {
+            baos.write(buf, 0, len);
+        }
+        
+        return new String(baos.toByteArray(), "ASCII");
+    }
+    
+    private static String createMessage(final int linesCount) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < linesCount; i++) {
+            sb.append("line #").append(i).append(": the quick brown fox\n");
+        }
+        
+        return sb.toString();
+    }
+    
+    private static AttributeStorage createStorage() {
+        final AttributeHolder holder =
+                Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createSafeAttributeHolder();
+        return new AttributeStorage() {
+            @Override
+            public AttributeHolder getAttributes() {
+                return holder;
+            }
+        };
+    }
+}
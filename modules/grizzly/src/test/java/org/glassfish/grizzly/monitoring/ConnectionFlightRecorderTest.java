@@ -0,0 +1,164 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ConnectionFlightRecorder} and {@link FlightRecording} tests.
+ */
+public class ConnectionFlightRecorderTest {
+    private static final int PORT = 7792;
+    
+    @Test
+    public void testRingBuffer() {
+        final ConnectionFlightRecorder recorder = new ConnectionFlightRecorder();
+        final FlightRecording recording = new FlightRecording(recorder, 4);
+        
+        for (int i = 0; i < 10; i++) {
+            recording.recordWriteQueue(i);
+        }
+        
+        assertEquals(10, recording.getEventsCount());
+        
+        final List<FlightRecording.Event> events = recording.getEvents();
+        assertEquals(4, events.size());
+        for (int i = 0; i < 4; i++) {
+            final FlightRecording.Event event = events.get(i);
+            assertEquals(FlightRecording.EventType.WRITE_QUEUE, event.getType());
+            assertEquals(6 + i, event.getValue());
+            if (i > 0) {
+                assertTrue(event.getTimeOffsetNanos()
+                        >= events.get(i - 1).getTimeOffsetNanos());
+            }
+        }
+    }
+    
+    @Test
+    public void testSampledConnection() throws Exception {
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new EchoFilter());
+        
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+        
+        final ConnectionFlightRecorder recorder = transport.getFlightRecorder();
+        recorder.setSamplingRate(1);
+        recorder.setEnabled(true);
+        
+        final BlockingQueue<FlightRecording> completedRecordings =
+                new ArrayBlockingQueue<FlightRecording>(8);
+        recorder.addListener(new ConnectionFlightRecorder.Listener() {
+            @Override
+            public void onRecordingComplete(final Connection connection,
+                    final FlightRecording recording) {
+                if (!connection.isOpen()) {
+                    completedRecordings.offer(recording);
+                }
+            }
+        });
+        
+        Socket socket = null;
+        try {
+            transport.bind(PORT);
+            transport.start();
+            
+            socket = new Socket("localhost", PORT);
+            final OutputStream os = socket.getOutputStream();
+            final InputStream is = socket.getInputStream();
+            
+            final String message = "hello";
+            os.write(message.getBytes());
+            os.flush();
+            
+            int read = 0;
+            while (read < message.length()) {
+                read += is.read(new byte[message.length()]);
+            }
+            
+            socket.close();
+            socket = null;
+            
+            final FlightRecording recording =
+                    completedRecordings.poll(10, TimeUnit.SECONDS);
+            assertNotNull(recording);
+            
+            final Set<FlightRecording.EventType> types =
+                    EnumSet.noneOf(FlightRecording.EventType.class);
+            for (FlightRecording.Event event : recording.getEvents()) {
+                types.add(event.getType());
+            }
+            
+            assertTrue(recording.toString(), types.containsAll(EnumSet.of(
+                    FlightRecording.EventType.IO_EVENT_READY,
+                    FlightRecording.EventType.READ,
+                    FlightRecording.EventType.WRITE,
+                    FlightRecording.EventType.WRITE_QUEUE,
+                    FlightRecording.EventType.FILTER,
+                    FlightRecording.EventType.CLOSE)));
+        } finally {
+            if (socket != null) {
+                socket.close();
+            }
+            
+            transport.shutdownNow();
+        }
+    }
+}
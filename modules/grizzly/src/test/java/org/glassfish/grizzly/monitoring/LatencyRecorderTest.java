@@ -0,0 +1,188 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LatencyHistogram} and {@link LatencyRecorder} tests.
+ */
+public class LatencyRecorderTest {
+    private static final int PORT = 7791;
+    
+    @Test
+    public void testBucketPrecision() {
+        long prevIdx = -1;
+        for (long v = 0; v < (1L << 30); v = v * 3 / 2 + 1) {
+            final int idx = LatencyHistogram.bucketIndex(v);
+            assertTrue(idx >= prevIdx);
+            assertTrue(idx < LatencyHistogram.BUCKETS_COUNT);
+            
+            final long highest = LatencyHistogram.bucketHighestValue(idx);
+            assertTrue(highest >= v);
+            assertTrue("value=" + v + " highest=" + highest,
+                    highest - v <= v / 16);
+            prevIdx = idx;
+        }
+    }
+    
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+        
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMin());
+        assertEquals(1000000, snapshot.getMax());
+        assertEquals(500500, (long) snapshot.getMean());
+        assertWithin(500000, snapshot.getValueAtPercentile(50));
+        assertWithin(990000, snapshot.getValueAtPercentile(99));
+        assertEquals(1000000, snapshot.getValueAtPercentile(100));
+        
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+    }
+    
+    @Test
+    public void testMultiThreadedRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        final int threadsCount = 8;
+        final int valuesCount = 10000;
+        
+        final CountDownLatch latch = new CountDownLatch(threadsCount);
+        for (int i = 0; i < threadsCount; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < valuesCount; j++) {
+                        histogram.recordMicros(j);
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threadsCount * valuesCount, snapshot.getCount());
+        assertEquals(valuesCount - 1, snapshot.getMax());
+        assertEquals(0, snapshot.getMin());
+    }
+    
+    @Test
+    public void testTransportStages() throws Exception {
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new EchoFilter());
+        
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+        
+        final LatencyRecorder recorder = transport.getLatencyRecorder();
+        recorder.setEnabled(true);
+        
+        Socket socket = null;
+        try {
+            transport.bind(PORT);
+            transport.start();
+            
+            socket = new Socket("localhost", PORT);
+            final OutputStream os = socket.getOutputStream();
+            final InputStream is = socket.getInputStream();
+            
+            final String message = "hello";
+            for (int i = 0; i < 10; i++) {
+                os.write(message.getBytes());
+                os.flush();
+                
+                int read = 0;
+                while (read < message.length()) {
+                    read += is.read(new byte[message.length()]);
+                }
+            }
+            
+            // the filter chain execution is recorded after the echo is sent
+            final LatencyHistogram filterChainReadHistogram =
+                    recorder.getHistogram(LatencyRecorder.Stage.FILTER_CHAIN_READ);
+            for (int i = 0; i < 100 && filterChainReadHistogram.snapshot().getCount() < 10; i++) {
+                Thread.sleep(20);
+            }
+            
+            final LatencyHistogram.Snapshot filterChainRead =
+                    filterChainReadHistogram.snapshot();
+            final LatencyHistogram.Snapshot workerQueue =
+                    recorder.getHistogram(LatencyRecorder.Stage.WORKER_QUEUE).snapshot();
+            
+            assertTrue(filterChainRead.getCount() >= 10);
+            assertTrue(workerQueue.getCount() >= 10);
+            assertEquals(LatencyRecorder.Stage.values().length,
+                    recorder.snapshot().size());
+        } finally {
+            if (socket != null) {
+                socket.close();
+            }
+            
+            transport.shutdownNow();
+        }
+    }
+    
+    private static void assertWithin(final long expected, final long actual) {
+        assertTrue("expected=" + expected + " actual=" + actual,
+                Math.abs(expected - actual) <= expected / 16);
+    }
+}
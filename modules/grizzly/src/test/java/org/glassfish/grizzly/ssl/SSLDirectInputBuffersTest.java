@@ -0,0 +1,221 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.MemoryProbe;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reading TLS records into pooled direct buffers tests.
+ */
+public class SSLDirectInputBuffersTest {
+    private static final int PORT = 7795;
+    private static final int MESSAGE_SIZE = 4 * 1024 * 1024;
+
+    @Test
+    public void testKeepRemainder() {
+        final InputBufferWrapper buffer = new InputBufferWrapper().prepare(100);
+        assertTrue(buffer.toByteBuffer().isDirect());
+        
+        for (int i = 0; i < 80; i++) {
+            buffer.put((byte) i);
+        }
+        buffer.flip();
+        
+        // the remainder is kept in place
+        buffer.position(30);
+        assertEquals(0, buffer.keepRemainder(20));
+        assertTrue(buffer.hasRemainder());
+        
+        buffer.prepare(100);
+        assertFalse(buffer.hasRemainder());
+        assertEquals(50, buffer.position());
+        assertEquals(70, buffer.limit());
+        buffer.put((byte) 80);
+        buffer.flip();
+        for (int i = 30; i <= 80; i++) {
+            assertEquals((byte) i, buffer.get());
+        }
+        
+        // the remainder is moved to the beginning of the direct buffer
+        buffer.position(45);
+        assertEquals(6, buffer.keepRemainder(40));
+        
+        buffer.prepare(100);
+        assertEquals(6, buffer.position());
+        assertEquals(100, buffer.limit());
+        buffer.flip();
+        for (int i = 75; i <= 80; i++) {
+            assertEquals((byte) i, buffer.get());
+        }
+        
+        buffer.dispose();
+        assertFalse(buffer.hasRemainder());
+    }
+
+    @Test
+    public void testHeapInputBuffers() throws Exception {
+        assertTrue(echo(false) < MESSAGE_SIZE);
+    }
+
+    @Test
+    public void testDirectInputBuffers() throws Exception {
+        assertTrue(echo(true) < MESSAGE_SIZE);
+    }
+    
+    private long echo(final boolean isDirectInputBuffers) throws Exception {
+        final SSLContext sslContext = createSSLContextConfigurator().createSSLContext();
+        
+        final SSLFilter sslFilter = new SSLFilter(
+                new SSLEngineConfigurator(sslContext, false, false, false),
+                null);
+        sslFilter.setDirectInputBuffers(isDirectInputBuffers);
+        assertEquals(isDirectInputBuffers, sslFilter.isDirectInputBuffers());
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(sslFilter);
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+        
+        final AtomicLong copiedBytes = new AtomicLong();
+        final MemoryProbe probe = new MemoryProbe.Adapter() {
+            @Override
+            public void onBufferCopyEvent(final int size) {
+                copiedBytes.addAndGet(size);
+            }
+        };
+        transport.getMemoryManager().getMonitoringConfig().addProbes(probe);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        SSLSocket socket = null;
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            socket = (SSLSocket) sslContext.getSocketFactory()
+                    .createSocket("localhost", PORT);
+            socket.setSoTimeout(10000);
+            
+            final byte[] message = new byte[MESSAGE_SIZE];
+            new Random(1).nextBytes(message);
+            
+            final InputStream is = socket.getInputStream();
+            final Future<byte[]> echoFuture = executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    final byte[] buffer = new byte[MESSAGE_SIZE];
+                    int read = 0;
+                    while (read < buffer.length) {
+                        final int len = is.read(buffer, read, buffer.length - read);
+                        assertTrue(len > 0);
+                        read += len;
+                    }
+                    
+                    return buffer;
+                }
+            });
+            
+            final OutputStream os = socket.getOutputStream();
+            final int chunkSize = 50000;
+            for (int i = 0; i < message.length; i += chunkSize) {
+                os.write(message, i, Math.min(chunkSize, message.length - i));
+            }
+            os.flush();
+            
+            assertTrue(Arrays.equals(message,
+                    echoFuture.get(10, TimeUnit.SECONDS)));
+            
+            return copiedBytes.get();
+        } finally {
+            if (socket != null) {
+                socket.close();
+            }
+            
+            transport.shutdownNow();
+            executor.shutdownNow();
+            transport.getMemoryManager().getMonitoringConfig().removeProbes(probe);
+        }
+    }
+    
+    private SSLContextConfigurator createSSLContextConfigurator() {
+        final SSLContextConfigurator sslContextConfigurator =
+                new SSLContextConfigurator();
+        final ClassLoader cl = getClass().getClassLoader();
+        
+        final URL cacertsUrl = cl.getResource("ssltest-cacerts.jks");
+        if (cacertsUrl != null) {
+            sslContextConfigurator.setTrustStoreFile(cacertsUrl.getFile());
+            sslContextConfigurator.setTrustStorePass("changeit");
+        }
+
+        final URL keystoreUrl = cl.getResource("ssltest-keystore.jks");
+        if (keystoreUrl != null) {
+            sslContextConfigurator.setKeyStoreFile(keystoreUrl.getFile());
+            sslContextConfigurator.setKeyStorePass("changeit");
+        }
+
+        return sslContextConfigurator;
+    }
+}
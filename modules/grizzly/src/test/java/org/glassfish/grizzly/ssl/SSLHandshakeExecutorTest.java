@@ -0,0 +1,217 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TLS handshake offloading ({@link SSLBaseFilter#setHandshakeExecutor(java.util.concurrent.Executor)})
+ * tests.
+ */
+public class SSLHandshakeExecutorTest {
+    private static final int PORT = 7796;
+
+    @Test
+    public void testOffloadedHandshakes() throws Exception {
+        final SSLContext sslContext = createSSLContextConfigurator().createSSLContext();
+        
+        final SSLFilter sslFilter = new SSLFilter(
+                new SSLEngineConfigurator(sslContext, false, false, false),
+                null);
+        final ExecutorService handshakeExecutor =
+                SSLBaseFilter.createHandshakeExecutor(16);
+        sslFilter.setHandshakeExecutor(handshakeExecutor);
+        final SSLHandshakeMonitor monitor = new SSLHandshakeMonitor();
+        sslFilter.addHandshakeListener(monitor);
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(sslFilter);
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            final int connectionsCount = 5;
+            for (int i = 0; i < connectionsCount; i++) {
+                // new client SSLContext to force full handshakes
+                echo(createSSLContextConfigurator().createSSLContext(),
+                        "hello" + i);
+            }
+
+            assertEquals(connectionsCount, monitor.getFullCount());
+            assertEquals(0, monitor.getFailedCount());
+            assertTrue(sslFilter.getHandshakeTaskLatency().snapshot().getCount()
+                    >= connectionsCount);
+            assertTrue(sslFilter.getHandshakeQueueLatency().snapshot().getCount()
+                    >= connectionsCount);
+            assertEquals(0, sslFilter.getHandshakeQueueSize());
+        } finally {
+            transport.shutdownNow();
+            handshakeExecutor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testHandshakeStepOverride() throws Exception {
+        final SSLContext sslContext = createSSLContextConfigurator().createSSLContext();
+        
+        final AtomicInteger handshakeSteps = new AtomicInteger();
+        final SSLFilter sslFilter = new SSLFilter(
+                new SSLEngineConfigurator(sslContext, false, false, false),
+                null) {
+            @Override
+            protected Buffer doHandshakeStep(final SSLConnectionContext sslCtx,
+                    final FilterChainContext ctx, final Buffer inputBuffer,
+                    final Buffer tmpAppBuffer0) throws IOException {
+                handshakeSteps.incrementAndGet();
+                return super.doHandshakeStep(sslCtx, ctx, inputBuffer,
+                        tmpAppBuffer0);
+            }
+        };
+        
+        final AtomicInteger handshakeStepsOnComplete = new AtomicInteger(-1);
+        sslFilter.addHandshakeListener(new SSLBaseFilter.HandshakeListener() {
+            @Override
+            public void onStart(final Connection connection) {
+            }
+
+            @Override
+            public void onComplete(final Connection connection) {
+                handshakeStepsOnComplete.set(handshakeSteps.get());
+            }
+
+            @Override
+            public void onFailure(final Connection connection,
+                    final Throwable t) {
+            }
+        });
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(sslFilter);
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            // no handshake executor - the overridden step has to drive
+            // the non-blocking handshake
+            echo(sslContext, "hello");
+            assertTrue(handshakeStepsOnComplete.get() > 0);
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+    
+    private static void echo(final SSLContext sslContext, final String message)
+            throws Exception {
+        final SSLSocket socket = (SSLSocket) sslContext.getSocketFactory()
+                .createSocket("localhost", PORT);
+        try {
+            socket.setSoTimeout(10000);
+            final OutputStream os = socket.getOutputStream();
+            final InputStream is = socket.getInputStream();
+            os.write(message.getBytes());
+            os.flush();
+
+            final byte[] buffer = new byte[message.length()];
+            int read = 0;
+            while (read < buffer.length) {
+                final int len = is.read(buffer, read, buffer.length - read);
+                assertTrue(len > 0);
+                read += len;
+            }
+            
+            assertEquals(message, new String(buffer));
+        } finally {
+            socket.close();
+        }
+    }
+    
+    private SSLContextConfigurator createSSLContextConfigurator() {
+        final SSLContextConfigurator sslContextConfigurator =
+                new SSLContextConfigurator();
+        final ClassLoader cl = getClass().getClassLoader();
+        
+        final URL cacertsUrl = cl.getResource("ssltest-cacerts.jks");
+        if (cacertsUrl != null) {
+            sslContextConfigurator.setTrustStoreFile(cacertsUrl.getFile());
+            sslContextConfigurator.setTrustStorePass("changeit");
+        }
+
+        final URL keystoreUrl = cl.getResource("ssltest-keystore.jks");
+        if (keystoreUrl != null) {
+            sslContextConfigurator.setKeyStoreFile(keystoreUrl.getFile());
+            sslContextConfigurator.setKeyStorePass("changeit");
+        }
+
+        return sslContextConfigurator;
+    }
+}
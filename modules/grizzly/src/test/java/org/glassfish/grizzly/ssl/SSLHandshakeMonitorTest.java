@@ -0,0 +1,166 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link SSLHandshakeMonitor} and TLS session cache configuration tests.
+ */
+public class SSLHandshakeMonitorTest {
+    private static final int PORT = 7792;
+
+    @Test
+    public void testSessionCacheConfiguration() {
+        final SSLContextConfigurator configurator = createSSLContextConfigurator();
+        configurator.setSessionCacheSize(128);
+        configurator.setSessionTimeout(600);
+        
+        final SSLContext sslContext = configurator.createSSLContext();
+        assertEquals(128, sslContext.getServerSessionContext().getSessionCacheSize());
+        assertEquals(600, sslContext.getServerSessionContext().getSessionTimeout());
+        assertEquals(128, sslContext.getClientSessionContext().getSessionCacheSize());
+        assertEquals(600, sslContext.getClientSessionContext().getSessionTimeout());
+    }
+    
+    @Test
+    public void testFullAndResumedHandshakes() throws Exception {
+        final SSLContextConfigurator configurator = createSSLContextConfigurator();
+        configurator.setSessionCacheSize(16);
+        final SSLContext sslContext = configurator.createSSLContext();
+        
+        final SSLFilter sslFilter = new SSLFilter(
+                new SSLEngineConfigurator(sslContext, false, false, false),
+                null);
+        final SSLHandshakeMonitor monitor = new SSLHandshakeMonitor();
+        sslFilter.addHandshakeListener(monitor);
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(sslFilter);
+        filterChainBuilder.add(new EchoFilter());
+
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            final int connectionsCount = 3;
+            for (int i = 0; i < connectionsCount; i++) {
+                echo(sslContext, "hello" + i);
+            }
+
+            assertEquals(1, monitor.getFullCount());
+            assertEquals(connectionsCount - 1, monitor.getResumedCount());
+            assertEquals(0, monitor.getFailedCount());
+            assertEquals(1,
+                    monitor.getFullHandshakeLatency().snapshot().getCount());
+            assertEquals(connectionsCount - 1,
+                    monitor.getResumedHandshakeLatency().snapshot().getCount());
+            
+            monitor.reset();
+            assertEquals(0, monitor.getResumedCount());
+            assertEquals(0, monitor.getResumptionRatio(), 0);
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+
+    private static void echo(final SSLContext sslContext, final String message)
+            throws Exception {
+        final SSLSocket socket = (SSLSocket) sslContext.getSocketFactory()
+                .createSocket("localhost", PORT);
+        try {
+            socket.setSoTimeout(10000);
+            final OutputStream os = socket.getOutputStream();
+            final InputStream is = socket.getInputStream();
+            os.write(message.getBytes());
+            os.flush();
+
+            final byte[] buffer = new byte[message.length()];
+            int read = 0;
+            while (read < buffer.length) {
+                final int len = is.read(buffer, read, buffer.length - read);
+                assertTrue(len > 0);
+                read += len;
+            }
+            
+            assertEquals(message, new String(buffer));
+        } finally {
+            socket.close();
+        }
+    }
+    
+    private SSLContextConfigurator createSSLContextConfigurator() {
+        final SSLContextConfigurator sslContextConfigurator =
+                new SSLContextConfigurator();
+        final ClassLoader cl = getClass().getClassLoader();
+        
+        final URL cacertsUrl = cl.getResource("ssltest-cacerts.jks");
+        if (cacertsUrl != null) {
+            sslContextConfigurator.setTrustStoreFile(cacertsUrl.getFile());
+            sslContextConfigurator.setTrustStorePass("changeit");
+        }
+
+        final URL keystoreUrl = cl.getResource("ssltest-keystore.jks");
+        if (keystoreUrl != null) {
+            sslContextConfigurator.setKeyStoreFile(keystoreUrl.getFile());
+            sslContextConfigurator.setKeyStorePass("changeit");
+        }
+
+        return sslContextConfigurator;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.ssl;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TLS write coalescing and dynamic record sizing tests.
+ */
+public class SSLWriteCoalescingTest {
+    private static final int PORT = 7793;
+    
+    private static final int SMALL_MESSAGES_COUNT = 5000;
+    private static final int LARGE_MESSAGE_SIZE = 3 * 1024 * 1024;
+
+    @Test
+    public void testCoalescedWrites() throws Exception {
+        doTest(true, false);
+    }
+
+    @Test
+    public void testDynamicRecordSizing() throws Exception {
+        doTest(false, true);
+    }
+
+    @Test
+    public void testCoalescedWritesWithDynamicRecordSizing() throws Exception {
+        doTest(true, true);
+    }
+    
+    /**
+     * The held messages have to be written before the connection is closed.
+     */
+    @Test
+    public void testCoalescedWritesAndClose() throws Exception {
+        doTest(true, false, true);
+    }
+    
+    private void doTest(final boolean isWriteCoalescing,
+            final boolean isDynamicRecordSizing) throws Exception {
+        doTest(isWriteCoalescing, isDynamicRecordSizing, false);
+    }
+    
+    private void doTest(final boolean isWriteCoalescing,
+            final boolean isDynamicRecordSizing,
+            final boolean isCloseAfterWrite) throws Exception {
+        final SSLContext sslContext = createSSLContextConfigurator().createSSLContext();
+        
+        final SSLFilter sslFilter = new SSLFilter(
+                new SSLEngineConfigurator(sslContext, false, false, false),
+                null);
+        sslFilter.setWriteCoalescing(isWriteCoalescing);
+        sslFilter.setDynamicRecordSizing(isDynamicRecordSizing);
+        
+        final AtomicInteger completedCount = new AtomicInteger();
+        
+        final FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(sslFilter);
+        filterChainBuilder.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final MemoryManager mm = ctx.getMemoryManager();
+                final EmptyCompletionHandler<WriteResult> completionHandler =
+                        new EmptyCompletionHandler<WriteResult>() {
+                    @Override
+                    public void completed(final WriteResult result) {
+                        completedCount.incrementAndGet();
+                    }
+                };
+                
+                // the large message is queued, so the small messages
+                // written after it could be coalesced
+                final byte[] large = new byte[LARGE_MESSAGE_SIZE];
+                for (int i = 0; i < large.length; i++) {
+                    large[i] = (byte) i;
+                }
+                
+                ctx.write(Buffers.wrap(mm, large), completionHandler);
+                
+                for (int i = 0; i < SMALL_MESSAGES_COUNT; i++) {
+                    ctx.write(Buffers.wrap(mm, smallMessage(i)),
+                            completionHandler);
+                }
+                
+                if (isCloseAfterWrite) {
+                    ctx.getConnection().closeSilently();
+                }
+                
+                return ctx.getStopAction();
+            }
+        });
+
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(filterChainBuilder.build());
+
+        SSLSocket socket = null;
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            socket = (SSLSocket) createSSLContextConfigurator()
+                    .createSSLContext().getSocketFactory()
+                    .createSocket("localhost", PORT);
+            socket.setSoTimeout(10000);
+            
+            final OutputStream os = socket.getOutputStream();
+            os.write('g');
+            os.flush();
+            
+            // let the server's write queue grow
+            Thread.sleep(200);
+            
+            final DataInputStream is = new DataInputStream(socket.getInputStream());
+            final byte[] large = new byte[LARGE_MESSAGE_SIZE];
+            is.readFully(large);
+            for (int i = 0; i < large.length; i++) {
+                assertEquals("position " + i, (byte) i, large[i]);
+            }
+            
+            for (int i = 0; i < SMALL_MESSAGES_COUNT; i++) {
+                final String expected = smallMessage(i);
+                final byte[] buffer = new byte[expected.length()];
+                is.readFully(buffer);
+                assertEquals(expected, new String(buffer));
+            }
+            
+            if (isCloseAfterWrite) {
+                assertEquals(-1, is.read());
+            }
+            
+            final long deadline = System.currentTimeMillis()
+                    + TimeUnit.SECONDS.toMillis(10);
+            while (completedCount.get() < SMALL_MESSAGES_COUNT + 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            
+            assertEquals(SMALL_MESSAGES_COUNT + 1, completedCount.get());
+        } finally {
+            if (socket != null) {
+                socket.close();
+            }
+            
+            transport.shutdownNow();
+        }
+    }
+    
+    private static String smallMessage(final int i) {
+        return "message-" + i + ";";
+    }
+    
+    private SSLContextConfigurator createSSLContextConfigurator() {
+        final SSLContextConfigurator sslContextConfigurator =
+                new SSLContextConfigurator();
+        final ClassLoader cl = getClass().getClassLoader();
+        
+        final URL cacertsUrl = cl.getResource("ssltest-cacerts.jks");
+        if (cacertsUrl != null) {
+            sslContextConfigurator.setTrustStoreFile(cacertsUrl.getFile());
+            sslContextConfigurator.setTrustStorePass("changeit");
+        }
+
+        final URL keystoreUrl = cl.getResource("ssltest-keystore.jks");
+        if (keystoreUrl != null) {
+            sslContextConfigurator.setKeyStoreFile(keystoreUrl.getFile());
+            sslContextConfigurator.setKeyStorePass("changeit");
+        }
+
+        return sslContextConfigurator;
+    }
+}
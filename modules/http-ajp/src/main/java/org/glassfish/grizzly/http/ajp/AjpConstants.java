@@ -58,6 +58,8 @@
 
 package org.glassfish.grizzly.http.ajp;
 
+import org.glassfish.grizzly.http.util.Header;
+
 /**
  * Common class for the AJP Protocol values
  */
@@ -220,6 +222,41 @@ public class AjpConstants {
         "referer",
         "user-agent"
     };
+
+    // Header constants for the common request headers, or null
+    // if there is no Header constant defined
+    static final Header[] headerConstTransArray = {
+        Header.Accept,
+        Header.AcceptCharset,
+        Header.AcceptEncoding,
+        null, // accept-language
+        Header.Authorization,
+        Header.Connection,
+        Header.ContentType,
+        Header.ContentLength,
+        Header.Cookie,
+        null, // cookie2
+        Header.Host,
+        Header.Pragma,
+        Header.Referer,
+        Header.UserAgent
+    };
+    
+    // Lower-case names of the common response headers, the index is
+    // (SC_RESP_XXX & 0xFF) - 1
+    static final byte[][] responseHeaderTransArray = {
+        "content-type".getBytes(),
+        "content-language".getBytes(),
+        "content-length".getBytes(),
+        "date".getBytes(),
+        "last-modified".getBytes(),
+        "location".getBytes(),
+        "set-cookie".getBytes(),
+        "set-cookie2".getBytes(),
+        "servlet-engine".getBytes(),
+        "status".getBytes(),
+        "www-authenticate".getBytes()
+    };
     // Ajp13 specific -  needs refactoring for the new model
     /**
      * Maximum Total byte size for a AJP packet defined in the spec
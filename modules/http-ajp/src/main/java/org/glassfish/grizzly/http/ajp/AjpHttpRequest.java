@@ -52,6 +52,7 @@ import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.ProcessingState;
 import org.glassfish.grizzly.http.util.BufferChunk;
 import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.ssl.SSLSupport;
 import org.glassfish.grizzly.utils.BufferInputStream;
 
@@ -90,9 +91,54 @@ public final class AjpHttpRequest extends HttpRequestPacket {
 
     private int contentBytesRemaining = -1;
 
+    private boolean contentTypeParsed;
+    
     private AjpHttpRequest() {
     }
 
+    @Override
+    public String getCharacterEncoding() {
+        if (!contentTypeParsed) {
+            parseContentTypeHeader();
+        }
+
+        return super.getCharacterEncoding();
+    }
+
+    @Override
+    public void setCharacterEncoding(final String charset) {
+        if (!contentTypeParsed) {
+            parseContentTypeHeader();
+        }
+
+        super.setCharacterEncoding(charset);
+    }
+
+    @Override
+    public String getContentType() {
+        if (!contentTypeParsed) {
+            parseContentTypeHeader();
+        }
+
+        return super.getContentType();
+    }
+
+    /**
+     * The content-type header value is kept as a view over the AJP packet
+     * and converted to the String only if requested.
+     */
+    private void parseContentTypeHeader() {
+        contentTypeParsed = true;
+
+        if (!contentType.isSet()) {
+            final DataChunk dc = headers.getValue(Header.ContentType);
+
+            if (dc != null && !dc.isNull()) {
+                setContentType(dc.toString());
+            }
+        }
+    }
+
     @Override
     public Object getAttribute(final String name) {
         Object result = super.getAttribute(name);
@@ -268,6 +314,7 @@ public final class AjpHttpRequest extends HttpRequestPacket {
         tmpDataChunk.recycle();
 
         secret = null;
+        contentTypeParsed = false;
         
         super.reset();
     }
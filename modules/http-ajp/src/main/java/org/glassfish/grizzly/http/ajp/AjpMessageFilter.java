@@ -42,10 +42,6 @@ package org.glassfish.grizzly.http.ajp;
 
 import java.io.IOException;
 import org.glassfish.grizzly.Buffer;
-import org.glassfish.grizzly.Connection;
-import org.glassfish.grizzly.Grizzly;
-import org.glassfish.grizzly.attributes.Attribute;
-import org.glassfish.grizzly.utils.NullaryFunction;
 import org.glassfish.grizzly.filterchain.BaseFilter;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
@@ -57,83 +53,48 @@ import org.glassfish.grizzly.filterchain.NextAction;
  * @author Alexey Stashok
  */
 public class AjpMessageFilter extends BaseFilter {
-    private final Attribute<ParsingState> parsingStateAttribute =
-            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
-            AjpMessageFilter.class + ".parsingStateAttribute",
-            new NullaryFunction<ParsingState>() {
-
-                @Override
-                public ParsingState evaluate() {
-                    return new ParsingState();
-                }
-            });
 
     @Override
     public NextAction handleRead(final FilterChainContext ctx) throws IOException {
         final Buffer buffer = ctx.getMessage();
-        final Connection connection = ctx.getConnection();
-
-        final ParsingState parsingState = parsingStateAttribute.get(connection);
 
-        // Have we read the AJP message header?
-        if (!parsingState.isHeaderParsed) {
-            if (buffer.remaining() < AjpConstants.H_SIZE) {
-                return ctx.getStopAction(buffer);
-            }
+        // The Ajp message header is re-checked each time more data comes,
+        // it's cheaper than keeping the parsing state per connection
+        if (buffer.remaining() < AjpConstants.H_SIZE) {
+            return ctx.getStopAction(buffer);
+        }
 
-            final int start = buffer.position();
+        final int start = buffer.position();
 
-            final int mark = buffer.getShort(start);
+        final int mark = buffer.getShort(start);
 
-            if (mark != 0x1234 && mark != 0x4142) {
-                throw new IllegalStateException("Unexpected mark=" + mark);
-            }
+        if (mark != 0x1234 && mark != 0x4142) {
+            throw new IllegalStateException("Unexpected mark=" + mark);
+        }
 
-            parsingState.length = buffer.getShort(start + 2);
-            parsingState.isHeaderParsed = true;
+        final int length = buffer.getShort(start + 2) & 0xFFFF;
 
-            if (parsingState.length + AjpConstants.H_SIZE >
-                    AjpConstants.MAX_PACKET_SIZE) {
-                throw new IllegalStateException("The message is too large. " +
-                        (parsingState.length + AjpConstants.H_SIZE) + ">" +
-                        AjpConstants.MAX_PACKET_SIZE);
-            }
+        if (length + AjpConstants.H_SIZE > AjpConstants.MAX_PACKET_SIZE) {
+            throw new IllegalStateException("The message is too large. " +
+                    (length + AjpConstants.H_SIZE) + ">" +
+                    AjpConstants.MAX_PACKET_SIZE);
         }
 
         // Do we have the entire content?
-        if (buffer.remaining() < AjpConstants.H_SIZE + parsingState.length) {
+        if (buffer.remaining() < AjpConstants.H_SIZE + length) {
             return ctx.getStopAction(buffer);
         }
 
         // Message is ready
 
-        final int start = buffer.position();
-
         // Split off the remainder
-        final Buffer remainder = buffer.split(start + parsingState.length +
+        final Buffer remainder = buffer.split(start + length +
                 AjpConstants.H_SIZE);
 
         // Skip the Ajp message header
         buffer.position(start + 4);
         
-        parsingState.parsed();
-
         // Invoke the next filter
         return ctx.getInvokeAction(remainder.hasRemaining() ? remainder : null);
     }
-
-    static final class ParsingState {
-        boolean isHeaderParsed;
-        int length;
-
-        void parsed() {
-            isHeaderParsed = false;
-            length = 0;
-        }
-
-        void reset() {
-            isHeaderParsed = false;
-            length = 0;
-        }
-    }
 }
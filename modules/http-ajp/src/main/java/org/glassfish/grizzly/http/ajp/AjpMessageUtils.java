@@ -47,6 +47,7 @@ import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.util.Ascii;
 import org.glassfish.grizzly.http.util.BufferChunk;
 import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.HexUtils;
 import org.glassfish.grizzly.http.util.MimeHeaders;
 import org.glassfish.grizzly.memory.CompositeBuffer;
@@ -106,7 +107,7 @@ final class AjpMessageUtils {
         decodeAttributes(requestContent, offset, req,
                 tomcatAuthentication);
 
-        req.setUnparsedHostHeader(req.getHeaders().getValue("host"));
+        req.setUnparsedHostHeader(req.getHeaders().getValue(Header.Host));
     }
 
     private static int decodeAttributes(final Buffer requestContent, int offset,
@@ -221,8 +222,6 @@ final class AjpMessageUtils {
         offset += 2;
         
         for (int i = 0; i < hCount; i++) {
-            String hName;
-
             // Header names are encoded as either an integer code starting
             // with 0xA0, or as a normal string (in which case the first
             // two bytes are the length).
@@ -233,8 +232,11 @@ final class AjpMessageUtils {
             isc &= 0xFF00;
             if (0xA000 == isc) {
                 offset += 2;
-                hName = AjpConstants.headerTransArray[hId - 1];
-                valueDC = headers.addValue(hName);
+                // use the Header constant bytes, if available
+                final Header header = AjpConstants.headerConstTransArray[hId - 1];
+                valueDC = header != null
+                        ? headers.addValue(header)
+                        : headers.addValue(AjpConstants.headerTransArray[hId - 1]);
             } else {
                 // reset hId -- if the header currently being read
                 // happens to be 7 or 8 bytes long, the code below
@@ -254,20 +256,15 @@ final class AjpMessageUtils {
 
             offset = getBytesToDataChunk(requestContent, offset, valueDC);
 
-            // Get the last added header name (the one we need)
-            final DataChunk headerNameDC = headers.getName(headers.size() - 1);
-
+            // the content-type header is parsed lazily by AjpHttpRequest
             if (hId == AjpConstants.SC_REQ_CONTENT_LENGTH
-                    || (hId == -1 && headerNameDC.equalsIgnoreCase("Content-Length"))) {
+                    || (hId == -1 && headers.getName(headers.size() - 1)
+                    .equalsIgnoreCaseLowerCase(Header.ContentLength.getLowerCaseBytes()))) {
                 // just read the content-length header, so set it
                 final long cl = Ascii.parseLong(valueDC);
                 if (cl < Integer.MAX_VALUE) {
                     req.setContentLength((int) cl);
                 }
-            } else if (hId == AjpConstants.SC_REQ_CONTENT_TYPE
-                    || (hId == -1 && headerNameDC.equalsIgnoreCase("Content-Type"))) {
-                // just read the content-type header, so set it
-                req.setContentType(valueDC.toString());
             }
         }
 
@@ -439,16 +436,16 @@ final class AjpMessageUtils {
             final MimeHeaders headers = httpResponsePacket.getHeaders();
             final String contentType = httpResponsePacket.getContentType();
             if (contentType != null) {
-                headers.setValue("Content-Type").setString(contentType);
+                headers.setValue(Header.ContentType).setString(contentType);
             }
             final String contentLanguage = httpResponsePacket.getContentLanguage();
             if (contentLanguage != null) {
-                headers.setValue("Content-Language").setString(contentLanguage);
+                headers.setValue(Header.ContentLanguage).setString(contentLanguage);
             }
             final long contentLength = httpResponsePacket.getContentLength();
             if (contentLength >= 0) {
                 final Buffer contentLengthBuffer = getLongAsBuffer(mm, contentLength);
-                headers.setValue("Content-Length").setBuffer(contentLengthBuffer,
+                headers.setValue(Header.ContentLength).setBuffer(contentLengthBuffer,
                         contentLengthBuffer.position(), contentLengthBuffer.limit());
             }
 
@@ -458,7 +455,13 @@ final class AjpMessageUtils {
 
             for (int i = 0; i < numHeaders; i++) {
                 final DataChunk headerName = headers.getName(i);
-                encodedBuffer = putBytes(mm, encodedBuffer, headerName, tempBuffer);
+                final int headerCode = getResponseHeaderCode(headerName);
+                if (headerCode != -1) {
+                    // common header names are sent as integer codes
+                    encodedBuffer = putShort(mm, encodedBuffer, headerCode);
+                } else {
+                    encodedBuffer = putBytes(mm, encodedBuffer, headerName, tempBuffer);
+                }
 
                 final DataChunk headerValue = headers.getValue(i);
                 encodedBuffer = putBytes(mm, encodedBuffer, headerValue, tempBuffer);
@@ -480,6 +483,11 @@ final class AjpMessageUtils {
     public static Buffer appendContentAndTrim(final MemoryManager memoryManager,
             Buffer dstBuffer, Buffer httpContentBuffer) {
         Buffer resultBuffer = null;
+        // the previous chunk terminating \0 is put together with the next
+        // chunk header, so all the chunks are gathered in one Buffer with
+        // one small header Buffer per chunk
+        boolean isTerminatorPending = false;
+        
         do {
             Buffer contentRemainder = null;
             if (httpContentBuffer.remaining() > MAX_BODY_CHUNK_CONTENT_SIZE) {
@@ -487,58 +495,53 @@ final class AjpMessageUtils {
                         httpContentBuffer.position() + MAX_BODY_CHUNK_CONTENT_SIZE);
             }
 
-            final Buffer encodedContentChunk = appendContentChunkAndTrim(
-                    memoryManager,dstBuffer, httpContentBuffer);
-            resultBuffer = Buffers.appendBuffers(memoryManager, resultBuffer,
-                    encodedContentChunk);
-
+            final int headerSize = isTerminatorPending
+                    ? BODY_CHUNK_HEADER_SIZE + 1
+                    : BODY_CHUNK_HEADER_SIZE;
+            
+            final Buffer headerBuffer;
+            if (dstBuffer != null && dstBuffer.remaining() >= headerSize) {
+                headerBuffer = dstBuffer;
+            } else {
+                if (dstBuffer != null) {
+                    dstBuffer.trim();
+                    resultBuffer = dstBuffer;
+                }
+                headerBuffer = memoryManager.allocate(headerSize);
+                headerBuffer.allowBufferDispose(true);
+            }
+            
             // dstBuffer use only once, when it comes from caller
             dstBuffer = null;
-            httpContentBuffer = contentRemainder;
-        } while (httpContentBuffer != null && httpContentBuffer.hasRemaining());
-
-        return resultBuffer;
-    }
 
-    private static Buffer appendContentChunkAndTrim(final MemoryManager memoryManager,
-            final Buffer dstBuffer, final Buffer httpContentBuffer) {
-
-        final boolean useDstBufferForHeaders = dstBuffer != null &&
-                dstBuffer.remaining() >= BODY_CHUNK_HEADER_SIZE;
-
-        final Buffer headerBuffer;
-        if (useDstBufferForHeaders) {
-            headerBuffer = dstBuffer;
-        } else {
-            if (dstBuffer != null) {
-                dstBuffer.trim();
+            if (isTerminatorPending) {
+                headerBuffer.put((byte) 0);
             }
-            headerBuffer = memoryManager.allocate(BODY_CHUNK_HEADER_SIZE);
-            headerBuffer.allowBufferDispose(true);
-        }
+            
+            final int chunkSize = httpContentBuffer.remaining();
+            headerBuffer.put((byte) 'A');
+            headerBuffer.put((byte) 'B');
+            headerBuffer.putShort((short) (4 + chunkSize));
+            headerBuffer.put(AjpConstants.JK_AJP13_SEND_BODY_CHUNK);
+            headerBuffer.putShort((short) chunkSize);
+            headerBuffer.trim();
 
-        headerBuffer.put((byte) 'A');
-        headerBuffer.put((byte) 'B');
-        headerBuffer.putShort((short) (4 + httpContentBuffer.remaining()));
-        headerBuffer.put(AjpConstants.JK_AJP13_SEND_BODY_CHUNK);
-        headerBuffer.putShort((short) httpContentBuffer.remaining());
-        headerBuffer.trim();
+            resultBuffer = Buffers.appendBuffers(memoryManager,
+                    resultBuffer, headerBuffer);
+            resultBuffer = Buffers.appendBuffers(memoryManager,
+                    resultBuffer, httpContentBuffer);
+            
+            isTerminatorPending = true;
+            httpContentBuffer = contentRemainder;
+        } while (httpContentBuffer != null && httpContentBuffer.hasRemaining());
 
-        Buffer resultBuffer = Buffers.appendBuffers(memoryManager,
-                headerBuffer, httpContentBuffer);
-        
-        // Add terminating \0
+        // Add the last chunk terminating \0
         final Buffer terminatingBuffer = memoryManager.allocate(1);
         terminatingBuffer.allowBufferDispose(true);
         
         resultBuffer = Buffers.appendBuffers(memoryManager,
                 resultBuffer, terminatingBuffer);
         
-        if (!useDstBufferForHeaders && dstBuffer != null) {
-            resultBuffer = Buffers.appendBuffers(memoryManager,
-                    dstBuffer, resultBuffer);
-        }
-
         if (resultBuffer.isComposite()) {
             // If during buffer appending - composite buffer was created -
             // allow buffer disposing
@@ -548,6 +551,24 @@ final class AjpMessageUtils {
         return resultBuffer;
     }
 
+    /**
+     * @return the AJP integer code of the common response header name,
+     *         or <tt>-1</tt> if the header name has to be sent as a string.
+     */
+    private static int getResponseHeaderCode(final DataChunk headerName) {
+        final int length = headerName.getLength();
+        final byte[][] names = AjpConstants.responseHeaderTransArray;
+        
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length == length
+                    && headerName.equalsIgnoreCaseLowerCase(names[i])) {
+                return AjpConstants.SC_RESP_CONTENT_TYPE + i;
+            }
+        }
+        
+        return -1;
+    }
+
     private static Buffer putBytes(final MemoryManager memoryManager,
                                    Buffer dstBuffer,
                                    final DataChunk dataChunk,
@@ -240,6 +240,73 @@ public class BasicAjpTest extends AjpTestBase {
         Assert.assertEquals(AjpConstants.JK_AJP13_END_RESPONSE, ajpResponse.getType());
     }
 
+    @Test
+    public void testCodedHeadersAndLargeBody() throws Exception {
+        final int size = 20000;
+        
+        startHttpServer(new HttpHandler() {
+
+            @Override
+            public void service(Request request, Response response)
+                    throws Exception {
+                if (!"text/plain;charset=UTF-16".equals(request.getContentType())
+                        || !"UTF-16".equals(request.getCharacterEncoding())
+                        || !"gzip".equals(request.getHeader("Accept-Encoding"))
+                        || !"en".equals(request.getHeader("accept-language"))) {
+                    response.sendError(500, "Unexpected request headers");
+                    return;
+                }
+                
+                response.setContentType("text/plain");
+                response.setHeader("X-Custom", "value");
+                response.setContentLength(size);
+                
+                final byte[] body = new byte[size];
+                for (int i = 0; i < size; i++) {
+                    body[i] = (byte) ((i % 'Z' - 'A') + 'A');
+                }
+                response.getOutputStream().write(body);
+            }
+
+        });
+
+        final AjpForwardRequestPacket headersPacket =
+                new AjpForwardRequestPacket("GET", "/myresource", 80, PORT);
+        headersPacket.addHeader("Content-Type", "text/plain;charset=UTF-16");
+        headersPacket.addHeader("Accept-Encoding", "gzip");
+        headersPacket.addHeader("Accept-Language", "en");
+        headersPacket.addHeader("Host", "localhost:80");
+        
+        final byte[] requestBytes = headersPacket.toByteArray();
+        
+        for (int r = 0; r < 2; r++) {
+            send(requestBytes);
+
+            AjpResponse ajpResponse = Utils.parseResponse(readAjpMessage());
+            assertEquals(ajpResponse.getResponseMessage(), 200, ajpResponse.getResponseCode());
+            assertEquals("text/plain", ajpResponse.getHeaders().getHeader("Content-Type"));
+            assertEquals(String.valueOf(size), ajpResponse.getHeaders().getHeader("Content-Length"));
+            assertEquals("value", ajpResponse.getHeaders().getHeader("X-Custom"));
+
+            int received = 0;
+            while (true) {
+                ajpResponse = Utils.parseResponse(readAjpMessage());
+                if (ajpResponse.getType() == AjpConstants.JK_AJP13_END_RESPONSE) {
+                    break;
+                }
+
+                assertEquals(AjpConstants.JK_AJP13_SEND_BODY_CHUNK, ajpResponse.getType());
+                final byte[] body = ajpResponse.getBody();
+                for (int i = 0; i < body.length; i++) {
+                    assertEquals((byte) (((received + i) % 'Z' - 'A') + 'A'), body[i]);
+                }
+                received += body.length;
+            }
+
+            assertEquals(size, received);
+        }
+    }
+    
     @Test
     public void testPingPong() throws Exception {
         startHttpServer(new HttpHandler() {
@@ -42,6 +42,7 @@ package org.glassfish.grizzly.http.ajp;
 import java.io.*;
 import java.net.URL;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.util.MimeHeaders;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.MemoryManager;
 
@@ -144,9 +145,9 @@ public class Utils {
                 pos++;  // consume terminating 0x00
 
 
-                AjpHttpRequest request = AjpHttpRequest.create();
-                pos = AjpMessageUtils.decodeHeaders(buffer, pos, request);
-                ajpResponse.setHeaders(request.getHeaders());
+                final MimeHeaders headers = new MimeHeaders();
+                pos = decodeResponseHeaders(buffer, pos, headers);
+                ajpResponse.setHeaders(headers);
                 break;
             }
             case AjpConstants.JK_AJP13_SEND_BODY_CHUNK:
@@ -155,7 +156,9 @@ public class Utils {
                 pos += 2;
 
                 body = new byte[size];
-                System.arraycopy(buffer, pos, body, 0, size);
+                for (int i = 0; i < size; i++) {
+                    body[i] = buffer.get(pos + i);
+                }
                 pos += size;
                 
                 pos ++;
@@ -189,6 +192,41 @@ public class Utils {
         return ajpResponse;
     }
     
+    private static int decodeResponseHeaders(final Buffer buffer, int pos,
+            final MimeHeaders headers) {
+        final int count = AjpMessageUtils.readShort(buffer, pos);
+        pos += 2;
+        
+        for (int i = 0; i < count; i++) {
+            final int code = AjpMessageUtils.readShort(buffer, pos);
+            final String name;
+            if ((code & 0xFF00) == 0xA000) {
+                name = new String(AjpConstants.responseHeaderTransArray[
+                        (code & 0xFF) - 1]);
+                pos += 2;
+            } else {
+                name = readString(buffer, pos);
+                pos += 2 + code + 1;
+            }
+            
+            final int valueLength = AjpMessageUtils.readShort(buffer, pos);
+            headers.addValue(name).setString(readString(buffer, pos));
+            pos += 2 + valueLength + 1;
+        }
+        
+        return pos;
+    }
+    
+    private static String readString(final Buffer buffer, final int pos) {
+        final int length = AjpMessageUtils.readShort(buffer, pos);
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(pos + 2 + i);
+        }
+        
+        return new String(bytes);
+    }
+    
     public static String dumpByteTable(Buffer buffer) {
         StringBuilder bytes = new StringBuilder();
         StringBuilder chars = new StringBuilder();
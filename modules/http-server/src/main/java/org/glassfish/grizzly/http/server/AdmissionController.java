@@ -0,0 +1,414 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.http.HttpHeadersTemplate;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+/**
+ * Admission controller, which sheds HTTP requests early, when the server is
+ * overloaded, instead of letting them wait in the worker queue until the
+ * client gives up.
+ * 
+ * Two mechanisms are combined:
+ * <ul>
+ *   <li>a concurrency limit, which bounds the number of requests being
+ *   processed at the same time;</li>
+ *   <li>CoDel (Controlled Delay) applied to the time requests spend in the
+ *   {@link RequestExecutorProvider} executor queue (sojourn time). If the
+ *   sojourn time stays above the target for the whole interval, the
+ *   controller starts rejecting requests and shrinks the concurrency limit.
+ *   Once the queue is drained, the limit grows back additively.</li>
+ * </ul>
+ * 
+ * The sojourn time is only available for {@link HttpHandler}s, whose
+ * {@link RequestExecutorProvider} dispatches requests to an executor. For
+ * {@link HttpHandler}s executed in the current thread, only the concurrency
+ * limit applies.
+ * 
+ * Each {@link HttpHandler} has an admission {@link Priority}, see
+ * {@link HttpHandler#setAdmissionPriority(AdmissionController.Priority)}.
+ * 
+ * Rejected requests get <tt>503 Service Unavailable</tt> response with empty
+ * body and pre-encoded <tt>Retry-After</tt> header. HTTP/2 streams of rejected
+ * requests are reset with <tt>REFUSED_STREAM</tt> error code, which lets the
+ * client retry the request safely.
+ * 
+ * Admission decisions and limit changes are reported via
+ * {@link HttpServerProbe#onRequestRejectEvent(HttpServerFilter, Connection, Request)}
+ * and {@link HttpServerProbe#onAdmissionLimitChangeEvent(HttpServerFilter, int)}.
+ * 
+ * @see ServerFilterConfiguration#setAdmissionController(AdmissionController)
+ * @since 2.3.23
+ */
+public class AdmissionController {
+    /**
+     * The {@link org.glassfish.grizzly.http.HttpRequestPacket} attribute,
+     * which marks the request as rejected by the admission controller.
+     */
+    public static final String REJECTED_REQUEST_ATTRIBUTE =
+            AdmissionController.class.getName() + ".rejected";
+    
+    /**
+     * The request admission priority.
+     */
+    public enum Priority {
+        /**
+         * The requests are rejected only if the max concurrency limit is
+         * reached, the queueing delay is ignored.
+         */
+        CRITICAL,
+        /**
+         * The requests are rejected if the current concurrency limit is
+         * reached, or at the CoDel control law rate, when the queueing delay
+         * is above the target.
+         */
+        NORMAL,
+        /**
+         * The requests are rejected if half of the current concurrency limit
+         * is reached, or whenever the queueing delay is above the target.
+         */
+        SHEDDABLE
+    }
+    
+    private static final int DEFAULT_MIN_LIMIT = 8;
+    private static final int DEFAULT_MAX_LIMIT = 1024;
+    
+    private volatile long targetNanos = TimeUnit.MILLISECONDS.toNanos(5);
+    private volatile long intervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    
+    private volatile int minLimit = DEFAULT_MIN_LIMIT;
+    private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+    private volatile int limit = DEFAULT_MAX_LIMIT;
+    
+    private volatile HttpHeadersTemplate rejectHeaders = createRejectHeaders(1);
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // the number of requests completed since the last limit increase
+    private final AtomicInteger completedCount = new AtomicInteger();
+    
+    // CoDel state
+    private volatile long firstAboveNanos;
+    private volatile long lastSampleNanos;
+    private volatile boolean isDropping;
+    private long dropNextNanos; // guarded by this
+    private int dropCount; // guarded by this
+    
+    private volatile long lastDecreaseNanos = System.nanoTime() - intervalNanos;
+    
+    /**
+     * @return the target queueing delay in the given {@link TimeUnit}.
+     */
+    public long getTargetQueueDelay(final TimeUnit timeUnit) {
+        return timeUnit.convert(targetNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the target queueing delay (5ms by default). If the sojourn time of
+     * requests in the executor queue stays above the target for the whole
+     * interval, the server is considered overloaded.
+     * 
+     * @param targetQueueDelay the target queueing delay
+     * @param timeUnit {@link TimeUnit}
+     */
+    public void setTargetQueueDelay(final long targetQueueDelay,
+            final TimeUnit timeUnit) {
+        targetNanos = timeUnit.toNanos(targetQueueDelay);
+    }
+
+    /**
+     * @return the CoDel interval in the given {@link TimeUnit}.
+     */
+    public long getInterval(final TimeUnit timeUnit) {
+        return timeUnit.convert(intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the CoDel interval (100ms by default), which is expected to be
+     * around the worst-case request processing time.
+     * 
+     * @param interval the interval
+     * @param timeUnit {@link TimeUnit}
+     */
+    public void setInterval(final long interval, final TimeUnit timeUnit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval has to be positive");
+        }
+        
+        intervalNanos = timeUnit.toNanos(interval);
+    }
+
+    /**
+     * @return the minimum concurrency limit.
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Sets the minimum concurrency limit, the limit never shrinks below
+     * this value.
+     * 
+     * @param minLimit the minimum concurrency limit
+     */
+    public void setMinLimit(final int minLimit) {
+        if (minLimit <= 0) {
+            throw new IllegalArgumentException("minLimit has to be positive");
+        }
+        
+        this.minLimit = minLimit;
+        if (limit < minLimit) {
+            limit = minLimit;
+        }
+    }
+
+    /**
+     * @return the maximum concurrency limit.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Sets the maximum concurrency limit, which is also the initial
+     * concurrency limit and the limit applied to
+     * {@link Priority#CRITICAL} requests.
+     * 
+     * @param maxLimit the maximum concurrency limit
+     */
+    public void setMaxLimit(final int maxLimit) {
+        if (maxLimit <= 0) {
+            throw new IllegalArgumentException("maxLimit has to be positive");
+        }
+        
+        this.maxLimit = maxLimit;
+        limit = maxLimit;
+    }
+
+    /**
+     * Sets the <tt>Retry-After</tt> header value of the rejected requests'
+     * responses (1 second by default).
+     * 
+     * @param retryAfterSeconds the number of seconds, or <tt>-1</tt> to not
+     *  send the <tt>Retry-After</tt> header
+     */
+    public void setRetryAfter(final int retryAfterSeconds) {
+        rejectHeaders = createRejectHeaders(retryAfterSeconds);
+    }
+    
+    /**
+     * @return the current concurrency limit.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of requests being currently processed.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    /**
+     * @return <tt>true</tt> if the queueing delay has been above the target
+     *  for at least one interval, or <tt>false</tt> otherwise.
+     */
+    public boolean isOverloaded() {
+        return isDropping(System.nanoTime());
+    }
+    
+    /**
+     * Decides whether the {@link Request} has to be admitted. If the
+     * {@link Request} is rejected, the <tt>503</tt> response is prepared.
+     * 
+     * @return <tt>true</tt> if the {@link Request} is admitted, or
+     *  <tt>false</tt> if it was rejected
+     */
+    boolean admit(final HttpServerFilter filter, final Connection connection,
+            final Request request, final Response response,
+            final Priority priority) {
+        
+        final int current = inFlight.incrementAndGet();
+        
+        final boolean isAdmitted;
+        switch (priority) {
+            case CRITICAL:
+                isAdmitted = current <= maxLimit;
+                break;
+            case SHEDDABLE:
+                isAdmitted = current <= (limit >> 1)
+                        && !isDropping(System.nanoTime());
+                break;
+            default:
+                isAdmitted = current <= limit && !shouldDrop();
+        }
+        
+        if (isAdmitted) {
+            request.admissionController = this;
+            return true;
+        }
+        
+        inFlight.decrementAndGet();
+        
+        request.getRequest().setAttribute(REJECTED_REQUEST_ATTRIBUTE, Boolean.TRUE);
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+        response.setContentLength(0);
+        response.setHeadersTemplate(rejectHeaders);
+        
+        HttpServerProbeNotifier.notifyRequestReject(filter, connection, request);
+        return false;
+    }
+    
+    /**
+     * Notifies the controller about the time an admitted request spent in the
+     * executor queue.
+     */
+    void onDequeue(final HttpServerFilter filter, final long sojournNanos) {
+        final long now = System.nanoTime();
+        lastSampleNanos = now;
+        
+        if (sojournNanos < targetNanos) {
+            firstAboveNanos = 0;
+            isDropping = false;
+            return;
+        }
+        
+        final long firstAbove = firstAboveNanos;
+        if (firstAbove == 0) {
+            firstAboveNanos = now + intervalNanos;
+        } else if (now - firstAbove >= 0) {
+            if (!isDropping) {
+                synchronized (this) {
+                    dropCount = 0;
+                    dropNextNanos = now;
+                }
+                
+                isDropping = true;
+            }
+            
+            decreaseLimit(filter, now);
+        }
+    }
+    
+    /**
+     * Notifies the controller, that an admitted request processing is
+     * complete.
+     */
+    void onComplete(final HttpServerFilter filter) {
+        final int current = inFlight.getAndDecrement();
+        
+        final int currentLimit = limit;
+        // grow the limit by one per limit's worth of completed requests,
+        // if the limit is actually in use
+        if (currentLimit < maxLimit && current >= (currentLimit >> 1)
+                && !isDropping
+                && completedCount.incrementAndGet() >= currentLimit) {
+            completedCount.set(0);
+            limit = currentLimit + 1;
+            HttpServerProbeNotifier.notifyAdmissionLimitChange(filter,
+                    currentLimit + 1);
+        }
+    }
+    
+    private boolean isDropping(final long now) {
+        if (!isDropping) {
+            return false;
+        }
+        
+        // no samples for the whole interval means the queue is empty
+        if (now - lastSampleNanos > intervalNanos) {
+            firstAboveNanos = 0;
+            isDropping = false;
+            return false;
+        }
+        
+        return true;
+    }
+    
+    private boolean shouldDrop() {
+        final long now = System.nanoTime();
+        if (!isDropping(now)) {
+            return false;
+        }
+        
+        synchronized (this) {
+            if (now - dropNextNanos >= 0) {
+                // CoDel control law: drop rate grows as sqrt of drops count
+                dropCount++;
+                dropNextNanos = now + (long) (intervalNanos / Math.sqrt(dropCount));
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private void decreaseLimit(final HttpServerFilter filter, final long now) {
+        if (now - lastDecreaseNanos < intervalNanos) {
+            return;
+        }
+        
+        lastDecreaseNanos = now;
+        completedCount.set(0);
+        
+        final int currentLimit = limit;
+        final int newLimit = Math.max(minLimit, currentLimit * 9 / 10);
+        if (newLimit != currentLimit) {
+            limit = newLimit;
+            HttpServerProbeNotifier.notifyAdmissionLimitChange(filter, newLimit);
+        }
+    }
+    
+    private static HttpHeadersTemplate createRejectHeaders(
+            final int retryAfterSeconds) {
+        final HttpHeadersTemplate.Builder builder = HttpHeadersTemplate.builder();
+        if (retryAfterSeconds >= 0) {
+            builder.header(Header.RetryAfter, Integer.toString(retryAfterSeconds));
+        }
+        
+        return builder.build();
+    }
+}
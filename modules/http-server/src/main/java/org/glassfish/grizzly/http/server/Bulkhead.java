@@ -0,0 +1,302 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.monitoring.LatencyHistogram;
+
+/**
+ * The {@link RequestExecutorProvider}, which executes the requests on the
+ * isolated part of the {@link BulkheadGroup} thread pool.
+ * 
+ * At most {@link #getMaxConcurrency()} requests are processed concurrently,
+ * plus the shared threads borrowed from the {@link BulkheadGroup}, the rest
+ * wait in the bounded queue. If the queue is full, the request is rejected
+ * with <tt>503</tt> status code.
+ * 
+ * The <tt>Bulkhead</tt> has to be set on the {@link HttpHandler}(s) serving
+ * the isolated registrations using
+ * {@link HttpHandler#setRequestExecutorProvider(RequestExecutorProvider)}.
+ * 
+ * @see BulkheadGroup#createBulkhead(String, int, int)
+ * @since 2.3.23
+ */
+public final class Bulkhead implements RequestExecutorProvider {
+    private static final Logger LOGGER = Grizzly.logger(Bulkhead.class);
+    
+    private final BulkheadGroup group;
+    private final String name;
+    private final int maxConcurrency;
+    private final int maxQueueSize;
+    
+    private final Queue<QueuedTask> queue = new ArrayDeque<QueuedTask>();
+    // the number of running tasks, including the ones on borrowed threads
+    private int activeCount; // guarded by queue
+    private int borrowedCount; // guarded by queue
+    
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final LatencyHistogram queueTime;
+    
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(final Runnable task) {
+            submit(task);
+        }
+    };
+    
+    Bulkhead(final BulkheadGroup group, final String name,
+            final int maxConcurrency, final int maxQueueSize) {
+        this.group = group;
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueueSize = maxQueueSize;
+        queueTime = new LatencyHistogram("bulkhead-" + name + "-queue-time");
+    }
+
+    @Override
+    public Executor getExecutor(final Request request) {
+        return executor;
+    }
+    
+    /**
+     * @return the <tt>Bulkhead</tt> name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of threads reserved for the <tt>Bulkhead</tt>.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return the max number of requests waiting for a thread.
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+    
+    /**
+     * @return the number of requests being processed.
+     */
+    public int getActiveCount() {
+        synchronized (queue) {
+            return activeCount;
+        }
+    }
+    
+    /**
+     * @return the number of requests being processed on the threads borrowed
+     *  from the {@link BulkheadGroup}.
+     */
+    public int getBorrowedCount() {
+        synchronized (queue) {
+            return borrowedCount;
+        }
+    }
+    
+    /**
+     * @return the number of requests waiting for a thread.
+     */
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+    
+    /**
+     * @return the ratio of busy reserved threads, <tt>1.0</tt> means all the
+     *  reserved threads are busy and new requests are either queued or
+     *  processed on borrowed threads.
+     */
+    public double getSaturation() {
+        synchronized (queue) {
+            return (double) Math.min(activeCount, maxConcurrency) / maxConcurrency;
+        }
+    }
+    
+    /**
+     * @return the number of completed requests.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+    
+    /**
+     * @return the number of rejected requests.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+    
+    /**
+     * @return the {@link LatencyHistogram} of the time requests spent waiting
+     *  for a thread.
+     */
+    public LatencyHistogram getQueueTimeHistogram() {
+        return queueTime;
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{" + "name=" + name
+                + ", maxConcurrency=" + maxConcurrency
+                + ", maxQueueSize=" + maxQueueSize + '}';
+    }
+    
+    private void submit(final Runnable task) {
+        final boolean isBorrowed;
+        synchronized (queue) {
+            if (activeCount - borrowedCount < maxConcurrency) {
+                isBorrowed = false;
+            } else if (queue.isEmpty() && group.tryBorrowThread()) {
+                isBorrowed = true;
+                borrowedCount++;
+            } else if (queue.size() < maxQueueSize) {
+                queue.offer(new QueuedTask(task, System.nanoTime()));
+                return;
+            } else {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException(
+                        "The bulkhead " + name + " is saturated");
+            }
+            
+            activeCount++;
+        }
+        
+        queueTime.record(0, TimeUnit.NANOSECONDS);
+        
+        try {
+            group.getThreadPool().execute(new Worker(task, isBorrowed));
+        } catch (RejectedExecutionException e) {
+            onWorkerDone(isBorrowed);
+            throw e;
+        }
+    }
+    
+    private void onWorkerDone(final boolean isBorrowed) {
+        synchronized (queue) {
+            activeCount--;
+            if (isBorrowed) {
+                borrowedCount--;
+            }
+        }
+        
+        if (isBorrowed) {
+            group.returnThread();
+        }
+    }
+    
+    private final class Worker implements Runnable {
+        private final boolean isBorrowed;
+        private Runnable task;
+
+        private Worker(final Runnable task, final boolean isBorrowed) {
+            this.task = task;
+            this.isBorrowed = isBorrowed;
+        }
+        
+        @Override
+        public void run() {
+            while (task != null) {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    // don't let the failed task take the queued ones
+                    // and the bulkhead slot with it
+                    LOGGER.log(Level.WARNING,
+                            "Uncaught exception in the bulkhead " + name, t);
+                }
+                
+                completedCount.incrementAndGet();
+                task = nextTask();
+            }
+        }
+
+        private Runnable nextTask() {
+            final QueuedTask queuedTask;
+            synchronized (queue) {
+                // the reserved thread keeps serving the queued requests,
+                // the borrowed one is returned to the group
+                queuedTask = !isBorrowed ? queue.poll() : null;
+                if (queuedTask == null) {
+                    activeCount--;
+                    if (isBorrowed) {
+                        borrowedCount--;
+                    }
+                }
+            }
+            
+            if (queuedTask != null) {
+                queueTime.recordSince(queuedTask.queueTimeNanos);
+                return queuedTask.task;
+            }
+            
+            if (isBorrowed) {
+                group.returnThread();
+            }
+            
+            return null;
+        }
+    }
+    
+    private static final class QueuedTask {
+        private final Runnable task;
+        private final long queueTimeNanos;
+
+        private QueuedTask(final Runnable task, final long queueTimeNanos) {
+            this.task = task;
+            this.queueTimeNanos = queueTimeNanos;
+        }
+    }
+}
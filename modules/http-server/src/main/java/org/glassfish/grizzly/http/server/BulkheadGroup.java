@@ -0,0 +1,228 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+/**
+ * The group of {@link Bulkhead}s sharing one thread pool.
+ * 
+ * Each {@link Bulkhead} reserves a part of the group thread pool, so a
+ * saturated {@link Bulkhead} can't starve the others. The threads, which are
+ * not reserved by any {@link Bulkhead}, form the shared capacity, which
+ * can be borrowed by any {@link Bulkhead}, whose reserved threads are busy.
+ * 
+ * <pre>
+ *     final BulkheadGroup bulkheads = new BulkheadGroup("app", 64);
+ *     
+ *     final HttpHandler reportsHandler = ...;
+ *     reportsHandler.setRequestExecutorProvider(
+ *             bulkheads.createBulkhead("reports", 8, 100));
+ *     final HttpHandler healthHandler = ...;
+ *     healthHandler.setRequestExecutorProvider(
+ *             bulkheads.createBulkhead("health", 2, 10));
+ *     
+ *     serverConfiguration.addHttpHandler(reportsHandler, "/reports/*");
+ *     serverConfiguration.addHttpHandler(healthHandler, "/health");
+ * </pre>
+ * 
+ * @since 2.3.23
+ */
+public class BulkheadGroup {
+    private final GrizzlyExecutorService threadPool;
+    private final int maxThreads;
+    
+    private final List<Bulkhead> bulkheads = new ArrayList<Bulkhead>();
+    private int reservedThreads; // guarded by bulkheads
+    
+    private final AtomicInteger borrowedThreads = new AtomicInteger();
+    private volatile int sharedThreads;
+    
+    /**
+     * Creates the <tt>BulkheadGroup</tt> with the given thread budget.
+     * 
+     * @param name the group name, used as the thread pool name
+     * @param maxThreads the total number of threads in the group
+     */
+    public BulkheadGroup(final String name, final int maxThreads) {
+        this(ThreadPoolConfig.defaultConfig().copy()
+                .setPoolName("Grizzly-bulkhead-" + name)
+                .setCorePoolSize(maxThreads)
+                .setMaxPoolSize(maxThreads));
+    }
+    
+    /**
+     * Creates the <tt>BulkheadGroup</tt>, which thread pool is based on the
+     * passed {@link ThreadPoolConfig}. The
+     * {@link ThreadPoolConfig#getMaxPoolSize()} is the total number of threads
+     * in the group.
+     * 
+     * @param threadPoolConfig {@link ThreadPoolConfig}
+     */
+    public BulkheadGroup(final ThreadPoolConfig threadPoolConfig) {
+        maxThreads = threadPoolConfig.getMaxPoolSize();
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("maxPoolSize has to be positive");
+        }
+        
+        // the bulkheads never submit more tasks than there are threads,
+        // so the pool queue is not limited
+        threadPool = GrizzlyExecutorService.createInstance(
+                threadPoolConfig.copy()
+                .setCorePoolSize(maxThreads)
+                .setQueueLimit(-1));
+        sharedThreads = maxThreads;
+    }
+
+    /**
+     * Creates a new {@link Bulkhead}, which reserves <tt>maxConcurrency</tt>
+     * threads of the group.
+     * 
+     * @param name the {@link Bulkhead} name
+     * @param maxConcurrency the number of threads reserved for the {@link Bulkhead}
+     * @param maxQueueSize the max number of requests waiting for a thread,
+     *  the requests above the limit are rejected with <tt>503</tt> status
+     * @return {@link Bulkhead}
+     * @throws IllegalStateException if there are not enough unreserved threads
+     *  in the group
+     */
+    public Bulkhead createBulkhead(final String name, final int maxConcurrency,
+            final int maxQueueSize) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency has to be positive");
+        }
+        
+        if (maxQueueSize < 0) {
+            throw new IllegalArgumentException("maxQueueSize can't be negative");
+        }
+        
+        synchronized (bulkheads) {
+            if (reservedThreads + maxConcurrency > maxThreads) {
+                throw new IllegalStateException("Can't reserve " + maxConcurrency
+                        + " threads for bulkhead " + name + ", only "
+                        + (maxThreads - reservedThreads) + " threads are available");
+            }
+            
+            final Bulkhead bulkhead = new Bulkhead(this, name, maxConcurrency,
+                    maxQueueSize);
+            bulkheads.add(bulkhead);
+            reservedThreads += maxConcurrency;
+            sharedThreads = maxThreads - reservedThreads;
+            
+            return bulkhead;
+        }
+    }
+    
+    /**
+     * @return the {@link Bulkhead}s of this group.
+     */
+    public Collection<Bulkhead> getBulkheads() {
+        synchronized (bulkheads) {
+            return Collections.unmodifiableList(
+                    new ArrayList<Bulkhead>(bulkheads));
+        }
+    }
+    
+    /**
+     * @return the total number of threads in the group.
+     */
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * @return the number of threads, which are not reserved by any
+     *  {@link Bulkhead} and might be borrowed.
+     */
+    public int getSharedThreads() {
+        return sharedThreads;
+    }
+    
+    /**
+     * @return the number of shared threads currently borrowed by the
+     *  {@link Bulkhead}s.
+     */
+    public int getBorrowedThreads() {
+        return borrowedThreads.get();
+    }
+    
+    /**
+     * Shuts down the group thread pool.
+     */
+    public void shutdown() {
+        threadPool.shutdown();
+    }
+
+    /**
+     * Shuts down the group thread pool, the running tasks are interrupted.
+     */
+    public void shutdownNow() {
+        threadPool.shutdownNow();
+    }
+    
+    ExecutorService getThreadPool() {
+        return threadPool;
+    }
+    
+    boolean tryBorrowThread() {
+        for (;;) {
+            final int borrowed = borrowedThreads.get();
+            if (borrowed >= sharedThreads) {
+                return false;
+            }
+            
+            if (borrowedThreads.compareAndSet(borrowed, borrowed + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    void returnThread() {
+        borrowedThreads.decrementAndGet();
+    }
+}
@@ -44,6 +44,7 @@ import java.io.CharConversionException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -101,6 +102,18 @@ public abstract class HttpHandler {
      */
     private boolean allowCustomStatusMessage = true;
 
+    /**
+     * The {@link RequestExecutorProvider} of this HttpHandler.
+     */
+    private RequestExecutorProvider requestExecutorProvider =
+            DEFAULT_REQUEST_EXECUTOR_PROVIDER;
+    
+    /**
+     * The admission priority of the requests served by this HttpHandler.
+     */
+    private AdmissionController.Priority admissionPriority =
+            AdmissionController.Priority.NORMAL;
+    
     /**
      * HttpHandler name
      */
@@ -193,10 +206,19 @@ public abstract class HttpHandler {
     private boolean runService(final Request request, final Response response)
             throws Exception {
         
-        final Executor threadPool = getRequestExecutorProvider().getExecutor(request);
         final HttpServerFilter httpServerFilter = request.getServerFilter();
         final Connection connection = request.getContext().getConnection();
         
+        final AdmissionController admissionController =
+                httpServerFilter.getConfiguration().getAdmissionController();
+        if (admissionController != null && !admissionController.admit(
+                httpServerFilter, connection, request, response,
+                admissionPriority)) {
+            return true;
+        }
+        
+        final Executor threadPool = getRequestExecutorProvider().getExecutor(request);
+        
         if (threadPool == null) {
             final SuspendStatus suspendStatus = response.initSuspendStatus();
             
@@ -209,42 +231,58 @@ public abstract class HttpHandler {
             final FilterChainContext ctx = request.getContext();
             ctx.suspend();
             
-            threadPool.execute(new Runnable() {
-
-                @Override
-                public void run() {
-                    final SuspendStatus suspendStatus = response.initSuspendStatus();
+            final long dispatchTimeNanos = admissionController != null
+                    ? System.nanoTime()
+                    : 0;
+            
+            try {
+                threadPool.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (admissionController != null) {
+                            admissionController.onDequeue(httpServerFilter,
+                                    System.nanoTime() - dispatchTimeNanos);
+                        }
+                    
+                        final SuspendStatus suspendStatus = response.initSuspendStatus();
 
-                    boolean wasSuspended;
-                    try {
-                        HttpServerProbeNotifier.notifyBeforeService(
-                                httpServerFilter, connection, request,
-                                HttpHandler.this);
+                        boolean wasSuspended;
+                        try {
+                            HttpServerProbeNotifier.notifyBeforeService(
+                                    httpServerFilter, connection, request,
+                                    HttpHandler.this);
                         
-                        service(request, response);
-                        wasSuspended = suspendStatus.getAndInvalidate();
-                    } catch (Exception e) {
-                        LOGGER.log(Level.FINE, "service exception", e);
-                        if (!response.isCommitted()) {
-                            response.reset();
-                            try {
-                                HtmlHelper.setErrorAndSendErrorPage(
-                                        request, response,
-                                        response.getErrorPageGenerator(),
-                                        500, HttpStatus.INTERNAL_SERVER_ERROR_500.getReasonPhrase(),
-                                        HttpStatus.INTERNAL_SERVER_ERROR_500.getReasonPhrase(),
-                                        e);
-                            } catch (IOException ignored) {
+                            service(request, response);
+                            wasSuspended = suspendStatus.getAndInvalidate();
+                        } catch (Exception e) {
+                            LOGGER.log(Level.FINE, "service exception", e);
+                            if (!response.isCommitted()) {
+                                response.reset();
+                                try {
+                                    HtmlHelper.setErrorAndSendErrorPage(
+                                            request, response,
+                                            response.getErrorPageGenerator(),
+                                            500, HttpStatus.INTERNAL_SERVER_ERROR_500.getReasonPhrase(),
+                                            HttpStatus.INTERNAL_SERVER_ERROR_500.getReasonPhrase(),
+                                            e);
+                                } catch (IOException ignored) {
+                                }
                             }
+                            wasSuspended = false;
                         }
-                        wasSuspended = false;
-                    }
                     
-                    if (!wasSuspended) {
-                        ctx.resume();
+                        if (!wasSuspended) {
+                            ctx.resume();
+                        }
                     }
-                }
-            });
+                });
+            } catch (RejectedExecutionException e) {
+                // the executor is saturated
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+                response.setContentLength(0);
+                ctx.resume();
+            }
             
             return false;
         }
@@ -344,13 +382,58 @@ public abstract class HttpHandler {
         this.requestURIEncoding = Charsets.lookupCharset(requestURIEncoding);
     }
 
+    /**
+     * @return the admission priority of the requests served by this
+     *  <tt>HttpHandler</tt>.
+     * @see AdmissionController
+     * @since 2.3.23
+     */
+    public AdmissionController.Priority getAdmissionPriority() {
+        return admissionPriority;
+    }
+
+    /**
+     * Sets the admission priority of the requests served by this
+     * <tt>HttpHandler</tt>, which is used if the {@link AdmissionController}
+     * is configured (see {@link ServerFilterConfiguration#setAdmissionController(AdmissionController)}).
+     * 
+     * @param admissionPriority the admission priority
+     * @since 2.3.23
+     */
+    public void setAdmissionPriority(
+            final AdmissionController.Priority admissionPriority) {
+        if (admissionPriority == null) {
+            throw new IllegalArgumentException("admissionPriority can't be null");
+        }
+        
+        this.admissionPriority = admissionPriority;
+    }
+
     /**
      * @return the {@link RequestExecutorProvider} responsible for executing
      * user's code in {@link HttpHandler#service(org.glassfish.grizzly.http.server.Request, org.glassfish.grizzly.http.server.Response)}
      * and notifying {@link ReadHandler}, {@link WriteHandler} registered by the user.
      */
     public RequestExecutorProvider getRequestExecutorProvider() {
-        return DEFAULT_REQUEST_EXECUTOR_PROVIDER;
+        return requestExecutorProvider;
+    }
+
+    /**
+     * Sets the {@link RequestExecutorProvider} responsible for executing
+     * user's code in {@link HttpHandler#service(org.glassfish.grizzly.http.server.Request, org.glassfish.grizzly.http.server.Response)},
+     * for example the {@link Bulkhead}, isolating this <tt>HttpHandler</tt>
+     * requests from the others.
+     * 
+     * @param requestExecutorProvider {@link RequestExecutorProvider}
+     * @since 2.3.23
+     */
+    public void setRequestExecutorProvider(
+            final RequestExecutorProvider requestExecutorProvider) {
+        if (requestExecutorProvider == null) {
+            throw new IllegalArgumentException("requestExecutorProvider can't be null");
+        }
+        
+        this.requestExecutorProvider = requestExecutorProvider;
     }
     
     /**
@@ -51,6 +51,7 @@ import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.server.jmxbase.JmxEventListener;
 import org.glassfish.grizzly.http.server.jmxbase.Monitorable;
+import org.glassfish.grizzly.http.server.util.CompiledMapper;
 import org.glassfish.grizzly.http.server.util.DispatcherHelper;
 import org.glassfish.grizzly.http.server.util.Mapper;
 import org.glassfish.grizzly.http.server.util.MappingData;
@@ -118,6 +119,12 @@ public class HttpHandlerChain extends HttpHandler implements JmxEventListener {
      */
     private final Mapper mapper;
     
+    /**
+     * Compiled, immutable snapshot of the {@link #mapper}, which is rebuilt
+     * every time a {@link HttpHandler} is added or removed.
+     */
+    private volatile CompiledMapper compiledMapper;
+    
     /**
      * DispatchHelper, which maps path or name to the Mapper entry
      */
@@ -204,10 +211,14 @@ public class HttpHandlerChain extends HttpHandler implements JmxEventListener {
             
             final MappingData mappingData = request.obtainMappingData();
 
-            mapper.mapUriWithSemicolon(request.getRequest(),
-                                       decodedURI,
-                                       mappingData,
-                                       0);
+            final CompiledMapper compiledMapperLocal = compiledMapper;
+            if (compiledMapperLocal == null
+                    || !compiledMapperLocal.map(decodedURI, mappingData)) {
+                mapper.mapUriWithSemicolon(request.getRequest(),
+                                           decodedURI,
+                                           mappingData,
+                                           0);
+            }
 
 
             HttpHandler httpHandler;
@@ -325,6 +336,8 @@ public class HttpHandlerChain extends HttpHandler implements JmxEventListener {
                     mapper.addWrapper(LOCAL_HOST, ctx, wrapper, httpHandler);
                 }
                 
+                compiledMapper = CompiledMapper.compile(mapper);
+                
                 // Check if the only one HttpHandler is registered
                 // and if it's a root HttpHandler - apply optimization
                 if (handlersCount == 1 && mappings.length == 1 &&
@@ -372,6 +385,8 @@ public class HttpHandlerChain extends HttpHandler implements JmxEventListener {
                     }
                 }
                 
+                compiledMapper = CompiledMapper.compile(mapper);
+                
                 deregisterJmxForHandler(httpHandler);
                 httpHandler.destroy();
 
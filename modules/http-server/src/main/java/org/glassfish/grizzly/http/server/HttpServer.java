@@ -758,7 +758,8 @@ public class HttpServer {
                 GZipContentEncoding.DEFAULT_IN_BUFFER_SIZE,
                 GZipContentEncoding.DEFAULT_OUT_BUFFER_SIZE,
                 new CompressionEncodingFilter(compressionConfig,
-                    GZipContentEncoding.getGzipAliases()));
+                    GZipContentEncoding.getGzipAliases()),
+                compressionConfig);
             final ContentEncoding lzmaEncoding = new LZMAContentEncoding(
                     new CompressionEncodingFilter(compressionConfig,
                     LZMAContentEncoding.getLzmaAliases()));
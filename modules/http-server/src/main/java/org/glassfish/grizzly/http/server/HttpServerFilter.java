@@ -71,6 +71,7 @@ import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.localization.LogMessages;
 
 import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.FlightRecording;
 import org.glassfish.grizzly.monitoring.MonitoringAware;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 import org.glassfish.grizzly.monitoring.MonitoringUtils;
@@ -260,6 +261,12 @@ public class HttpServerFilter extends BaseFilter
                     return afterService(ctx, connection,
                             handlerRequest, handlerResponse);
                 } else {
+                    final FlightRecording flightRecording =
+                            FlightRecording.get(connection);
+                    if (flightRecording != null) {
+                        flightRecording.recordSuspend(handlerRequest.getRequestURI());
+                    }
+                    
                     return ctx.getSuspendAction();
                 }
             } else {
@@ -287,6 +294,13 @@ public class HttpServerFilter extends BaseFilter
             // We're finishing the request processing
             final Response response = (Response) message;
             final Request request = response.getRequest();
+            
+            final FlightRecording flightRecording =
+                    FlightRecording.get(connection);
+            if (flightRecording != null) {
+                flightRecording.recordResume(request.getRequestURI());
+            }
+            
             return afterService(ctx, connection, request, response);
         }
     }
@@ -384,6 +398,8 @@ public class HttpServerFilter extends BaseFilter
         response.finish();
         request.onAfterService();
         
+        request.releaseAdmission();
+        
         HttpServerProbeNotifier.notifyRequestComplete(this, connection, response);
         
         final HttpRequestPacket httpRequest = request.getRequest();
@@ -124,6 +124,28 @@ public interface HttpServerProbe {
     public void onBeforeServiceEvent(HttpServerFilter filter,
             Connection connection, Request request, HttpHandler httpHandler);
     
+    /**
+     * Method will be called, when the {@link Request} is rejected by the
+     * {@link AdmissionController}.
+     *
+     * @param filter {@link HttpServerFilter}, the event belongs to.
+     * @param connection {@link Connection}, the event belongs to.
+     * @param request received {@link Request}.
+     * @since 2.3.23
+     */
+    public void onRequestRejectEvent(HttpServerFilter filter,
+            Connection connection, Request request);
+
+    /**
+     * Method will be called, when the {@link AdmissionController}
+     * concurrency limit is changed.
+     *
+     * @param filter {@link HttpServerFilter}, the event belongs to.
+     * @param limit the new concurrency limit.
+     * @since 2.3.23
+     */
+    public void onAdmissionLimitChangeEvent(HttpServerFilter filter, int limit);
+    
     // ---------------------------------------------------------- Nested Classes
 
 
@@ -178,5 +200,11 @@ public interface HttpServerProbe {
          */
         @Override
         public void onBeforeServiceEvent(HttpServerFilter filter, Connection connection, Request request, HttpHandler httpHandler) {}
+
+        @Override
+        public void onRequestRejectEvent(HttpServerFilter filter, Connection connection, Request request) {}
+
+        @Override
+        public void onAdmissionLimitChangeEvent(HttpServerFilter filter, int limit) {}
     }
 }
@@ -177,4 +177,41 @@ final class HttpServerProbeNotifier {
             }
         }
     }    
+
+    /**
+     * Notify registered {@link HttpServerProbe}s about the request rejected
+     * by the {@link AdmissionController}.
+     *
+     * @param filter {@link HttpServerFilter}, the event belongs to.
+     * @param connection {@link Connection}, the event belongs to.
+     * @param request {@link Request}.
+     */
+    static void notifyRequestReject(final HttpServerFilter filter,
+            final Connection connection, final Request request) {
+
+        final HttpServerProbe[] probes = filter.monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (HttpServerProbe probe : probes) {
+                probe.onRequestRejectEvent(filter, connection, request);
+            }
+        }
+    }
+    
+    /**
+     * Notify registered {@link HttpServerProbe}s about the
+     * {@link AdmissionController} concurrency limit change.
+     *
+     * @param filter {@link HttpServerFilter}, the event belongs to.
+     * @param limit the new concurrency limit.
+     */
+    static void notifyAdmissionLimitChange(final HttpServerFilter filter,
+            final int limit) {
+
+        final HttpServerProbe[] probes = filter.monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (HttpServerProbe probe : probes) {
+                probe.onAdmissionLimitChangeEvent(filter, limit);
+            }
+        }
+    }
 }
@@ -0,0 +1,361 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compact off-heap storage for serialized {@link Session} attributes.
+ * 
+ * The memory is reserved in direct {@link ByteBuffer} slabs, which are split
+ * into power-of-two sized blocks from 64 bytes up to 64K. Freed blocks are
+ * kept in per-size free lists and reused, slabs are never returned until
+ * {@link #clear()} is called.
+ * 
+ * The store is thread-safe, its methods never call out to other locks,
+ * so it could be used while holding {@link Session} or shard locks.
+ */
+final class OffHeapSessionStore {
+    private static final int SLAB_SHIFT = 20;
+    private static final int SLAB_SIZE = 1 << SLAB_SHIFT;
+    private static final int MIN_BLOCK_SHIFT = 6;
+    private static final int MAX_BLOCK_SHIFT = 16;
+    
+    static final int MAX_BLOCK_SIZE = 1 << MAX_BLOCK_SHIFT;
+    
+    private static final byte STRING_TAG = 1;
+    private static final byte INTEGER_TAG = 2;
+    private static final byte LONG_TAG = 3;
+    private static final byte BOOLEAN_TAG = 4;
+    private static final byte OBJECT_TAG = 5;
+    
+    /**
+     * The number of off-heap bytes reserved by all the stores sharing
+     * the counter.
+     */
+    private final AtomicLong reservedBytes;
+    private volatile long maxReservedBytes;
+    
+    private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+    private ByteBuffer currentSlab;
+    private int currentSlabIdx = -1;
+    
+    private final int[][] freeBlocks =
+            new int[MAX_BLOCK_SHIFT - MIN_BLOCK_SHIFT + 1][];
+    private final int[] freeBlocksCount =
+            new int[MAX_BLOCK_SHIFT - MIN_BLOCK_SHIFT + 1];
+    
+    private long usedBytes;
+
+    OffHeapSessionStore(final AtomicLong reservedBytes,
+            final long maxReservedBytes) {
+        this.reservedBytes = reservedBytes;
+        this.maxReservedBytes = maxReservedBytes;
+    }
+    
+    /**
+     * Sets the maximum number of off-heap bytes, which could be reserved by
+     * all the stores sharing the counter.
+     */
+    void setMaxReservedBytes(final long maxReservedBytes) {
+        this.maxReservedBytes = maxReservedBytes;
+    }
+    
+    /**
+     * Stores the data and returns the handle, which could be used to load
+     * or free it later.
+     * 
+     * @return the handle, or <tt>-1</tt> if the data is too large or there
+     *  is no off-heap memory left.
+     */
+    synchronized long store(final byte[] data, final int length) {
+        if (length > MAX_BLOCK_SIZE) {
+            return -1;
+        }
+        
+        final int sizeClass = sizeClass(length);
+        final int blockSize = 1 << (sizeClass + MIN_BLOCK_SHIFT);
+        
+        final int address;
+        if (freeBlocksCount[sizeClass] > 0) {
+            address = freeBlocks[sizeClass][--freeBlocksCount[sizeClass]];
+        } else {
+            if (currentSlab == null || currentSlab.remaining() < blockSize) {
+                if (!allocateSlab()) {
+                    return -1;
+                }
+            }
+            
+            address = (currentSlabIdx << SLAB_SHIFT) + currentSlab.position();
+            currentSlab.position(currentSlab.position() + blockSize);
+        }
+        
+        final ByteBuffer slab = slabs.get(address >>> SLAB_SHIFT);
+        final ByteBuffer dup = slab.duplicate();
+        dup.position(address & (SLAB_SIZE - 1));
+        dup.put(data, 0, length);
+        
+        usedBytes += blockSize;
+        return ((long) address << 4) | sizeClass;
+    }
+    
+    /**
+     * Loads the data stored under the given handle.
+     */
+    synchronized byte[] load(final long handle, final int length) {
+        final int address = (int) (handle >>> 4);
+        final ByteBuffer dup = slabs.get(address >>> SLAB_SHIFT).duplicate();
+        dup.position(address & (SLAB_SIZE - 1));
+        
+        final byte[] data = new byte[length];
+        dup.get(data);
+        return data;
+    }
+    
+    /**
+     * Releases the block associated with the handle, so it could be reused.
+     */
+    synchronized void free(final long handle) {
+        if (slabs.isEmpty()) {
+            // the store has been cleared
+            return;
+        }
+        
+        final int sizeClass = (int) (handle & 0xF);
+        final int address = (int) (handle >>> 4);
+        
+        int[] blocks = freeBlocks[sizeClass];
+        final int count = freeBlocksCount[sizeClass];
+        if (blocks == null) {
+            blocks = new int[16];
+            freeBlocks[sizeClass] = blocks;
+        } else if (count == blocks.length) {
+            final int[] newBlocks = new int[count * 2];
+            System.arraycopy(blocks, 0, newBlocks, 0, count);
+            blocks = newBlocks;
+            freeBlocks[sizeClass] = blocks;
+        }
+        
+        blocks[count] = address;
+        freeBlocksCount[sizeClass] = count + 1;
+        usedBytes -= 1 << (sizeClass + MIN_BLOCK_SHIFT);
+    }
+    
+    /**
+     * @return the number of bytes occupied by the stored blocks.
+     */
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+    
+    /**
+     * Releases all the slabs, previously returned handles become invalid.
+     */
+    synchronized void clear() {
+        reservedBytes.addAndGet(-(long) slabs.size() * SLAB_SIZE);
+        slabs.clear();
+        currentSlab = null;
+        currentSlabIdx = -1;
+        for (int i = 0; i < freeBlocks.length; i++) {
+            freeBlocks[i] = null;
+            freeBlocksCount[i] = 0;
+        }
+        usedBytes = 0;
+    }
+    
+    private boolean allocateSlab() {
+        if (reservedBytes.addAndGet(SLAB_SIZE) > maxReservedBytes
+                // make sure the address fits into the handle
+                || slabs.size() >= (1 << (31 - SLAB_SHIFT))) {
+            reservedBytes.addAndGet(-SLAB_SIZE);
+            return false;
+        }
+        
+        currentSlab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        slabs.add(currentSlab);
+        currentSlabIdx = slabs.size() - 1;
+        return true;
+    }
+    
+    private static int sizeClass(final int length) {
+        final int shift = 32 - Integer.numberOfLeadingZeros(
+                Math.max(length, 1) - 1);
+        return Math.max(shift, MIN_BLOCK_SHIFT) - MIN_BLOCK_SHIFT;
+    }
+    
+    // ------------------------------------------------ Attributes serialization
+    
+    /**
+     * Serializes the attributes map. Strings and boxed primitives are written
+     * in the compact form, other values use Java serialization.
+     * 
+     * @throws IOException if one of the values is not serializable
+     */
+    static byte[] serialize(final Map<String, Object> attributes)
+            throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        final DataOutputStream out = new DataOutputStream(baos);
+        
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            out.writeUTF(entry.getKey());
+            
+            final Object value = entry.getValue();
+            if (value instanceof String
+                    && ((String) value).length() < 0x4000) {
+                out.writeByte(STRING_TAG);
+                out.writeUTF((String) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER_TAG);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG_TAG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN_TAG);
+                out.writeBoolean((Boolean) value);
+            } else {
+                out.writeByte(OBJECT_TAG);
+                final ByteArrayOutputStream objectBytes =
+                        new ByteArrayOutputStream(256);
+                final ObjectOutputStream oos =
+                        new ObjectOutputStream(objectBytes);
+                oos.writeObject(value);
+                oos.close();
+                
+                out.writeInt(objectBytes.size());
+                objectBytes.writeTo(out);
+            }
+        }
+        
+        out.flush();
+        return baos.toByteArray();
+    }
+    
+    /**
+     * Deserializes the attributes, previously serialized by
+     * {@link #serialize(java.util.Map)}. The attributes, which are already
+     * present in the target map, are not overwritten.
+     */
+    static void deserialize(final byte[] data,
+            final ConcurrentMap<String, Object> attributes)
+            throws IOException, ClassNotFoundException {
+        final DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(data));
+        
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final String key = in.readUTF();
+            final Object value;
+            final byte tag = in.readByte();
+            switch (tag) {
+                case STRING_TAG:
+                    value = in.readUTF();
+                    break;
+                case INTEGER_TAG:
+                    value = in.readInt();
+                    break;
+                case LONG_TAG:
+                    value = in.readLong();
+                    break;
+                case BOOLEAN_TAG:
+                    value = in.readBoolean();
+                    break;
+                case OBJECT_TAG:
+                    final byte[] objectBytes = new byte[in.readInt()];
+                    in.readFully(objectBytes);
+                    final ObjectInputStream ois = new ContextObjectInputStream(
+                            new ByteArrayInputStream(objectBytes));
+                    try {
+                        value = ois.readObject();
+                    } finally {
+                        ois.close();
+                    }
+                    break;
+                default:
+                    throw new IOException("Unexpected attribute tag: " + tag);
+            }
+            
+            attributes.putIfAbsent(key, value);
+        }
+    }
+    
+    /**
+     * {@link ObjectInputStream}, which resolves classes using the thread
+     * context {@link ClassLoader} first.
+     */
+    private static final class ContextObjectInputStream
+            extends ObjectInputStream {
+
+        public ContextObjectInputStream(final InputStream in)
+                throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+            if (cl != null) {
+                try {
+                    return Class.forName(desc.getName(), false, cl);
+                } catch (ClassNotFoundException ignored) {
+                }
+            }
+            
+            return super.resolveClass(desc);
+        }
+    }
+}
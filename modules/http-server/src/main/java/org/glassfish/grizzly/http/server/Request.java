@@ -73,6 +73,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.security.auth.Subject;
@@ -435,6 +436,15 @@ public class Request {
      */
      private RequestExecutorProvider requestExecutorProvider;
     
+    /**
+     * The {@link AdmissionController}, which admitted this request.
+     */
+    volatile AdmissionController admissionController;
+    
+    private static final AtomicReferenceFieldUpdater<Request, AdmissionController>
+            ADMISSION_CONTROLLER_UPDATER = AtomicReferenceFieldUpdater.newUpdater(
+                    Request.class, AdmissionController.class, "admissionController");
+    
     /**
      * The response with which this request is associated.
      */
@@ -511,6 +521,19 @@ public class Request {
         }
     }
 
+    /**
+     * Releases the {@link AdmissionController} slot occupied by this request.
+     * The slot is released only once, no matter how many times and from
+     * which threads (completion, cancellation, recycling) the method is called.
+     */
+    final void releaseAdmission() {
+        final AdmissionController controller =
+                ADMISSION_CONTROLLER_UPDATER.getAndSet(this, null);
+        if (controller != null) {
+            controller.onComplete(httpServerFilter);
+        }
+    }
+    
     final HttpServerFilter getServerFilter() {
         return httpServerFilter;
     }
@@ -654,6 +677,9 @@ public class Request {
         localesParsed = false;
         secure = false;
 
+        // the request might not reach afterService (broken processing)
+        releaseAdmission();
+        
         request.recycle();
         request = null;
         ctx = null;
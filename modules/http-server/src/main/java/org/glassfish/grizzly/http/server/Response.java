@@ -85,6 +85,7 @@ import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.http.Cookie;
 import org.glassfish.grizzly.http.Cookies;
 import org.glassfish.grizzly.http.HttpContext;
+import org.glassfish.grizzly.http.HttpHeadersTemplate;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.io.InputBuffer;
 import org.glassfish.grizzly.http.io.NIOOutputStream;
@@ -864,6 +865,23 @@ public class Response {
     }
 
 
+    /**
+     * Sets the {@link HttpHeadersTemplate} containing the pre-encoded headers
+     * to be sent with this Response. The headers explicitly set on the
+     * Response override the template headers with the same name.
+     *
+     * @param headersTemplate the {@link HttpHeadersTemplate}, or <tt>null</tt>.
+     * @since 2.3.23
+     */
+    public void setHeadersTemplate(final HttpHeadersTemplate headersTemplate) {
+        checkResponse();
+        if (isCommitted())
+            return;
+
+        response.setHeadersTemplate(headersTemplate);
+    }
+
+
     /**
      * Set the content type for this Response.
      *
@@ -2030,6 +2048,9 @@ public class Response {
             HttpServerProbeNotifier.notifyRequestCancel(
                     request.httpServerFilter, ctx.getConnection(), request);
             
+            // the cancelled request never reaches afterService
+            request.releaseAdmission();
+            
             final InputBuffer inputBuffer = request.getInputBuffer();
             if (!inputBuffer.isFinished()) {
                 inputBuffer.terminate();
@@ -95,6 +95,12 @@ public class ServerFilterConfiguration {
      */
     private boolean isGracefulShutdownSupported = true;
     
+    /**
+     * The {@link AdmissionController}, or <tt>null</tt>, if all the requests
+     * have to be admitted.
+     */
+    private AdmissionController admissionController;
+    
     public ServerFilterConfiguration() {
         this("Grizzly", Grizzly.getDotedVersion());
     }
@@ -123,6 +129,7 @@ public class ServerFilterConfiguration {
         this.maxPostSize = configuration.maxPostSize;
         this.sessionTimeoutSeconds = configuration.sessionTimeoutSeconds;
         this.sessionManager = configuration.sessionManager;
+        this.admissionController = configuration.admissionController;
     }
     
     /**
@@ -527,6 +534,30 @@ public class ServerFilterConfiguration {
         this.sessionManager = sessionManager;
     }
     
+    /**
+     * @return the {@link AdmissionController}, or <tt>null</tt>, if all the
+     *  requests are admitted
+     *
+     * @see #setAdmissionController
+     * @since 2.3.23
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Sets the {@link AdmissionController}, which decides whether a request
+     * has to be processed or rejected, when the server is overloaded.
+     * <tt>null</tt> value (default) means all the requests are admitted.
+     *
+     * @param admissionController {@link AdmissionController}
+     * @since 2.3.23
+     */
+    public void setAdmissionController(
+            final AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+    
     // --------------------------------------------------------- Private Methods
 
 
@@ -0,0 +1,646 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.http.Cookie;
+import org.glassfish.grizzly.utils.DataStructures;
+
+/**
+ * Scalable {@link SessionManager} implementation.
+ * 
+ * Sessions are spread across a power-of-two number of shards, each of them
+ * having its own lock, session map and timing wheel. Session lookups don't
+ * take locks, session expiration costs <tt>O(1)</tt> per session: every
+ * session is linked into the wheel slot of its next due time and only the
+ * slots, which became due since the previous tick, are processed. Session
+ * access doesn't touch the wheel, the session is lazily rescheduled when its
+ * slot comes due.
+ * 
+ * Session ids are 128-bit values produced by a thread-local
+ * {@link SecureRandom}.
+ * 
+ * Optionally, attributes of the sessions, which have been idle for the
+ * configured time, are serialized into the compact off-heap storage and
+ * restored transparently on the next attribute access, so a large number of
+ * idle sessions doesn't bloat the heap. Sessions, which have attributes that
+ * are not {@link java.io.Serializable}, stay on the heap.
+ * 
+ * Unlike {@link DefaultSessionManager}, each <tt>ShardedSessionManager</tt>
+ * runs its own expiration thread, which has to be stopped using
+ * {@link #shutdown()}, when the manager is not needed anymore.
+ * 
+ * @since 2.3.23
+ */
+public class ShardedSessionManager implements SessionManager {
+    private static final Logger LOGGER = Grizzly.logger(ShardedSessionManager.class);
+    
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final long DEFAULT_TICK_MILLIS = 1000;
+    private static final long DEFAULT_MAX_OFF_HEAP_SIZE = 256L * 1024 * 1024;
+    
+    private static final char[] ID_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .toCharArray();
+    
+    private static final ThreadLocal<SecureRandom> RANDOM =
+            new ThreadLocal<SecureRandom>() {
+        @Override
+        protected SecureRandom initialValue() {
+            return new SecureRandom();
+        }
+    };
+    
+    private final Shard[] shards;
+    private final int shardsMask;
+    private final long tickMillis;
+    private final int wheelSize;
+    
+    private final AtomicLong offHeapReservedBytes = new AtomicLong();
+    private volatile long maxOffHeapSize = DEFAULT_MAX_OFF_HEAP_SIZE;
+    /**
+     * The idle time (in milliseconds), after which session attributes are
+     * moved off-heap, <tt>-1</tt> means the sessions are never passivated.
+     */
+    private volatile long passivationIdleTime = -1;
+    
+    private final ScheduledThreadPoolExecutor sessionExpirer
+            = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "Grizzly-HttpSession-Expirer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    
+    /**
+     * Creates <tt>ShardedSessionManager</tt> with the number of shards
+     * depending on the number of available processors and one second
+     * expiration precision.
+     */
+    public ShardedSessionManager() {
+        this(Runtime.getRuntime().availableProcessors() * 4,
+                DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Creates <tt>ShardedSessionManager</tt>.
+     * 
+     * @param shardsCount the number of shards, will be rounded up to the
+     *  power of two
+     * @param tick the timing wheel tick duration, which defines the session
+     *  expiration precision
+     * @param timeUnit the tick {@link TimeUnit}
+     */
+    public ShardedSessionManager(final int shardsCount, final long tick,
+            final TimeUnit timeUnit) {
+        if (shardsCount <= 0) {
+            throw new IllegalArgumentException("shardsCount has to be positive");
+        }
+        
+        tickMillis = Math.max(1, TimeUnit.MILLISECONDS.convert(tick, timeUnit));
+        wheelSize = DEFAULT_WHEEL_SIZE;
+        
+        final int count = Integer.highestOneBit(shardsCount - 1) << 1;
+        shards = new Shard[Math.max(count, 1)];
+        shardsMask = shards.length - 1;
+        
+        final long currentTick = System.currentTimeMillis() / tickMillis;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(wheelSize, currentTick,
+                    new OffHeapSessionStore(offHeapReservedBytes,
+                    DEFAULT_MAX_OFF_HEAP_SIZE));
+        }
+        
+        sessionExpirer.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    expireSessions(System.currentTimeMillis());
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Error expiring sessions", e);
+                }
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Enables moving attributes of idle sessions off-heap.
+     * 
+     * @param idleTime the session idle time, after which its attributes are
+     *  moved off-heap, a non-positive value disables passivation
+     * @param timeUnit the idle time {@link TimeUnit}
+     * @param maxOffHeapSize the maximum number of off-heap bytes to be used
+     *  for session attributes
+     */
+    public void setPassivation(final long idleTime, final TimeUnit timeUnit,
+            final long maxOffHeapSize) {
+        this.maxOffHeapSize = maxOffHeapSize;
+        for (Shard shard : shards) {
+            shard.store.setMaxReservedBytes(maxOffHeapSize);
+        }
+        
+        this.passivationIdleTime = idleTime > 0
+                ? TimeUnit.MILLISECONDS.convert(idleTime, timeUnit)
+                : -1;
+    }
+
+    /**
+     * @return the idle time (in milliseconds), after which session attributes
+     *  are moved off-heap, or <tt>-1</tt> if the passivation is disabled
+     */
+    public long getPassivationIdleTime() {
+        return passivationIdleTime;
+    }
+
+    /**
+     * @return the maximum number of off-heap bytes to be used for session
+     *  attributes
+     */
+    public long getMaxOffHeapSize() {
+        return maxOffHeapSize;
+    }
+    
+    /**
+     * @return the number of sessions being tracked
+     */
+    public int getSessionsCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.sessions.size();
+        }
+        
+        return count;
+    }
+    
+    /**
+     * @return the number of off-heap bytes occupied by passivated session
+     *  attributes
+     */
+    public long getOffHeapUsedBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                bytes += shard.store.getUsedBytes();
+            }
+        }
+        
+        return bytes;
+    }
+    
+    /**
+     * Stops the session expiration thread, invalidates all the sessions and
+     * releases the off-heap memory.
+     */
+    public void shutdown() {
+        sessionExpirer.shutdownNow();
+        
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (ShardedSession session : shard.sessions.values()) {
+                    session.setValid(false);
+                }
+                
+                shard.sessions.clear();
+                for (int i = 0; i < shard.wheel.length; i++) {
+                    shard.wheel[i] = null;
+                }
+                shard.store.clear();
+            }
+        }
+    }
+    
+    @Override
+    public Session getSession(final Request request,
+            final String requestedSessionId) {
+        if (requestedSessionId == null) {
+            return null;
+        }
+        
+        final Session session =
+                shardFor(requestedSessionId).sessions.get(requestedSessionId);
+        if (session == null || !session.isValid()) {
+            return null;
+        }
+        
+        if (isExpired(session, System.currentTimeMillis())) {
+            // the session will be removed, when its wheel slot comes due
+            session.setValid(false);
+            return null;
+        }
+        
+        return session;
+    }
+
+    @Override
+    public Session createSession(final Request request) {
+        final ShardedSession session = new ShardedSession();
+        
+        while (true) {
+            final String id = generateSessionId();
+            session.setIdInternal(id);
+            
+            final Shard shard = shardFor(id);
+            synchronized (shard) {
+                if (shard.sessions.putIfAbsent(id, session) == null) {
+                    // check the session soon, its timeout is likely to be
+                    // set right after creation
+                    shard.schedule(session, shard.currentTick + 1);
+                    return session;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String changeSessionId(final Request request, final Session session) {
+        final String oldSessionId = session.getIdInternal();
+        
+        final Shard oldShard = shardFor(oldSessionId);
+        synchronized (oldShard) {
+            if (oldShard.sessions.remove(oldSessionId, session)
+                    && session instanceof ShardedSession) {
+                oldShard.unlink((ShardedSession) session);
+            }
+        }
+        
+        while (true) {
+            final String newSessionId = generateSessionId();
+            
+            final Shard newShard = shardFor(newSessionId);
+            synchronized (newShard) {
+                if (!newShard.sessions.containsKey(newSessionId)) {
+                    session.setIdInternal(newSessionId);
+                    
+                    if (session instanceof ShardedSession) {
+                        final ShardedSession shardedSession =
+                                (ShardedSession) session;
+                        newShard.sessions.put(newSessionId, shardedSession);
+                        newShard.schedule(shardedSession,
+                                newShard.currentTick + 1);
+                    }
+                    
+                    return oldSessionId;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void configureSessionCookie(final Request request,
+            final Cookie cookie) {
+    }
+
+    /**
+     * Processes the timing wheel slots, which became due by the given time.
+     */
+    void expireSessions(final long now) {
+        final long nowTick = now / tickMillis;
+        final long passivationIdleTimeLocal = passivationIdleTime;
+        
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                long tick = shard.currentTick;
+                if (nowTick <= tick) {
+                    // nothing is due yet, or the clock went backwards
+                    continue;
+                }
+                
+                if (nowTick - tick > wheelSize) {
+                    // the expirer was late, process every slot once
+                    tick = nowTick - wheelSize;
+                }
+                
+                while (tick < nowTick) {
+                    tick++;
+                    shard.currentTick = tick;
+                    
+                    final int slot = (int) (tick & (wheelSize - 1));
+                    ShardedSession session = shard.wheel[slot];
+                    shard.wheel[slot] = null;
+                    
+                    while (session != null) {
+                        final ShardedSession next = session.wheelNext;
+                        session.wheelNext = session.wheelPrev = null;
+                        session.wheelSlot = -1;
+                        
+                        processSession(shard, session, now,
+                                passivationIdleTimeLocal);
+                        session = next;
+                    }
+                }
+            }
+        }
+    }
+    
+    private void processSession(final Shard shard,
+            final ShardedSession session, final long now,
+            final long passivationIdleTime) {
+        final String id = session.getIdInternal();
+        if (shard.sessions.get(id) != session) {
+            // the session has been removed or moved to another shard
+            return;
+        }
+        
+        if (!session.isValid() || isExpired(session, now)) {
+            session.setValid(false);
+            shard.sessions.remove(id, session);
+            return;
+        }
+        
+        final long timeout = session.getSessionTimeout();
+        long dueTime = timeout > 0
+                ? session.getTimestamp() + timeout + 1
+                : Long.MAX_VALUE;
+        
+        if (passivationIdleTime > 0 && !session.passivated) {
+            final long passivationTime =
+                    session.getTimestamp() + passivationIdleTime;
+            if (passivationTime <= now) {
+                session.passivate(shard.store, passivationIdleTime);
+            } else {
+                dueTime = Math.min(dueTime, passivationTime);
+            }
+        }
+        
+        final long dueTick = dueTime == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : (dueTime + tickMillis - 1) / tickMillis;
+        shard.schedule(session, dueTick);
+    }
+    
+    private Shard shardFor(final String id) {
+        int h = id.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & shardsMask];
+    }
+    
+    private static boolean isExpired(final Session session, final long now) {
+        final long timeout = session.getSessionTimeout();
+        return timeout > 0 && now - session.getTimestamp() > timeout;
+    }
+    
+    /**
+     * Generates the random session id, which is built from 128 random bits
+     * encoded using URL- and cookie-safe characters.
+     */
+    private static String generateSessionId() {
+        final SecureRandom random = RANDOM.get();
+        final char[] id = new char[22];
+        
+        long bits = random.nextLong();
+        for (int i = 0; i < 11; i++) {
+            id[i] = ID_CHARS[(int) (bits & 0x3F)];
+            bits >>>= 6;
+        }
+        
+        bits = random.nextLong();
+        for (int i = 11; i < 22; i++) {
+            id[i] = ID_CHARS[(int) (bits & 0x3F)];
+            bits >>>= 6;
+        }
+        
+        return new String(id);
+    }
+
+    private static final class Shard {
+        private final ConcurrentMap<String, ShardedSession> sessions =
+                DataStructures.<String, ShardedSession>getConcurrentMap();
+        
+        /**
+         * Heads of the session lists, linked through the session wheel fields.
+         */
+        private final ShardedSession[] wheel;
+        /**
+         * The last processed tick.
+         */
+        private long currentTick;
+        
+        private final OffHeapSessionStore store;
+        
+        private Shard(final int wheelSize, final long currentTick,
+                final OffHeapSessionStore store) {
+            this.wheel = new ShardedSession[wheelSize];
+            this.currentTick = currentTick;
+            this.store = store;
+        }
+        
+        /**
+         * Links the session into the wheel slot of the given tick, the ticks
+         * beyond the wheel horizon are mapped to the last slot and the session
+         * will be rescheduled, when the slot comes due.
+         */
+        private void schedule(final ShardedSession session, final long tick) {
+            final long horizon = currentTick + wheel.length - 1;
+            final long slotTick = Math.max(currentTick + 1,
+                    Math.min(tick, horizon));
+            final int slot = (int) (slotTick & (wheel.length - 1));
+            
+            final ShardedSession head = wheel[slot];
+            session.wheelNext = head;
+            session.wheelPrev = null;
+            if (head != null) {
+                head.wheelPrev = session;
+            }
+            
+            wheel[slot] = session;
+            session.wheelSlot = slot;
+        }
+        
+        private void unlink(final ShardedSession session) {
+            final int slot = session.wheelSlot;
+            if (slot == -1) {
+                return;
+            }
+            
+            final ShardedSession prev = session.wheelPrev;
+            final ShardedSession next = session.wheelNext;
+            if (prev != null) {
+                prev.wheelNext = next;
+            } else {
+                wheel[slot] = next;
+            }
+            
+            if (next != null) {
+                next.wheelPrev = prev;
+            }
+            
+            session.wheelNext = session.wheelPrev = null;
+            session.wheelSlot = -1;
+        }
+    }
+    
+    /**
+     * {@link Session}, whose attributes could be moved off-heap.
+     */
+    static final class ShardedSession extends Session {
+        // timing wheel fields, guarded by the shard lock
+        private ShardedSession wheelNext;
+        private ShardedSession wheelPrev;
+        private int wheelSlot = -1;
+        
+        // passivation state, guarded by the session lock
+        volatile boolean passivated;
+        private OffHeapSessionStore store;
+        private long storeHandle;
+        private int storeLength;
+        /**
+         * The timestamp of the last failed passivation attempt, the session
+         * is not passivated again until it's accessed.
+         */
+        private long passivationFailedTimestamp = -1;
+
+        @Override
+        public void setValid(final boolean isValid) {
+            super.setValid(isValid);
+            
+            if (!isValid && passivated) {
+                synchronized (this) {
+                    if (passivated) {
+                        store.free(storeHandle);
+                        store = null;
+                        passivated = false;
+                    }
+                }
+            }
+        }
+
+        // the attribute accessors take the session lock, so they don't race
+        // with the concurrent passivate(), which clears the attributes map
+        
+        @Override
+        public synchronized void setAttribute(final String key, final Object value) {
+            activate();
+            super.setAttribute(key, value);
+        }
+
+        @Override
+        public synchronized Object getAttribute(final String key) {
+            activate();
+            return super.getAttribute(key);
+        }
+
+        @Override
+        public synchronized Object removeAttribute(final String key) {
+            activate();
+            return super.removeAttribute(key);
+        }
+
+        @Override
+        public synchronized ConcurrentMap<String, Object> attributes() {
+            activate();
+            return super.attributes();
+        }
+        
+        /**
+         * Moves the attributes off-heap if the session is still idle.
+         */
+        synchronized void passivate(final OffHeapSessionStore store,
+                final long idleTime) {
+            final long timestamp = getTimestamp();
+            final ConcurrentMap<String, Object> attributes = super.attributes();
+            if (passivated || !isValid() || attributes.isEmpty()
+                    || timestamp == passivationFailedTimestamp
+                    || System.currentTimeMillis() - timestamp < idleTime) {
+                return;
+            }
+            
+            final byte[] data;
+            try {
+                data = OffHeapSessionStore.serialize(attributes);
+            } catch (IOException e) {
+                // there are non-serializable attributes
+                passivationFailedTimestamp = timestamp;
+                return;
+            }
+            
+            final long handle = store.store(data, data.length);
+            if (handle == -1) {
+                passivationFailedTimestamp = timestamp;
+                return;
+            }
+            
+            this.store = store;
+            storeHandle = handle;
+            storeLength = data.length;
+            attributes.clear();
+            passivated = true;
+            
+            if (getTimestamp() != timestamp) {
+                // the session has been accessed concurrently
+                activate0();
+            }
+        }
+        
+        private void activate() {
+            if (passivated) {
+                activate0();
+            }
+        }
+        
+        private void activate0() {
+            final OffHeapSessionStore storeLocal = store;
+            final byte[] data = storeLocal.load(storeHandle, storeLength);
+            storeLocal.free(storeHandle);
+            store = null;
+            passivated = false;
+            
+            try {
+                OffHeapSessionStore.deserialize(data, super.attributes());
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING,
+                        "Unable to restore attributes of the session " +
+                        getIdInternal(), e);
+            }
+        }
+    }
+}
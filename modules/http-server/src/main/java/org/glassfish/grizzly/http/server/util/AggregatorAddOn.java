@@ -37,17 +37,46 @@
  * only if the new code is made subject to such option by the copyright
  * holder.
  */
+
 package org.glassfish.grizzly.http.server.util;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Closeable;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.filterchain.BaseFilter;
 import org.glassfish.grizzly.filterchain.FilterChainBuilder;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
 import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpHeader;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.server.AddOn;
 import org.glassfish.grizzly.http.server.HttpServerFilter;
 import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.memory.ByteBufferWrapper;
 
 /**
  * AggregatorAddOn installs {@link AggregatorFilter} into HttpServer FilterChain.
@@ -55,10 +84,70 @@ import org.glassfish.grizzly.http.server.NetworkListener;
  * payload (either request or response) and pass it to the next filter in chain
  * only when entire HTTP message (including payload) is read.
  * 
+ * By default the entire payload is aggregated in memory. The memory used
+ * for aggregation might be limited per request
+ * ({@link #setMaxInMemoryBodySize(int)}) and per add-on, across all the
+ * connections ({@link #setMemoryBudget(long)}). The payload, which doesn't
+ * fit the limits, is spilled to a temporary file and passed to the
+ * {@link org.glassfish.grizzly.http.server.HttpHandler} as a read-only
+ * memory-mapped view of the file, so it's available via the
+ * <tt>Request</tt>'s <tt>NIOInputStream</tt> as usual, and the file itself
+ * is available as the {@link #BODY_FILE_ATTR} request attribute.
+ * The memory and the file are released once the response is completed.
+ * 
  * @author Alexey Stashok
  */
 public class AggregatorAddOn implements AddOn {
+    private static final Logger LOGGER = Grizzly.logger(AggregatorAddOn.class);
+
+    /**
+     * The request attribute, which holds the {@link File} the request payload
+     * was spilled to, if any.
+     */
+    public static final String BODY_FILE_ATTR =
+            AggregatorAddOn.class.getName() + ".body-file";
 
+    /**
+     * The request attribute, which holds the request's {@link AggregationState}.
+     */
+    private static final String STATE_ATTR =
+            HttpRequestPacket.READ_ONLY_ATTR_PREFIX
+            + AggregatorAddOn.class.getName() + ".state";
+    
+    /**
+     * The aggregation states of the connection's requests, which haven't been
+     * completed yet, so they could be released if the connection is closed.
+     */
+    private static final Attribute<List<AggregationState>> CONNECTION_STATES_ATTR =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            AggregatorAddOn.class.getName() + ".states");
+    
+    /**
+     * The request attribute, which holds the HTTP/2 stream the request came
+     * on (see org.glassfish.grizzly.http2.Http2Stream#HTTP2_STREAM_ATTRIBUTE).
+     */
+    private static final String HTTP2_STREAM_ATTR =
+            HttpRequestPacket.READ_ONLY_ATTR_PREFIX
+            + "org.glassfish.grizzly.http2.Http2Stream";
+    
+    private long memoryBudget = -1;
+    private int maxInMemoryBodySize = -1;
+    private long maxBodySize = -1;
+    private File spillDirectory;
+    
+    private final AtomicLong memoryInUse = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    
+    // the spilled files, which couldn't be deleted because they were still
+    // mapped, the delete is retried once the mapping is garbage collected
+    private final ReferenceQueue<MappedByteBuffer> releasedMappings =
+            new ReferenceQueue<MappedByteBuffer>();
+    private final Set<MappingReference> pendingDeletes =
+            Collections.newSetFromMap(
+            new ConcurrentHashMap<MappingReference, Boolean>());
+    
     /**
      * {@inheritDoc}
      */
@@ -74,21 +163,522 @@ public class AggregatorAddOn implements AddOn {
             builder.add(httpServerFilterIdx, new AggregatorFilter());
         }     
     }
+
+    /**
+     * @return the max number of bytes all the requests, processed by this
+     * add-on, may aggregate in memory, <tt>-1</tt> means no limit.
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets the max number of bytes all the requests, processed by this
+     * add-on, may aggregate in memory. Once the budget is exhausted, the
+     * request payloads are spilled to the disk. <tt>-1</tt> means no limit.
+     * 
+     * @param memoryBudget the memory budget in bytes
+     */
+    public void setMemoryBudget(final long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return the max number of bytes a single request may aggregate in memory,
+     * <tt>-1</tt> means no limit.
+     */
+    public int getMaxInMemoryBodySize() {
+        return maxInMemoryBodySize;
+    }
+
+    /**
+     * Sets the max number of bytes a single request may aggregate in memory,
+     * the bigger payloads are spilled to the disk. <tt>-1</tt> means no limit.
+     * 
+     * @param maxInMemoryBodySize the max in-memory payload size in bytes
+     */
+    public void setMaxInMemoryBodySize(final int maxInMemoryBodySize) {
+        this.maxInMemoryBodySize = maxInMemoryBodySize;
+    }
+
+    /**
+     * @return the max request payload size, <tt>-1</tt> means no limit.
+     */
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Sets the max request payload size. The requests with bigger payloads
+     * are rejected with the <tt>413</tt> response and the connection (or the
+     * HTTP/2 stream) is closed. <tt>-1</tt> means no limit.
+     * 
+     * @param maxBodySize the max payload size in bytes
+     */
+    public void setMaxBodySize(final long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * @return the directory to create temporary files in, <tt>null</tt> means
+     * the default temporary-file directory.
+     */
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Sets the directory to create temporary files in, <tt>null</tt> means
+     * the default temporary-file directory.
+     * 
+     * @param spillDirectory the directory for temporary files
+     */
+    public void setSpillDirectory(final File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * @return the number of bytes currently held in memory by the aggregated
+     * request payloads.
+     */
+    public long getMemoryInUse() {
+        return memoryInUse.get();
+    }
+
+    /**
+     * @return the number of request payloads spilled to the disk.
+     */
+    public long getSpillCount() {
+        return spillCount.get();
+    }
+
+    /**
+     * @return the total number of bytes spilled to the disk.
+     */
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    /**
+     * @return the number of requests rejected because of the
+     * {@link #getMaxBodySize()} limit.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
     
-    private static class AggregatorFilter extends BaseFilter {
+    /**
+     * Tries to reserve the memory from the add-on budget.
+     */
+    private boolean reserve(final int size) {
+        if (memoryBudget < 0) {
+            memoryInUse.addAndGet(size);
+            return true;
+        }
+        
+        long current;
+        do {
+            current = memoryInUse.get();
+            if (current + size > memoryBudget) {
+                return false;
+            }
+        } while (!memoryInUse.compareAndSet(current, current + size));
+        
+        return true;
+    }
+    
+    private void release(final long size) {
+        if (size > 0) {
+            memoryInUse.addAndGet(-size);
+        }
+    }
+    
+    /**
+     * Deletes the file. If the file is still mapped, the delete is retried
+     * once the mapping is released.
+     */
+    private void delete(final File file, final MappedByteBuffer mapping) {
+        deleteReleased();
+        
+        if (!file.delete()) {
+            if (mapping != null) {
+                pendingDeletes.add(
+                        new MappingReference(mapping, file, releasedMappings));
+            } else if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Can not delete the file {0}", file);
+            }
+        }
+    }
+    
+    /**
+     * Deletes the files, whose mappings have been released.
+     */
+    private void deleteReleased() {
+        MappingReference reference;
+        while ((reference = (MappingReference) releasedMappings.poll()) != null) {
+            pendingDeletes.remove(reference);
+            if (!reference.file.delete() && LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Can not delete the file {0}",
+                        reference.file);
+            }
+        }
+    }
+    
+    private class AggregatorFilter extends BaseFilter {
 
         @Override
         public NextAction handleRead(final FilterChainContext ctx) throws IOException {
             final Object message = ctx.getMessage();
             
-            // If the input message is not HttpContent or it's last HttpContent message -
-            // pass the message to a next filter
-            if (!(message instanceof HttpContent) || ((HttpContent) message).isLast()) {
+            // If the input message is not HttpContent - pass the message
+            // to a next filter
+            if (!(message instanceof HttpContent)) {
+                return ctx.getInvokeAction();
+            }
+            
+            final HttpContent httpContent = (HttpContent) message;
+            final HttpHeader header = httpContent.getHttpHeader();
+            if (!header.isRequest()) {
                 return ctx.getInvokeAction();
             }
             
-            // if it's HttpContent chunk (not last) - save it and stop filter chain processing.
-            return ctx.getStopAction(message);
+            // the state is kept per request, so pipelined or multiplexed
+            // requests don't share the aggregated resources
+            final HttpRequestPacket request = (HttpRequestPacket) header;
+            AggregationState state =
+                    (AggregationState) request.getAttribute(STATE_ATTR);
+            if (state == null) {
+                if (httpContent.isLast()
+                        && !httpContent.getContent().hasRemaining()) {
+                    // nothing to aggregate
+                    return ctx.getInvokeAction();
+                }
+                
+                state = new AggregationState();
+                request.setAttribute(STATE_ATTR, state);
+                register(ctx.getConnection(), state);
+            }
+            
+            return state.onContent(ctx, httpContent);
+        }
+
+        @Override
+        public NextAction handleWrite(final FilterChainContext ctx) throws IOException {
+            final Object message = ctx.getMessage();
+            if (message instanceof HttpContent
+                    && ((HttpContent) message).isLast()) {
+                final HttpHeader header = ((HttpContent) message).getHttpHeader();
+                if (header instanceof HttpResponsePacket) {
+                    final AggregationState state = (AggregationState)
+                            ((HttpResponsePacket) header).getRequest()
+                            .getAttribute(STATE_ATTR);
+                    if (state != null) {
+                        // the response is completed - release the request's
+                        // aggregated payload
+                        deregister(ctx.getConnection(), state);
+                        state.releaseAll();
+                    }
+                }
+            }
+            
+            return ctx.getInvokeAction();
+        }
+
+        @Override
+        public NextAction handleClose(final FilterChainContext ctx) throws IOException {
+            final List<AggregationState> states =
+                    CONNECTION_STATES_ATTR.remove(ctx.getConnection());
+            if (states != null) {
+                synchronized (states) {
+                    for (AggregationState state : states) {
+                        state.releaseAll();
+                    }
+                    
+                    states.clear();
+                }
+            }
+            
+            return ctx.getInvokeAction();
+        }
+        
+        private void register(final Connection connection,
+                final AggregationState state) {
+            List<AggregationState> states = CONNECTION_STATES_ATTR.get(connection);
+            if (states == null) {
+                states = new ArrayList<AggregationState>(2);
+                CONNECTION_STATES_ATTR.set(connection, states);
+            }
+            
+            synchronized (states) {
+                states.add(state);
+            }
+        }
+        
+        private void deregister(final Connection connection,
+                final AggregationState state) {
+            final List<AggregationState> states =
+                    CONNECTION_STATES_ATTR.get(connection);
+            if (states != null) {
+                synchronized (states) {
+                    states.remove(state);
+                }
+            }
+        }
+    }
+    
+    /**
+     * The per-request aggregation state.
+     */
+    private final class AggregationState {
+        // the aggregated in-memory chunks
+        private HttpContent aggregated;
+        private long size;
+        private long reservedMemory;
+        private boolean isRejected;
+        
+        private File file;
+        private RandomAccessFile randomAccessFile;
+        private FileChannel fileChannel;
+        
+        // the resources of the aggregated payload passed to the HttpServerFilter
+        private long completedMemory;
+        private File completedFile;
+        private MappedByteBuffer completedMapping;
+
+        synchronized NextAction onContent(final FilterChainContext ctx,
+                final HttpContent httpContent) throws IOException {
+            final HttpHeader header = httpContent.getHttpHeader();
+            
+            if (isRejected) {
+                // skip the rejected request payload
+                httpContent.getContent().tryDispose();
+                if (httpContent.isLast()) {
+                    isRejected = false;
+                }
+                
+                return ctx.getStopAction();
+            }
+
+            final int chunkSize = httpContent.getContent().remaining();
+            
+            if (maxBodySize >= 0 && (size + chunkSize > maxBodySize
+                    || header.getContentLength() > maxBodySize)) {
+                reject(ctx, httpContent);
+                return ctx.getStopAction();
+            }
+            
+            size += chunkSize;
+            
+            if (fileChannel == null) {
+                if ((maxInMemoryBodySize < 0 || size <= maxInMemoryBodySize)
+                        && reserve(chunkSize)) {
+                    reservedMemory += chunkSize;
+                    
+                    if (!httpContent.isLast()) {
+                        aggregated = aggregated == null
+                                ? httpContent
+                                : aggregated.append(httpContent);
+                        return ctx.getStopAction();
+                    }
+                    
+                    if (aggregated != null) {
+                        ctx.setMessage(aggregated.append(httpContent));
+                    }
+                    
+                    completedMemory += reservedMemory;
+                    reservedMemory = 0;
+                    reset();
+                    return ctx.getInvokeAction();
+                }
+                
+                spill();
+            }
+            
+            final Buffer chunk = httpContent.getContent();
+            if (!httpContent.isLast()) {
+                write(chunk, true);
+                return ctx.getStopAction();
+            }
+            
+            // the last chunk (possibly trailer) is kept, but its content
+            // is replaced with the file view
+            write(chunk, false);
+            chunk.position(chunk.limit());
+            
+            final MappedByteBuffer mappedBuffer = fileChannel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, size);
+            
+            final ByteBufferWrapper body = new ByteBufferWrapper(mappedBuffer);
+            body.allowBufferDispose(false);
+            ctx.setMessage(HttpContent.builder(header).content(body).build()
+                    .append(httpContent));
+            ((HttpRequestPacket) header).setAttribute(BODY_FILE_ATTR, file);
+            
+            closeChannel();
+            completedFile = file;
+            completedMapping = mappedBuffer;
+            file = null;
+            reset();
+            
+            return ctx.getInvokeAction();
+        }
+
+        synchronized void releaseAll() {
+            release(completedMemory);
+            completedMemory = 0;
+            
+            if (completedFile != null) {
+                delete(completedFile, completedMapping);
+                completedFile = null;
+                completedMapping = null;
+            }
+            
+            if (aggregated != null) {
+                aggregated.getContent().tryDispose();
+            }
+            
+            if (fileChannel != null) {
+                closeChannel();
+                delete(file, null);
+                file = null;
+            }
+            
+            reset();
+        }
+
+        private void reset() {
+            aggregated = null;
+            size = 0;
+            release(reservedMemory);
+            reservedMemory = 0;
+        }
+        
+        private void reject(final FilterChainContext ctx,
+                final HttpContent httpContent) {
+            rejectedCount.incrementAndGet();
+            
+            httpContent.getContent().tryDispose();
+            if (aggregated != null) {
+                aggregated.getContent().tryDispose();
+            }
+            
+            if (fileChannel != null) {
+                closeChannel();
+                delete(file, null);
+                file = null;
+            }
+            
+            reset();
+            isRejected = !httpContent.isLast();
+
+            final HttpRequestPacket request =
+                    (HttpRequestPacket) httpContent.getHttpHeader();
+            final HttpResponsePacket response = request.getResponse();
+            HttpStatus.REQUEST_ENTITY_TOO_LARGE_413.setValues(response);
+            response.setContentLength(0);
+            
+            // over HTTP/2 only the request's stream is closed (the peer's
+            // further DATA frames are answered with RST_STREAM), the other
+            // streams keep using the connection
+            final Object http2Stream = request.getAttribute(HTTP2_STREAM_ATTR);
+            final Closeable closeable;
+            if (http2Stream instanceof Closeable) {
+                closeable = (Closeable) http2Stream;
+            } else {
+                closeable = ctx.getConnection();
+                response.getHeaders().setValue(Header.Connection)
+                        .setString("close");
+            }
+            
+            ctx.write(HttpContent.builder(response).last(true).build(),
+                    new EmptyCompletionHandler<WriteResult>() {
+                        @Override
+                        public void completed(final WriteResult result) {
+                            closeable.closeSilently();
+                        }
+
+                        @Override
+                        public void failed(final Throwable throwable) {
+                            closeable.closeSilently();
+                        }
+                    });
+        }
+        
+        private void spill() throws IOException {
+            spillCount.incrementAndGet();
+            
+            file = File.createTempFile("grizzly-body", ".tmp", spillDirectory);
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            fileChannel = randomAccessFile.getChannel();
+            
+            if (aggregated != null) {
+                write(aggregated.getContent(), true);
+                aggregated = null;
+            }
+            
+            release(reservedMemory);
+            reservedMemory = 0;
+        }
+        
+        private void write(final Buffer buffer, final boolean dispose)
+                throws IOException {
+            try {
+                long position = fileChannel.size();
+                if (buffer.isComposite()) {
+                    final ByteBuffer[] byteBuffers =
+                            buffer.toByteBufferArray().getArray();
+                    for (ByteBuffer byteBuffer : byteBuffers) {
+                        if (byteBuffer == null) {
+                            break;
+                        }
+                        
+                        position = write(byteBuffer, position);
+                    }
+                } else {
+                    write(buffer.toByteBuffer(), position);
+                }
+            } finally {
+                if (dispose) {
+                    buffer.tryDispose();
+                }
+            }
+        }
+        
+        private long write(final ByteBuffer byteBuffer, long position)
+                throws IOException {
+            while (byteBuffer.hasRemaining()) {
+                final int written = fileChannel.write(byteBuffer, position);
+                position += written;
+                spilledBytes.addAndGet(written);
+            }
+            
+            return position;
+        }
+        
+        private void closeChannel() {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Can not close the file " + file, e);
+            }
+            
+            fileChannel = null;
+            randomAccessFile = null;
+        }
+    }
+    
+    /**
+     * The reference to the mapping of the file, which has to be deleted once
+     * the mapping is released.
+     */
+    private static final class MappingReference
+            extends PhantomReference<MappedByteBuffer> {
+        private final File file;
+
+        MappingReference(final MappedByteBuffer mapping, final File file,
+                final ReferenceQueue<MappedByteBuffer> queue) {
+            super(mapping, queue);
+            this.file = file;
         }
     }
 }
@@ -0,0 +1,581 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.util;
+
+import java.util.Arrays;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.util.BufferChunk;
+import org.glassfish.grizzly.http.util.ByteChunk;
+import org.glassfish.grizzly.http.util.CharChunk;
+import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * Immutable, compiled snapshot of a {@link Mapper}'s default host.
+ * 
+ * Context paths, exact and wildcard wrapper mappings are compiled into
+ * byte-level radix tries, and extension mappings into a separate trie per
+ * context, so a request URI is mapped by walking its raw bytes once per
+ * rule instead of running binary searches over {@link CharChunk}s at every
+ * path level.
+ * 
+ * The snapshot implements the context and wrapper mapping rules of
+ * {@link Mapper} for the cases, which don't require the URI to be rewritten
+ * or resources to be looked up. For all other cases (non-ASCII URIs, welcome
+ * resources, redirects, default contexts, contexts with resources)
+ * {@link #map(org.glassfish.grizzly.http.util.DataChunk, org.glassfish.grizzly.http.server.util.MappingData)}
+ * returns <tt>false</tt> and leaves the {@link MappingData} untouched, so the
+ * caller is expected to fall back to the {@link Mapper} it was compiled from.
+ * 
+ * Once compiled the snapshot is never modified, so it can be safely shared
+ * by any number of threads without locking; changes to the {@link Mapper}
+ * are applied by compiling and publishing a new snapshot.
+ * 
+ * @since 2.3.23
+ */
+public final class CompiledMapper {
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final Node[] EMPTY_NODES = new Node[0];
+    
+    private final Object hostObject;
+    private final Node contexts;
+
+    private CompiledMapper(final Object hostObject, final Node contexts) {
+        this.hostObject = hostObject;
+        this.contexts = contexts;
+    }
+
+    /**
+     * Compiles the current state of the {@link Mapper}'s default host.
+     * The caller is responsible for making sure the {@link Mapper} is not
+     * modified while it's being compiled.
+     * 
+     * @param mapper the {@link Mapper} to compile
+     * @return the compiled snapshot, or <tt>null</tt> if the {@link Mapper}
+     *  configuration can't be represented by {@link CompiledMapper}
+     *  (for example if several virtual hosts are registered).
+     */
+    public static CompiledMapper compile(final Mapper mapper) {
+        final Mapper.Host[] hosts = mapper.hosts;
+        if (hosts.length != 1 || mapper.defaultHostName == null
+                || !mapper.defaultHostName.equalsIgnoreCase(hosts[0].name)) {
+            return null;
+        }
+        
+        final Mapper.Host host = hosts[0];
+        final Node contextsRoot = new Node(EMPTY_BYTES, 0);
+        
+        for (Mapper.Context context : host.contextList.contexts) {
+            insert(contextsRoot, context.name, new CompiledContext(context), false);
+        }
+        
+        return new CompiledMapper(host.object, contextsRoot);
+    }
+    
+    /**
+     * Maps the decoded request URI, the part of the URI following a
+     * semicolon, if any, is not taken into account.
+     * 
+     * @param decodedURI decoded request URI
+     * @param mappingData {@link MappingData} to store the mapping result to
+     * @return <tt>true</tt> if the URI has been mapped, or <tt>false</tt>
+     *  if the URI has to be mapped by the {@link Mapper}, in which case
+     *  the passed {@link MappingData} is not modified.
+     */
+    public boolean map(final DataChunk decodedURI,
+            final MappingData mappingData) {
+        final byte[] path = toAsciiPath(decodedURI, mappingData);
+        if (path == null) {
+            return false;
+        }
+        
+        final int length = mappingData.tmpMapperLength;
+        if (length == 0 || path[0] != '/') {
+            return false;
+        }
+        
+        // Context mapping
+        final Node contextNode = longestPrefix(contexts, path, 0, length);
+        if (contextNode == null) {
+            // default context processing is left to the Mapper
+            return false;
+        }
+        
+        final CompiledContext context = (CompiledContext) contextNode.prefix;
+        final int servletPath = contextNode.depth;
+        if (context.complex || servletPath == length) {
+            // resources lookup or redirect to the context root
+            return false;
+        }
+        
+        // Rule 0 -- Empty path match
+        final Mapper.Wrapper emptyPathWrapper = context.emptyPathWrapper;
+        if (emptyPathWrapper != null
+                && servletPath + 1 == length && path[servletPath] == '/') {
+            setContext(mappingData, context);
+            mappingData.wrapper = emptyPathWrapper.object;
+            mappingData.requestPath.setString("");
+            mappingData.wrapperPath.setString("");
+            mappingData.pathInfo.setString("/");
+            return true;
+        }
+        
+        // Rule 1 -- Exact Match
+        final Node exactNode = exact(context.wrappers, path, servletPath, length);
+        if (exactNode != null && exactNode.exact != null) {
+            final Mapper.Wrapper wrapper = (Mapper.Wrapper) exactNode.exact;
+            setContext(mappingData, context);
+            mappingData.requestPath.setString(wrapper.name);
+            mappingData.wrapperPath.setString(wrapper.name);
+            mappingData.wrapper = wrapper.object;
+            mappingData.servletName = wrapper.servletName;
+            return true;
+        }
+        
+        // Rule 2 -- Prefix Match
+        final Node wildcardNode = longestPrefix(context.wrappers, path,
+                servletPath, length);
+        if (wildcardNode != null) {
+            final Mapper.Wrapper wrapper = (Mapper.Wrapper) wildcardNode.prefix;
+            if (wrapper.jspWildCard) {
+                // JSP welcome files processing is left to the Mapper
+                return false;
+            }
+            
+            final int pathInfo = servletPath + wildcardNode.depth;
+            setContext(mappingData, context);
+            mappingData.wrapperPath.setString(wrapper.name);
+            if (pathInfo < length) {
+                mappingData.pathInfo.setString(
+                        toString(path, pathInfo, length));
+            }
+            mappingData.requestPath.setString(
+                    toString(path, servletPath, length));
+            mappingData.wrapper = wrapper.object;
+            mappingData.servletName = wrapper.servletName;
+            return true;
+        }
+        
+        // Rule 3 -- Extension Match
+        if (context.extensions != null) {
+            int period = -1;
+            for (int i = length - 1; i > servletPath; i--) {
+                final byte b = path[i];
+                if (b == '.') {
+                    period = i;
+                    break;
+                } else if (b == '/') {
+                    break;
+                }
+            }
+            
+            if (period != -1) {
+                final Node extensionNode =
+                        exact(context.extensions, path, period + 1, length);
+                if (extensionNode != null && extensionNode.exact != null) {
+                    final Mapper.Wrapper wrapper =
+                            (Mapper.Wrapper) extensionNode.exact;
+                    final String requestPath = toString(path, servletPath, length);
+                    setContext(mappingData, context);
+                    mappingData.wrapperPath.setString(requestPath);
+                    mappingData.requestPath.setString(requestPath);
+                    mappingData.wrapper = wrapper.object;
+                    mappingData.servletName = wrapper.servletName;
+                    return true;
+                }
+            }
+        }
+        
+        if (path[length - 1] == '/') {
+            // Rule 4 -- welcome resources processing is left to the Mapper
+            return false;
+        }
+        
+        // Rule 7 -- Default servlet
+        setContext(mappingData, context);
+        final Mapper.Wrapper defaultWrapper = context.defaultWrapper;
+        if (defaultWrapper != null) {
+            final String requestPath = toString(path, servletPath, length);
+            mappingData.wrapper = defaultWrapper.object;
+            mappingData.servletName = defaultWrapper.servletName;
+            mappingData.requestPath.setString(requestPath);
+            mappingData.wrapperPath.setString(requestPath);
+        }
+        
+        return true;
+    }
+
+    private void setContext(final MappingData mappingData,
+            final CompiledContext context) {
+        mappingData.host = hostObject;
+        mappingData.context = context.object;
+        mappingData.contextPath.setString(context.name);
+    }
+    
+    /**
+     * Copies the URI path, up to the first semicolon, to the
+     * {@link MappingData}'s byte array.
+     * 
+     * @return the byte array, or <tt>null</tt> if the URI path contains
+     *  non-ASCII characters.
+     */
+    private static byte[] toAsciiPath(final DataChunk decodedURI,
+            final MappingData mappingData) {
+        final int length = decodedURI.getLength();
+        byte[] path = mappingData.tmpMapperBytes;
+        if (path.length < length) {
+            path = new byte[Math.max(length, path.length * 2)];
+            mappingData.tmpMapperBytes = path;
+        }
+        
+        int i = 0;
+        switch (decodedURI.getType()) {
+            case Bytes: {
+                final ByteChunk bc = decodedURI.getByteChunk();
+                final byte[] src = bc.getBuffer();
+                final int start = bc.getStart();
+                for (; i < length; i++) {
+                    final byte b = src[start + i];
+                    if (b < 0) {
+                        return null;
+                    } else if (b == ';') {
+                        break;
+                    }
+                    path[i] = b;
+                }
+                break;
+            }
+            case Buffer: {
+                final BufferChunk bc = decodedURI.getBufferChunk();
+                final Buffer src = bc.getBuffer();
+                final int start = bc.getStart();
+                if (src.hasArray()) {
+                    final byte[] srcArray = src.array();
+                    final int srcStart = src.arrayOffset() + start;
+                    for (; i < length; i++) {
+                        final byte b = srcArray[srcStart + i];
+                        if (b < 0) {
+                            return null;
+                        } else if (b == ';') {
+                            break;
+                        }
+                        path[i] = b;
+                    }
+                } else {
+                    for (; i < length; i++) {
+                        final byte b = src.get(start + i);
+                        if (b < 0) {
+                            return null;
+                        } else if (b == ';') {
+                            break;
+                        }
+                        path[i] = b;
+                    }
+                }
+                break;
+            }
+            case Chars: {
+                final CharChunk cc = decodedURI.getCharChunk();
+                final char[] src = cc.getBuffer();
+                final int start = cc.getStart();
+                for (; i < length; i++) {
+                    final char c = src[start + i];
+                    if (c > 0x7F) {
+                        return null;
+                    } else if (c == ';') {
+                        break;
+                    }
+                    path[i] = (byte) c;
+                }
+                break;
+            }
+            case String: {
+                final String src = decodedURI.toString();
+                for (; i < length; i++) {
+                    final char c = src.charAt(i);
+                    if (c > 0x7F) {
+                        return null;
+                    } else if (c == ';') {
+                        break;
+                    }
+                    path[i] = (byte) c;
+                }
+                break;
+            }
+            default:
+                return null;
+        }
+        
+        mappingData.tmpMapperLength = i;
+        return path;
+    }
+    
+    private static String toString(final byte[] path, final int start,
+            final int end) {
+        return new String(path, start, end - start, Charsets.ASCII_CHARSET);
+    }
+    
+    /**
+     * Returns the {@link Node}, which represents exactly the passed key,
+     * or <tt>null</tt> if there is no such node.
+     */
+    private static Node exact(Node node, final byte[] key, int pos,
+            final int end) {
+        while (pos < end) {
+            node = node.child(key[pos]);
+            if (node == null || !node.matches(key, pos, end)) {
+                return null;
+            }
+            
+            pos += node.label.length;
+        }
+        
+        return node;
+    }
+    
+    /**
+     * Returns the deepest {@link Node} with a prefix value, which represents
+     * a prefix of the passed key ending at a path segment boundary, or
+     * <tt>null</tt> if there is no such node.
+     */
+    private static Node longestPrefix(Node node, final byte[] key, int pos,
+            final int end) {
+        Node match = null;
+        while (true) {
+            if (node.prefix != null && (pos == end || key[pos] == '/')) {
+                match = node;
+            }
+            
+            if (pos == end) {
+                return match;
+            }
+            
+            node = node.child(key[pos]);
+            if (node == null || !node.matches(key, pos, end)) {
+                return match;
+            }
+            
+            pos += node.label.length;
+        }
+    }
+    
+    /**
+     * Inserts the value to the trie.
+     * Keys containing non-ASCII characters are skipped, because they can
+     * never match a URI processed by {@link CompiledMapper}.
+     */
+    private static void insert(final Node root, final String name,
+            final Object value, final boolean isExact) {
+        final int length = name.length();
+        final byte[] key = new byte[length];
+        for (int i = 0; i < length; i++) {
+            final char c = name.charAt(i);
+            if (c > 0x7F) {
+                return;
+            }
+            key[i] = (byte) c;
+        }
+        
+        Node node = root;
+        int pos = 0;
+        while (pos < length) {
+            final int idx = node.childIndex(key[pos]);
+            if (idx < 0) {
+                final Node child = new Node(
+                        Arrays.copyOfRange(key, pos, length), length);
+                node.addChild(-idx - 1, child);
+                node = child;
+                break;
+            }
+            
+            final Node child = node.children[idx];
+            final byte[] label = child.label;
+            int common = 1;
+            while (common < label.length && pos + common < length
+                    && label[common] == key[pos + common]) {
+                common++;
+            }
+            
+            if (common < label.length) {
+                // split the edge
+                final Node split = new Node(
+                        Arrays.copyOfRange(label, 0, common),
+                        pos + common);
+                child.label = Arrays.copyOfRange(label, common, label.length);
+                split.keys = new byte[] {child.label[0]};
+                split.children = new Node[] {child};
+                node.children[idx] = split;
+                node = split;
+            } else {
+                node = child;
+            }
+            
+            pos += common;
+        }
+        
+        if (isExact) {
+            node.exact = value;
+        } else {
+            node.prefix = value;
+        }
+    }
+    
+    private static final class CompiledContext {
+        private final String name;
+        private final Object object;
+        private final Node wrappers;
+        private final Node extensions;
+        private final Mapper.Wrapper defaultWrapper;
+        private final Mapper.Wrapper emptyPathWrapper;
+        private final boolean complex;
+
+        private CompiledContext(final Mapper.Context context) {
+            name = context.name;
+            object = context.object;
+            defaultWrapper = context.defaultWrapper;
+            emptyPathWrapper = context.emptyPathWrapper;
+            complex = context.resources != null;
+            
+            wrappers = new Node(EMPTY_BYTES, 0);
+            for (Mapper.Wrapper wrapper : context.exactWrappers) {
+                insert(wrappers, wrapper.name, wrapper, true);
+            }
+            for (Mapper.Wrapper wrapper : context.wildcardWrappers) {
+                insert(wrappers, wrapper.name, wrapper, false);
+            }
+            
+            final Mapper.Wrapper[] extensionWrappers = context.extensionWrappers;
+            if (extensionWrappers.length > 0) {
+                extensions = new Node(EMPTY_BYTES, 0);
+                for (Mapper.Wrapper wrapper : extensionWrappers) {
+                    insert(extensions, wrapper.name, wrapper, true);
+                }
+            } else {
+                extensions = null;
+            }
+        }
+    }
+    
+    /**
+     * Radix trie node. Nodes are modified only while the trie is being
+     * compiled and are read-only afterwards.
+     */
+    private static final class Node {
+        /**
+         * The edge label, which leads to this node from its parent.
+         */
+        private byte[] label;
+        /**
+         * The length of the key represented by this node.
+         */
+        private final int depth;
+        /**
+         * Sorted first bytes of the children labels.
+         */
+        private byte[] keys = EMPTY_BYTES;
+        private Node[] children = EMPTY_NODES;
+        /**
+         * The value, which matches the node's key exactly.
+         */
+        private Object exact;
+        /**
+         * The value, which matches the node's key and any path under it.
+         */
+        private Object prefix;
+
+        private Node(final byte[] label, final int depth) {
+            this.label = label;
+            this.depth = depth;
+        }
+
+        private Node child(final byte b) {
+            final int idx = childIndex(b);
+            return idx >= 0 ? children[idx] : null;
+        }
+        
+        private int childIndex(final byte b) {
+            final byte[] k = keys;
+            if (k.length <= 8) {
+                for (int i = 0; i < k.length; i++) {
+                    if (k[i] == b) {
+                        return i;
+                    } else if (k[i] > b) {
+                        return -i - 1;
+                    }
+                }
+                
+                return -k.length - 1;
+            }
+            
+            return Arrays.binarySearch(k, b);
+        }
+        
+        private boolean matches(final byte[] key, final int pos, final int end) {
+            final byte[] l = label;
+            if (end - pos < l.length) {
+                return false;
+            }
+            
+            // the first byte is matched by the parent
+            for (int i = 1; i < l.length; i++) {
+                if (l[i] != key[pos + i]) {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+        
+        private void addChild(final int idx, final Node child) {
+            final int count = keys.length;
+            final byte[] newKeys = new byte[count + 1];
+            final Node[] newChildren = new Node[count + 1];
+            System.arraycopy(keys, 0, newKeys, 0, idx);
+            System.arraycopy(children, 0, newChildren, 0, idx);
+            newKeys[idx] = child.label[0];
+            newChildren[idx] = child;
+            System.arraycopy(keys, idx, newKeys, idx + 1, count - idx);
+            System.arraycopy(children, idx, newChildren, idx + 1, count - idx);
+            keys = newKeys;
+            children = newChildren;
+        }
+    }
+}
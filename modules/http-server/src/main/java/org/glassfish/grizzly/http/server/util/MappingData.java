@@ -81,6 +81,10 @@ public class MappingData {
     public DataChunk redirectPath = DataChunk.newInstance();
 
     public DataChunk tmpMapperDC = DataChunk.newInstance();
+
+    // URI path bytes, used by CompiledMapper
+    byte[] tmpMapperBytes = new byte[128];
+    int tmpMapperLength;
     
     public void recycle() {
         host = null;
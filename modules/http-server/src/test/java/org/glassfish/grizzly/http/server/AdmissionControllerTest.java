@@ -0,0 +1,286 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.utils.Charsets;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link AdmissionController} tests.
+ */
+public class AdmissionControllerTest {
+    private static final int PORT = 18908;
+    
+    @Test
+    public void testQueueDelayOverload() throws Exception {
+        final AdmissionController controller = new AdmissionController();
+        controller.setMaxLimit(100);
+        controller.setTargetQueueDelay(1, TimeUnit.MILLISECONDS);
+        controller.setInterval(20, TimeUnit.MILLISECONDS);
+        
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final HttpServerFilter filter = new HttpServerFilter(
+                new ServerFilterConfiguration(), new DelayedExecutor(executor));
+        final AtomicInteger limit = new AtomicInteger();
+        filter.getMonitoringConfig().addProbes(new HttpServerProbe.Adapter() {
+            @Override
+            public void onAdmissionLimitChangeEvent(HttpServerFilter filter,
+                    int newLimit) {
+                limit.set(newLimit);
+            }
+        });
+        
+        final long sojourn = TimeUnit.MILLISECONDS.toNanos(10);
+        
+        try {
+            controller.onDequeue(filter, sojourn);
+            assertFalse(controller.isOverloaded());
+        
+            Thread.sleep(25);
+            controller.onDequeue(filter, sojourn);
+            assertTrue(controller.isOverloaded());
+            assertEquals(90, controller.getLimit());
+            assertEquals(90, limit.get());
+        
+            // the queue is drained
+            controller.onDequeue(filter, 0);
+            assertFalse(controller.isOverloaded());
+        
+            // no samples for the whole interval
+            controller.onDequeue(filter, sojourn);
+            Thread.sleep(25);
+            controller.onDequeue(filter, sojourn);
+            assertTrue(controller.isOverloaded());
+            Thread.sleep(25);
+            assertFalse(controller.isOverloaded());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        final CountDownLatch serviceLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final AtomicInteger rejected = new AtomicInteger();
+        
+        final AdmissionController controller = new AdmissionController();
+        controller.setMaxLimit(1);
+        controller.setRetryAfter(5);
+        
+        final HttpServer server = HttpServer.createSimpleServer(null, PORT);
+        server.getServerConfiguration().setAdmissionController(controller);
+        server.getServerConfiguration().getMonitoringConfig()
+                .getWebServerConfig().addProbes(new HttpServerProbe.Adapter() {
+            @Override
+            public void onRequestRejectEvent(HttpServerFilter filter,
+                    Connection connection, Request request) {
+                rejected.incrementAndGet();
+            }
+        });
+        server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response)
+                    throws Exception {
+                serviceLatch.countDown();
+                releaseLatch.await(10, TimeUnit.SECONDS);
+                response.getWriter().write("OK");
+            }
+        }, "/slow");
+        
+        final HttpHandler criticalHandler = new HttpHandler() {
+            @Override
+            public void service(Request request, Response response)
+                    throws Exception {
+                response.getWriter().write("CRITICAL");
+            }
+        };
+        criticalHandler.setAdmissionPriority(AdmissionController.Priority.CRITICAL);
+        server.getServerConfiguration().addHttpHandler(criticalHandler, "/critical");
+        
+        Socket slowSocket = null;
+        try {
+            server.start();
+            
+            slowSocket = new Socket("localhost", PORT);
+            send(slowSocket, "/slow");
+            assertTrue(serviceLatch.await(10, TimeUnit.SECONDS));
+            assertEquals(1, controller.getInFlight());
+            
+            final String rejectedResponse = get("/slow");
+            assertTrue(rejectedResponse, rejectedResponse.startsWith(
+                    "HTTP/1.1 503 Service Unavailable\r\n"));
+            assertTrue(rejectedResponse, rejectedResponse.contains(
+                    "Retry-After: 5\r\n"));
+            assertEquals(1, rejected.get());
+            
+            // critical requests are limited by the max limit too
+            assertTrue(get("/critical").startsWith("HTTP/1.1 503"));
+            
+            releaseLatch.countDown();
+            final String okResponse = read(slowSocket);
+            assertTrue(okResponse, okResponse.startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(okResponse, okResponse.endsWith("OK"));
+            
+            // the slot is released right after the response is flushed
+            for (int i = 0; i < 100 && controller.getInFlight() > 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, controller.getInFlight());
+            assertTrue(get("/critical").endsWith("CRITICAL"));
+        } finally {
+            releaseLatch.countDown();
+            if (slowSocket != null) {
+                slowSocket.close();
+            }
+            
+            server.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testSuspendedRequestDisconnect() throws Exception {
+        final CountDownLatch suspendLatch = new CountDownLatch(1);
+        final AtomicReference<Response> suspendedResponse =
+                new AtomicReference<Response>();
+        
+        final AdmissionController controller = new AdmissionController();
+        controller.setMaxLimit(1);
+        
+        final HttpServer server = HttpServer.createSimpleServer(null, PORT);
+        server.getServerConfiguration().setAdmissionController(controller);
+        server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response)
+                    throws Exception {
+                // long-poll, which is never resumed
+                response.suspend();
+                suspendedResponse.set(response);
+                suspendLatch.countDown();
+            }
+        }, "/poll");
+        server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response)
+                    throws Exception {
+                response.getWriter().write("OK");
+            }
+        }, "/ok");
+        
+        try {
+            server.start();
+            
+            final Socket pollSocket = new Socket("localhost", PORT);
+            try {
+                send(pollSocket, "/poll");
+                assertTrue(suspendLatch.await(10, TimeUnit.SECONDS));
+                assertEquals(1, controller.getInFlight());
+                assertTrue(get("/ok").startsWith("HTTP/1.1 503"));
+            } finally {
+                pollSocket.close();
+            }
+            
+            // the suspended connection isn't read, so the server notices the
+            // client is gone, when the long-poll heartbeat fails
+            final Response response = suspendedResponse.get();
+            for (int i = 0; i < 100 && controller.getInFlight() > 0; i++) {
+                try {
+                    response.getWriter().write("ping");
+                    response.getWriter().flush();
+                } catch (IOException ignored) {
+                }
+                
+                Thread.sleep(50);
+            }
+            
+            assertEquals(0, controller.getInFlight());
+            assertTrue(get("/ok").endsWith("OK"));
+            assertEquals(0, controller.getInFlight());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+    
+    private static String get(final String uri) throws Exception {
+        final Socket socket = new Socket("localhost", PORT);
+        try {
+            send(socket, uri);
+            return read(socket);
+        } finally {
+            socket.close();
+        }
+    }
+    
+    private static void send(final Socket socket, final String uri)
+            throws Exception {
+        socket.setSoTimeout(10000);
+        final OutputStream os = socket.getOutputStream();
+        os.write(("GET " + uri + " HTTP/1.1\r\nHost: localhost\r\n"
+                + "Connection: close\r\n\r\n").getBytes(Charsets.ASCII_CHARSET));
+        os.flush();
+    }
+    
+    private static String read(final Socket socket) throws Exception {
+        final InputStream is = socket.getInputStream();
+        final StringBuilder sb = new StringBuilder();
+        final byte[] buf = new byte[1024];
+        int len;
+        while ((len = is.read(buf)) != -1) {
+            sb.append(new String(buf, 0, len, Charsets.ASCII_CHARSET));
+        }
+        
+        return sb.toString();
+    }
+}
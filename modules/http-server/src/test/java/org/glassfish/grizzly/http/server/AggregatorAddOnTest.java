@@ -40,13 +40,19 @@
 
 package org.glassfish.grizzly.http.server;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
 import java.net.URL;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -65,6 +71,7 @@ import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.Protocol;
 import org.glassfish.grizzly.http.io.NIOInputStream;
 import org.glassfish.grizzly.http.server.util.AggregatorAddOn;
+import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
@@ -110,7 +117,7 @@ public class AggregatorAddOnTest {
 
     @Before
     public void before() throws Exception {
-        httpServer = createServer(isSslEnabled);
+        httpServer = createServer(isSslEnabled, new AggregatorAddOn());
         httpServer.start();
     }
 
@@ -224,6 +231,149 @@ public class AggregatorAddOnTest {
         }        
     }
     
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPostSpilled() throws Exception {
+        final AggregatorAddOn aggregatorAddOn = new AggregatorAddOn();
+        aggregatorAddOn.setMemoryBudget(7);
+        restartServer(aggregatorAddOn);
+        
+        final FutureImpl<HttpContent> result = Futures.<HttpContent>createSafeFuture();
+
+        TCPNIOTransport client = createClient(result, isSslEnabled);
+        
+        try {
+            client.start();
+            Connection c = client.connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+            
+            HttpRequestPacket request =
+                    HttpRequestPacket.builder().uri("/")
+                        .method(Method.POST)
+                        .protocol(Protocol.HTTP_1_1)
+                        .header("Host", "localhost:" + PORT)
+                        .chunked(true)
+                        .build();
+            c.write(request);
+            Thread.sleep(500);
+            c.write(HttpContent.builder(request).content(Buffers.wrap(null, new byte[5])).build());
+            Thread.sleep(500);
+            c.write(HttpContent.builder(request).content(Buffers.wrap(null, new byte[5])).build());
+            Thread.sleep(500);
+            c.write(HttpContent.builder(request).content(Buffers.wrap(null, new byte[5])).last(true).build());
+            
+            final HttpContent responseContent = result.get(10, TimeUnit.SECONDS);
+            final HttpResponsePacket response = (HttpResponsePacket) responseContent.getHttpHeader();
+            
+            assertEquals(200, response.getStatus());
+            assertEquals(15, Integer.parseInt(response.getHeader("In-Length")));
+            assertEquals("true", response.getHeader("Spilled"));
+            assertEquals(1, aggregatorAddOn.getSpillCount());
+            assertEquals(15, aggregatorAddOn.getSpilledBytes());
+            assertEquals(0, aggregatorAddOn.getMemoryInUse());
+            c.close();
+        } finally {
+            client.shutdownNow();
+        }        
+    }
+    
+    @Test
+    public void testPipelinedPostsSpilled() throws Exception {
+        final AggregatorAddOn aggregatorAddOn = new AggregatorAddOn();
+        aggregatorAddOn.setMemoryBudget(7);
+        restartServer(aggregatorAddOn);
+        
+        final Socket socket = isSslEnabled
+                ? createSSLConfig(false).getSslContext().getSocketFactory()
+                        .createSocket("localhost", PORT)
+                : new Socket("localhost", PORT);
+        
+        try {
+            socket.setSoTimeout(10000);
+            final String request = "POST / HTTP/1.1\r\n"
+                    + "Host: localhost:" + PORT + "\r\n"
+                    + "Content-Length: 15\r\n\r\n"
+                    + "012345678901234";
+            final OutputStream os = socket.getOutputStream();
+            os.write((request + request).getBytes());
+            os.flush();
+            
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream()));
+            final List<String> bodyFiles = new ArrayList<String>();
+            int responses = 0;
+            String line;
+            while (responses < 2 && (line = reader.readLine()) != null) {
+                if (line.startsWith("HTTP/1.1 ")) {
+                    assertEquals("HTTP/1.1 200 OK", line);
+                } else if (line.startsWith("Body-File: ")) {
+                    bodyFiles.add(line.substring("Body-File: ".length()));
+                } else if (line.startsWith("Body-File-Exists: ")) {
+                    // each request's file is kept till its response is done
+                    assertEquals("Body-File-Exists: true", line);
+                } else if (line.isEmpty()) {
+                    responses++;
+                }
+            }
+            
+            assertEquals(2, responses);
+            assertEquals(2, bodyFiles.size());
+            assertFalse(bodyFiles.get(0).equals(bodyFiles.get(1)));
+            
+            for (int i = 0; i < 100 && aggregatorAddOn.getMemoryInUse() > 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, aggregatorAddOn.getMemoryInUse());
+            for (String bodyFile : bodyFiles) {
+                assertFalse(new File(bodyFile).exists());
+            }
+        } finally {
+            socket.close();
+        }
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPostTooLarge() throws Exception {
+        final AggregatorAddOn aggregatorAddOn = new AggregatorAddOn();
+        aggregatorAddOn.setMaxBodySize(10);
+        restartServer(aggregatorAddOn);
+        
+        final FutureImpl<HttpContent> result = Futures.<HttpContent>createSafeFuture();
+
+        TCPNIOTransport client = createClient(result, isSslEnabled);
+        
+        try {
+            client.start();
+            Connection c = client.connect("localhost", PORT).get(10, TimeUnit.SECONDS);
+            
+            HttpRequestPacket request =
+                    HttpRequestPacket.builder().uri("/")
+                        .method(Method.POST)
+                        .protocol(Protocol.HTTP_1_1)
+                        .header("Host", "localhost:" + PORT)
+                        .contentLength(15)
+                        .build();
+            c.write(HttpContent.builder(request).content(Buffers.wrap(null, new byte[5])).build());
+            
+            final HttpContent responseContent = result.get(10, TimeUnit.SECONDS);
+            final HttpResponsePacket response = (HttpResponsePacket) responseContent.getHttpHeader();
+            
+            assertEquals(413, response.getStatus());
+            assertEquals("close", response.getHeader(Header.Connection));
+            assertEquals(1, aggregatorAddOn.getRejectedCount());
+            assertEquals(0, aggregatorAddOn.getMemoryInUse());
+        } finally {
+            client.shutdownNow();
+        }        
+    }
+    
+    private void restartServer(final AggregatorAddOn aggregatorAddOn)
+            throws Exception {
+        httpServer.shutdownNow();
+        httpServer = createServer(isSslEnabled, aggregatorAddOn);
+        httpServer.start();
+    }
+    
     private static TCPNIOTransport createClient(final FutureImpl<HttpContent> result,
             final boolean isSslEnabled) throws Exception {
         TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
@@ -295,7 +445,8 @@ public class AggregatorAddOnTest {
         return transport;
     }
     
-    private static HttpServer createServer(boolean isSslEnabled) throws Exception {
+    private static HttpServer createServer(boolean isSslEnabled,
+            AggregatorAddOn aggregatorAddOn) throws Exception {
         final HttpServer server = new HttpServer();
         final NetworkListener listener = 
                 new NetworkListener("test", 
@@ -307,7 +458,7 @@ public class AggregatorAddOnTest {
             listener.setSSLEngineConfig(createSSLConfig(true));
         }
         
-        listener.registerAddOn(new AggregatorAddOn());
+        listener.registerAddOn(aggregatorAddOn);
         
         server.addListener(listener);
         
@@ -334,7 +485,15 @@ public class AggregatorAddOnTest {
                     throw new Exception("InputStream supposed to be finished");
                 }
                 
+                final File bodyFile = (File) request.getAttribute(
+                        AggregatorAddOn.BODY_FILE_ATTR);
                 response.setHeader("In-Length", String.valueOf(inSize));
+                response.setHeader("Spilled", String.valueOf(bodyFile != null));
+                if (bodyFile != null) {
+                    response.setHeader("Body-File", bodyFile.getAbsolutePath());
+                    response.setHeader("Body-File-Exists",
+                            String.valueOf(bodyFile.exists()));
+                }
             }
         });
         
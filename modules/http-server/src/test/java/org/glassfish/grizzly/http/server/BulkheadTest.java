@@ -0,0 +1,273 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link Bulkhead} and {@link BulkheadGroup} tests.
+ */
+public class BulkheadTest {
+    private static final int PORT = 18909;
+    
+    @Test
+    public void testReservation() {
+        final BulkheadGroup group = new BulkheadGroup("test", 4);
+        try {
+            group.createBulkhead("a", 3, 0);
+            assertEquals(1, group.getSharedThreads());
+            
+            try {
+                group.createBulkhead("b", 2, 0);
+                fail("Only one thread is available");
+            } catch (IllegalStateException expected) {
+            }
+            
+            group.createBulkhead("b", 1, 0);
+            assertEquals(0, group.getSharedThreads());
+            assertEquals(2, group.getBulkheads().size());
+        } finally {
+            group.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testIsolationAndBorrowing() throws Exception {
+        final BulkheadGroup group = new BulkheadGroup("test", 4);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        
+        try {
+            final Bulkhead slow = group.createBulkhead("slow", 1, 1);
+            final Bulkhead fast = group.createBulkhead("fast", 1, 0);
+            
+            final Executor slowExecutor = slow.getExecutor(null);
+            final CountDownLatch slowStarted = new CountDownLatch(3);
+            final CountDownLatch slowCompleted = new CountDownLatch(4);
+            final Runnable slowTask = new Runnable() {
+                @Override
+                public void run() {
+                    slowStarted.countDown();
+                    try {
+                        releaseLatch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                    slowCompleted.countDown();
+                }
+            };
+            
+            // the reserved thread and two shared threads
+            for (int i = 0; i < 3; i++) {
+                slowExecutor.execute(slowTask);
+            }
+            assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+            assertEquals(3, slow.getActiveCount());
+            assertEquals(2, slow.getBorrowedCount());
+            assertEquals(2, group.getBorrowedThreads());
+            assertEquals(1.0, slow.getSaturation(), 0.0);
+            
+            // no more shared threads, so the task is queued
+            slowExecutor.execute(slowTask);
+            assertEquals(1, slow.getQueueSize());
+            
+            try {
+                slowExecutor.execute(slowTask);
+                fail("The queue is full");
+            } catch (RejectedExecutionException expected) {
+            }
+            assertEquals(1, slow.getRejectedCount());
+            
+            // the fast bulkhead is not affected
+            final CountDownLatch fastCompleted = new CountDownLatch(1);
+            fast.getExecutor(null).execute(new Runnable() {
+                @Override
+                public void run() {
+                    fastCompleted.countDown();
+                }
+            });
+            assertTrue(fastCompleted.await(10, TimeUnit.SECONDS));
+            
+            releaseLatch.countDown();
+            assertTrue(slowCompleted.await(10, TimeUnit.SECONDS));
+            
+            for (int i = 0; i < 100 && slow.getActiveCount() > 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, slow.getActiveCount());
+            assertEquals(0, group.getBorrowedThreads());
+            assertEquals(4, slow.getCompletedCount());
+            assertEquals(4, slow.getQueueTimeHistogram().snapshot().getCount());
+        } finally {
+            releaseLatch.countDown();
+            group.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testFailedTaskKeepsQueue() throws Exception {
+        final BulkheadGroup group = new BulkheadGroup("test", 1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        
+        try {
+            final Bulkhead bulkhead = group.createBulkhead("failing", 1, 2);
+            final Executor executor = bulkhead.getExecutor(null);
+            
+            final CountDownLatch started = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        releaseLatch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                    throw new IllegalStateException("expected failure");
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            
+            final CountDownLatch queuedCompleted = new CountDownLatch(2);
+            final Runnable queuedTask = new Runnable() {
+                @Override
+                public void run() {
+                    queuedCompleted.countDown();
+                }
+            };
+            executor.execute(queuedTask);
+            executor.execute(queuedTask);
+            assertEquals(2, bulkhead.getQueueSize());
+            
+            releaseLatch.countDown();
+            assertTrue(queuedCompleted.await(10, TimeUnit.SECONDS));
+            
+            for (int i = 0; i < 100 && bulkhead.getActiveCount() > 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, bulkhead.getActiveCount());
+            assertEquals(0, bulkhead.getQueueSize());
+            assertEquals(3, bulkhead.getCompletedCount());
+        } finally {
+            releaseLatch.countDown();
+            group.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testSaturatedBulkheadResponse() throws Exception {
+        final BulkheadGroup group = new BulkheadGroup("test", 1);
+        final CountDownLatch serviceLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        
+        final HttpHandler handler = new HttpHandler() {
+            @Override
+            public void service(Request request, Response response)
+                    throws Exception {
+                serviceLatch.countDown();
+                releaseLatch.await(10, TimeUnit.SECONDS);
+                response.getWriter().write("OK");
+            }
+        };
+        handler.setRequestExecutorProvider(group.createBulkhead("slow", 1, 0));
+        
+        final HttpServer server = HttpServer.createSimpleServer(null, PORT);
+        server.getServerConfiguration().addHttpHandler(handler, "/slow");
+        
+        Socket slowSocket = null;
+        try {
+            server.start();
+            
+            slowSocket = new Socket("localhost", PORT);
+            send(slowSocket);
+            assertTrue(serviceLatch.await(10, TimeUnit.SECONDS));
+            
+            final Socket socket = new Socket("localhost", PORT);
+            try {
+                send(socket);
+                final String response = read(socket);
+                assertTrue(response, response.startsWith("HTTP/1.1 503"));
+            } finally {
+                socket.close();
+            }
+            
+            releaseLatch.countDown();
+            final String response = read(slowSocket);
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.endsWith("OK"));
+        } finally {
+            releaseLatch.countDown();
+            if (slowSocket != null) {
+                slowSocket.close();
+            }
+            
+            server.shutdownNow();
+            group.shutdownNow();
+        }
+    }
+    
+    private static void send(final Socket socket) throws Exception {
+        socket.setSoTimeout(10000);
+        final OutputStream os = socket.getOutputStream();
+        os.write(("GET /slow HTTP/1.1\r\nHost: localhost\r\n"
+                + "Connection: close\r\n\r\n").getBytes(Charsets.ASCII_CHARSET));
+        os.flush();
+    }
+    
+    private static String read(final Socket socket) throws Exception {
+        final InputStream is = socket.getInputStream();
+        final StringBuilder sb = new StringBuilder();
+        final byte[] buf = new byte[1024];
+        int len;
+        while ((len = is.read(buf)) != -1) {
+            sb.append(new String(buf, 0, len, Charsets.ASCII_CHARSET));
+        }
+        
+        return sb.toString();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.glassfish.grizzly.http.server.util.CompiledMapper;
+import org.glassfish.grizzly.http.server.util.Mapper;
+import org.glassfish.grizzly.http.server.util.MappingData;
+import org.glassfish.grizzly.http.util.DataChunk;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link CompiledMapper} tests
+ */
+public class CompiledMapperTest {
+    private static final String HOST = "localhost";
+    
+    private static final String[] WELCOME_FILES = {"index.html", "index.htm"};
+    
+    private static final String[] SEGMENTS = {
+        "a", "ab", "b", "api", "v1", "v2", "users", "x.jsp", "y.do", "z"
+    };
+    
+    @Test
+    public void testMappingRules() throws Exception {
+        final Mapper mapper = createMapper();
+        final Object root = new Object();
+        final Object app = new Object();
+        mapper.addContext(HOST, "", root, null, null);
+        mapper.addContext(HOST, "/app", app, null, null);
+        
+        final Object exact = new Object();
+        final Object wildcard = new Object();
+        final Object extension = new Object();
+        final Object defaultWrapper = new Object();
+        mapper.addWrapper(HOST, "/app", "/exact", exact);
+        mapper.addWrapper(HOST, "/app", "/api/*", wildcard);
+        mapper.addWrapper(HOST, "/app", "*.do", extension);
+        mapper.addWrapper(HOST, "/app", "/", defaultWrapper);
+        
+        final CompiledMapper compiledMapper = CompiledMapper.compile(mapper);
+        assertNotNull(compiledMapper);
+        
+        MappingData md = map(compiledMapper, "/app/exact");
+        assertEquals(app, md.context);
+        assertEquals(exact, md.wrapper);
+        assertEquals("/app", md.contextPath.toString());
+        assertEquals("/exact", md.wrapperPath.toString());
+        assertNull(md.pathInfo.toString());
+        
+        md = map(compiledMapper, "/app/api/users/1;jsessionid=1");
+        assertEquals(wildcard, md.wrapper);
+        assertEquals("/api", md.wrapperPath.toString());
+        assertEquals("/users/1", md.pathInfo.toString());
+        
+        md = map(compiledMapper, "/app/apis");
+        assertEquals(defaultWrapper, md.wrapper);
+        assertEquals("/apis", md.wrapperPath.toString());
+        
+        md = map(compiledMapper, "/app/api/form.do");
+        assertEquals(wildcard, md.wrapper);
+        
+        md = map(compiledMapper, "/app/form.do");
+        assertEquals(extension, md.wrapper);
+        assertEquals("/form.do", md.wrapperPath.toString());
+        
+        md = map(compiledMapper, "/application");
+        assertEquals(root, md.context);
+        assertNull(md.wrapper);
+        
+        // the cases, which have to be processed by the Mapper
+        assertFalse(compiledMapper.map(chunk("/app"), md = new MappingData()));
+        assertNull(md.context);
+        assertFalse(compiledMapper.map(chunk("/app/dir/"), md));
+        assertFalse(compiledMapper.map(chunk("/app/café"), md));
+        assertNull(md.context);
+    }
+    
+    @Test
+    public void testMultipleHostsNotCompiled() {
+        final Mapper mapper = createMapper();
+        mapper.addHost("host1", new String[] {"host1"}, new Object());
+        assertNull(CompiledMapper.compile(mapper));
+    }
+    
+    @Test
+    public void testSameResultAsMapper() throws Exception {
+        final Random random = new Random(7);
+        
+        for (int iteration = 0; iteration < 20; iteration++) {
+            final Mapper mapper = createMapper();
+            final List<String> contexts = new ArrayList<String>();
+            contexts.add("");
+            mapper.addContext(HOST, "", new Object(), WELCOME_FILES, null);
+            for (int i = 0; i < 5; i++) {
+                final String context = randomPath(random, 2);
+                contexts.add(context);
+                mapper.addContext(HOST, context, context, WELCOME_FILES, null);
+            }
+            
+            for (int i = 0; i < 30; i++) {
+                final String context = contexts.get(random.nextInt(contexts.size()));
+                final String path;
+                switch (random.nextInt(4)) {
+                    case 0:
+                        path = randomPath(random, 3);
+                        break;
+                    case 1:
+                        path = randomPath(random, 2) + "/*";
+                        break;
+                    case 2:
+                        path = "*." + SEGMENTS[random.nextInt(SEGMENTS.length)];
+                        break;
+                    default:
+                        path = random.nextBoolean() ? "/" : "/*";
+                }
+                
+                mapper.addWrapper(HOST, context, path, context + "|" + path);
+            }
+            
+            final CompiledMapper compiledMapper = CompiledMapper.compile(mapper);
+            assertNotNull(compiledMapper);
+            
+            int compiledCount = 0;
+            for (int i = 0; i < 500; i++) {
+                String uri = randomPath(random, 5);
+                if (random.nextInt(5) == 0) {
+                    uri += "/";
+                }
+                if (random.nextInt(5) == 0) {
+                    uri += ";a=b";
+                }
+                
+                final MappingData expected = new MappingData();
+                mapper.mapUriWithSemicolon(chunk(HOST), chunk(uri),
+                        expected, 0);
+                
+                final MappingData actual = new MappingData();
+                if (compiledMapper.map(chunk(uri), actual)) {
+                    compiledCount++;
+                    assertSame(uri, expected.context, actual.context);
+                    assertSame(uri, expected.wrapper, actual.wrapper);
+                    assertEquals(uri, expected.contextPath.toString(),
+                            actual.contextPath.toString());
+                    assertEquals(uri, expected.wrapperPath.toString(),
+                            actual.wrapperPath.toString());
+                    assertEquals(uri, expected.pathInfo.toString(),
+                            actual.pathInfo.toString());
+                    assertEquals(uri, expected.requestPath.toString(),
+                            actual.requestPath.toString());
+                }
+            }
+            
+            assertTrue(compiledCount > 250);
+        }
+    }
+    
+    private static Mapper createMapper() {
+        final Mapper mapper = new Mapper();
+        mapper.setDefaultHostName(HOST);
+        mapper.addHost(HOST, new String[] {HOST}, null);
+        return mapper;
+    }
+    
+    private static MappingData map(final CompiledMapper compiledMapper,
+            final String uri) {
+        final MappingData mappingData = new MappingData();
+        assertTrue(uri, compiledMapper.map(chunk(uri), mappingData));
+        return mappingData;
+    }
+    
+    private static DataChunk chunk(final String s) {
+        final DataChunk chunk = DataChunk.newInstance();
+        chunk.setChars(s.toCharArray(), 0, s.length());
+        return chunk;
+    }
+    
+    private static String randomPath(final Random random, final int maxSegments) {
+        final StringBuilder sb = new StringBuilder();
+        final int segments = 1 + random.nextInt(maxSegments);
+        for (int i = 0; i < segments; i++) {
+            sb.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        
+        return sb.toString();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ShardedSessionManager} tests.
+ */
+public class ShardedSessionManagerTest {
+    private ShardedSessionManager manager;
+
+    @Before
+    public void before() {
+        manager = new ShardedSessionManager(4, 1, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void after() {
+        manager.shutdown();
+    }
+    
+    @Test
+    public void testCreateAndChangeSessionId() {
+        final Set<String> ids = new HashSet<String>();
+        for (int i = 0; i < 1000; i++) {
+            final Session session = manager.createSession(null);
+            assertEquals(22, session.getIdInternal().length());
+            assertTrue(ids.add(session.getIdInternal()));
+            assertSame(session, manager.getSession(null, session.getIdInternal()));
+        }
+        
+        assertEquals(1000, manager.getSessionsCount());
+        
+        final Session session = manager.createSession(null);
+        final String oldId = manager.changeSessionId(null, session);
+        assertFalse(oldId.equals(session.getIdInternal()));
+        assertNull(manager.getSession(null, oldId));
+        assertSame(session, manager.getSession(null, session.getIdInternal()));
+        assertEquals(1001, manager.getSessionsCount());
+    }
+    
+    @Test
+    public void testExpiration() {
+        final long now = System.currentTimeMillis();
+        
+        final Session expired = manager.createSession(null);
+        expired.setSessionTimeout(60000);
+        expired.setTimestamp(now - 120000);
+        
+        final Session alive = manager.createSession(null);
+        alive.setSessionTimeout(60000);
+        
+        final Session eternal = manager.createSession(null);
+        eternal.setTimestamp(now - 120000);
+        
+        // expired sessions are not returned, even if they're not removed yet
+        assertNull(manager.getSession(null, expired.getIdInternal()));
+        assertFalse(expired.isValid());
+        
+        manager.expireSessions(now + 2000);
+        assertEquals(2, manager.getSessionsCount());
+        assertSame(alive, manager.getSession(null, alive.getIdInternal()));
+        assertSame(eternal, manager.getSession(null, eternal.getIdInternal()));
+        
+        manager.expireSessions(now + 61000);
+        assertNull(manager.getSession(null, alive.getIdInternal()));
+        assertFalse(alive.isValid());
+        assertSame(eternal, manager.getSession(null, eternal.getIdInternal()));
+        
+        manager.expireSessions(now + 62000);
+        assertEquals(1, manager.getSessionsCount());
+        
+        // the session is removed from the wheel and the map on invalidation
+        eternal.setValid(false);
+        manager.expireSessions(now + 62000 + 512 * 1000);
+        assertEquals(0, manager.getSessionsCount());
+    }
+    
+    @Test
+    public void testPassivation() {
+        manager.setPassivation(10, TimeUnit.SECONDS, 16 * 1024 * 1024);
+        final long now = System.currentTimeMillis();
+        
+        final List<String> list = new ArrayList<String>();
+        list.add("a");
+        list.add("b");
+        
+        final Session session = manager.createSession(null);
+        session.setAttribute("string", "value");
+        session.setAttribute("int", 5);
+        session.setAttribute("long", 6L);
+        session.setAttribute("boolean", Boolean.TRUE);
+        session.setAttribute("list", list);
+        session.setTimestamp(now - 20000);
+        
+        final Session nonSerializable = manager.createSession(null);
+        nonSerializable.setAttribute("object", new Object());
+        nonSerializable.setTimestamp(now - 20000);
+        
+        manager.expireSessions(now + 2000);
+        
+        assertTrue(((ShardedSessionManager.ShardedSession) session).passivated);
+        assertFalse(((ShardedSessionManager.ShardedSession) nonSerializable).passivated);
+        assertTrue(manager.getOffHeapUsedBytes() > 0);
+        
+        assertSame(session, manager.getSession(null, session.getIdInternal()));
+        assertEquals("value", session.getAttribute("string"));
+        assertFalse(((ShardedSessionManager.ShardedSession) session).passivated);
+        assertEquals(0, manager.getOffHeapUsedBytes());
+        assertEquals(5, session.getAttribute("int"));
+        assertEquals(6L, session.getAttribute("long"));
+        assertEquals(Boolean.TRUE, session.getAttribute("boolean"));
+        assertEquals(list, session.getAttribute("list"));
+        assertEquals(5, session.attributes().size());
+        
+        assertNotNull(nonSerializable.getAttribute("object"));
+    }
+    
+    @Test
+    public void testSetAttributeDuringPassivation() throws Exception {
+        manager.setPassivation(10, TimeUnit.SECONDS, 16 * 1024 * 1024);
+        final long now = System.currentTimeMillis();
+        
+        final Session session = manager.createSession(null);
+        session.setAttribute("blocking", new BlockingAttribute());
+        session.setTimestamp(now - 20000);
+        
+        final Thread passivationThread = new Thread() {
+            @Override
+            public void run() {
+                manager.expireSessions(now + 2000);
+            }
+        };
+        passivationThread.start();
+        assertTrue(BlockingAttribute.serializing.await(10, TimeUnit.SECONDS));
+        
+        // the attribute is set while the session is being passivated
+        final Thread setAttributeThread = new Thread() {
+            @Override
+            public void run() {
+                session.setAttribute("new", "value");
+            }
+        };
+        setAttributeThread.start();
+        Thread.sleep(100);
+        
+        BlockingAttribute.release.countDown();
+        passivationThread.join(10000);
+        setAttributeThread.join(10000);
+        
+        assertEquals("value", session.getAttribute("new"));
+        assertNotNull(session.getAttribute("blocking"));
+    }
+    
+    private static final class BlockingAttribute implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        static final CountDownLatch serializing = new CountDownLatch(1);
+        static final CountDownLatch release = new CountDownLatch(1);
+        
+        private void writeObject(final ObjectOutputStream out)
+                throws IOException {
+            serializing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            
+            out.defaultWriteObject();
+        }
+    }
+}
@@ -62,9 +62,26 @@ public class ServletSessionManager implements SessionManager {
         private static final ServletSessionManager INSTANCE = new ServletSessionManager();
     }
 
-    private final SessionManager defaultManager = DefaultSessionManager.instance();
+    private final SessionManager defaultManager;
     
     private ServletSessionManager() {
+        this(DefaultSessionManager.instance());
+    }
+    
+    /**
+     * Creates the Servlet-aware {@link SessionManager}, which delegates
+     * session tracking to the given {@link SessionManager}, for example
+     * {@link org.glassfish.grizzly.http.server.ShardedSessionManager}.
+     * 
+     * @param defaultManager the {@link SessionManager} to keep track of sessions
+     * @since 2.3.23
+     */
+    public ServletSessionManager(final SessionManager defaultManager) {
+        if (defaultManager == null) {
+            throw new IllegalArgumentException("defaultManager can't be null");
+        }
+        
+        this.defaultManager = defaultManager;
     }
     
     @Override
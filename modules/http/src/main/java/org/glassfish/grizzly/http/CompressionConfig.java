@@ -41,7 +41,10 @@ package org.glassfish.grizzly.http;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.zip.Deflater;
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.HttpUtils;
@@ -100,6 +103,11 @@ public final class CompressionConfig {
     // the user-agents, for which the payload will never be compressed
     private final ArraySet<String> noCompressionUserAgents =
             new ArraySet<String>(String.class);
+    // the default compression level
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    // the mime-type prefix -> compression level map
+    private final Map<String, Integer> mimeTypeCompressionLevels =
+            new LinkedHashMap<String, Integer>();
 
     public CompressionConfig() {
         compressionMode = CompressionMode.OFF;
@@ -136,6 +144,8 @@ public final class CompressionConfig {
         compressionMinSize = compression.compressionMinSize;
         setCompressableMimeTypes(compression.compressableMimeTypes);
         setNoCompressionUserAgents(compression.noCompressionUserAgents);
+        compressionLevel = compression.compressionLevel;
+        setMimeTypeCompressionLevels(compression.mimeTypeCompressionLevels);
     }
     
     /**
@@ -252,6 +262,109 @@ public final class CompressionConfig {
         }
     }
     
+    /**
+     * Returns the default compression level, which is used for the mime-types
+     * without specific level configured.
+     * 
+     * @return {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * @since 2.3.23
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the default compression level, which is used for the mime-types
+     * without specific level configured.
+     * 
+     * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * @since 2.3.23
+     */
+    public void setCompressionLevel(final int compressionLevel) {
+        checkCompressionLevel(compressionLevel);
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Returns the read-only map of the mime-types and their specific
+     * compression levels.
+     * 
+     * @since 2.3.23
+     */
+    public Map<String, Integer> getMimeTypeCompressionLevels() {
+        return Collections.unmodifiableMap(mimeTypeCompressionLevels);
+    }
+
+    /**
+     * Sets the compression level for the mime-type. The mime-type is matched
+     * as a content-type prefix, so "text/" would match all the text types;
+     * if several mime-types match - the longest one wins.
+     * For example, the already compact types could be compressed faster
+     * using the lower level, and the static text with the higher one.
+     * 
+     * @param mimeType the mime-type (prefix).
+     * @param compressionLevel {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * @since 2.3.23
+     */
+    public void setMimeTypeCompressionLevel(final String mimeType,
+            final int compressionLevel) {
+        if (mimeType == null) {
+            throw new IllegalArgumentException("mimeType can't be null");
+        }
+        
+        checkCompressionLevel(compressionLevel);
+        mimeTypeCompressionLevels.put(mimeType, compressionLevel);
+    }
+
+    /**
+     * Sets the mime-types and their specific compression levels, the existing
+     * mappings are removed.
+     * 
+     * Please note that CompressionConfig object will copy the source Map content,
+     * so further changes made on the source Map will not affect CompressionConfig
+     * object state.
+     * 
+     * @see #setMimeTypeCompressionLevel(String, int)
+     * @since 2.3.23
+     */
+    public void setMimeTypeCompressionLevels(
+            final Map<String, Integer> mimeTypeCompressionLevels) {
+        this.mimeTypeCompressionLevels.clear();
+        
+        if (mimeTypeCompressionLevels != null) {
+            for (Map.Entry<String, Integer> entry : mimeTypeCompressionLevels.entrySet()) {
+                setMimeTypeCompressionLevel(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the compression level to be used for the resource with
+     * the given content-type.
+     * 
+     * @param contentType the content-type, could be <tt>null</tt>.
+     * @return {@link Deflater#DEFAULT_COMPRESSION} or 0-9.
+     * @since 2.3.23
+     */
+    public int getCompressionLevel(final String contentType) {
+        if (contentType == null || mimeTypeCompressionLevels.isEmpty()) {
+            return compressionLevel;
+        }
+        
+        int level = compressionLevel;
+        int matchLength = -1;
+        for (Map.Entry<String, Integer> entry : mimeTypeCompressionLevels.entrySet()) {
+            final String mimeType = entry.getKey();
+            if (mimeType.length() > matchLength
+                    && contentType.startsWith(mimeType)) {
+                level = entry.getValue();
+                matchLength = mimeType.length();
+            }
+        }
+        
+        return level;
+    }
+    
     /**
      * Returns <tt>true</tt> if a client, based on its {@link HttpRequestPacket},
      * could be responded with compressed data, or <tt>false</tt> otherwise.
@@ -378,6 +491,14 @@ public final class CompressionConfig {
         return -1;
     }
 
+    private static void checkCompressionLevel(final int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION
+                || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(
+                    "Invalid compression level: " + compressionLevel);
+        }
+    }
+    
     private static int indexOfStartsWith(String[] aliases, String s) {
         if (s == null || s.length() == 0) {
             return -1;
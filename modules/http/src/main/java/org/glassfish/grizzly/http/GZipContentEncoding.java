@@ -43,6 +43,7 @@ package org.glassfish.grizzly.http;
 import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.TransformationResult;
+import org.glassfish.grizzly.attributes.AttributeStorage;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.compression.zip.GZipDecoder;
 import org.glassfish.grizzly.compression.zip.GZipEncoder;
@@ -53,7 +54,7 @@ import org.glassfish.grizzly.compression.zip.GZipEncoder;
  * 
  * @author Alexey Stashok
  */
-public class GZipContentEncoding implements ContentEncoding {
+public class GZipContentEncoding implements ReleasableContentEncoding {
     public static final int DEFAULT_IN_BUFFER_SIZE = 512;
     public static final int DEFAULT_OUT_BUFFER_SIZE = 512;
 
@@ -92,8 +93,31 @@ public class GZipContentEncoding implements ContentEncoding {
      */
     public GZipContentEncoding(int inBufferSize, int outBufferSize,
             EncodingFilter encoderFilter) {
+        this(inBufferSize, outBufferSize, encoderFilter, null);
+    }
+
+    /**
+     * Construct <tt>GZipContentEncoding</tt> using specific buffer sizes
+     * and the compression levels configured in the {@link CompressionConfig}.
+     * @param inBufferSize input buffer size
+     * @param outBufferSize output buffer size
+     * @param encoderFilter {@link EncodingFilter}, which will decide if
+     *          <tt>GZipContentEncoding</tt> should be applied to encode specific
+     *          {@link HttpHeader} packet.
+     * @param compressionConfig {@link CompressionConfig}, which provides
+     *          the compression level per content-type, or <tt>null</tt>
+     *          to use the default compression level. The config is copied.
+     * 
+     * @since 2.3.23
+     */
+    public GZipContentEncoding(int inBufferSize, int outBufferSize,
+            EncodingFilter encoderFilter,
+            CompressionConfig compressionConfig) {
         this.decoder = new GZipDecoder(inBufferSize);
-        this.encoder = new GZipEncoder(outBufferSize);
+        this.encoder = compressionConfig != null
+                ? new ConfigurableGZipEncoder(outBufferSize,
+                        new CompressionConfig(compressionConfig))
+                : new GZipEncoder(outBufferSize);
 
         if (encoderFilter != null) {
             this.encoderFilter = encoderFilter;
@@ -231,6 +255,20 @@ public class GZipContentEncoding implements ContentEncoding {
         }
     }
 
+    /**
+     * Releases the gzip encoding/decoding state associated with
+     * the {@link HttpHeader}, so the zlib instances of the messages, which
+     * haven't been completely encoded or decoded, are returned to the
+     * {@link org.glassfish.grizzly.compression.zip.ZLibPool}.
+     * 
+     * @param httpHeader {@link HttpHeader} being reset.
+     */
+    @Override
+    public void release(final HttpHeader httpHeader) {
+        decoder.release(httpHeader);
+        encoder.release(httpHeader);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null) {
@@ -250,4 +288,26 @@ public class GZipContentEncoding implements ContentEncoding {
         hash = 53 * hash + (getName().hashCode());
         return hash;
     }
+
+    /**
+     * {@link GZipEncoder}, which resolves the compression level based on
+     * the encoded {@link HttpHeader}'s content-type.
+     */
+    private static final class ConfigurableGZipEncoder extends GZipEncoder {
+        private final CompressionConfig compressionConfig;
+
+        private ConfigurableGZipEncoder(final int bufferSize,
+                final CompressionConfig compressionConfig) {
+            super(bufferSize, compressionConfig.getCompressionLevel());
+            this.compressionConfig = compressionConfig;
+        }
+
+        @Override
+        protected int getCompressionLevel(final AttributeStorage storage) {
+            return storage instanceof HttpHeader
+                    ? compressionConfig.getCompressionLevel(
+                            ((HttpHeader) storage).getContentType())
+                    : compressionConfig.getCompressionLevel();
+        }
+    }
 }
@@ -56,7 +56,10 @@ import org.glassfish.grizzly.http.util.ByteChunk;
 import org.glassfish.grizzly.http.util.CacheableDataChunk;
 import org.glassfish.grizzly.http.util.Constants;
 import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.FastHttpDateFormat;
 import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HeaderScanner;
+import org.glassfish.grizzly.http.util.HttpUtils;
 import org.glassfish.grizzly.http.util.MimeHeaders;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.CompositeBuffer;
@@ -822,7 +825,8 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
         
         final int limit = Math.min(end, arrayOffs + parsingState.packetLimit);
         final int start = arrayOffs + parsingState.start;
-        int offset = arrayOffs + parsingState.offset;
+        int offset = HeaderScanner.lowerCaseHeaderName(input,
+                arrayOffs + parsingState.offset, limit);
 
         while(offset < limit) {
             byte b = input[offset];
@@ -858,6 +862,26 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
 
         final boolean hasShift = (offset != (arrayOffs + parsingState.checkpoint));
         
+        if (!hasShift) {
+            // fast path: skip the words w/o CR and LF, the value doesn't
+            // have to be shifted, so only checkpoints have to be updated
+            final int wordsEnd = HeaderScanner.skipHeaderValue(input, offset, limit);
+            if (wordsEnd != offset) {
+                int nonSpaceEnd = wordsEnd;
+                while (nonSpaceEnd > offset
+                        && input[nonSpaceEnd - 1] == Constants.SP) {
+                    nonSpaceEnd--;
+                }
+                
+                parsingState.checkpoint = wordsEnd - arrayOffs;
+                if (nonSpaceEnd != offset) {
+                    parsingState.checkpoint2 = nonSpaceEnd - arrayOffs;
+                }
+                
+                offset = wordsEnd;
+            }
+        }
+        
         while (offset < limit) {
             final byte b = input[offset];
             if (b == Constants.CR) {
@@ -908,27 +932,24 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
             final HeaderParsingState parsingState, final byte[] input,
             final int start, final int end) {
         
-        final int size = end - start;
-        if (size == Header.ContentLength.getLowerCaseBytes().length) {
-            if (ByteChunk.equalsIgnoreCaseLowerCase(input, start, end,
-                    Header.ContentLength.getLowerCaseBytes())) {
+        final Header header = Header.find(input, start, end);
+        if (header == null) {
+            return;
+        }
+        
+        switch (header) {
+            case ContentLength:
                 parsingState.isContentLengthHeader = true;
-            }
-        } else if (size == Header.TransferEncoding.getLowerCaseBytes().length) {
-            if (ByteChunk.equalsIgnoreCaseLowerCase(input, start, end,
-                    Header.TransferEncoding.getLowerCaseBytes())) {
+                break;
+            case TransferEncoding:
                 parsingState.isTransferEncodingHeader = true;
-            }
-        } else if (size == Header.Upgrade.getLowerCaseBytes().length) {
-            if (ByteChunk.equalsIgnoreCaseLowerCase(input, start, end,
-                    Header.Upgrade.getLowerCaseBytes())) {
+                break;
+            case Upgrade:
                 parsingState.isUpgradeHeader = true;
-            }
-        } else if (size == Header.Expect.getLowerCaseBytes().length) {
-            if (ByteChunk.equalsIgnoreCaseLowerCase(input, start, end,
-                    Header.Expect.getLowerCaseBytes())) {
+                break;
+            case Expect:
                 ((HttpRequestPacket) httpHeader).requiresAcknowledgement(true);
-            }
+                break;
         }
     }
 
@@ -1308,7 +1329,9 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
     final HttpContent decodeContent(final FilterChainContext ctx,
                                     HttpContent httpContent) {
 
-        if (!httpContent.getContent().hasRemaining()
+        if ((!httpContent.getContent().hasRemaining()
+                    && !(httpContent.isLast() && hasContentDecodingRemainder(
+                            httpContent.getHttpHeader())))
                 || isResponseToHeadRequest(httpContent.getHttpHeader())) {
             
             if (httpContent.isLast()) {
@@ -1518,6 +1541,9 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
                     httpHeader);
 
             final MimeHeaders mimeHeaders = httpHeader.getHeaders();
+            encodedBuffer = encodeHeadersTemplate(memoryManager, encodedBuffer,
+                    httpHeader.getHeadersTemplate(), mimeHeaders);
+
             final byte[] tempEncodingBuffer = httpHeader.getTempHeaderEncodingBuffer();
             encodedBuffer = encodeMimeHeaders(memoryManager, encodedBuffer, mimeHeaders, tempEncodingBuffer);
             onHttpHeadersEncoded(httpHeader, ctx);
@@ -1619,6 +1645,29 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
         return buffer;
     }
     
+    protected static Buffer encodeHeadersTemplate(final MemoryManager memoryManager,
+                                                  Buffer buffer,
+                                                  final HttpHeadersTemplate template,
+                                                  final MimeHeaders mimeHeaders) {
+        if (template == null) {
+            return buffer;
+        }
+        
+        if (!template.isOverriddenBy(mimeHeaders)) {
+            return put(memoryManager, buffer, template.getEncodedBlock());
+        }
+        
+        // some template headers are overridden, so encode the rest one by one
+        final int size = template.size();
+        for (int i = 0; i < size; i++) {
+            if (mimeHeaders.getValue(template.getName(i)) == null) {
+                buffer = put(memoryManager, buffer, template.getEncodedHeader(i));
+            }
+        }
+        
+        return buffer;
+    }
+    
     protected static Buffer encodeMimeHeaders(final MemoryManager memoryManager,
                                               Buffer buffer,
                                               final MimeHeaders mimeHeaders,
@@ -1628,7 +1677,14 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
         for (int i = 0; i < mimeHeadersNum; i++) {
             if (!mimeHeaders.setSerialized(i, true)) {
                 final DataChunk value = mimeHeaders.getValue(i);
-                if (!value.isNull()) {
+                
+                final byte[] dateHeaderBytes =
+                        FastHttpDateFormat.getDateHeaderBytes(value);
+                if (dateHeaderBytes != null) {
+                    // the value is the current date, which is pre-encoded
+                    // along with the Date header name
+                    buffer = put(memoryManager, buffer, dateHeaderBytes);
+                } else if (!value.isNull()) {
                     buffer = encodeMimeHeader(memoryManager,
                                               buffer,
                                               mimeHeaders.getName(i),
@@ -1790,7 +1846,14 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
 
         final List<ContentEncoding> httpPacketEncoders = httpHeader.getContentEncodings(true);
         
-        for (ContentEncoding encoding : encodingsLibrary) {
+        final ContentEncoding[] encodings = !httpHeader.isRequest()
+                && encodingsLibrary.length > 1
+                ? orderByAcceptEncoding(
+                        ((HttpResponsePacket) httpHeader).getRequest(),
+                        encodingsLibrary)
+                : encodingsLibrary;
+        
+        for (ContentEncoding encoding : encodings) {
             if (isSomeEncodingApplied) {
                 // If the current encoding is already applied - don't add it to httpPacketEncoders
                 if (lookupAlias(encoding, bc, 0)) {
@@ -1804,6 +1867,125 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
         }        
     }
     
+    /**
+     * Orders the {@link ContentEncoding}s according to the request's
+     * Accept-Encoding q-values (the higher q-value goes first), the
+     * {@link ContentEncoding}s with the same q-value keep the registration order.
+     * So if several {@link ContentEncoding}s are ready to encode the response,
+     * the one preferred by the client is checked first.
+     */
+    private static ContentEncoding[] orderByAcceptEncoding(
+            final HttpRequestPacket request,
+            final ContentEncoding[] encodings) {
+        final DataChunk acceptEncodingDC = request != null
+                ? request.getHeaders().getValue(Header.AcceptEncoding)
+                : null;
+        if (acceptEncodingDC == null || acceptEncodingDC.isNull()
+                || acceptEncodingDC.indexOf(';', 0) == -1) {
+            // no q-values - keep the registration order
+            return encodings;
+        }
+        
+        final String acceptEncoding = acceptEncodingDC.toString();
+        final int len = encodings.length;
+        final float[] qValues = new float[len];
+        boolean isOrdered = true;
+        for (int i = 0; i < len; i++) {
+            qValues[i] = getQValue(acceptEncoding, encodings[i].getAliases());
+            isOrdered &= i == 0 || qValues[i - 1] >= qValues[i];
+        }
+        
+        if (isOrdered) {
+            return encodings;
+        }
+        
+        // stable insertion sort, the arrays are tiny
+        final ContentEncoding[] ordered = Arrays.copyOf(encodings, len);
+        for (int i = 1; i < len; i++) {
+            final ContentEncoding encoding = ordered[i];
+            final float q = qValues[i];
+            int j = i - 1;
+            while (j >= 0 && qValues[j] < q) {
+                ordered[j + 1] = ordered[j];
+                qValues[j + 1] = qValues[j];
+                j--;
+            }
+            
+            ordered[j + 1] = encoding;
+            qValues[j + 1] = q;
+        }
+        
+        return ordered;
+    }
+    
+    /**
+     * Returns the max Accept-Encoding q-value of the given coding aliases,
+     * the "*" q-value if none of the aliases is listed, or 0 otherwise.
+     */
+    private static float getQValue(final String acceptEncoding,
+            final String[] aliases) {
+        float q = -1;
+        float wildcardQ = 0;
+        
+        final int len = acceptEncoding.length();
+        int start = 0;
+        while (start < len) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end == -1) {
+                end = len;
+            }
+            
+            int nameEnd = acceptEncoding.indexOf(';', start);
+            if (nameEnd == -1 || nameEnd > end) {
+                nameEnd = end;
+            }
+            
+            final String coding = acceptEncoding.substring(start, nameEnd).trim();
+            float codingQ = 1;
+            if (nameEnd < end) {
+                final int qIdx = acceptEncoding.indexOf('=', nameEnd);
+                if (qIdx != -1 && qIdx < end) {
+                    int qStart = qIdx + 1;
+                    int qEnd = end;
+                    while (qStart < qEnd && acceptEncoding.charAt(qStart) == ' ') {
+                        qStart++;
+                    }
+                    while (qEnd > qStart && acceptEncoding.charAt(qEnd - 1) == ' ') {
+                        qEnd--;
+                    }
+                    
+                    try {
+                        codingQ = HttpUtils.convertQValueToFloat(acceptEncoding,
+                                qStart, qEnd);
+                    } catch (IllegalArgumentException e) {
+                        codingQ = 0;
+                    }
+                }
+            }
+            
+            if ("*".equals(coding)) {
+                wildcardQ = codingQ;
+            } else {
+                for (String alias : aliases) {
+                    if (alias.equalsIgnoreCase(coding)) {
+                        q = Math.max(q, codingQ);
+                        break;
+                    }
+                }
+            }
+            
+            start = end + 1;
+        }
+        
+        return q >= 0 ? q : wildcardQ;
+    }
+    
+    private static boolean hasContentDecodingRemainder(final HttpHeader httpHeader) {
+        return httpHeader instanceof HttpPacketParsing
+                && ((HttpPacketParsing) httpHeader).getContentParsingState()
+                        .hasContentDecodingRemainder();
+    }
+    
     private ContentEncoding lookupContentEncoding(final DataChunk bc,
             final int startIdx, final int endIdx) {
         final ContentEncoding[] encodings = contentEncodings.getArray();
@@ -2026,6 +2208,18 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
 //            Arrays.fill(contentDecodingRemainders, null);
         }
 
+        private boolean hasContentDecodingRemainder() {
+            if (contentDecodingRemainders != null) {
+                for (Buffer remainder : contentDecodingRemainders) {
+                    if (remainder != null) {
+                        return true;
+                    }
+                }
+            }
+            
+            return false;
+        }
+        
         private Buffer removeContentDecodingRemainder(final int i) {
             if (contentDecodingRemainders == null ||
                     i >= contentDecodingRemainders.length) {
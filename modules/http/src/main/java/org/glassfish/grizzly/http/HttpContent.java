@@ -154,7 +154,15 @@ public class HttpContent extends HttpPacket
         return content;
     }
 
-    protected final void setContent(Buffer content) {
+    /**
+     * Set the HTTP message content {@link Buffer}.
+     * The method is public since 2.3.23, so {@link ContentEncoding}s
+     * implemented outside of this package could replace the content
+     * with the encoded/decoded one.
+     *
+     * @param content {@link Buffer}.
+     */
+    public final void setContent(Buffer content) {
         this.content = content;
     }
 
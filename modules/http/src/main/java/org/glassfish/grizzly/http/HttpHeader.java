@@ -124,6 +124,8 @@ public abstract class HttpHeader extends HttpPacket
      */
     private boolean chunkingAllowed;
 
+    private HttpHeadersTemplate headersTemplate;
+
     public HttpHeader() {
         this(new MimeHeaders());
     }
@@ -854,6 +856,14 @@ public abstract class HttpHeader extends HttpPacket
      * Reset the internal state.
      */
     protected void reset() {
+        // has to be done before the attributes, which keep the state, are recycled
+        for (int i = 0; i < contentEncodings.size(); i++) {
+            final ContentEncoding encoding = contentEncodings.get(i);
+            if (encoding instanceof ReleasableContentEncoding) {
+                ((ReleasableContentEncoding) encoding).release(this);
+            }
+        }
+        
         isContentEncodingsSelected = false;
         secure = false;
         isSkipRemainder = false;
@@ -875,6 +885,7 @@ public abstract class HttpHeader extends HttpPacket
         isExpectContent = true;
         upgrade.recycle();
         isIgnoreContentModifiers = false;
+        headersTemplate = null;
         if (headerBuffer != null) {
             headerBuffer.dispose();
             headerBuffer = null;
@@ -922,6 +933,33 @@ public abstract class HttpHeader extends HttpPacket
         return tmpHeaderEncodingBuffer;
     }
 
+    /**
+     * @return the {@link HttpHeadersTemplate} associated with this packet,
+     *          or <tt>null</tt>, if none.
+     * 
+     * @since 2.3.23
+     */
+    public HttpHeadersTemplate getHeadersTemplate() {
+        return headersTemplate;
+    }
+
+    /**
+     * Associates the pre-encoded {@link HttpHeadersTemplate} with this packet.
+     * The template headers are serialized along with this packet's headers,
+     * unless the packet has its own header with the same name.
+     * 
+     * @param headersTemplate {@link HttpHeadersTemplate}
+     * 
+     * @since 2.3.23
+     */
+    public void setHeadersTemplate(final HttpHeadersTemplate headersTemplate) {
+        if (isCommitted) {
+            return;
+        }
+        
+        this.headersTemplate = headersTemplate;
+    }
+
     // --------------------------------------------------------- Private Methods
 
     private String getValueBasedOnHeader(final Header header) {
@@ -0,0 +1,265 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpCodecUtils;
+import org.glassfish.grizzly.http.util.MimeHeaders;
+
+/**
+ * The immutable set of static HTTP headers, which are pre-encoded once and
+ * could be attached to any number of {@link HttpHeader}s using
+ * {@link HttpHeader#setHeadersTemplate(HttpHeadersTemplate)}.
+ * 
+ * When the {@link HttpHeader} is serialized, the template headers are
+ * written as a single pre-encoded block right after the initial line,
+ * so only the dynamic headers are serialized one by one.
+ * If the {@link HttpHeader} has its own header with the same name as
+ * one of the template headers - the {@link HttpHeader}'s header wins and
+ * the template header is not written.
+ * 
+ * The framing headers: <tt>Content-Length</tt>, <tt>Transfer-Encoding</tt>,
+ * <tt>Connection</tt> and <tt>Upgrade</tt> are managed by the codec and
+ * can't be part of the template.
+ * 
+ * <pre>
+ * private static final HttpHeadersTemplate STATIC_HEADERS =
+ *         HttpHeadersTemplate.builder()
+ *             .header(Header.Server, "MyServer")
+ *             .header(Header.CacheControl, "no-cache")
+ *             .header("X-Frame-Options", "DENY")
+ *             .build();
+ * ...
+ * response.setHeadersTemplate(STATIC_HEADERS);
+ * </pre>
+ * 
+ * Please note, the template headers are not visible via the
+ * {@link HttpHeader}'s headers API.
+ * 
+ * @since 2.3.23
+ */
+public final class HttpHeadersTemplate {
+    private static final byte[] COLON_SP = {':', ' '};
+    private static final byte[] CRLF = {'\r', '\n'};
+    
+    private final String[] names;
+    private final String[] lowerCaseNames;
+    private final String[] values;
+    private final byte[][] encodedHeaders;
+    private final byte[] encodedBlock;
+    
+    private HttpHeadersTemplate(final Builder builder) {
+        final int size = builder.names.size();
+        names = builder.names.toArray(new String[size]);
+        values = builder.values.toArray(new String[size]);
+        lowerCaseNames = new String[size];
+        encodedHeaders = new byte[size][];
+        
+        int blockLength = 0;
+        for (int i = 0; i < size; i++) {
+            lowerCaseNames[i] = names[i].toLowerCase(Locale.ENGLISH);
+            encodedHeaders[i] = encode(names[i], values[i]);
+            blockLength += encodedHeaders[i].length;
+        }
+        
+        encodedBlock = new byte[blockLength];
+        int offset = 0;
+        for (byte[] encodedHeader : encodedHeaders) {
+            System.arraycopy(encodedHeader, 0, encodedBlock, offset,
+                    encodedHeader.length);
+            offset += encodedHeader.length;
+        }
+    }
+
+    /**
+     * @return the new {@link Builder}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * @return the number of the template headers.
+     */
+    public int size() {
+        return names.length;
+    }
+    
+    /**
+     * @param i the header index.
+     * @return the name of the header at the given index.
+     */
+    public String getName(final int i) {
+        return names[i];
+    }
+
+    /**
+     * @param i the header index.
+     * @return the lower-case name of the header at the given index.
+     */
+    public String getLowerCaseName(final int i) {
+        return lowerCaseNames[i];
+    }
+
+    /**
+     * @param i the header index.
+     * @return the value of the header at the given index.
+     */
+    public String getValue(final int i) {
+        return values[i];
+    }
+    
+    /**
+     * @param i the header index.
+     * @return the encoded header line (including CRLF) at the given index.
+     */
+    byte[] getEncodedHeader(final int i) {
+        return encodedHeaders[i];
+    }
+    
+    /**
+     * @return the encoded block of all the template headers.
+     */
+    byte[] getEncodedBlock() {
+        return encodedBlock;
+    }
+
+    /**
+     * @param mimeHeaders {@link MimeHeaders}
+     * @return <tt>true</tt> if any of the template headers is overridden
+     *          by the passed {@link MimeHeaders}.
+     */
+    boolean isOverriddenBy(final MimeHeaders mimeHeaders) {
+        if (mimeHeaders.size() == 0) {
+            return false;
+        }
+        
+        for (String name : names) {
+            if (mimeHeaders.getValue(name) != null) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private static byte[] encode(final String name, final String value) {
+        final int nameLength = name.length();
+        final int valueLength = value.length();
+        final byte[] result = new byte[nameLength + valueLength + 4];
+        
+        HttpCodecUtils.toCheckedByteArray(name, result, 0);
+        System.arraycopy(COLON_SP, 0, result, nameLength, 2);
+        HttpCodecUtils.toCheckedByteArray(value, result, nameLength + 2);
+        System.arraycopy(CRLF, 0, result, result.length - 2, 2);
+        
+        return result;
+    }
+    
+    /**
+     * The {@link HttpHeadersTemplate} builder.
+     */
+    public static final class Builder {
+        private final List<String> names = new ArrayList<String>();
+        private final List<String> values = new ArrayList<String>();
+
+        private Builder() {
+        }
+        
+        /**
+         * Adds the header to the template.
+         * 
+         * @param header the header name.
+         * @param value the header value.
+         * @return this {@link Builder}.
+         */
+        public Builder header(final Header header, final String value) {
+            return header(header.toString(), value);
+        }
+        
+        /**
+         * Adds the header to the template.
+         * 
+         * @param name the header name.
+         * @param value the header value.
+         * @return this {@link Builder}.
+         */
+        public Builder header(final String name, final String value) {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("Header name can't be empty");
+            }
+            
+            if (value == null) {
+                throw new IllegalArgumentException("Header value can't be null");
+            }
+            
+            final Header header = Header.find(name);
+            if (header == Header.ContentLength
+                    || header == Header.TransferEncoding
+                    || header == Header.Connection
+                    || header == Header.Upgrade) {
+                throw new IllegalArgumentException(
+                        "The header " + name + " is managed by the HTTP codec");
+            }
+            
+            for (String addedName : names) {
+                if (addedName.equalsIgnoreCase(name)) {
+                    throw new IllegalArgumentException(
+                            "The header " + name + " is already added");
+                }
+            }
+            
+            names.add(name);
+            values.add(value);
+            return this;
+        }
+        
+        /**
+         * @return the {@link HttpHeadersTemplate}.
+         */
+        public HttpHeadersTemplate build() {
+            return new HttpHeadersTemplate(this);
+        }
+    }
+}
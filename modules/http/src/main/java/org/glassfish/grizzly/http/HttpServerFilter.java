@@ -55,6 +55,7 @@ import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.HttpStatus;
 import org.glassfish.grizzly.http.util.MimeHeaders;
 import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.monitoring.LatencyRecorder;
 import org.glassfish.grizzly.utils.DelayedExecutor;
 
 import java.io.IOException;
@@ -292,6 +293,10 @@ public class HttpServerFilter extends HttpCodecFilter {
             httpRequest = ServerHttpRequestImpl.create();
             httpRequest.initialize(connection, this, input.position(), maxHeadersSize, maxRequestHeaders);
             httpRequest.setSecure(isSecureLocal);
+            httpRequest.startTimeNanos =
+                    LatencyRecorder.getIfEnabled(connection) != null
+                    ? System.nanoTime()
+                    : 0;
             final HttpResponsePacket response = httpRequest.getResponse();
             response.setSecure(isSecureLocal);
             response.getHeaders().setMaxNumHeaders(maxResponseHeaders);
@@ -1004,24 +1009,24 @@ public class HttpServerFilter extends HttpCodecFilter {
     @Override
     Buffer encodeInitialLine(HttpPacket httpPacket, Buffer output, MemoryManager memoryManager) {
         final HttpResponsePacket httpResponse = (HttpResponsePacket) httpPacket;
+        if (!httpResponse.isCustomReasonPhraseSet()) {
+            return put(memoryManager, output, httpResponse.getHttpStatus()
+                    .getStatusLineBytes(httpResponse.getProtocol()));
+        }
+        
         output = put(memoryManager, output, httpResponse.getProtocol().getProtocolBytes());
         output = put(memoryManager, output, Constants.SP);
         output = put(memoryManager, output, httpResponse.getHttpStatus().getStatusBytes());
         output = put(memoryManager, output, Constants.SP);
-        if (httpResponse.isCustomReasonPhraseSet()) {
-            
-            final DataChunk customReasonPhrase =
-                    httpResponse.isHtmlEncodingCustomReasonPhrase() ?
-                    HttpUtils.filter(httpResponse.getReasonPhraseDC()) :
-                    HttpUtils.filterNonPrintableCharacters(httpResponse.getReasonPhraseDC());
-            
-            output = put(memoryManager, output,
-                    httpResponse.getTempHeaderEncodingBuffer(),
-                    customReasonPhrase);
-        } else {
-            output = put(memoryManager, output,
-                    httpResponse.getHttpStatus().getReasonPhraseBytes());
-        }
+        
+        final DataChunk customReasonPhrase =
+                httpResponse.isHtmlEncodingCustomReasonPhrase() ?
+                HttpUtils.filter(httpResponse.getReasonPhraseDC()) :
+                HttpUtils.filterNonPrintableCharacters(httpResponse.getReasonPhraseDC());
+
+        output = put(memoryManager, output,
+                httpResponse.getTempHeaderEncodingBuffer(),
+                customReasonPhrase);
 
         return output;
     }
@@ -1029,7 +1034,12 @@ public class HttpServerFilter extends HttpCodecFilter {
     @Override
     protected void onInitialLineEncoded(HttpHeader header, FilterChainContext ctx) {
 
-        // no-op
+        final HttpResponsePacket response = (HttpResponsePacket) header;
+        // the interim 100-continue isn't the response first byte
+        if (!response.isAcknowledgement()) {
+            recordLatency(response.getRequest(), ctx,
+                    LatencyRecorder.Stage.HTTP_FIRST_RESPONSE_BYTE);
+        }
 
     }
 
@@ -1056,6 +1066,8 @@ public class HttpServerFilter extends HttpCodecFilter {
             if (ctx.getConnection().isOpen()) {
                 final HttpContext context = HttpContext.get(ctx);
                 final HttpRequestPacket httpRequest = context.getRequest();
+                
+                recordLatency(httpRequest, ctx, LatencyRecorder.Stage.HTTP_REQUEST);
 
                 if (allowKeepAlive) {
                     if (keepAliveQueue != null) {
@@ -1103,6 +1115,21 @@ public class HttpServerFilter extends HttpCodecFilter {
         return ctx.getInvokeAction();
     }
 
+    private static void recordLatency(final HttpRequestPacket request,
+            final FilterChainContext ctx, final LatencyRecorder.Stage stage) {
+        if (request instanceof ServerHttpRequestImpl) {
+            final long startTimeNanos =
+                    ((ServerHttpRequestImpl) request).startTimeNanos;
+            if (startTimeNanos != 0) {
+                final LatencyRecorder latencyRecorder =
+                        LatencyRecorder.get(ctx.getConnection());
+                if (latencyRecorder != null) {
+                    latencyRecorder.recordSince(stage, startTimeNanos);
+                }
+            }
+        }
+    }
+    
     private void processResponseComplete(final FilterChainContext ctx,
             final HttpRequestPacket httpRequest, final boolean isStayAlive)
             throws IOException {
@@ -1281,6 +1308,13 @@ public class HttpServerFilter extends HttpCodecFilter {
         private boolean contentTypeParsed;
         
         private boolean isHeaderParsed;
+        
+        /**
+         * The {@link System#nanoTime()} timestamp the request parsing has
+         * been started at, or <tt>0</tt> if latency is not recorded.
+         */
+        private long startTimeNanos;
+        
         private final HttpCodecFilter.HeaderParsingState headerParsingState;
         private final HttpCodecFilter.ContentParsingState contentParsingState;
         private final ProcessingState processingState;
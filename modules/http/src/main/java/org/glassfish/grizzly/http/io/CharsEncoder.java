@@ -0,0 +1,220 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.io;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * Encodes chars into bytes for the US-ASCII, ISO-8859-1 and UTF-8 charsets
+ * without going through a {@link java.nio.charset.CharsetEncoder}.
+ * 
+ * The output is the same as the one produced by a {@link java.nio.charset.CharsetEncoder},
+ * which replaces malformed and unmappable input with <tt>'?'</tt>, which
+ * is the way {@link OutputBuffer} configures its encoders.
+ * 
+ * @since 2.3.23
+ */
+final class CharsEncoder {
+    static final int NONE = 0;
+    static final int US_ASCII = 1;
+    static final int ISO_8859_1 = 2;
+    static final int UTF_8 = 3;
+    
+    private static final Charset ISO_8859_1_CHARSET =
+            Charsets.lookupCharset("ISO-8859-1");
+    
+    private static final byte REPLACEMENT = (byte) '?';
+    
+    private CharsEncoder() {
+    }
+    
+    /**
+     * @param charset {@link Charset}
+     * @return the encoding type for the charset, or {@link #NONE} if the
+     *          charset is not supported.
+     */
+    static int typeOf(final Charset charset) {
+        if (Charsets.UTF8_CHARSET.equals(charset)) {
+            return UTF_8;
+        } else if (ISO_8859_1_CHARSET.equals(charset)) {
+            return ISO_8859_1;
+        } else if (Charsets.ASCII_CHARSET.equals(charset)) {
+            return US_ASCII;
+        }
+        
+        return NONE;
+    }
+    
+    /**
+     * Encodes as many chars from the source {@link CharBuffer} as fit into
+     * the destination array. The source buffer has to be backed by an array,
+     * and its position is moved past the encoded chars.
+     * 
+     * A high surrogate at the end of the source is treated as malformed input,
+     * like a {@link java.nio.charset.CharsetEncoder} does at the end of input.
+     * 
+     * @param type the encoding type
+     * @param src the source chars
+     * @param dst the destination array
+     * @param dstPos the destination start position
+     * @param dstEnd the destination end position (exclusive)
+     * @return the destination position after the last encoded byte
+     */
+    static int encode(final int type, final CharBuffer src,
+            final byte[] dst, final int dstPos, final int dstEnd) {
+        final char[] chars = src.array();
+        final int arrayOffset = src.arrayOffset();
+        final int srcPos = arrayOffset + src.position();
+        final int srcEnd = arrayOffset + src.limit();
+        
+        final long result = type == UTF_8
+                ? encodeUtf8(chars, srcPos, srcEnd, dst, dstPos, dstEnd)
+                : encodeSingleByte(type == US_ASCII ? 0x7F : 0xFF,
+                        chars, srcPos, srcEnd, dst, dstPos, dstEnd);
+        
+        src.position((int) (result >>> 32) - arrayOffset);
+        return (int) result;
+    }
+
+    private static long encodeSingleByte(final int maxChar,
+            final char[] src, int sp, final int srcEnd,
+            final byte[] dst, int dp, final int dstEnd) {
+        
+        while (sp < srcEnd && dp < dstEnd) {
+            // copy the mappable run
+            final int runEnd = Math.min(srcEnd, sp + dstEnd - dp);
+            while (sp < runEnd) {
+                final char c = src[sp];
+                if (c > maxChar) {
+                    break;
+                }
+                
+                dst[dp++] = (byte) c;
+                sp++;
+            }
+            
+            if (sp < runEnd) {
+                // unmappable char, the surrogate pair is replaced as a whole
+                sp += isSurrogatePair(src, sp, srcEnd) ? 2 : 1;
+                dst[dp++] = REPLACEMENT;
+            }
+        }
+        
+        return pack(sp, dp);
+    }
+    
+    private static long encodeUtf8(final char[] src, int sp, final int srcEnd,
+            final byte[] dst, int dp, final int dstEnd) {
+        
+        while (sp < srcEnd) {
+            // ASCII run
+            final int runEnd = Math.min(srcEnd, sp + dstEnd - dp);
+            while (sp < runEnd) {
+                final char c = src[sp];
+                if (c >= 0x80) {
+                    break;
+                }
+                
+                dst[dp++] = (byte) c;
+                sp++;
+            }
+            
+            if (sp == srcEnd) {
+                break;
+            }
+            
+            final char c = src[sp];
+            if (c < 0x80) {
+                break; // destination is full
+            } else if (c < 0x800) {
+                if (dstEnd - dp < 2) {
+                    break;
+                }
+                
+                dst[dp++] = (byte) (0xC0 | (c >> 6));
+                dst[dp++] = (byte) (0x80 | (c & 0x3F));
+                sp++;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                if (dstEnd - dp < 3) {
+                    break;
+                }
+                
+                dst[dp++] = (byte) (0xE0 | (c >> 12));
+                dst[dp++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[dp++] = (byte) (0x80 | (c & 0x3F));
+                sp++;
+            } else if (isSurrogatePair(src, sp, srcEnd)) {
+                if (dstEnd - dp < 4) {
+                    break;
+                }
+                
+                final int cp = Character.toCodePoint(c, src[sp + 1]);
+                dst[dp++] = (byte) (0xF0 | (cp >> 18));
+                dst[dp++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[dp++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[dp++] = (byte) (0x80 | (cp & 0x3F));
+                sp += 2;
+            } else {
+                if (dp == dstEnd) {
+                    break;
+                }
+                
+                // malformed surrogate
+                dst[dp++] = REPLACEMENT;
+                sp++;
+            }
+        }
+        
+        return pack(sp, dp);
+    }
+    
+    private static boolean isSurrogatePair(final char[] src, final int pos,
+            final int end) {
+        return Character.isHighSurrogate(src[pos]) && pos + 1 < end
+                && Character.isLowSurrogate(src[pos + 1]);
+    }
+    
+    private static long pack(final int srcPos, final int dstPos) {
+        return ((long) srcPos << 32) | dstPos;
+    }
+}
@@ -137,6 +137,8 @@ public class OutputBuffer {
     private boolean closed;
 
     private CharsetEncoder encoder;
+    
+    private int fastEncodingType;
 
     private final Map<String, CharsetEncoder> encoders =
             new HashMap<String, CharsetEncoder>();
@@ -274,6 +276,7 @@ public class OutputBuffer {
 
         charsArrayLength = 0;
         encoder = null;
+        fastEncodingType = CharsEncoder.NONE;
     }
 
 
@@ -344,6 +347,7 @@ public class OutputBuffer {
         bufferSize = DEFAULT_BUFFER_SIZE;
         fileTransferRequested = false;
         encoder = null;
+        fastEncodingType = CharsEncoder.NONE;
         ctx = null;
         httpContext = null;
         connection = null;
@@ -1075,6 +1079,8 @@ public class OutputBuffer {
             } else {
                 encoder.reset();
             }
+            
+            fastEncodingType = CharsEncoder.typeOf(encoder.charset());
         }
 
         return encoder;
@@ -1138,6 +1144,15 @@ public class OutputBuffer {
             checkCurrentBuffer();
         }
         
+        if (fastEncodingType != CharsEncoder.NONE && charBuf.hasArray()
+                && encodeCharsFast(charBuf)) {
+            if (canFlushToNet) {
+                flushBinaryBuffersIfNeeded();
+            }
+            
+            return;
+        }
+        
         ByteBuffer currentByteBuffer = currentBuffer.toByteBuffer();
         int bufferPos = currentBuffer.position();
         int byteBufferPos = currentByteBuffer.position();
@@ -1172,6 +1187,42 @@ public class OutputBuffer {
         }
     }
 
+    /**
+     * Encodes the chars directly into the heap {@link Buffer}s, bypassing
+     * the {@link CharsetEncoder}.
+     * 
+     * @return <tt>true</tt> if all the chars were encoded, or <tt>false</tt>
+     *  if the current {@link Buffer} is not backed by an array, in which case
+     *  the remaining chars have to be passed to the {@link CharsetEncoder}.
+     */
+    private boolean encodeCharsFast(final CharBuffer charBuf) {
+        while (charBuf.hasRemaining()) {
+            if (!currentBuffer.hasArray()) {
+                return false;
+            }
+            
+            final int arrayOffset = currentBuffer.arrayOffset();
+            final int position = currentBuffer.position();
+            final int dstPos = CharsEncoder.encode(fastEncodingType, charBuf,
+                    currentBuffer.array(),
+                    arrayOffset + position,
+                    arrayOffset + currentBuffer.limit());
+            currentBuffer.position(dstPos - arrayOffset);
+            
+            if (charBuf.hasRemaining()) {
+                if (position == 0 && dstPos == arrayOffset) {
+                    // the buffer is too small to fit even a single char
+                    return false;
+                }
+                
+                finishCurrentBuffer();
+                checkCurrentBuffer();
+            }
+        }
+        
+        return true;
+    }
+    
     private void flushBinaryBuffersIfNeeded() throws IOException {
         if (compositeBuffer != null) { // this actually checks wheather current buffer was overloaded during encoding so we need to flush
             doCommit();
@@ -166,6 +166,11 @@ public final class FastHttpDateFormat {
     private static String cachedStringDate;
     private static volatile byte[] dateBytesForCachedStringDate;
 
+    /**
+     * The "Date" header line for the current date.
+     */
+    private static volatile DateHeader currentDateHeader;
+
     
     /**
      * Formatter cache.
@@ -226,6 +231,38 @@ public final class FastHttpDateFormat {
         return currentDateBytes;
     }
     
+    /**
+     * Returns the pre-encoded "Date" header line (including the header name
+     * and CRLF), if the passed value is the {@link #getCurrentDateBytes()}
+     * array, or <tt>null</tt> otherwise. The header line is shared, so the
+     * returned array must not be modified.
+     * 
+     * @param value the "Date" header value.
+     * @return the pre-encoded "Date" header line, or <tt>null</tt>.
+     * 
+     * @since 2.3.23
+     */
+    public static byte[] getDateHeaderBytes(final DataChunk value) {
+        if (value.getType() != DataChunk.Type.Bytes) {
+            return null;
+        }
+        
+        final ByteChunk bc = value.getByteChunk();
+        final byte[] dateBytes = bc.getBuffer();
+        if (dateBytes != currentDateBytes || bc.getStart() != 0
+                || bc.getEnd() != dateBytes.length) {
+            return null;
+        }
+        
+        DateHeader dateHeader = currentDateHeader;
+        if (dateHeader == null || dateHeader.dateBytes != dateBytes) {
+            dateHeader = new DateHeader(dateBytes);
+            currentDateHeader = dateHeader;
+        }
+        
+        return dateHeader.headerBytes;
+    }
+    
     /**
      * Get the HTTP format of the specified date.<br>
      * http spec only requre second precision http://tools.ietf.org/html/rfc2616#page-20 <br>
@@ -320,4 +357,23 @@ public final class FastHttpDateFormat {
     }
 
 
+
+    private static final class DateHeader {
+        private static final byte[] PREFIX =
+                (Header.Date.toString() + ": ").getBytes(Charsets.ASCII_CHARSET);
+        
+        private final byte[] dateBytes;
+        private final byte[] headerBytes;
+
+        private DateHeader(final byte[] dateBytes) {
+            this.dateBytes = dateBytes;
+            
+            headerBytes = new byte[PREFIX.length + dateBytes.length + 2];
+            System.arraycopy(PREFIX, 0, headerBytes, 0, PREFIX.length);
+            System.arraycopy(dateBytes, 0, headerBytes, PREFIX.length,
+                    dateBytes.length);
+            headerBytes[headerBytes.length - 2] = Constants.CR;
+            headerBytes[headerBytes.length - 1] = Constants.LF;
+        }
+    }
 }
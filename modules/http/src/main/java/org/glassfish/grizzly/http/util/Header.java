@@ -115,6 +115,23 @@ public enum Header {
             VALUES.put(h.toString(), h);
         }
     }
+    
+    // the open-addressing hash table to lookup the headers by their bytes,
+    // the size is chosen to make the lookups of the standard headers
+    // collision-free
+    private static final int BYTES_TABLE_SIZE = 512;
+    private static final Header[] BYTES_TABLE = new Header[BYTES_TABLE_SIZE];
+    static {
+        for (final Header h : Header.values()) {
+            final byte[] bytes = h.headerNameLowerCaseBytes;
+            int idx = hash(bytes, 0, bytes.length);
+            while (BYTES_TABLE[idx] != null) {
+                idx = (idx + 1) & (BYTES_TABLE_SIZE - 1);
+            }
+            
+            BYTES_TABLE[idx] = h;
+        }
+    }
 
     // --------------------------------------------------------- Per Enum Fields
 
@@ -235,9 +252,61 @@ public enum Header {
     }
 
 
+    /**
+     * <p>
+     * Attempts to find a HTTP header by it's byte representation.
+     * Note that this search is case insensitive.
+     * </p>
+     *
+     * @param bytes the array containing the header name.
+     * @param start the header name start offset (inclusive).
+     * @param end the header name end offset (exclusive).
+     *
+     * @return the <code>Header</code> for the specified byte representation,
+     *  or <code>null</code> if no <code>Header</code> matches.
+     */
+    public static Header find(final byte[] bytes, final int start,
+            final int end) {
+        if (end <= start) {
+            return null;
+        }
+        
+        int idx = hash(bytes, start, end);
+        Header h;
+        while ((h = BYTES_TABLE[idx]) != null) {
+            if (ByteChunk.equalsIgnoreCaseLowerCase(bytes, start, end,
+                    h.headerNameLowerCaseBytes)) {
+                return h;
+            }
+            
+            idx = (idx + 1) & (BYTES_TABLE_SIZE - 1);
+        }
+        
+        return null;
+    }
+    
+    
     // --------------------------------------------------------- Private Methods
 
 
+    /**
+     * Case-insensitive hash based on the length and the first, middle and
+     * last bytes of the header name.
+     */
+    private static int hash(final byte[] bytes, final int start, final int end) {
+        final int len = end - start;
+        int h = len * 0x9E3779B1;
+        h ^= (bytes[start] | 0x20) << 1;
+        h ^= (bytes[start + (len >> 1)] | 0x20) << 8;
+        h ^= (bytes[end - 1] | 0x20) << 16;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        
+        return h & (BYTES_TABLE_SIZE - 1);
+    }
+
+
     private boolean equalsIgnoreCase(final byte[] b) {
 
         final int len = headerNameBytes.length;
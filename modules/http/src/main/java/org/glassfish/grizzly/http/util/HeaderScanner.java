@@ -0,0 +1,234 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.lang.reflect.Field;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+
+/**
+ * The HTTP header scanning utilities, which process the <tt>byte[]</tt>
+ * 8 bytes per step (SWAR: SIMD within a register), reading the array
+ * as <tt>long</tt> words.
+ * 
+ * The methods only process complete words, which don't contain
+ * the delimiter being searched, and return the offset of the first
+ * unprocessed byte, so the caller is expected to complete the scan
+ * byte by byte. This way the result doesn't depend on the platform
+ * endianness.
+ * 
+ * The word access requires <tt>sun.misc.Unsafe</tt> and a platform, which
+ * supports unaligned memory access; otherwise, or if the
+ * <tt>org.glassfish.grizzly.http.util.HeaderScanner.swar</tt> system
+ * property is set to <tt>false</tt>, the methods return the passed offset
+ * as it is.
+ * 
+ * @since 2.3.23
+ */
+public final class HeaderScanner {
+    private static final Logger LOGGER = Grizzly.logger(HeaderScanner.class);
+    
+    /**
+     * The system property to disable the SWAR scanning.
+     */
+    public static final String SWAR_PROPERTY =
+            HeaderScanner.class.getName() + ".swar";
+    
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_7_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    
+    private static final long COLONS = ONES * Constants.COLON;
+    private static final long CRS = ONES * Constants.CR;
+    private static final long LFS = ONES * Constants.LF;
+    
+    // added to the 7 low bits of a byte, sets the high bit if the byte >= 'A'
+    private static final long GE_A = ONES * (0x80 - 'A');
+    // added to the 7 low bits of a byte, sets the high bit if the byte > 'Z'
+    private static final long GT_Z = ONES * (0x7F - 'Z');
+    
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long BYTE_ARRAY_BASE_OFFSET;
+    private static final boolean IS_ENABLED;
+    
+    static {
+        sun.misc.Unsafe unsafe = null;
+        long baseOffset = 0;
+        
+        if (!"false".equalsIgnoreCase(System.getProperty(SWAR_PROPERTY))
+                && isUnalignedAccessSupported()) {
+            try {
+                unsafe = getUnsafe();
+                if (unsafe.arrayIndexScale(byte[].class) == 1) {
+                    baseOffset = unsafe.arrayBaseOffset(byte[].class);
+                } else {
+                    unsafe = null;
+                }
+            } catch (Throwable t) {
+                LOGGER.log(Level.FINE, "SWAR header scanning is disabled", t);
+                unsafe = null;
+            }
+        }
+        
+        UNSAFE = unsafe;
+        BYTE_ARRAY_BASE_OFFSET = baseOffset;
+        IS_ENABLED = unsafe != null;
+    }
+    
+    private HeaderScanner() {
+    }
+    
+    /**
+     * @return <tt>true</tt> if the SWAR scanning is enabled.
+     */
+    public static boolean isEnabled() {
+        return IS_ENABLED;
+    }
+    
+    /**
+     * Lower-cases the ASCII letters of the header name in place, 8 bytes per
+     * step, until the word containing the ':' is met or less than 8 bytes left.
+     * 
+     * @param input the input array
+     * @param offset the offset to start from
+     * @param limit the scan limit (exclusive)
+     * 
+     * @return the offset of the first unprocessed byte.
+     */
+    public static int lowerCaseHeaderName(final byte[] input, int offset,
+            final int limit) {
+        if (!IS_ENABLED) {
+            return offset;
+        }
+        
+        while (limit - offset >= 8) {
+            final long address = BYTE_ARRAY_BASE_OFFSET + offset;
+            final long word = UNSAFE.getLong(input, address);
+            if (zeroBytes(word ^ COLONS) != 0) {
+                break;
+            }
+            
+            final long upperCaseBytes = upperCaseBytes(word);
+            if (upperCaseBytes != 0) {
+                // 0x80 >>> 2 == 0x20 == 'a' - 'A'
+                UNSAFE.putLong(input, address, word | (upperCaseBytes >>> 2));
+            }
+            
+            offset += 8;
+        }
+        
+        return offset;
+    }
+    
+    /**
+     * Skips the header value bytes, 8 bytes per step, until the word
+     * containing CR or LF is met or less than 8 bytes left.
+     * 
+     * @param input the input array
+     * @param offset the offset to start from
+     * @param limit the scan limit (exclusive)
+     * 
+     * @return the offset of the first unprocessed byte.
+     */
+    public static int skipHeaderValue(final byte[] input, int offset,
+            final int limit) {
+        if (!IS_ENABLED) {
+            return offset;
+        }
+        
+        while (limit - offset >= 8) {
+            final long word = UNSAFE.getLong(input, BYTE_ARRAY_BASE_OFFSET + offset);
+            if ((zeroBytes(word ^ CRS) | zeroBytes(word ^ LFS)) != 0) {
+                break;
+            }
+            
+            offset += 8;
+        }
+        
+        return offset;
+    }
+    
+    /**
+     * Returns the word, where the high bit of each byte is set if
+     * the corresponding byte of the passed word is zero, and all
+     * the other bits are zero.
+     */
+    static long zeroBytes(final long word) {
+        final long t = (word & LOW_7_BITS) + LOW_7_BITS;
+        return ~(t | word | LOW_7_BITS);
+    }
+    
+    /**
+     * Returns the word, where the high bit of each byte is set if
+     * the corresponding byte of the passed word is an upper-case ASCII
+     * letter, and all the other bits are zero.
+     */
+    static long upperCaseBytes(final long word) {
+        final long low7Bits = word & LOW_7_BITS;
+        return (low7Bits + GE_A) & ~(low7Bits + GT_Z) & ~word & HIGH_BITS;
+    }
+    
+    private static boolean isUnalignedAccessSupported() {
+        final String arch = System.getProperty("os.arch", "");
+        return arch.equals("amd64") || arch.equals("x86_64")
+                || arch.equals("i386") || arch.equals("x86")
+                || arch.equals("aarch64") || arch.equals("ppc64le");
+    }
+    
+    private static sun.misc.Unsafe getUnsafe() {
+        return AccessController.doPrivileged(
+                new PrivilegedAction<sun.misc.Unsafe>() {
+            @Override
+            public sun.misc.Unsafe run() {
+                try {
+                    final Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+                    f.setAccessible(true);
+                    return (sun.misc.Unsafe) f.get(null);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+}
@@ -45,6 +45,7 @@ import java.io.CharConversionException;
 import java.util.HashMap;
 import java.util.Map;
 import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Protocol;
 import org.glassfish.grizzly.memory.Buffers;
 
 /**
@@ -132,6 +133,9 @@ public class HttpStatus {
     private final String reasonPhrase;
     private final byte[] reasonPhraseBytes;
     private final byte[] statusBytes;
+    
+    // status lines "<protocol> <status> <reason-phrase>" indexed by Protocol ordinal
+    private volatile byte[][] statusLines;
 
     private HttpStatus(final int status, final String reasonPhrase) {
         this.status = status;
@@ -176,6 +180,32 @@ public class HttpStatus {
         return reasonPhraseBytes;
     }
 
+    /**
+     * Returns the pre-encoded status line (without CRLF) for the given
+     * {@link Protocol}, which consists of the protocol, status code and
+     * reason phrase bytes. The returned array is shared and must not
+     * be modified.
+     * 
+     * @param protocol the response {@link Protocol}.
+     * @return the status line bytes.
+     * 
+     * @since 2.3.23
+     */
+    public byte[] getStatusLineBytes(final Protocol protocol) {
+        byte[][] lines = statusLines;
+        if (lines == null) {
+            final Protocol[] protocols = Protocol.values();
+            lines = new byte[protocols.length][];
+            for (int i = 0; i < protocols.length; i++) {
+                lines[i] = createStatusLine(protocols[i]);
+            }
+            
+            statusLines = lines;
+        }
+        
+        return lines[protocol.ordinal()];
+    }
+    
     /**
      * Sets the status and reason phrase on the specified response.
      * @param response the response to set the status and reason phrase on.
@@ -184,4 +214,21 @@ public class HttpStatus {
         response.setStatus(this);
         response.setReasonPhrase(Buffers.wrap(null, reasonPhraseBytes));
     }
+
+    private byte[] createStatusLine(final Protocol protocol) {
+        final byte[] protocolBytes = protocol.getProtocolBytes();
+        final byte[] line = new byte[protocolBytes.length + statusBytes.length
+                + reasonPhraseBytes.length + 2];
+        
+        int pos = 0;
+        System.arraycopy(protocolBytes, 0, line, pos, protocolBytes.length);
+        pos += protocolBytes.length;
+        line[pos++] = Constants.SP;
+        System.arraycopy(statusBytes, 0, line, pos, statusBytes.length);
+        pos += statusBytes.length;
+        line[pos++] = Constants.SP;
+        System.arraycopy(reasonPhraseBytes, 0, line, pos, reasonPhraseBytes.length);
+        
+        return line;
+    }
 }
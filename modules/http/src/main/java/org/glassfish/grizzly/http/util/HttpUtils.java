@@ -127,6 +127,12 @@ public class HttpUtils {
                     qvalue = HttpUtils.convertQValueToFloat(bc.getBuffer(), offs + startIdx, offs + stopIdx);
                     break;
                 }
+                case Bytes: {
+                    final ByteChunk bc = dc.getByteChunk();
+                    final int offs = bc.getStart();
+                    qvalue = HttpUtils.convertQValueToFloat(bc.getBuffer(), offs + startIdx, offs + stopIdx);
+                    break;
+                }
                 case Chars: {
                     final CharChunk cc = dc.getCharChunk();
                     final int offs = cc.getStart();
@@ -239,6 +245,55 @@ public class HttpUtils {
         return result;
     }
 
+    public static float convertQValueToFloat(final byte[] bytes,
+                                             final int startIdx,
+                                             final int stopIdx) {
+        float result = 0.0f;
+        boolean firstDigitProcessed = false;
+        int multIdx = -1;
+        for (int i = 0, len = (stopIdx - startIdx); i < len; i++) {
+            final char c = (char) bytes[i + startIdx];
+            if (multIdx == -1) {
+                if (firstDigitProcessed && c != '.') {
+                    throw new IllegalArgumentException("Invalid qvalue, "
+                            + new String(bytes, startIdx, stopIdx - startIdx,
+                                         Constants.DEFAULT_HTTP_CHARSET)
+                            + ", detected");
+                }
+                if (c == '.') {
+                    multIdx = 0;
+                    continue;
+                }
+            }
+            if (Character.isDigit(c)) {
+                if (multIdx == -1) {
+                    result += Character.digit(c, 10);
+                    firstDigitProcessed = true;
+                    if (result > 1) {
+                        throw new IllegalArgumentException("Invalid qvalue, "
+                                + new String(bytes, startIdx, stopIdx - startIdx,
+                                             Constants.DEFAULT_HTTP_CHARSET)
+                                + ", detected");
+                    }
+                } else {
+                    if (multIdx >= MULTIPLIERS.length) {
+                        throw new IllegalArgumentException("Invalid qvalue, "
+                                + new String(bytes, startIdx, stopIdx - startIdx,
+                                             Constants.DEFAULT_HTTP_CHARSET)
+                                + ", detected");
+                    }
+                    result += Character.digit(c, 10) * MULTIPLIERS[multIdx++];
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid qvalue, "
+                        + new String(bytes, startIdx, stopIdx - startIdx,
+                                     Constants.DEFAULT_HTTP_CHARSET)
+                        + ", detected");
+            }
+        }
+        return result;
+    }
+
     public static float convertQValueToFloat(final char[] chars,
                                                  final int startIdx,
                                                  final int stopIdx) {
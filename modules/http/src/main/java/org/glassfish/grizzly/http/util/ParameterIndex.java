@@ -0,0 +1,607 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.localization.LogMessages;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * Lazy, index based representation of <tt>application/x-www-form-urlencoded</tt>
+ * parameters.
+ * 
+ * The raw bytes are copied once into a reusable array and only the
+ * name/value offsets are recorded during parsing. Names are hashed on the
+ * first lookup and values are decoded only when they're requested, so
+ * a large form, where the application reads just a few fields, doesn't
+ * materialize thousands of {@link String}s.
+ * 
+ * @since 2.3.23
+ */
+final class ParameterIndex {
+    private static final Logger LOGGER = Grizzly.logger(Parameters.class);
+
+    // the byte arrays bigger than this size are not reused after recycle()
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+    
+    private static final int NAME_START = 0;
+    private static final int NAME_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+    private static final int FLAGS = 4;
+    private static final int CHARSET = 5;
+    private static final int HASH = 6;
+    private static final int NEXT = 7;
+    private static final int ENTRY_SIZE = 8;
+    
+    private static final int DECODE_NAME = 1;
+    private static final int DECODE_VALUE = 2;
+    private static final int NO_VALUE = 4;
+    // the name consists of plain ASCII bytes, no decoding is required
+    private static final int PLAIN_NAME = 8;
+    
+    private byte[] bytes;
+    private int bytesLength;
+    
+    private int[] entries = new int[Parameters.INITIAL_SIZE * ENTRY_SIZE];
+    private int count;
+    
+    private Charset[] charsets = new Charset[2];
+    private int charsetsCount;
+    
+    private String[] names;
+    private String[] values;
+    
+    private int[] table;
+    private boolean isIndexed;
+    
+    private byte[] decodeBuffer;
+    private final ByteChunk nameChunk = new ByteChunk();
+    
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    int size() {
+        return count;
+    }
+    
+    /**
+     * Scans the {@link Buffer} region and records the parameters it contains.
+     * 
+     * @param buffer the source {@link Buffer}
+     * @param start the region start position
+     * @param end the region end position
+     * @param charset the {@link Charset} to be used to decode the parameters
+     * @param maxCount the max number of parameters to be added, or
+     *                 <tt>-1</tt> if there's no limit
+     * @param limit the configured parameters limit (used for logging)
+     * @return the number of added parameters
+     */
+    int add(final Buffer buffer, final int start, final int end,
+            Charset charset, final int maxCount, final int limit) {
+        if (charset == null) {
+            charset = Parameters.DEFAULT_CHARSET;
+        }
+        
+        final int offset = copy(buffer, start, end);
+        final int charsetIdx = charsetIndex(charset);
+        final boolean isAsciiCompatible = isAsciiCompatible(charset);
+        final byte[] b = bytes;
+        final int bEnd = offset + (end - start);
+        
+        int decodeFailCount = 0;
+        int added = 0;
+        
+        int pos = offset;
+        while (pos < bEnd) {
+            if (maxCount > -1 && added >= maxCount) {
+                LOGGER.warning(LogMessages.WARNING_GRIZZLY_HTTP_SEVERE_GRIZZLY_HTTP_PARAMETERS_MAX_COUNT_FAIL(limit));
+                break;
+            }
+            
+            final int nameStart = pos;
+            int nameEnd = -1;
+            int valueStart = -1;
+            int valueEnd = -1;
+
+            boolean parsingName = true;
+            boolean parameterComplete = false;
+            boolean isAscii = isAsciiCompatible;
+            int flags = 0;
+
+            do {
+                final byte c = b[pos];
+                switch (c) {
+                    case '=':
+                        if (parsingName) {
+                            nameEnd = pos;
+                            parsingName = false;
+                            valueStart = ++pos;
+                        } else {
+                            pos++;
+                        }
+                        break;
+                    case '&':
+                        if (parsingName) {
+                            nameEnd = pos;
+                        } else {
+                            valueEnd = pos;
+                        }
+                        parameterComplete = true;
+                        pos++;
+                        break;
+                    case '+':
+                    case '%':
+                        flags |= parsingName ? DECODE_NAME : DECODE_VALUE;
+                        pos++;
+                        break;
+                    default:
+                        if (c < 0 && parsingName) {
+                            isAscii = false;
+                        }
+                        pos++;
+                        break;
+                }
+            } while (!parameterComplete && pos < bEnd);
+
+            if (pos == bEnd) {
+                if (nameEnd == -1) {
+                    nameEnd = pos;
+                } else if (valueStart > -1 && valueEnd == -1) {
+                    valueEnd = pos;
+                }
+            }
+
+            if (nameEnd <= nameStart) {
+                if (LOGGER.isLoggable(Level.INFO) && valueEnd < nameStart) {
+                    LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_INVALID_CHUNK(
+                            nameStart - offset + start, nameEnd - offset + start,
+                            null));
+                }
+                
+                continue;
+            }
+            
+            if (valueStart == -1) {
+                flags |= NO_VALUE;
+            }
+            
+            final String error = checkEscapes(b, nameStart, nameEnd, flags, DECODE_NAME) ? 
+                    (checkEscapes(b, valueStart, valueEnd, flags, DECODE_VALUE) ?
+                    null : "value") : "name";
+            if (error != null) {
+                decodeFailCount++;
+                if (LOGGER.isLoggable(Level.FINEST)) {
+                    LOGGER.log(Level.FINEST,
+                            LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(
+                            raw(nameStart, nameEnd), raw(valueStart, valueEnd)));
+                } else if (LOGGER.isLoggable(Level.INFO) && decodeFailCount == 1) {
+                    LOGGER.log(Level.INFO,
+                            LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_INFO(
+                            "Illegal escape (%) pattern in the parameter " + error,
+                            raw(nameStart, nameEnd), raw(valueStart, valueEnd)));
+                }
+                
+                continue;
+            }
+            
+            if (isAscii && (flags & DECODE_NAME) == 0) {
+                flags |= PLAIN_NAME;
+            }
+            
+            addEntry(nameStart, nameEnd, valueStart, valueEnd, flags, charsetIdx);
+            added++;
+        }
+        
+        if (!LOGGER.isLoggable(Level.FINEST) && decodeFailCount > 1) {
+            LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_MULTIPLE_DECODING_FAIL(decodeFailCount));
+        }
+        
+        return added;
+    }
+
+    /**
+     * Returns the first value of the parameter with the given name,
+     * or <tt>null</tt> if there's no such parameter.
+     */
+    String getFirstValue(final String name) {
+        if (count == 0) {
+            return null;
+        }
+        
+        final int h = name.hashCode();
+        final int[] e = entries;
+        for (int i = lookupHead(h); i != -1; i = e[i * ENTRY_SIZE + NEXT]) {
+            if (e[i * ENTRY_SIZE + HASH] == h && nameEquals(i, name)) {
+                return valueAt(i);
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Adds all the values of the parameter with the given name to the
+     * passed {@link Collection}.
+     */
+    void collectValues(final String name, final Collection<String> dst) {
+        if (count == 0) {
+            return;
+        }
+        
+        final int h = name.hashCode();
+        final int[] e = entries;
+        for (int i = lookupHead(h); i != -1; i = e[i * ENTRY_SIZE + NEXT]) {
+            if (e[i * ENTRY_SIZE + HASH] == h && nameEquals(i, name)) {
+                dst.add(valueAt(i));
+            }
+        }
+    }
+    
+    /**
+     * Adds the parameter names, in the order they were parsed,
+     * to the passed {@link Collection}.
+     */
+    void collectNames(final Collection<String> dst) {
+        for (int i = 0; i < count; i++) {
+            dst.add(nameAt(i));
+        }
+    }
+
+    /**
+     * Decodes all the parameters into the passed map and recycles the index.
+     */
+    void drainTo(final LinkedHashMap<String, ArrayList<String>> map) {
+        for (int i = 0; i < count; i++) {
+            final String name = nameAt(i);
+            ArrayList<String> list = map.get(name);
+            if (list == null) {
+                list = new ArrayList<String>(1);
+                map.put(name, list);
+            }
+            
+            list.add(valueAt(i));
+        }
+        
+        recycle();
+    }
+    
+    void recycle() {
+        if (count > 0) {
+            Arrays.fill(charsets, 0, charsetsCount, null);
+            if (names != null) {
+                final int cached = Math.min(count, names.length);
+                Arrays.fill(names, 0, cached, null);
+                Arrays.fill(values, 0, cached, null);
+            }
+        }
+        
+        count = 0;
+        charsetsCount = 0;
+        bytesLength = 0;
+        isIndexed = false;
+        
+        if (bytes != null && bytes.length > MAX_RETAINED_SIZE) {
+            bytes = null;
+        }
+        
+        if (decodeBuffer != null && decodeBuffer.length > MAX_RETAINED_SIZE) {
+            decodeBuffer = null;
+        }
+        
+        if (entries.length > MAX_RETAINED_SIZE / 4) {
+            entries = new int[Parameters.INITIAL_SIZE * ENTRY_SIZE];
+            names = null;
+            values = null;
+            table = null;
+        }
+    }
+
+    // ------------------------------------------------------- Private Methods
+    
+    private int copy(final Buffer buffer, final int start, final int end) {
+        final int len = end - start;
+        final int offset = bytesLength;
+        final int newLength = offset + len;
+        
+        if (bytes == null || bytes.length < newLength) {
+            final byte[] newBytes = new byte[Math.max(newLength, 128)];
+            if (bytes != null && offset > 0) {
+                System.arraycopy(bytes, 0, newBytes, 0, offset);
+            }
+            bytes = newBytes;
+        }
+        
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + start,
+                    bytes, offset, len);
+        } else {
+            final int oldPos = buffer.position();
+            final int oldLim = buffer.limit();
+            try {
+                buffer.limit(end);
+                buffer.position(start);
+                buffer.get(bytes, offset, len);
+            } finally {
+                buffer.limit(oldLim);
+                buffer.position(oldPos);
+            }
+        }
+        
+        bytesLength = newLength;
+        return offset;
+    }
+    
+    private void addEntry(final int nameStart, final int nameEnd,
+            final int valueStart, final int valueEnd,
+            final int flags, final int charsetIdx) {
+        int idx = count * ENTRY_SIZE;
+        if (idx == entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        
+        final int[] e = entries;
+        e[idx + NAME_START] = nameStart;
+        e[idx + NAME_END] = nameEnd;
+        e[idx + VALUE_START] = valueStart;
+        e[idx + VALUE_END] = valueEnd;
+        e[idx + FLAGS] = flags;
+        e[idx + CHARSET] = charsetIdx;
+        
+        count++;
+        isIndexed = false;
+    }
+    
+    private int charsetIndex(final Charset charset) {
+        for (int i = 0; i < charsetsCount; i++) {
+            if (charsets[i] == charset) {
+                return i;
+            }
+        }
+        
+        if (charsetsCount == charsets.length) {
+            charsets = Arrays.copyOf(charsets, charsetsCount * 2);
+        }
+        
+        charsets[charsetsCount] = charset;
+        return charsetsCount++;
+    }
+    
+    /**
+     * Builds the hash index (lazily on the first lookup). The chains keep
+     * the entries in the order they were parsed.
+     */
+    private int lookupHead(final int hash) {
+        if (!isIndexed) {
+            buildIndex();
+        }
+        
+        return table[hash & (table.length - 1)];
+    }
+
+    private void buildIndex() {
+        int tableSize = Integer.highestOneBit(Math.max(count, 2) * 2 - 1) << 1;
+        if (table == null || table.length < tableSize) {
+            table = new int[tableSize];
+        } else {
+            tableSize = table.length;
+        }
+        
+        Arrays.fill(table, -1);
+        
+        final int mask = tableSize - 1;
+        final int[] e = entries;
+        for (int i = count - 1; i >= 0; i--) {
+            final int idx = i * ENTRY_SIZE;
+            final int h = (e[idx + FLAGS] & PLAIN_NAME) != 0
+                    ? asciiHash(e[idx + NAME_START], e[idx + NAME_END])
+                    : nameAt(i).hashCode();
+            
+            e[idx + HASH] = h;
+            e[idx + NEXT] = table[h & mask];
+            table[h & mask] = i;
+        }
+        
+        isIndexed = true;
+    }
+    
+    private int asciiHash(final int start, final int end) {
+        final byte[] b = bytes;
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + b[i];
+        }
+        
+        return h;
+    }
+    
+    private boolean nameEquals(final int i, final String name) {
+        final int idx = i * ENTRY_SIZE;
+        if ((entries[idx + FLAGS] & PLAIN_NAME) == 0) {
+            return nameAt(i).equals(name);
+        }
+        
+        final int start = entries[idx + NAME_START];
+        final int len = entries[idx + NAME_END] - start;
+        if (len != name.length()) {
+            return false;
+        }
+        
+        final byte[] b = bytes;
+        for (int j = 0; j < len; j++) {
+            if (b[start + j] != name.charAt(j)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+
+    private String nameAt(final int i) {
+        ensureCaches();
+        String name = names[i];
+        if (name == null) {
+            final int idx = i * ENTRY_SIZE;
+            final int flags = entries[idx + FLAGS];
+            final int start = entries[idx + NAME_START];
+            final int end = entries[idx + NAME_END];
+            
+            if ((flags & PLAIN_NAME) != 0) {
+                nameChunk.setBytes(bytes, start, end - start);
+                nameChunk.setCharset(Charsets.ASCII_CHARSET);
+                name = StringCache.toString(nameChunk);
+                nameChunk.recycle();
+            } else {
+                name = decode(start, end, (flags & DECODE_NAME) != 0,
+                        charsets[entries[idx + CHARSET]]);
+            }
+            
+            names[i] = name;
+        }
+        
+        return name;
+    }
+    
+    private String valueAt(final int i) {
+        ensureCaches();
+        String value = values[i];
+        if (value == null) {
+            final int idx = i * ENTRY_SIZE;
+            final int flags = entries[idx + FLAGS];
+            
+            value = (flags & NO_VALUE) != 0
+                    ? ""
+                    : decode(entries[idx + VALUE_START], entries[idx + VALUE_END],
+                            (flags & DECODE_VALUE) != 0,
+                            charsets[entries[idx + CHARSET]]);
+            values[i] = value;
+        }
+        
+        return value;
+    }
+    
+    private void ensureCaches() {
+        final int capacity = entries.length / ENTRY_SIZE;
+        if (names == null || names.length < capacity) {
+            names = names == null
+                    ? new String[capacity]
+                    : Arrays.copyOf(names, capacity);
+            values = values == null
+                    ? new String[capacity]
+                    : Arrays.copyOf(values, capacity);
+        }
+    }
+    
+    private String decode(final int start, final int end,
+            final boolean urlDecode, final Charset charset) {
+        if (!urlDecode) {
+            return new String(bytes, start, end - start, charset);
+        }
+
+        final byte[] src = bytes;
+        byte[] dst = decodeBuffer;
+        if (dst == null || dst.length < end - start) {
+            dst = decodeBuffer = new byte[Math.max(end - start, 128)];
+        }
+
+        // the escapes have been validated during parsing
+        int len = 0;
+        for (int j = start; j < end; j++) {
+            final byte b = src[j];
+            if (b == '+') {
+                dst[len++] = (byte) ' ';
+            } else if (b != '%') {
+                dst[len++] = b;
+            } else {
+                dst[len++] = (byte) ((HexUtils.hexDigit2Dec(src[j + 1]) << 4)
+                        + HexUtils.hexDigit2Dec(src[j + 2]));
+                j += 2;
+            }
+        }
+        
+        return new String(dst, 0, len, charset);
+    }
+    
+    private String raw(final int start, final int end) {
+        return start < end
+                ? new String(bytes, start, end - start, Charsets.ASCII_CHARSET)
+                : "unavailable";
+    }
+    
+    private static boolean checkEscapes(final byte[] b,
+            final int start, final int end, final int flags, final int flag) {
+        if ((flags & flag) == 0) {
+            return true;
+        }
+        
+        for (int j = start; j < end; j++) {
+            if (b[j] == '%') {
+                if (j + 2 >= end
+                        || !HexUtils.isHexDigit(b[j + 1])
+                        || !HexUtils.isHexDigit(b[j + 2])) {
+                    return false;
+                }
+                
+                j += 2;
+            }
+        }
+        
+        return true;
+    }
+    
+    private static boolean isAsciiCompatible(final Charset charset) {
+        final String name = charset.name();
+        return charset == Charsets.UTF8_CHARSET
+                || name.equals("UTF-8")
+                || name.equals("US-ASCII")
+                || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125");
+    }
+}
@@ -58,11 +58,11 @@
 package org.glassfish.grizzly.http.util;
 
 import java.io.CharConversionException;
-import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -84,6 +84,11 @@ public final class Parameters {
     private final LinkedHashMap<String, ArrayList<String>> paramHashValues =
         new LinkedHashMap<String, ArrayList<String>>();
 
+    // The parameters parsed from Buffers, which are decoded on demand.
+    // They always follow the paramHashValues ones in the parameters order.
+    private final ParameterIndex lazyParameters = new ParameterIndex();
+    private Set<String> lazyParameterNames;
+
     private boolean didQueryParameters = false;
     private boolean didMerge = false;
     MimeHeaders headers;
@@ -145,6 +150,8 @@ public final class Parameters {
     public void recycle() {
 
         paramHashValues.clear();
+        lazyParameters.recycle();
+        lazyParameterNames = null;
         didQueryParameters = false;
         currentChild = null;
         didMerge = false;
@@ -216,6 +223,7 @@ public final class Parameters {
         if (key == null) {
             return;
         }
+        materialize();
         ArrayList<String> values;
         if (paramHashValues.containsKey(key)) {
             values = paramHashValues.get(key);
@@ -229,7 +237,7 @@ public final class Parameters {
 
     public String[] getParameterValues(String name) {
         handleQueryParameters();
-        final ArrayList<String> values;
+        ArrayList<String> values;
         // sub-request
         if (currentChild != null) {
             currentChild.merge();
@@ -237,6 +245,15 @@ public final class Parameters {
         } else {
             // no "facade"
             values = paramHashValues.get(name);
+            if (!lazyParameters.isEmpty()) {
+                final ArrayList<String> allValues = values != null
+                        ? new ArrayList<String>(values)
+                        : new ArrayList<String>(1);
+                lazyParameters.collectValues(name, allValues);
+                if (values != null || !allValues.isEmpty()) {
+                    values = allValues;
+                }
+            }
         }
         return ((values != null) ? values.toArray(new String[values.size()]) : null);
     }
@@ -258,7 +275,18 @@ public final class Parameters {
         return paramHashStringArray.keys();
         */
         // START PWC 6057385
-        return paramHashValues.keySet();
+        if (lazyParameters.isEmpty()) {
+            return paramHashValues.keySet();
+        }
+        
+        if (lazyParameterNames == null) {
+            final Set<String> names = new LinkedHashSet<String>(
+                    paramHashValues.keySet());
+            lazyParameters.collectNames(names);
+            lazyParameterNames = Collections.unmodifiableSet(names);
+        }
+        
+        return lazyParameterNames;
         // END PWC 6057385
     }
 
@@ -275,6 +303,7 @@ public final class Parameters {
 
         // Local parameters first - they take precedence as in spec.
         handleQueryParameters();
+        materialize();
         // we already merged with the parent
         if (didMerge) {
             return;
@@ -307,7 +336,17 @@ public final class Parameters {
             }
             return values.get(0);
         } else {
-            return null;
+            return lazyParameters.getFirstValue(name);
+        }
+    }
+
+    /**
+     * Decodes all the lazily parsed parameters into the parameters map.
+     */
+    private void materialize() {
+        if (!lazyParameters.isEmpty()) {
+            lazyParameters.drainTo(paramHashValues);
+            lazyParameterNames = null;
         }
     }
     // -------------------- Processing --------------------
@@ -377,6 +416,7 @@ public final class Parameters {
             return;
         }
 
+        materialize();
         parameterCount++;
         if (limit > -1 && parameterCount > limit) {
             // Processing this parameter will push us over the limit. ISE is
@@ -402,8 +442,6 @@ public final class Parameters {
     // of the above.
     // we are called from a single thread - we can do it the hard way
     // if needed
-    final BufferChunk tmpName = new BufferChunk();
-    final BufferChunk tmpValue = new BufferChunk();
     private BufferChunk origName = new BufferChunk();
     private BufferChunk origValue = new BufferChunk();
     final CharChunk tmpNameC = new CharChunk(1024);
@@ -431,186 +469,15 @@ public final class Parameters {
                        });
         }
         
-        int decodeFailCount = 0;
-
-        int end = start + len;
-        int pos = start;
-        while (pos < end) {
-            if (limit > -1 && parameterCount >= limit) {
-                LOGGER.warning(LogMessages.WARNING_GRIZZLY_HTTP_SEVERE_GRIZZLY_HTTP_PARAMETERS_MAX_COUNT_FAIL(limit));
-                break;
-            }
-            int nameStart = pos;
-            int nameEnd = -1;
-            int valueStart = -1;
-            int valueEnd = -1;
-
-            boolean parsingName = true;
-            boolean decodeName = false;
-            boolean decodeValue = false;
-            boolean parameterComplete = false;
-
-            do {
-                switch (buffer.get(pos)) {
-                    case '=':
-                        if (parsingName) {
-                            // Name finished. Value starts from next character
-                            nameEnd = pos;
-                            parsingName = false;
-                            valueStart = ++pos;
-                        } else {
-                            // Equals character in value
-                            pos++;
-                        }
-                        break;
-                    case '&':
-                        if (parsingName) {
-                            // Name finished. No value.
-                            nameEnd = pos;
-                        } else {
-                            // Value finished
-                            valueEnd = pos;
-                        }
-                        parameterComplete = true;
-                        pos++;
-                        break;
-                    case '+':
-                    case '%':
-                        // Decoding required
-                        if (parsingName) {
-                            decodeName = true;
-                        } else {
-                            decodeValue = true;
-                        }
-                        pos++;
-                        break;
-                    default:
-                        pos++;
-                        break;
-                }
-            } while (!parameterComplete && pos < end);
-
-            if (pos == end) {
-                if (nameEnd == -1) {
-                    nameEnd = pos;
-                } else if (valueStart > -1 && valueEnd == -1) {
-                    valueEnd = pos;
-                }
-            }
-
-            if (LOGGER.isLoggable(Level.FINEST) && valueStart == -1) {
-                LOGGER.log(Level.FINEST,
-                           LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_NOEQUAL(
-                                   nameStart,
-                                   nameEnd,
-                                   buffer.toStringContent(DEFAULT_CHARSET,
-                                                          nameStart, nameEnd)));
-            }
-
-            if (nameEnd <= nameStart) {
-                if (LOGGER.isLoggable(Level.INFO)) {
-                    String extract;
-                    if (valueEnd < nameStart) {
-                        LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_INVALID_CHUNK(
-                                nameStart,
-                                nameEnd,
-                                null));
-                    }
-                }
-                continue;
-                // invalid chunk - it's better to ignore
-            }
-            tmpName.setBufferChunk(buffer, nameStart, nameEnd);
-            tmpValue.setBufferChunk(buffer, valueStart, valueEnd);
-
-            // Take copies as if anything goes wrong originals will be
-            // corrupted. This means original values can be logged.
-            // For performance - only done for debug
-            if (LOGGER.isLoggable(Level.FINEST)) {
-                origName.setBufferChunk(buffer, nameStart, nameEnd);
-                origValue.setBufferChunk(buffer, valueStart, valueEnd);
-            }
-
-            try {
-                String name;
-                String value;
-
-                if (decodeName) {
-                    name = urlDecode(tmpName, enc);
-                } else {
-                    name = tmpName.toString(enc);
-                }
-
-                if (valueStart != -1) {
-                    if (decodeValue) {
-                        value = urlDecode(tmpValue, enc);
-                    } else {
-                        value = tmpValue.toString(enc);
-                    }
-                } else {
-                    value = "";
-                }
-                
-                addParameter(name, value);
-            } catch (Exception e) {
-                decodeFailCount++;
-                if (LOGGER.isLoggable(Level.FINEST)) {
-                   LOGGER.log(Level.FINEST,
-                            LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(
-                            origName.toString(), origValue.toString()));
-                } else if (LOGGER.isLoggable(Level.INFO) && decodeFailCount == 1) {
-                    final String name = ((tmpName.getLength() > 0)
-                                            ? tmpName.toString()
-                                            : "unavailable");
-                    final String value = ((tmpValue.getLength() > 0)
-                                            ? tmpValue.toString()
-                                            : "unavailable");
-                    LOGGER.log(Level.INFO,
-                               LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_INFO(
-                                       e.getMessage(), name, value));
-                    LOGGER.log(Level.FINE, "Decoding stacktrace.", e);
-                }
-            } finally {
-                tmpName.recycle();
-                tmpValue.recycle();
-            }
-
-        }
-
-        if (!LOGGER.isLoggable(Level.FINEST) && decodeFailCount > 1) {
-            LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_MULTIPLE_DECODING_FAIL(decodeFailCount));
-        }
-    }
-
-    private String urlDecode(final BufferChunk bc, final Charset enc)
-        throws IOException {
-//        if (urlDec == null) {
-//            urlDec = new UDecoder();
-//        }
-        URLDecoder.decode(bc, true);
-        String result;
-        if (enc != null) {
-            if (bc.getStart() == -1 && bc.getEnd() == -1) {
-                return "";
-            }
-            result = bc.toString(enc);
-        } else {
-            final CharChunk cc = tmpNameC;
-            final int length = bc.getLength();
-            cc.allocate(length, -1);
-            // Default encoding: fast conversion
-            final Buffer bbuf = bc.getBuffer();
-            final char[] cbuf = cc.getBuffer();
-            final int start = bc.getStart();
-            for (int i = 0; i < length; i++) {
-                cbuf[i] = (char) (bbuf.get(i + start) & 0xff);
-            }
-
-            cc.setChars(cbuf, 0, length);
-            result = cc.toString();
-            cc.recycle();
+        if (len <= 0) {
+            return;
         }
-        return result;
+        
+        // The bytes are copied and indexed, the names and values are decoded
+        // on demand
+        parameterCount += lazyParameters.add(buffer, start, start + len, enc,
+                limit > -1 ? Math.max(limit - parameterCount, 0) : -1, limit);
+        lazyParameterNames = null;
     }
 
     public void processParameters(char chars[], int start, int len) {
@@ -757,6 +624,7 @@ public final class Parameters {
      * Debug purpose
      */
     public String paramsAsString() {
+        materialize();
         StringBuilder sb = new StringBuilder();
         for (final String s : paramHashValues.keySet()) {
             // END PWC 6057385
@@ -58,6 +58,7 @@ import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
 import org.glassfish.grizzly.utils.ChunkingFilter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -68,7 +69,9 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 import junit.framework.TestCase;
+import org.glassfish.grizzly.compression.zip.ZLibPool;
 import org.glassfish.grizzly.filterchain.Filter;
 import org.glassfish.grizzly.memory.Buffers;
 
@@ -83,6 +86,77 @@ public class CompressionSemanticsTest extends TestCase {
 
     private final FutureImpl<Throwable> exception = SafeFutureImpl.create();
 
+    public void testMimeTypeCompressionLevels() {
+        final CompressionConfig config = new CompressionConfig();
+        config.setCompressionLevel(6);
+        config.setMimeTypeCompressionLevel("text/", 9);
+        config.setMimeTypeCompressionLevel("text/css", 1);
+        
+        final CompressionConfig copy = new CompressionConfig(config);
+        config.setMimeTypeCompressionLevel("text/css", 2);
+        
+        assertEquals(9, copy.getCompressionLevel("text/html;charset=UTF-8"));
+        assertEquals(1, copy.getCompressionLevel("text/css"));
+        assertEquals(6, copy.getCompressionLevel("application/json"));
+        assertEquals(6, copy.getCompressionLevel(null));
+        assertEquals(2, config.getCompressionLevel("text/css"));
+        
+        try {
+            copy.setMimeTypeCompressionLevel("text/plain", 10);
+            fail("IllegalArgumentException is expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testRecycleReleasesZLibState() throws Exception {
+        final ZLibPool pool = ZLibPool.getDefault();
+        final GZipContentEncoding encoding = new GZipContentEncoding();
+        final MemoryManager mm = MemoryManager.DEFAULT_MEMORY_MANAGER;
+        
+        final byte[] content = new byte[4096];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        
+        // the response is recycled before the last chunk is encoded
+        final int deflatersInUse = pool.getDeflatersInUseCount();
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method("GET").uri("/path").protocol(Protocol.HTTP_1_1)
+                .build();
+        final HttpResponsePacket response =
+                HttpResponsePacket.builder(request).build();
+        response.addContentEncoding(encoding);
+        encoding.encode(null, HttpContent.builder(response)
+                .content(Buffers.wrap(mm, content))
+                .build());
+        assertEquals(deflatersInUse + 1, pool.getDeflatersInUseCount());
+        
+        request.setExpectContent(false);
+        response.recycle();
+        assertEquals(deflatersInUse, pool.getDeflatersInUseCount());
+        
+        // the request is recycled before the GZIP member is decoded
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final GZIPOutputStream gzos = new GZIPOutputStream(baos);
+        gzos.write(content);
+        gzos.close();
+        final byte[] encoded = baos.toByteArray();
+        
+        final int inflatersInUse = pool.getInflatersInUseCount();
+        final HttpRequestPacket postRequest = HttpRequestPacket.builder()
+                .method("POST").uri("/path").protocol(Protocol.HTTP_1_1)
+                .build();
+        postRequest.addContentEncoding(encoding);
+        encoding.decode(null, HttpContent.builder(postRequest)
+                .content(Buffers.wrap(mm, Arrays.copyOf(encoded, encoded.length / 2)))
+                .build());
+        assertEquals(inflatersInUse + 1, pool.getInflatersInUseCount());
+        
+        postRequest.setExpectContent(false);
+        postRequest.recycle();
+        assertEquals(inflatersInUse, pool.getInflatersInUseCount());
+    }
+
     public void testImplicitContentLength() throws Throwable {
         ContentEncoding gzipServerContentEncoding =
                 getGzipServerContentEncoding();
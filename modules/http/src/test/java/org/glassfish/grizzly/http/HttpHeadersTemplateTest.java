@@ -0,0 +1,150 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2012-2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.FastHttpDateFormat;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.http.util.MimeHeaders;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link HttpHeadersTemplate} and cached status line tests.
+ */
+public class HttpHeadersTemplateTest {
+    private static final MemoryManager MM =
+            MemoryManager.DEFAULT_MEMORY_MANAGER;
+    
+    @Test
+    public void testBuilderValidation() {
+        final HttpHeadersTemplate.Builder builder = HttpHeadersTemplate.builder()
+                .header(Header.Server, "Grizzly")
+                .header("X-Frame-Options", "DENY");
+        
+        try {
+            builder.header("server", "other");
+            fail("Duplicate header has to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        
+        try {
+            builder.header(Header.ContentLength, "10");
+            fail("Content-Length has to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        
+        try {
+            builder.header("", "value");
+            fail("Empty header name has to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        
+        final HttpHeadersTemplate template = builder.build();
+        assertEquals(2, template.size());
+        assertEquals("Server", template.getName(0));
+        assertEquals("x-frame-options", template.getLowerCaseName(1));
+        assertEquals("DENY", template.getValue(1));
+    }
+    
+    @Test
+    public void testEncodeTemplate() {
+        final HttpHeadersTemplate template = HttpHeadersTemplate.builder()
+                .header(Header.Server, "Grizzly")
+                .header("X-Frame-Options", "DENY")
+                .build();
+        
+        final MimeHeaders headers = new MimeHeaders();
+        assertEquals("Server: Grizzly\r\nX-Frame-Options: DENY\r\n",
+                encode(template, headers));
+        
+        headers.setValue("x-frame-options").setString("SAMEORIGIN");
+        assertEquals("Server: Grizzly\r\n", encode(template, headers));
+        
+        assertNull(encode(null, headers));
+    }
+    
+    @Test
+    public void testStatusLine() {
+        assertEquals("HTTP/1.1 200 OK", new String(
+                HttpStatus.OK_200.getStatusLineBytes(Protocol.HTTP_1_1),
+                Charsets.ASCII_CHARSET));
+        assertEquals("HTTP/1.0 404 Not Found", new String(
+                HttpStatus.NOT_FOUND_404.getStatusLineBytes(Protocol.HTTP_1_0),
+                Charsets.ASCII_CHARSET));
+        assertSame(HttpStatus.OK_200.getStatusLineBytes(Protocol.HTTP_1_1),
+                HttpStatus.OK_200.getStatusLineBytes(Protocol.HTTP_1_1));
+    }
+    
+    @Test
+    public void testDateHeaderLine() {
+        final byte[] dateBytes = FastHttpDateFormat.getCurrentDateBytes();
+        final DataChunk value = DataChunk.newInstance();
+        value.setBytes(dateBytes);
+        
+        final byte[] line = FastHttpDateFormat.getDateHeaderBytes(value);
+        assertNotNull(line);
+        assertEquals("Date: " + new String(dateBytes, Charsets.ASCII_CHARSET)
+                + "\r\n", new String(line, Charsets.ASCII_CHARSET));
+        
+        value.setBytes(dateBytes.clone());
+        assertNull(FastHttpDateFormat.getDateHeaderBytes(value));
+        
+        value.setString(new String(dateBytes, Charsets.ASCII_CHARSET));
+        assertNull(FastHttpDateFormat.getDateHeaderBytes(value));
+    }
+    
+    private static String encode(final HttpHeadersTemplate template,
+            final MimeHeaders headers) {
+        final Buffer buffer = HttpCodecFilter.encodeHeadersTemplate(MM,
+                MM.allocate(8), template, headers);
+        buffer.flip();
+        
+        return buffer.hasRemaining()
+                ? buffer.toStringContent(Charsets.ASCII_CHARSET)
+                : null;
+    }
+}
@@ -62,6 +62,7 @@ import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.Set;
+import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.http.util.Constants;
 
 import org.glassfish.grizzly.http.util.DataChunk;
@@ -391,6 +392,83 @@ public class ParametersTest {
         params.processParameters(request);
     }
 
+    @Test
+    public void testLazyBufferParameters() {
+        final String form = "a=1&b=x+y%21&a=2&%41%42=3&bad=%4&c&=skip&d=%e4";
+        final Parameters p = new Parameters();
+        p.setEncoding(Charsets.lookupCharset("ISO-8859-1"));
+        final Buffer buffer = Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER,
+                "xx" + form + "yy");
+        p.processParameters(buffer, 2, form.length());
+        
+        // the source buffer might be disposed right after the parsing
+        buffer.clear();
+        buffer.put(new byte[buffer.remaining()]);
+        
+        assertEquals("1", p.getParameter("a"));
+        assertEquals("x y!", p.getParameter("b"));
+        assertEquals("3", p.getParameter("AB"));
+        assertEquals("", p.getParameter("c"));
+        assertEquals("\u00e4", p.getParameter("d"));
+        assertNull(p.getParameter("bad"));
+        assertNull(p.getParameter("missing"));
+        assertArrayEquals(new String[] {"1", "2"}, p.getParameterValues("a"));
+        
+        final Iterator<String> names = p.getParameterNames().iterator();
+        assertEquals("a", names.next());
+        assertEquals("b", names.next());
+        assertEquals("AB", names.next());
+        assertEquals("c", names.next());
+        assertEquals("d", names.next());
+        assertFalse(names.hasNext());
+        
+        // explicitly added parameters follow the parsed ones
+        p.addParameter("a", "3");
+        p.addParameter("e", "4");
+        assertArrayEquals(new String[] {"1", "2", "3"}, p.getParameterValues("a"));
+        assertEquals("4", p.getParameter("e"));
+        assertEquals(6, p.getParameterNames().size());
+        
+        p.recycle();
+        assertNull(p.getParameter("a"));
+        assertTrue(p.getParameterNames().isEmpty());
+    }
+    
+    @Test
+    public void testLazyLargeForm() {
+        final int count = 10000;
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            sb.append("field").append(i).append("=value%20").append(i);
+        }
+        
+        final byte[] data = sb.toString().getBytes();
+        final Buffer buffer = MemoryManager.DEFAULT_MEMORY_MANAGER.allocate(data.length);
+        buffer.put(data);
+        buffer.flip();
+        
+        final Parameters p = new Parameters();
+        p.setEncoding(Charsets.UTF8_CHARSET);
+        p.setLimit(count - 1);
+        p.processParameters(buffer, 0, data.length);
+        
+        assertEquals("value 0", p.getParameter("field0"));
+        assertEquals("value " + (count - 2), p.getParameter("field" + (count - 2)));
+        assertNull(p.getParameter("field" + (count - 1)));
+        assertEquals(count - 1, p.getParameterNames().size());
+        
+        // the second chunk of parameters is merged into the same index
+        p.setLimit(-1);
+        final Buffer second = Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER,
+                "field0=again");
+        p.processParameters(second, 0, second.remaining());
+        assertArrayEquals(new String[] {"value 0", "again"},
+                p.getParameterValues("field0"));
+    }
+
     private void validateParameters(Parameter[] parameters, Parameters p) {
         Iterator<String> names = p.getParameterNames().iterator();
 
@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Random;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link CharsEncoder} produces the same output as {@link CharsetEncoder}.
+ */
+public class CharsEncoderTest {
+    private static final String[] SAMPLES = {
+        "",
+        "{\"name\":\"value\",\"list\":[1,2,3]}",
+        "caf\u00e9 \u00fcber na\u00efve",
+        "\u041f\u0440\u0438\u0432\u0435\u0442 \u4e16\u754c",
+        "emoji \ud83d\ude00 and \ud800\udc00",
+        "lone \ud83d high and \ude00 low surrogates",
+        "trailing high surrogate \ud83d"
+    };
+    
+    @Test
+    public void testTypes() {
+        assertEquals(CharsEncoder.UTF_8,
+                CharsEncoder.typeOf(Charsets.UTF8_CHARSET));
+        assertEquals(CharsEncoder.ISO_8859_1,
+                CharsEncoder.typeOf(Charsets.lookupCharset("ISO-8859-1")));
+        assertEquals(CharsEncoder.US_ASCII,
+                CharsEncoder.typeOf(Charsets.ASCII_CHARSET));
+        assertEquals(CharsEncoder.NONE,
+                CharsEncoder.typeOf(Charsets.lookupCharset("UTF-16")));
+    }
+    
+    @Test
+    public void testSamples() {
+        for (String sample : SAMPLES) {
+            checkAllCharsets(sample);
+        }
+    }
+    
+    @Test
+    public void testRandom() {
+        final Random random = new Random(7);
+        final char[] alphabet = {'a', 'Z', '0', ' ', '\u00e9', '\u00ff',
+            '\u0100', '\u07ff', '\u0800', '\uffff', '\ud83d', '\ude00'};
+        
+        for (int i = 0; i < 500; i++) {
+            final char[] chars = new char[random.nextInt(64)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            
+            checkAllCharsets(new String(chars));
+        }
+    }
+    
+    private static void checkAllCharsets(final String s) {
+        check(s, Charsets.UTF8_CHARSET, CharsEncoder.UTF_8);
+        check(s, Charsets.lookupCharset("ISO-8859-1"), CharsEncoder.ISO_8859_1);
+        check(s, Charsets.ASCII_CHARSET, CharsEncoder.US_ASCII);
+    }
+    
+    private static void check(final String s, final Charset charset,
+            final int type) {
+        final byte[] expected = encode(charset, s);
+        
+        // encode into small chunks to check the chars on chunk boundaries
+        for (int chunkSize = 4; chunkSize <= 9; chunkSize++) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final CharBuffer src = CharBuffer.wrap(s.toCharArray());
+            final byte[] dst = new byte[chunkSize + 2];
+            
+            while (src.hasRemaining()) {
+                final int pos = CharsEncoder.encode(type, src, dst, 1,
+                        1 + chunkSize);
+                assertTrue(pos > 1);
+                out.write(dst, 1, pos - 1);
+            }
+            
+            assertArrayEquals(charset + ": " + s + " "
+                    + Arrays.toString(expected), expected, out.toByteArray());
+        }
+    }
+    
+    private static byte[] encode(final Charset charset, final String s) {
+        final CharsetEncoder encoder = charset.newEncoder();
+        encoder.onMalformedInput(CodingErrorAction.REPLACE);
+        encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        
+        final ByteBuffer bb = ByteBuffer.allocate(s.length() * 4);
+        encoder.encode(CharBuffer.wrap(s), bb, true);
+        bb.flip();
+        
+        final byte[] result = new byte[bb.remaining()];
+        bb.get(result);
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.util.Locale;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link HeaderScanner} and {@link Header#find(byte[], int, int)} tests.
+ */
+public class HeaderScannerTest {
+    
+    @Test
+    public void testWordMasks() {
+        for (int b = 0; b < 256; b++) {
+            for (int pos = 0; pos < 8; pos++) {
+                // the other bytes are filled with the values next to b
+                long word = 0;
+                for (int i = 0; i < 8; i++) {
+                    final long value = i == pos ? b : (b + i + 1) & 0xFF;
+                    word |= value << (i * 8);
+                }
+                
+                final long zeroBytes = HeaderScanner.zeroBytes(word);
+                final long upperCaseBytes = HeaderScanner.upperCaseBytes(word);
+                
+                for (int i = 0; i < 8; i++) {
+                    final int value = (int) (word >>> (i * 8)) & 0xFF;
+                    final long highBit = 0x80L << (i * 8);
+                    
+                    assertEquals("value=" + value, value == 0,
+                            (zeroBytes & highBit) != 0);
+                    assertEquals("value=" + value, value >= 'A' && value <= 'Z',
+                            (upperCaseBytes & highBit) != 0);
+                }
+                
+                assertEquals(0, zeroBytes & ~0x8080808080808080L);
+                assertEquals(0, upperCaseBytes & ~0x8080808080808080L);
+            }
+        }
+    }
+    
+    @Test
+    public void testLowerCaseHeaderName() {
+        final String line = "X-Custom-HEADER-Name-With-Some-Length: Value-MUST-Stay\r\n";
+        final byte[] input = line.getBytes(Charsets.ASCII_CHARSET);
+        final int colonIdx = line.indexOf(':');
+        
+        final int offset = HeaderScanner.lowerCaseHeaderName(input, 0, input.length);
+        assertTrue(offset <= colonIdx);
+        if (HeaderScanner.isEnabled()) {
+            assertTrue(offset > colonIdx - 8);
+        } else {
+            assertEquals(0, offset);
+        }
+        
+        final String result = new String(input, Charsets.ASCII_CHARSET);
+        assertEquals(line.substring(0, offset).toLowerCase(Locale.ENGLISH),
+                result.substring(0, offset));
+        assertEquals(line.substring(offset), result.substring(offset));
+    }
+    
+    @Test
+    public void testSkipHeaderValue() {
+        final String line = "Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101\r\nHost: x";
+        final byte[] input = line.getBytes(Charsets.ASCII_CHARSET);
+        final int crIdx = line.indexOf('\r');
+        
+        final int offset = HeaderScanner.skipHeaderValue(input, 0, input.length);
+        assertTrue(offset <= crIdx);
+        if (HeaderScanner.isEnabled()) {
+            assertTrue(offset > crIdx - 8);
+        }
+        
+        // less than a word
+        assertEquals(3, HeaderScanner.skipHeaderValue(input, 3, 10));
+    }
+    
+    @Test
+    public void testHeaderFind() {
+        for (Header header : Header.values()) {
+            final byte[] name = ("  " + header.toString().toUpperCase(Locale.ENGLISH)
+                    + ":").getBytes(Charsets.ASCII_CHARSET);
+            assertSame(header, Header.find(name, 2, name.length - 1));
+            
+            final byte[] lowerCase = header.getLowerCaseBytes();
+            assertSame(header, Header.find(lowerCase, 0, lowerCase.length));
+        }
+        
+        final byte[] unknown = "x-unknown-header".getBytes(Charsets.ASCII_CHARSET);
+        assertNull(Header.find(unknown, 0, unknown.length));
+        assertNull(Header.find(unknown, 0, 0));
+        // prefix of a known header
+        final byte[] prefix = "content-lengt".getBytes(Charsets.ASCII_CHARSET);
+        assertNull(Header.find(prefix, 0, prefix.length));
+    }
+}
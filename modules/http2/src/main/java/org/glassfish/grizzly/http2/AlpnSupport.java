@@ -54,6 +54,7 @@ import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.ICloseType;
 import org.glassfish.grizzly.Transport;
+import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.npn.AlpnClientNegotiator;
 import org.glassfish.grizzly.npn.AlpnServerNegotiator;
 import org.glassfish.grizzly.npn.NegotiationSupport;
@@ -73,6 +74,12 @@ public class AlpnSupport {
     
     private static final AlpnSupport INSTANCE;
     
+    private static final boolean IS_NPN_EXTENSION_FOUND;
+    
+    private static final Attribute<AlpnClientNegotiator> JDK_ALPN_CLIENT_NEGOTIATOR_ATTR =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            AlpnSupport.class + ".jdk-alpn-client-negotiator");
+    
     static {
         
         boolean isExtensionFound = false;
@@ -83,7 +90,10 @@ public class AlpnSupport {
             LOGGER.log(Level.FINE, "TLS ALPN extension is not found:", e);
         }
         
-        INSTANCE = isExtensionFound ? new AlpnSupport() : null;
+        IS_NPN_EXTENSION_FOUND = isExtensionFound;
+        INSTANCE = isExtensionFound || JdkAlpn.isAvailable()
+                ? new AlpnSupport()
+                : null;
     }
 
     public static boolean isEnabled() {
@@ -150,7 +160,12 @@ public class AlpnSupport {
                         }
                     });
                     setConnection(sslEngine, connection);
-                    NegotiationSupport.addNegotiator(sslEngine, negotiator);
+                    if (isNpnExtensionApplicable(sslEngine)) {
+                        NegotiationSupport.addNegotiator(sslEngine, negotiator);
+                    } else {
+                        JdkAlpn.configureClient(sslEngine, negotiator);
+                        JDK_ALPN_CLIENT_NEGOTIATOR_ATTR.set(connection, negotiator);
+                    }
                 }
             } else {
                 AlpnServerNegotiator negotiator;
@@ -176,7 +191,11 @@ public class AlpnSupport {
                         }
                     });
                     setConnection(sslEngine, connection);
-                    NegotiationSupport.addNegotiator(sslEngine, negotiator);
+                    if (isNpnExtensionApplicable(sslEngine)) {
+                        NegotiationSupport.addNegotiator(sslEngine, negotiator);
+                    } else {
+                        JdkAlpn.configureServer(sslEngine, negotiator);
+                    }
                 }
             }
             
@@ -184,6 +203,7 @@ public class AlpnSupport {
 
         @Override
         public void onComplete(final Connection connection) {
+            notifyClientProtocolSelected(connection);
         }
 
         @Override
@@ -194,6 +214,37 @@ public class AlpnSupport {
     private AlpnSupport() {
     }    
     
+    /**
+     * The Grizzly NPN/ALPN JDK extension patches JSSE internals, so it works
+     * with JSSE {@link SSLEngine}s only. Other engines (like native
+     * OpenSSL/BoringSSL based ones) are negotiated using the standard ALPN API.
+     */
+    private static boolean isNpnExtensionApplicable(final SSLEngine sslEngine) {
+        return IS_NPN_EXTENSION_FOUND
+                && (!JdkAlpn.isAvailable()
+                || sslEngine.getClass().getName().startsWith("sun.security.ssl."));
+    }
+    
+    /**
+     * Notifies the client-side {@link AlpnClientNegotiator} about the protocol
+     * selected via the standard JDK ALPN API, unless it's already been notified.
+     * Called once the TLS handshake is complete, so the {@link Connection}
+     * users waiting for the handshake could see the negotiation result
+     * regardless of the order {@link SSLBaseFilter.HandshakeListener}s are
+     * notified in.
+     * 
+     * @param connection {@link Connection}
+     */
+    void notifyClientProtocolSelected(final Connection connection) {
+        final AlpnClientNegotiator negotiator =
+                JDK_ALPN_CLIENT_NEGOTIATOR_ATTR.remove(connection);
+        if (negotiator != null) {
+            final SSLEngine sslEngine = SSLUtils.getSSLEngine(connection);
+            negotiator.protocolSelected(sslEngine,
+                    JdkAlpn.getApplicationProtocol(sslEngine));
+        }
+    }
+    
     public void configure(final SSLBaseFilter sslFilter) {
         sslFilter.addHandshakeListener(handshakeListener);
     }
@@ -46,6 +46,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.HttpHeadersTemplate;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.util.Ascii;
@@ -98,6 +99,7 @@ class EncoderUtils {
         encoder.encodeHeader(Constants.STATUS_HEADER,
                 String.valueOf(response.getHttpStatus().getStatusCode()));
 
+        encodeHeadersTemplate(response.getHeadersTemplate(), headers, encoder);
         encodeUserHeaders(headers, encoder);
 
         return encoder.flushHeaders();
@@ -238,6 +240,23 @@ class EncoderUtils {
         return encoder.flushHeaders();
     }
 
+    private static void encodeHeadersTemplate(
+            final HttpHeadersTemplate template, final MimeHeaders headers,
+            final HeadersEncoder encoder) throws IOException {
+        
+        if (template == null) {
+            return;
+        }
+        
+        final int size = template.size();
+        for (int i = 0; i < size; i++) {
+            if (headers.getValue(template.getName(i)) == null) {
+                encoder.encodeHeader(template.getLowerCaseName(i),
+                        template.getValue(i));
+            }
+        }
+    }
+    
     @SuppressWarnings("unchecked")
     private static void encodeUserHeaders(final MimeHeaders headers,
             final HeadersEncoder encoder) throws IOException {
@@ -78,6 +78,7 @@ public class Http2AddOn implements AddOn {
     private int maxConcurrentStreams = -1;
     private int initialWindowSize = -1;
     private int maxFramePayloadSize = -1;
+    private PushManager pushManager;
     
     public Http2AddOn() {
         this(ALL_HTTP2_DRAFTS);
@@ -107,6 +108,11 @@ public class Http2AddOn implements AddOn {
         
         final Http2ServerFilter http2Filter = updateFilterChain(builder);
         
+        if (pushManager != null && pushManager.getFileCache() == null
+                && networkListener.getFileCache().isEnabled()) {
+            pushManager.setFileCache(networkListener.getFileCache());
+        }
+        
         if (networkListener.isSecure()) {
             configureAlpn(transport, http2Filter, builder);
         }
@@ -159,6 +165,27 @@ public class Http2AddOn implements AddOn {
         this.maxFramePayloadSize = maxFramePayloadSize;
     }
 
+    /**
+     * @return the {@link PushManager}, which decides whether associated
+     * resources have to be pushed, or <tt>null</tt> if every associated
+     * resource is pushed.
+     */
+    public PushManager getPushManager() {
+        return pushManager;
+    }
+
+    /**
+     * Sets the {@link PushManager}, which decides whether associated
+     * resources have to be pushed. If the {@link PushManager} doesn't have
+     * a {@link org.glassfish.grizzly.http.server.filecache.FileCache} assigned,
+     * the {@link NetworkListener}'s one will be used.
+     * 
+     * @param pushManager the {@link PushManager}
+     */
+    public void setPushManager(final PushManager pushManager) {
+        this.pushManager = pushManager;
+    }
+    
     
     // ----------------------------------------------------- Private Methods
 
@@ -175,6 +202,7 @@ public class Http2AddOn implements AddOn {
         http2HandlerFilter.setLocalMaxFramePayloadSize(getMaxFramePayloadSize());
         http2HandlerFilter.setInitialWindowSize(getInitialWindowSize());
         http2HandlerFilter.setMaxConcurrentStreams(getMaxConcurrentStreams());
+        http2HandlerFilter.setPushManager(getPushManager());
         builder.add(codecFilterIdx + 1, http2HandlerFilter);
         
         return http2HandlerFilter;
@@ -50,8 +50,11 @@ import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.WriteResult;
 import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.FilterChainContext.TransportContext;
@@ -70,6 +73,8 @@ import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.ProcessingState;
 import org.glassfish.grizzly.http.Protocol;
 import org.glassfish.grizzly.http.TransferEncoding;
+import org.glassfish.grizzly.http.server.AdmissionController;
+import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.FastHttpDateFormat;
 import org.glassfish.grizzly.http.util.Header;
@@ -939,6 +944,12 @@ public class Http2BaseFilter extends HttpBaseFilter {
             // Make sure request contains the association with the HTTP2 stream
             request.setAttribute(Http2Stream.HTTP2_STREAM_ATTRIBUTE, stream);
             
+            final Object closeListener = request.getAttribute(
+                    Http2Stream.HTTP2_STREAM_CLOSE_LISTENER_ATTRIBUTE);
+            if (closeListener != null) {
+                stream.addCloseListener((CloseListener) closeListener);
+            }
+            
             final TransportContext transportContext = ctx.getTransportContext();
 
             stream.getOutputSink().writeDownStream(entireHttpPacket,
@@ -960,12 +971,32 @@ public class Http2BaseFilter extends HttpBaseFilter {
         final Http2Stream stream = Http2Stream.getStreamFor(response);
         assert stream != null;
 
+        final TransportContext transportContext = ctx.getTransportContext();
+        
+        if (isRejectedRequest(response)) {
+            // the request was rejected by the admission controller,
+            // let the client retry it by resetting the stream
+            if (!response.isCommitted()) {
+                response.setCommitted(true);
+                http2Connection.sendRstFrame(ErrorCode.REFUSED_STREAM,
+                        stream.getId());
+                stream.terminateSilently();
+            }
+            
+            final CompletionHandler<WriteResult> completionHandler =
+                    transportContext.getCompletionHandler();
+            if (completionHandler != null) {
+                completionHandler.completed(null);
+            }
+            
+            return;
+        }
+        
         if (!response.isCommitted()) {
             prepareOutgoingResponse(response);
             pushAssociatedResoureses(ctx, stream);
         }
 
-        final TransportContext transportContext = ctx.getTransportContext();
 
         stream.getOutputSink().writeDownStream(entireHttpPacket,
                                    ctx,
@@ -973,6 +1004,12 @@ public class Http2BaseFilter extends HttpBaseFilter {
                                    transportContext.getMessageCloner());
     }
     
+    private static boolean isRejectedRequest(final HttpResponsePacket response) {
+        final HttpRequestPacket request = response.getRequest();
+        return request != null && request.getAttribute(
+                AdmissionController.REJECTED_REQUEST_ATTRIBUTE) != null;
+    }
+    
     @Override
     @SuppressWarnings("unchecked")
     public NextAction handleEvent(final FilterChainContext ctx,
@@ -1309,6 +1346,11 @@ public class Http2BaseFilter extends HttpBaseFilter {
             
             final Http2Connection http2Connection = stream.getHttp2Connection();
             
+            final PushManager pushManager = getPushManager();
+            final PushManager.PushBatch pushBatch = pushManager != null
+                    ? pushManager.startBatch(http2Connection, streamReq)
+                    : null;
+            
             boolean isNewClientStreamLocked = true;
             boolean isDeflaterLocked = true;
             http2Connection.getNewClientStreamLock().lock();
@@ -1316,7 +1358,7 @@ public class Http2BaseFilter extends HttpBaseFilter {
             try {
                 for (Map.Entry<String, PushResource> entry : pushResourceMap.entrySet()) {
                     final PushResource pushResource = entry.getValue();
-                    final Source source = pushResource.getSource();
+                    Source source = pushResource.getSource();
                     
                     final Http2Request request = Http2Request.create();
                     final HttpResponsePacket response = request.getResponse();
@@ -1355,6 +1397,37 @@ public class Http2BaseFilter extends HttpBaseFilter {
                     response.setProtocol(Protocol.HTTP_2_0);
                     response.setContentType(pushResource.getContentType());
                     
+                    if (pushBatch != null) {
+                        FileCacheEntry cacheEntry = null;
+                        if (source == null) {
+                            final String acceptEncoding =
+                                    streamReq.getHeader(Header.AcceptEncoding);
+                            if (acceptEncoding != null) {
+                                request.addHeader(Header.AcceptEncoding, acceptEncoding);
+                            }
+                            
+                            cacheEntry = pushManager.lookupFileCache(request);
+                            if (cacheEntry != null) {
+                                // resolve the source before the push budget
+                                // is reserved for it
+                                source = pushManager.createSource(stream,
+                                        cacheEntry, request, ctx.getMemoryManager());
+                                if (source == null) {
+                                    continue;
+                                }
+                            }
+                        }
+                        
+                        if (!pushBatch.tryPush(entry.getKey(), pushResource,
+                                cacheEntry, source)) {
+                            if (source != null) {
+                                source.release();
+                            }
+                            
+                            continue;
+                        }
+                    }
+                    
                     if (source != null) {
                         response.setContentLengthLong(source.remaining());
                     }
@@ -1407,9 +1480,12 @@ public class Http2BaseFilter extends HttpBaseFilter {
                                     pushStream.getId(), pushPromiseFrames);
                 }
                 
-                http2Connection.getOutputSink().writeDownStream(
-                        pushPromiseFrames);
-                
+                // all the resources might have been skipped
+                if (pushPromiseFrames != null) {
+                    http2Connection.getOutputSink().writeDownStream(
+                            pushPromiseFrames);
+                }
+
                 // release the deflater lock
                 http2Connection.getDeflaterLock().unlock();
                 isDeflaterLocked = false;
@@ -1420,6 +1496,10 @@ public class Http2BaseFilter extends HttpBaseFilter {
                     pushStream.getOutputSink().writeDownStream(
                             pair.getSecond(), ctx);
                 }
+                
+                if (pushBatch != null) {
+                    pushBatch.finish(stream.getResponse());
+                }
             } finally {
                 if (isDeflaterLocked) {
                     http2Connection.getDeflaterLock().unlock();
@@ -1432,6 +1512,14 @@ public class Http2BaseFilter extends HttpBaseFilter {
         }
     }
 
+    /**
+     * Returns the {@link PushManager} to be consulted before pushing
+     * resources, or <tt>null</tt> if every associated resource has to be pushed.
+     */
+    PushManager getPushManager() {
+        return null;
+    }
+    
     private String composeRefererOf(final HttpRequestPacket request) {
         return new StringBuilder().append(request.isSecure() ? "https" : "http")
                 .append("://")
@@ -91,6 +91,7 @@ public class Http2ClientFilter extends Http2BaseFilter {
     
     private boolean isNeverForceUpgrade;
     private boolean sendPushRequestUpstream;
+    private boolean isPriorKnowledge;
     private final HeaderValue defaultHttp2DraftUpgrade;
     private final HeaderValue connectionUpgradeHeaderValue;
     
@@ -138,6 +139,66 @@ public class Http2ClientFilter extends Http2BaseFilter {
     public void setSendPushRequestUpstream(boolean sendPushRequestUpstream) {
         this.sendPushRequestUpstream = sendPushRequestUpstream;
     }
+
+    /**
+     * @return <tt>true</tt> if HTTP/2 is started on cleartext connections
+     *         with prior knowledge, or <tt>false</tt> if HTTP/1.1 Upgrade
+     *         is used
+     * @since 2.3.23
+     */
+    public boolean isPriorKnowledge() {
+        return isPriorKnowledge;
+    }
+
+    /**
+     * If <tt>true</tt>, the client preface is sent as soon as a cleartext
+     * connection is established, so the connection speaks HTTP/2 right away
+     * without trying HTTP/1.1 Upgrade first (RFC 7540, section 3.4).
+     * The secure connections still use ALPN.
+     * 
+     * @param isPriorKnowledge <tt>true</tt> to start HTTP/2 with prior knowledge
+     * @since 2.3.23
+     */
+    public void setPriorKnowledge(final boolean isPriorKnowledge) {
+        this.isPriorKnowledge = isPriorKnowledge;
+    }
+    
+    /**
+     * Starts HTTP/2 on the cleartext {@link Connection} with prior knowledge:
+     * creates the client-side {@link Http2Connection} and sends the client
+     * preface. If the {@link Connection} already has an {@link Http2Connection}
+     * associated - it is returned as it is.
+     * 
+     * Note: Should be called before any HTTP/1.x message is sent and with
+     *       disabled OP_READ (for example during the connect phase), because
+     *       peer frames must not be processed at the time this method is running.
+     * 
+     * @param connection {@link Connection}
+     * @return {@link Http2Connection}, or <tt>null</tt> if the {@link Connection}
+     *         has already switched to HTTP/1.x
+     * @since 2.3.23
+     */
+    public Http2Connection startPriorKnowledge(final Connection connection) {
+        final Http2Connection existing = Http2Connection.get(connection);
+        if (existing != null) {
+            return existing;
+        }
+        
+        final Http2State http2State = Http2State.get(connection);
+        if (http2State != null && (http2State.isNeverHttp2()
+                || http2State.isHttpUpgradePhase())) {
+            return null;
+        }
+        
+        final Http2Connection http2Connection = createClientHttp2Connection(
+                getSupportedHttp2Drafts()[0], connection);
+
+        // we expect the server preface
+        http2Connection.getHttp2State().setDirectUpgradePhase();
+
+        http2Connection.sendPreface();
+        return http2Connection;
+    }
         
     @Override
     public NextAction handleConnect(final FilterChainContext ctx) throws IOException {
@@ -159,6 +220,11 @@ public class Http2ClientFilter extends Http2BaseFilter {
 
                 @Override
                 public void completed(final SSLEngine result) {
+                    // the handshake listeners are notified after this
+                    // CompletionHandler, so make sure the ALPN result is
+                    // applied before the connect processing is resumed
+                    AlpnSupport.getInstance().notifyClientProtocolSelected(
+                            connection);
                     ctx.resumeNext();
                 }
 
@@ -173,6 +239,10 @@ public class Http2ClientFilter extends Http2BaseFilter {
             return suspendAction;
         }
         
+        if (isPriorKnowledge) {
+            startPriorKnowledge(connection);
+        }
+        
         return ctx.getInvokeAction();
     }
     
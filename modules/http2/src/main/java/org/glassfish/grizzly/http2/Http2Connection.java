@@ -504,7 +504,9 @@ public abstract class Http2Connection {
      */
     public void goAway(final ErrorCode errorCode) {
         final Http2Frame goAwayFrame = setGoAwayLocally(errorCode);
-        if (goAwayFrame != null) {
+        // if the HTTP2 chains are not initialized yet - nothing was sent to
+        // the peer, so just switch to GOAWAY state
+        if (goAwayFrame != null && http2ConnectionChain != null) {
             outputSink.writeDownStream(goAwayFrame);
         }
     }
@@ -911,7 +913,12 @@ public abstract class Http2Connection {
             }
             
             streamsMap.put(Http2Stream.UPGRADE_STREAM_ID, stream);
-            lastLocalStreamId = Http2Stream.UPGRADE_STREAM_ID;
+            // the upgrade stream is initiated by the client
+            if (isServer) {
+                lastPeerStreamId = Http2Stream.UPGRADE_STREAM_ID;
+            } else {
+                lastLocalStreamId = Http2Stream.UPGRADE_STREAM_ID;
+            }
         }
         
         return stream;
@@ -984,6 +991,17 @@ public abstract class Http2Connection {
         }
     }
     
+    /**
+     * @return <tt>true</tt> if the session is in GOAWAY state (initiated either
+     *         locally or by peer) and no new streams could be opened,
+     *         or <tt>false</tt> otherwise
+     */
+    public boolean isGoAway() {
+        synchronized (sessionLock) {
+            return isClosed();
+        }
+    }
+
     Object getSessionLock() {
         return sessionLock;
     }
@@ -71,6 +71,8 @@ public class Http2ServerFilter extends Http2BaseFilter {
     // for which HTTP spec doesn't clearly state whether they support payload.
     // Known "undefined" methods are: GET, HEAD, DELETE
     private boolean allowPayloadForUndefinedHttpMethods;
+    
+    private PushManager pushManager;
 
     public Http2ServerFilter() {
         this(null, ALL_HTTP2_DRAFTS);
@@ -108,6 +110,25 @@ public class Http2ServerFilter extends Http2BaseFilter {
         this.allowPayloadForUndefinedHttpMethods = allowPayloadForUndefinedHttpMethods;
     }
     
+    /**
+     * Returns the {@link PushManager}, which decides whether associated
+     * resources have to be pushed, or <tt>null</tt> if every associated
+     * resource is pushed.
+     */
+    @Override
+    public PushManager getPushManager() {
+        return pushManager;
+    }
+
+    /**
+     * Sets the {@link PushManager}, which decides whether associated
+     * resources have to be pushed. <tt>null</tt> means every associated
+     * resource is pushed.
+     */
+    public void setPushManager(final PushManager pushManager) {
+        this.pushManager = pushManager;
+    }
+    
     @SuppressWarnings("unchecked")
     @Override
     public NextAction handleRead(final FilterChainContext ctx)
@@ -83,6 +83,16 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
 
     public static final String HTTP2_STREAM_ATTRIBUTE =
             HttpRequestPacket.READ_ONLY_ATTR_PREFIX + Http2Stream.class.getName();
+    
+    /**
+     * The client-side {@link HttpRequestPacket} attribute, which might hold
+     * a {@link CloseListener} to be registered on the {@link Http2Stream}
+     * opened for the request.
+     * 
+     * @since 2.3.23
+     */
+    public static final String HTTP2_STREAM_CLOSE_LISTENER_ATTRIBUTE =
+            Http2Stream.class.getName() + ".close-listener";
 
     static final int UPGRADE_STREAM_ID = 1;
     
@@ -569,6 +579,11 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
     
     private void closeStream() {
         http2Connection.deregisterStream(this);
+        
+        // both halves are terminated - the stream is closed
+        closeReasonRef.compareAndSet(null,
+                new CloseReason(CloseType.LOCALLY, null));
+        notifyCloseListeners();
     }
     
     HttpHeader getInputHttpHeader() {
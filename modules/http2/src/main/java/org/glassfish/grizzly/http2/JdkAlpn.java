@@ -0,0 +1,171 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.npn.AlpnClientNegotiator;
+import org.glassfish.grizzly.npn.AlpnServerNegotiator;
+
+/**
+ * ALPN support based on the standard {@link SSLEngine} API introduced in
+ * JDK 9 (and backported to JDK 8u252), which is also implemented by the
+ * native (OpenSSL/BoringSSL based) {@link SSLEngine} providers.
+ * The API is accessed using reflection, so the class could be loaded on
+ * older JDKs, where {@link #isAvailable()} returns <tt>false</tt>.
+ */
+final class JdkAlpn {
+    private final static Logger LOGGER = Grizzly.logger(JdkAlpn.class);
+
+    private static final Class<?> BI_FUNCTION_CLASS;
+    private static final Method SET_PROTOCOL_SELECTOR_METHOD;
+    private static final Method GET_APPLICATION_PROTOCOL_METHOD;
+    private static final Method SET_APPLICATION_PROTOCOLS_METHOD;
+    
+    static {
+        Class<?> biFunctionClass = null;
+        Method setProtocolSelectorMethod = null;
+        Method getApplicationProtocolMethod = null;
+        Method setApplicationProtocolsMethod = null;
+        
+        try {
+            biFunctionClass = Class.forName("java.util.function.BiFunction");
+            setProtocolSelectorMethod = SSLEngine.class.getMethod(
+                    "setHandshakeApplicationProtocolSelector", biFunctionClass);
+            getApplicationProtocolMethod = SSLEngine.class.getMethod(
+                    "getApplicationProtocol");
+            setApplicationProtocolsMethod = SSLParameters.class.getMethod(
+                    "setApplicationProtocols", String[].class);
+        } catch (Throwable e) {
+            LOGGER.log(Level.FINE, "Standard TLS ALPN API is not found:", e);
+            biFunctionClass = null;
+        }
+        
+        BI_FUNCTION_CLASS = biFunctionClass;
+        SET_PROTOCOL_SELECTOR_METHOD = setProtocolSelectorMethod;
+        GET_APPLICATION_PROTOCOL_METHOD = getApplicationProtocolMethod;
+        SET_APPLICATION_PROTOCOLS_METHOD = setApplicationProtocolsMethod;
+    }
+
+    private JdkAlpn() {
+    }
+    
+    static boolean isAvailable() {
+        return BI_FUNCTION_CLASS != null;
+    }
+
+    /**
+     * Registers the server-side protocol selector, which delegates to the
+     * {@link AlpnServerNegotiator}.
+     */
+    static void configureServer(final SSLEngine sslEngine,
+            final AlpnServerNegotiator negotiator) {
+        final Object selector = Proxy.newProxyInstance(
+                JdkAlpn.class.getClassLoader(),
+                new Class<?>[] {BI_FUNCTION_CLASS},
+                new InvocationHandler() {
+
+            @Override
+            public Object invoke(final Object proxy, final Method method,
+                    final Object[] args) throws Throwable {
+                if ("apply".equals(method.getName())) {
+                    @SuppressWarnings("unchecked")
+                    final List<String> clientProtocols = (List<String>) args[1];
+                    final String protocol = negotiator.selectProtocol(
+                            (SSLEngine) args[0],
+                            clientProtocols.toArray(
+                                    new String[clientProtocols.size()]));
+                    
+                    // empty string means no ALPN, null would fail the handshake
+                    return protocol != null ? protocol : "";
+                } else if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                } else if ("toString".equals(method.getName())) {
+                    return "AlpnProtocolSelector{" + negotiator + '}';
+                }
+                
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        
+        invoke(SET_PROTOCOL_SELECTOR_METHOD, sslEngine, selector);
+    }
+
+    /**
+     * Sets the protocols provided by the {@link AlpnClientNegotiator} to be
+     * offered to the server.
+     */
+    static void configureClient(final SSLEngine sslEngine,
+            final AlpnClientNegotiator negotiator) {
+        final SSLParameters sslParameters = sslEngine.getSSLParameters();
+        invoke(SET_APPLICATION_PROTOCOLS_METHOD, sslParameters,
+                (Object) negotiator.getProtocols(sslEngine));
+        sslEngine.setSSLParameters(sslParameters);
+    }
+
+    /**
+     * @return the protocol negotiated during the handshake, or <tt>null</tt>
+     *         if no protocol has been negotiated.
+     */
+    static String getApplicationProtocol(final SSLEngine sslEngine) {
+        final String protocol = (String) invoke(GET_APPLICATION_PROTOCOL_METHOD,
+                sslEngine);
+        return protocol == null || protocol.isEmpty() ? null : protocol;
+    }
+    
+    private static Object invoke(final Method method, final Object target,
+            final Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can't invoke " + method, e);
+        }
+    }
+}
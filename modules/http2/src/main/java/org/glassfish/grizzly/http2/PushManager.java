@@ -0,0 +1,627 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.attributes.AttributeStorage;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.server.filecache.FileCache;
+import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+
+/**
+ * The push manager decides whether {@link PushResource}s, associated with
+ * an {@link Http2Stream}, are worth pushing to the client.
+ * 
+ * The manager remembers the fingerprints of the resources, which have been
+ * already pushed on the HTTP/2 connection, so the same resource is never
+ * pushed twice on the same connection. It also honours the client cache
+ * signals: the cache digest cookie, which lists the fingerprints of the
+ * resources pushed to the client earlier, and an optional {@link CacheHeuristic}.
+ * Finally, the manager enforces per-connection push budget, which limits
+ * the number of pushed resources and the number of pushed bytes.
+ * 
+ * If {@link PushResource} doesn't have a {@link Source} assigned, the manager
+ * tries to serve the resource from the {@link FileCache}, if one is set.
+ */
+public class PushManager {
+    /**
+     * The default cache digest cookie name.
+     */
+    public static final String DEFAULT_CACHE_DIGEST_COOKIE_NAME = "h2-push";
+    
+    private static final Attribute<PushHistory> PUSH_HISTORY_ATTR =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            PushManager.class.getName() + ".push-history");
+    
+    private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    
+    private int maxPushesPerConnection = 64;
+    private long maxPushedBytesPerConnection = 4 * 1024 * 1024;
+    private int maxConnectionHistorySize = 256;
+    
+    private String cacheDigestCookieName = DEFAULT_CACHE_DIGEST_COOKIE_NAME;
+    private int cacheDigestCookieMaxAge = 7 * 24 * 60 * 60;
+    private int maxCacheDigestSize = 32;
+    
+    private CacheHeuristic cacheHeuristic;
+    private FileCache fileCache;
+    
+    /**
+     * The heuristic, which might be used to check if the client has the
+     * resource cached, for example based on the request headers.
+     */
+    public interface CacheHeuristic {
+        /**
+         * Returns <tt>true</tt> if the client, that sent the <tt>request</tt>,
+         * is likely to have the resource cached, so there is no need to push it.
+         * 
+         * @param request the main {@link HttpRequestPacket} the resource is associated with.
+         * @param uri the URI of the resource to be pushed.
+         * @param pushResource the {@link PushResource}.
+         */
+        boolean isCached(HttpRequestPacket request, String uri,
+                PushResource pushResource);
+    }
+
+    /**
+     * Returns the max number of resources, which could be pushed on one
+     * HTTP/2 connection. Negative value means "unlimited".
+     */
+    public int getMaxPushesPerConnection() {
+        return maxPushesPerConnection;
+    }
+
+    /**
+     * Sets the max number of resources, which could be pushed on one
+     * HTTP/2 connection. Negative value means "unlimited".
+     */
+    public void setMaxPushesPerConnection(final int maxPushesPerConnection) {
+        this.maxPushesPerConnection = maxPushesPerConnection;
+    }
+
+    /**
+     * Returns the max number of bytes, which could be pushed on one
+     * HTTP/2 connection. Negative value means "unlimited".
+     */
+    public long getMaxPushedBytesPerConnection() {
+        return maxPushedBytesPerConnection;
+    }
+
+    /**
+     * Sets the max number of bytes, which could be pushed on one
+     * HTTP/2 connection. Negative value means "unlimited".
+     */
+    public void setMaxPushedBytesPerConnection(
+            final long maxPushedBytesPerConnection) {
+        this.maxPushedBytesPerConnection = maxPushedBytesPerConnection;
+    }
+
+    /**
+     * Returns the max number of pushed resource fingerprints remembered
+     * per HTTP/2 connection.
+     */
+    public int getMaxConnectionHistorySize() {
+        return maxConnectionHistorySize;
+    }
+
+    /**
+     * Sets the max number of pushed resource fingerprints remembered
+     * per HTTP/2 connection. Once the limit is reached, the oldest
+     * fingerprints are forgotten.
+     */
+    public void setMaxConnectionHistorySize(final int maxConnectionHistorySize) {
+        if (maxConnectionHistorySize <= 0) {
+            throw new IllegalArgumentException(
+                    "maxConnectionHistorySize has to be positive");
+        }
+        
+        this.maxConnectionHistorySize = maxConnectionHistorySize;
+    }
+
+    /**
+     * Returns the name of the cookie, which carries the digest of the
+     * resources pushed to the client. <tt>null</tt> means the cache digest
+     * cookie is disabled.
+     */
+    public String getCacheDigestCookieName() {
+        return cacheDigestCookieName;
+    }
+
+    /**
+     * Sets the name of the cookie, which carries the digest of the
+     * resources pushed to the client. <tt>null</tt> disables the cache digest
+     * cookie.
+     */
+    public void setCacheDigestCookieName(final String cacheDigestCookieName) {
+        this.cacheDigestCookieName = cacheDigestCookieName;
+    }
+
+    /**
+     * Returns the cache digest cookie max-age in seconds.
+     */
+    public int getCacheDigestCookieMaxAge() {
+        return cacheDigestCookieMaxAge;
+    }
+
+    /**
+     * Sets the cache digest cookie max-age in seconds. The value should
+     * not exceed the max-age the pushed resources are cached with.
+     */
+    public void setCacheDigestCookieMaxAge(final int cacheDigestCookieMaxAge) {
+        this.cacheDigestCookieMaxAge = cacheDigestCookieMaxAge;
+    }
+
+    /**
+     * Returns the max number of fingerprints the cache digest cookie may carry.
+     */
+    public int getMaxCacheDigestSize() {
+        return maxCacheDigestSize;
+    }
+
+    /**
+     * Sets the max number of fingerprints the cache digest cookie may carry.
+     * Each fingerprint takes 9 bytes of the cookie value.
+     */
+    public void setMaxCacheDigestSize(final int maxCacheDigestSize) {
+        this.maxCacheDigestSize = maxCacheDigestSize;
+    }
+
+    /**
+     * Returns the {@link CacheHeuristic}, or <tt>null</tt> if none is set.
+     */
+    public CacheHeuristic getCacheHeuristic() {
+        return cacheHeuristic;
+    }
+
+    /**
+     * Sets the {@link CacheHeuristic}, which will be consulted in addition
+     * to the cache digest cookie.
+     */
+    public void setCacheHeuristic(final CacheHeuristic cacheHeuristic) {
+        this.cacheHeuristic = cacheHeuristic;
+    }
+
+    /**
+     * Returns the {@link FileCache} the pushed resources might be served from.
+     */
+    public FileCache getFileCache() {
+        return fileCache;
+    }
+
+    /**
+     * Sets the {@link FileCache} the pushed resources might be served from,
+     * if {@link PushResource} doesn't have a {@link Source} assigned.
+     */
+    public void setFileCache(final FileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+    
+    /**
+     * Returns the number of resources pushed on the {@link Http2Connection}
+     * so far.
+     */
+    public int getPushesCount(final Http2Connection http2Connection) {
+        return getPushesCount(http2Connection.getConnection());
+    }
+    
+    int getPushesCount(final AttributeStorage storage) {
+        final PushHistory history = PUSH_HISTORY_ATTR.get(storage);
+        if (history == null) {
+            return 0;
+        }
+        
+        synchronized (history) {
+            return history.pushesCount;
+        }
+    }
+    
+    /**
+     * Returns the number of bytes pushed on the {@link Http2Connection}
+     * so far.
+     */
+    public long getPushedBytes(final Http2Connection http2Connection) {
+        return getPushedBytes(http2Connection.getConnection());
+    }
+    
+    long getPushedBytes(final AttributeStorage storage) {
+        final PushHistory history = PUSH_HISTORY_ATTR.get(storage);
+        if (history == null) {
+            return 0;
+        }
+        
+        synchronized (history) {
+            return history.pushedBytes;
+        }
+    }
+    
+    /**
+     * Computes the fingerprint of the resource.
+     * 
+     * @param uri the resource URI.
+     * @param version the resource version (like ETag), might be <tt>null</tt>.
+     */
+    public static int fingerprint(final String uri, final String version) {
+        int hash = FNV_OFFSET_BASIS;
+        hash = fnv(hash, uri);
+        if (version != null) {
+            hash = (hash ^ '#') * FNV_PRIME;
+            hash = fnv(hash, version);
+        }
+        
+        return hash;
+    }
+    
+    /**
+     * Returns <tt>true</tt> if the client is likely to have the resource
+     * cached. The default implementation consults the {@link CacheHeuristic},
+     * if one is set.
+     * 
+     * @param request the main {@link HttpRequestPacket}.
+     * @param uri the URI of the resource to be pushed.
+     * @param pushResource the {@link PushResource}.
+     */
+    protected boolean isCachedByClient(final HttpRequestPacket request,
+            final String uri, final PushResource pushResource) {
+        final CacheHeuristic heuristic = cacheHeuristic;
+        return heuristic != null && heuristic.isCached(request, uri, pushResource);
+    }
+    
+    /**
+     * Starts the push of the resources associated with the main request.
+     */
+    PushBatch startBatch(final Http2Connection http2Connection,
+            final HttpRequestPacket request) {
+        return startBatch(http2Connection.getConnection(), request);
+    }
+    
+    PushBatch startBatch(final AttributeStorage storage,
+            final HttpRequestPacket request) {
+        PushHistory history = PUSH_HISTORY_ATTR.get(storage);
+        if (history == null) {
+            history = new PushHistory();
+            PUSH_HISTORY_ATTR.set(storage, history);
+        }
+        
+        return new PushBatch(history, request);
+    }
+    
+    /**
+     * Looks up the pushed resource in the {@link FileCache}.
+     * If the {@link FileCacheEntry} has been found - the push request's
+     * response status is set.
+     */
+    FileCacheEntry lookupFileCache(final HttpRequestPacket pushRequest) {
+        final FileCache fc = fileCache;
+        
+        return fc != null && fc.isEnabled() ? fc.get(pushRequest) : null;
+    }
+    
+    /**
+     * Creates the {@link Source} based on the {@link FileCacheEntry} and,
+     * if succeeded, prepares the push response headers.
+     * 
+     * @return the {@link Source}, or <tt>null</tt> if the entry can't be
+     *         served, in this case the push response is not changed.
+     */
+    Source createSource(final Http2Stream stream,
+            final FileCacheEntry entry, final HttpRequestPacket pushRequest,
+            final MemoryManager memoryManager) {
+        final boolean isServeCompressed = entry.canServeCompressed(pushRequest);
+        
+        final Source source;
+        final ByteBuffer bb = entry.getByteBuffer(isServeCompressed);
+        if (bb != null) {
+            final Buffer buffer = Buffers.wrap(memoryManager, bb.duplicate());
+            // the Buffer is shared with the FileCache
+            buffer.allowBufferDispose(false);
+            source = Source.factory(stream).createBufferSource(buffer);
+        } else {
+            try {
+                source = Source.factory(stream).createFileSource(
+                        entry.getFile(isServeCompressed));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        
+        final HttpResponsePacket response = pushRequest.getResponse();
+        response.setContentType(entry.contentType.prepare());
+        if (entry.Etag != null) {
+            response.addHeader(Header.ETag, entry.Etag);
+        }
+        if (entry.lastModifiedHeader != null) {
+            response.addHeader(Header.LastModified, entry.lastModifiedHeader);
+        }
+        if (isServeCompressed) {
+            response.addHeader(Header.ContentEncoding, "gzip");
+        }
+        
+        return source;
+    }
+    
+    private static int fnv(int hash, final String s) {
+        final int len = s.length();
+        for (int i = 0; i < len; i++) {
+            hash = (hash ^ s.charAt(i)) * FNV_PRIME;
+        }
+        
+        return hash;
+    }
+    
+    /**
+     * Parses the cache digest cookie value.
+     */
+    static void parseDigest(final String value, final Set<Integer> digest) {
+        final int len = value.length();
+        int start = 0;
+        while (start < len) {
+            int end = value.indexOf('.', start);
+            if (end == -1) {
+                end = len;
+            }
+            
+            if (end - start == 8) {
+                try {
+                    digest.add((int) Long.parseLong(value.substring(start, end), 16));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            
+            start = end + 1;
+        }
+    }
+    
+    /**
+     * Looks for the cookie with the given name in the Cookie header value.
+     */
+    static String findCookie(final String cookieHeader, final String name) {
+        final int nameLen = name.length();
+        int idx = 0;
+        while ((idx = cookieHeader.indexOf(name, idx)) != -1) {
+            final int valueIdx = idx + nameLen;
+            if ((idx == 0 || isCookieDelimiter(cookieHeader.charAt(idx - 1)))
+                    && valueIdx < cookieHeader.length()
+                    && cookieHeader.charAt(valueIdx) == '=') {
+                int endIdx = cookieHeader.indexOf(';', valueIdx);
+                if (endIdx == -1) {
+                    endIdx = cookieHeader.length();
+                }
+                
+                return cookieHeader.substring(valueIdx + 1, endIdx).trim();
+            }
+            
+            idx = valueIdx;
+        }
+        
+        return null;
+    }
+
+    private static boolean isCookieDelimiter(final char c) {
+        return c == ';' || c == ' ' || c == ',' || c == '\t';
+    }
+    
+    private static void appendHex(final StringBuilder sb, final int value) {
+        final String hex = Integer.toHexString(value);
+        for (int i = hex.length(); i < 8; i++) {
+            sb.append('0');
+        }
+        
+        sb.append(hex);
+    }
+    
+    /**
+     * The push state associated with an HTTP/2 connection.
+     */
+    private final class PushHistory {
+        private final LinkedHashSet<Integer> fingerprints =
+                new LinkedHashSet<Integer>();
+        
+        private int pushesCount;
+        private long pushedBytes;
+        
+        private void remember(final int fingerprint) {
+            if (fingerprints.add(fingerprint)
+                    && fingerprints.size() > maxConnectionHistorySize) {
+                final Iterator<Integer> it = fingerprints.iterator();
+                it.next();
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * The state of the resources push associated with one main request.
+     */
+    final class PushBatch {
+        private final PushHistory history;
+        private final HttpRequestPacket request;
+        private final LinkedHashSet<Integer> digest;
+        private boolean isDigestUpdated;
+
+        private PushBatch(final PushHistory history,
+                final HttpRequestPacket request) {
+            this.history = history;
+            this.request = request;
+            
+            final String cookieName = cacheDigestCookieName;
+            if (cookieName != null) {
+                digest = new LinkedHashSet<Integer>();
+                for (String cookie : request.getHeaders().values(Header.Cookie)) {
+                    final String value = findCookie(cookie, cookieName);
+                    if (value != null) {
+                        parseDigest(value, digest);
+                    }
+                }
+            } else {
+                digest = null;
+            }
+        }
+        
+        /**
+         * Checks if the resource, which is going to be served either from
+         * the {@link Source} or the {@link FileCacheEntry}, has to be pushed
+         * and, if yes, reserves the push budget for it.
+         */
+        boolean tryPush(final String uri, final PushResource pushResource,
+                final FileCacheEntry cacheEntry, final Source source) {
+            String version = pushResource.getFingerprint();
+            if (version == null && cacheEntry != null) {
+                version = cacheEntry.Etag;
+            }
+            
+            final long length;
+            if (source != null) {
+                length = source.remaining();
+            } else if (cacheEntry != null) {
+                length = cacheEntry.getFileSize(false);
+            } else {
+                length = -1;
+            }
+            
+            return tryPush(uri, fingerprint(uri, version), pushResource, length);
+        }
+        
+        /**
+         * Checks if the resource has to be pushed and, if yes, reserves
+         * the push budget for it.
+         * 
+         * @param uri the resource URI.
+         * @param fingerprint the resource fingerprint.
+         * @param pushResource the {@link PushResource}.
+         * @param length the resource length, or <tt>-1</tt> if unknown.
+         * 
+         * @return <tt>true</tt> if the resource has to be pushed, or
+         *          <tt>false</tt> otherwise.
+         */
+        boolean tryPush(final String uri, final int fingerprint,
+                final PushResource pushResource, final long length) {
+            if (digest != null && digest.contains(fingerprint)) {
+                return false;
+            }
+            
+            synchronized (history) {
+                if (history.fingerprints.contains(fingerprint)) {
+                    return false;
+                }
+                
+                if (maxPushesPerConnection >= 0
+                        && history.pushesCount >= maxPushesPerConnection) {
+                    return false;
+                }
+                
+                if (maxPushedBytesPerConnection >= 0 && length > 0
+                        && history.pushedBytes + length > maxPushedBytesPerConnection) {
+                    return false;
+                }
+            }
+            
+            if (isCachedByClient(request, uri, pushResource)) {
+                return false;
+            }
+            
+            synchronized (history) {
+                history.remember(fingerprint);
+                history.pushesCount++;
+                if (length > 0) {
+                    history.pushedBytes += length;
+                }
+            }
+            
+            if (digest != null) {
+                digest.add(fingerprint);
+                isDigestUpdated = true;
+            }
+            
+            return true;
+        }
+        
+        /**
+         * Completes the batch: adds the updated cache digest cookie to
+         * the main response, if it's not committed yet.
+         */
+        void finish(final HttpResponsePacket response) {
+            if (!isDigestUpdated || response.isCommitted()) {
+                return;
+            }
+            
+            final int maxSize = maxCacheDigestSize;
+            int skip = digest.size() - maxSize;
+            
+            final StringBuilder sb = new StringBuilder(
+                    cacheDigestCookieName.length() + 48 + 9 * Math.min(maxSize, digest.size()));
+            sb.append(cacheDigestCookieName).append('=');
+            
+            boolean isFirst = true;
+            for (Integer fingerprint : digest) {
+                // the most recent fingerprints are at the end of the set
+                if (skip-- > 0) {
+                    continue;
+                }
+                
+                if (!isFirst) {
+                    sb.append('.');
+                }
+                
+                appendHex(sb, fingerprint);
+                isFirst = false;
+            }
+            
+            sb.append("; Path=/; Max-Age=").append(cacheDigestCookieMaxAge);
+            if (request.isSecure()) {
+                sb.append("; Secure");
+            }
+            
+            response.addHeader(Header.SetCookie, sb.toString());
+        }
+    }
+}
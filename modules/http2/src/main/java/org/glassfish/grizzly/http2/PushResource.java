@@ -65,6 +65,8 @@ public final class PushResource {
 
     private Map<String, String> headers;
     
+    private String fingerprint;
+    
     public static PushResourceBuilder builder() {
         return new PushResourceBuilder();
     }
@@ -108,6 +110,16 @@ public final class PushResource {
         return headers;
     }
     
+    /**
+     * Returns the resource version fingerprint (like ETag), which is used
+     * by {@link PushManager} to distinguish different versions of the
+     * resource with the same URI.
+     * <tt>null</tt> value means the fingerprint is not set.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+    
     /**
      * PushResource builder to be used to create {@link PushResource} instance.
      */
@@ -215,6 +227,19 @@ public final class PushResource {
             return this;
         }
         
+        /**
+         * Sets the resource version fingerprint (like ETag), which is used
+         * by {@link PushManager} to distinguish different versions of the
+         * resource with the same URI.
+         * @param fingerprint the resource version fingerprint.
+         * 
+         * @return {@link PushResourceBuilder}.
+         */
+        public PushResourceBuilder fingerprint(final String fingerprint) {
+            pushResource.fingerprint = fingerprint;
+            return this;
+        }
+        
         /**
          * Returns the {@link PushResource} instance.
          */
@@ -224,6 +224,111 @@ public class FileCacheTest extends AbstractHttp2Test {
         }
     }
     
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @Test
+    public void testPushFileEntry() throws Exception {
+        final File file = createTempFile();
+        final String fileURI = "/" + file.getName();
+
+        // make sure the resource is cached as CacheType.FILE
+        httpServer.getListener("grizzly").getFileCache().setMaxEntrySize(1);
+        
+        final PushManager pushManager = new PushManager();
+        http2Addon.setPushManager(pushManager);
+        
+        final BlockingQueue<Connection> serverConnections =
+                DataStructures.getLTQInstance(Connection.class);
+        startHttpServer(new StaticHttpHandler(file.getParent()) {
+
+            @Override
+            protected void onMissingResource(final Request req, final Response res)
+                    throws Exception {
+                if ("/page".equals(req.getRequestURI())) {
+                    serverConnections.add(req.getContext().getConnection());
+                    final Http2Stream http2Stream = (Http2Stream)
+                            req.getAttribute(Http2Stream.HTTP2_STREAM_ATTRIBUTE);
+                    http2Stream.addPushResource(fileURI,
+                            PushResource.builder().build());
+                }
+                
+                res.setContentType("text/plain");
+                res.getWriter().write("Hello not cached data");
+            }
+        });
+
+        final HttpRequestPacket.Builder builder = HttpRequestPacket.builder()
+                .method(Method.GET)
+                .protocol(Protocol.HTTP_1_1)
+                .header("Host", "localhost:" + PORT);
+
+        InputStream fis = new FileInputStream(file);
+        byte[] data = new byte[(int) file.length()];
+        fis.read(data);
+        fis.close();
+        final String pattern = new String(data);
+        
+        final BlockingQueue<HttpContent> inQueue =
+                DataStructures.getLTQInstance(HttpContent.class);
+        final Connection c = getConnection("localhost", PORT, inQueue);
+        
+        // the StaticHttpHandler adds the file to the cache
+        c.write(lastHttpPacket(builder.uri(fileURI).build()));
+        final HttpContent response1 = inQueue.poll(10, TimeUnit.SECONDS);
+        assertNotNull("response1 is null", response1);
+        assertEquals(pattern, response1.getContent().toStringContent());
+        
+        c.write(lastHttpPacket(builder.uri("/page").build()));
+        
+        HttpContent pushedContent = null;
+        HttpContent pageContent = null;
+        for (int i = 0; i < 2; i++) {
+            final HttpContent content = inQueue.poll(10, TimeUnit.SECONDS);
+            assertNotNull("response is null", content);
+            if (Http2Stream.getStreamFor(content.getHttpHeader()).isPushStream()) {
+                pushedContent = content;
+            } else {
+                pageContent = content;
+            }
+        }
+        
+        assertNotNull("page is null", pageContent);
+        assertNotNull("pushed resource is null", pushedContent);
+        assertEquals(file.length(),
+                pushedContent.getHttpHeader().getContentLength());
+        assertEquals("Pushed data mismatch", pattern,
+                pushedContent.getContent().toStringContent());
+        
+        final Connection serverConnection1 =
+                serverConnections.poll(10, TimeUnit.SECONDS);
+        assertEquals(1, pushManager.getPushesCount(serverConnection1));
+        assertEquals(file.length(), pushManager.getPushedBytes(serverConnection1));
+        
+        // the cache entry stays, but its file can't be pushed anymore
+        assertTrue(file.delete());
+        
+        final BlockingQueue<HttpContent> inQueue2 =
+                DataStructures.getLTQInstance(HttpContent.class);
+        final Connection c2 = getConnection("localhost", PORT, inQueue2);
+        c2.write(lastHttpPacket(builder.uri("/warmup").build()));
+        assertNotNull("warmup response is null",
+                inQueue2.poll(10, TimeUnit.SECONDS));
+        serverConnections.clear();
+        
+        c2.write(lastHttpPacket(builder.uri("/page").build()));
+        final HttpContent pageContent2 = inQueue2.poll(10, TimeUnit.SECONDS);
+        assertNotNull("page is null", pageContent2);
+        assertFalse("No push is expected",
+                Http2Stream.getStreamFor(pageContent2.getHttpHeader()).isPushStream());
+        assertEquals("Hello not cached data",
+                pageContent2.getContent().toStringContent());
+        assertNull("No push is expected", inQueue2.poll(1, TimeUnit.SECONDS));
+        
+        final Connection serverConnection2 =
+                serverConnections.poll(10, TimeUnit.SECONDS);
+        assertEquals(0, pushManager.getPushesCount(serverConnection2));
+        assertEquals(0, pushManager.getPushedBytes(serverConnection2));
+    }
+    
 //    /**
 //     * http://java.net/jira/browse/GRIZZLY-1014
 //     * "Content-type for files cached in the file cache is incorrect"
@@ -0,0 +1,199 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2;
+
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.AttributeHolder;
+import org.glassfish.grizzly.attributes.AttributeStorage;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.Protocol;
+import org.glassfish.grizzly.http.util.Header;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link PushManager} tests.
+ */
+public class PushManagerTest {
+    
+    @Test
+    public void testConnectionDeduplication() {
+        final PushManager pushManager = new PushManager();
+        final AttributeStorage connection = new TestAttributeStorage();
+        
+        PushManager.PushBatch batch = pushManager.startBatch(connection,
+                createRequest(null));
+        final PushResource resource = PushResource.builder().build();
+        
+        assertTrue(batch.tryPush("/style.css", fingerprint("/style.css"), resource, 100));
+        assertFalse(batch.tryPush("/style.css", fingerprint("/style.css"), resource, 100));
+        
+        batch = pushManager.startBatch(connection, createRequest(null));
+        assertFalse(batch.tryPush("/style.css", fingerprint("/style.css"), resource, 100));
+        assertTrue(batch.tryPush("/app.js", fingerprint("/app.js"), resource, 100));
+        
+        // new version of the resource
+        assertTrue(batch.tryPush("/style.css",
+                PushManager.fingerprint("/style.css", "v2"), resource, 100));
+        
+        assertEquals(3, pushManager.getPushesCount(connection));
+        assertEquals(300, pushManager.getPushedBytes(connection));
+        
+        // another connection
+        batch = pushManager.startBatch(new TestAttributeStorage(),
+                createRequest(null));
+        assertTrue(batch.tryPush("/style.css", fingerprint("/style.css"), resource, 100));
+    }
+    
+    @Test
+    public void testPushBudget() {
+        final PushManager pushManager = new PushManager();
+        pushManager.setMaxPushesPerConnection(3);
+        pushManager.setMaxPushedBytesPerConnection(1000);
+        
+        final AttributeStorage connection = new TestAttributeStorage();
+        final PushManager.PushBatch batch = pushManager.startBatch(connection,
+                createRequest(null));
+        final PushResource resource = PushResource.builder().build();
+        
+        assertTrue(batch.tryPush("/1", fingerprint("/1"), resource, 600));
+        assertFalse(batch.tryPush("/2", fingerprint("/2"), resource, 600));
+        assertTrue(batch.tryPush("/3", fingerprint("/3"), resource, 400));
+        assertTrue(batch.tryPush("/4", fingerprint("/4"), resource, -1));
+        assertFalse(batch.tryPush("/5", fingerprint("/5"), resource, -1));
+    }
+    
+    @Test
+    public void testCacheDigestCookie() {
+        final PushManager pushManager = new PushManager();
+        final PushResource resource = PushResource.builder().build();
+        
+        final HttpRequestPacket request1 = createRequest(null);
+        PushManager.PushBatch batch = pushManager.startBatch(
+                new TestAttributeStorage(), request1);
+        assertTrue(batch.tryPush("/style.css", fingerprint("/style.css"), resource, 100));
+        assertTrue(batch.tryPush("/app.js", fingerprint("/app.js"), resource, 100));
+        batch.finish(request1.getResponse());
+        
+        final String setCookie = request1.getResponse().getHeader(Header.SetCookie);
+        assertNotNull(setCookie);
+        assertTrue(setCookie.startsWith(PushManager.DEFAULT_CACHE_DIGEST_COOKIE_NAME + "="));
+        
+        // the client comes back on a new connection with the digest cookie
+        final String cookie = "a=b; " + setCookie.substring(0, setCookie.indexOf(';'));
+        final HttpRequestPacket request2 = createRequest(cookie);
+        batch = pushManager.startBatch(new TestAttributeStorage(), request2);
+        assertFalse(batch.tryPush("/style.css", fingerprint("/style.css"), resource, 100));
+        assertFalse(batch.tryPush("/app.js", fingerprint("/app.js"), resource, 100));
+        batch.finish(request2.getResponse());
+        assertNull(request2.getResponse().getHeader(Header.SetCookie));
+    }
+    
+    @Test
+    public void testCacheDigestSizeLimit() {
+        final PushManager pushManager = new PushManager();
+        pushManager.setMaxCacheDigestSize(2);
+        final PushResource resource = PushResource.builder().build();
+        
+        final HttpRequestPacket request = createRequest(null);
+        final PushManager.PushBatch batch = pushManager.startBatch(
+                new TestAttributeStorage(), request);
+        assertTrue(batch.tryPush("/1", fingerprint("/1"), resource, 1));
+        assertTrue(batch.tryPush("/2", fingerprint("/2"), resource, 1));
+        assertTrue(batch.tryPush("/3", fingerprint("/3"), resource, 1));
+        batch.finish(request.getResponse());
+        
+        final String setCookie = request.getResponse().getHeader(Header.SetCookie);
+        final String value = PushManager.findCookie(setCookie,
+                PushManager.DEFAULT_CACHE_DIGEST_COOKIE_NAME);
+        assertEquals(17, value.length());
+        assertFalse(value.contains(Integer.toHexString(fingerprint("/1"))));
+    }
+    
+    @Test
+    public void testCacheHeuristic() {
+        final PushManager pushManager = new PushManager();
+        pushManager.setCacheHeuristic(new PushManager.CacheHeuristic() {
+            @Override
+            public boolean isCached(final HttpRequestPacket request,
+                    final String uri, final PushResource pushResource) {
+                return request.getHeader(Header.IfModifiedSince) != null;
+            }
+        });
+        
+        final PushResource resource = PushResource.builder().build();
+        final HttpRequestPacket request = createRequest(null);
+        request.addHeader(Header.IfModifiedSince, "Thu, 01 Jan 2015 00:00:00 GMT");
+        
+        final PushManager.PushBatch batch = pushManager.startBatch(
+                new TestAttributeStorage(), request);
+        assertFalse(batch.tryPush("/1", fingerprint("/1"), resource, 1));
+    }
+    
+    private static int fingerprint(final String uri) {
+        return PushManager.fingerprint(uri, null);
+    }
+    
+    private static HttpRequestPacket createRequest(final String cookie) {
+        final Http2Request request = Http2Request.create();
+        request.setMethod(Method.GET);
+        request.setRequestURI("/index.html");
+        request.setProtocol(Protocol.HTTP_2_0);
+        request.addHeader(Header.Host, "localhost");
+        if (cookie != null) {
+            request.addHeader(Header.Cookie, cookie);
+        }
+        
+        return request;
+    }
+    
+    private static class TestAttributeStorage implements AttributeStorage {
+        private final AttributeHolder holder =
+                Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createSafeAttributeHolder();
+        
+        @Override
+        public AttributeHolder getAttributes() {
+            return holder;
+        }
+    }
+}
@@ -41,6 +41,7 @@
 package org.glassfish.grizzly.memory.jmx;
 
 import org.glassfish.grizzly.monitoring.jmx.JmxObject;
+import org.glassfish.grizzly.memory.BufferCopyProbe;
 import org.glassfish.grizzly.memory.MemoryProbe;
 import java.util.concurrent.atomic.AtomicLong;
 import org.glassfish.gmbal.Description;
@@ -66,6 +67,7 @@ public class MemoryManager extends JmxObject {
     private final AtomicLong realAllocatedBytes = new AtomicLong();
     private final AtomicLong poolAllocatedBytes = new AtomicLong();
     private final AtomicLong poolReleasedBytes = new AtomicLong();
+    private final AtomicLong copiedBytes = new AtomicLong();
     
     public MemoryManager(org.glassfish.grizzly.memory.MemoryManager memoryManager) {
         this.memoryManager = memoryManager;
@@ -118,7 +120,13 @@ public class MemoryManager extends JmxObject {
         return poolReleasedBytes.get();
     }
 
-    private class JmxMemoryProbe implements MemoryProbe {
+    @ManagedAttribute(id="copied-bytes")
+    @Description("Total number of bytes copied between buffers on the I/O path")
+    public long getCopiedBytes() {
+        return copiedBytes.get();
+    }
+
+    private class JmxMemoryProbe implements BufferCopyProbe {
 
         @Override
         public void onBufferAllocateEvent(int size) {
@@ -137,5 +145,10 @@ public class MemoryManager extends JmxObject {
             poolReleasedBytes.addAndGet(size);
         }
 
+        @Override
+        public void onBufferCopyEvent(int size) {
+            copiedBytes.addAndGet(size);
+        }
+
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring.jmx;
+
+import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.GmbalMBean;
+import org.glassfish.gmbal.ManagedAttribute;
+import org.glassfish.gmbal.ManagedObject;
+import org.glassfish.grizzly.jmxbase.GrizzlyJmxManager;
+import org.glassfish.grizzly.monitoring.LatencyRecorder.Stage;
+
+/**
+ * JMX management object for {@link org.glassfish.grizzly.monitoring.LatencyRecorder}.
+ * Each attribute represents the latency distribution summary
+ * (count, min, mean, p50, p90, p99, p99.9, max) of one request
+ * processing stage in microseconds.
+ */
+@ManagedObject
+@Description("Grizzly request processing latency")
+public class LatencyRecorder extends JmxObject {
+
+    private final org.glassfish.grizzly.monitoring.LatencyRecorder recorder;
+
+    public LatencyRecorder(
+            final org.glassfish.grizzly.monitoring.LatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public String getJmxName() {
+        return "Latency";
+    }
+
+    @Override
+    protected void onRegister(GrizzlyJmxManager mom, GmbalMBean bean) {
+    }
+
+    @Override
+    protected void onDeregister(GrizzlyJmxManager mom) {
+    }
+
+    @ManagedAttribute(id="enabled")
+    @Description("Is latency recording enabled?")
+    public boolean isEnabled() {
+        return recorder.isEnabled();
+    }
+
+    @ManagedAttribute(id="worker-queue")
+    @Description("The time IO events spend in the worker thread pool queue")
+    public String getWorkerQueue() {
+        return summary(Stage.WORKER_QUEUE);
+    }
+
+    @ManagedAttribute(id="filter-chain-read")
+    @Description("The time spent in the FilterChain processing READ events")
+    public String getFilterChainRead() {
+        return summary(Stage.FILTER_CHAIN_READ);
+    }
+
+    @ManagedAttribute(id="write-queue")
+    @Description("The time messages spend in the async write queue")
+    public String getWriteQueue() {
+        return summary(Stage.WRITE_QUEUE);
+    }
+
+    @ManagedAttribute(id="http-first-response-byte")
+    @Description("The time from the HTTP request start till the response headers are serialized")
+    public String getHttpFirstResponseByte() {
+        return summary(Stage.HTTP_FIRST_RESPONSE_BYTE);
+    }
+
+    @ManagedAttribute(id="http-request")
+    @Description("The time from the HTTP request start till the response is completed")
+    public String getHttpRequest() {
+        return summary(Stage.HTTP_REQUEST);
+    }
+
+    private String summary(final Stage stage) {
+        return recorder.getHistogram(stage).snapshot().toString();
+    }
+}
@@ -98,6 +98,8 @@ public class NIOTransport extends JmxObject {
     private ExecutorService currentThreadPool;
     private Object threadPoolJmx;
 
+    private Object latencyRecorderJmx;
+
 
     private final Object subtreeLock = new Object();
 
@@ -125,6 +127,12 @@ public class NIOTransport extends JmxObject {
             transport.getMonitoringConfig().addProbes(probe);
             transport.getConnectionMonitoringConfig().addProbes(connectionProbe);
 
+            latencyRecorderJmx = transport.getLatencyRecorder()
+                    .createManagementObject();
+            if (latencyRecorderJmx != null) {
+                mom.register(this, latencyRecorderJmx);
+            }
+            
             rebuildSubTree();
         }
     }
@@ -135,6 +143,11 @@ public class NIOTransport extends JmxObject {
             transport.getMonitoringConfig().removeProbes(probe);
             transport.getConnectionMonitoringConfig().removeProbes(connectionProbe);
 
+            if (latencyRecorderJmx != null) {
+                mom.deregister(latencyRecorderJmx);
+                latencyRecorderJmx = null;
+            }
+            
             this.mom = null;
         }
     }
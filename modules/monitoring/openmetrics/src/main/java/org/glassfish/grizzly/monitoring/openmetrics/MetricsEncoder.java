@@ -0,0 +1,134 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring.openmetrics;
+
+import java.util.Arrays;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * The reusable byte buffer the metrics page is encoded into.
+ * Metric names and labels are pre-encoded, so the encoder deals mostly
+ * with byte arrays and numbers, which are encoded without allocations.
+ */
+final class MetricsEncoder {
+    private static final byte[] MIN_LONG =
+            Long.toString(Long.MIN_VALUE).getBytes(Charsets.ASCII_CHARSET);
+    
+    private byte[] buffer;
+    private int size;
+
+    MetricsEncoder(final int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    void reset() {
+        size = 0;
+    }
+    
+    byte[] array() {
+        return buffer;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void write(final byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+    
+    void write(final byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+    
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            write(MIN_LONG);
+            return;
+        }
+        
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        
+        final int start = size;
+        do {
+            buffer[size++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        
+        // reverse the digits
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            final byte tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+    
+    /**
+     * Writes the microseconds value as seconds with the fractional part.
+     */
+    void writeMicrosAsSeconds(final long micros) {
+        writeLong(micros / 1000000);
+        
+        ensureCapacity(7);
+        buffer[size++] = '.';
+        int fraction = (int) (Math.abs(micros) % 1000000);
+        for (int i = size + 5; i >= size; i--) {
+            buffer[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        
+        size += 6;
+    }
+    
+    private void ensureCapacity(final int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer,
+                    Math.max(buffer.length << 1, size + extra));
+        }
+    }
+}
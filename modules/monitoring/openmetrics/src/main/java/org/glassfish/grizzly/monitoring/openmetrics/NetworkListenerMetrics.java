@@ -0,0 +1,522 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring.openmetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.ConnectionProbe;
+import org.glassfish.grizzly.http.KeepAlive;
+import org.glassfish.grizzly.http.KeepAliveProbe;
+import org.glassfish.grizzly.http.server.HttpServerFilter;
+import org.glassfish.grizzly.http.server.HttpServerProbe;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.server.filecache.FileCache;
+import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
+import org.glassfish.grizzly.http.server.filecache.FileCacheProbe;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.memory.MemoryProbe;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
+import org.glassfish.grizzly.monitoring.openmetrics.OpenMetricsRegistry.LongGauge;
+import org.glassfish.grizzly.nio.NIOTransport;
+import org.glassfish.grizzly.threadpool.AbstractThreadPool;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
+import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
+
+/**
+ * The set of probes, which collect the metrics of one
+ * {@link org.glassfish.grizzly.http.server.NetworkListener}
+ * (or standalone {@link NIOTransport}) components.
+ */
+final class NetworkListenerMetrics {
+    private final OpenMetricsRegistry registry;
+    private final String[] labels;
+    
+    // the attached probes, which have to be removed on detach
+    private final List<AttachedProbe<?>> attachedProbes =
+            new ArrayList<AttachedProbe<?>>();
+
+    NetworkListenerMetrics(final OpenMetricsRegistry registry,
+            final String labelName, final String labelValue) {
+        this.registry = registry;
+        this.labels = new String[] {labelName, labelValue};
+    }
+    
+    void attachTransport(final NIOTransport transport) {
+        attach(transport.getConnectionMonitoringConfig(),
+                new ConnectionProbe[] {new TransportConnectionProbe()});
+        
+        final MemoryManager<?> memoryManager = transport.getMemoryManager();
+        if (memoryManager != null) {
+            attach(memoryManager.getMonitoringConfig(),
+                    new MemoryProbe[] {new TransportMemoryProbe()});
+        }
+        
+        final ExecutorService threadPool = transport.getWorkerThreadPool();
+        if (threadPool instanceof GrizzlyExecutorService) {
+            attach(((GrizzlyExecutorService) threadPool).getMonitoringConfig(),
+                    new ThreadPoolProbe[] {new WorkerThreadPoolProbe()});
+        }
+        
+        registry.latency(this, transport.getLatencyRecorder(), labels);
+    }
+    
+    void attachKeepAlive(final KeepAlive keepAlive) {
+        if (keepAlive != null) {
+            attach(keepAlive.getMonitoringConfig(),
+                    new KeepAliveProbe[] {new MetricsKeepAliveProbe()});
+        }
+    }
+    
+    void attachFileCache(final FileCache fileCache) {
+        if (fileCache != null) {
+            attach(fileCache.getMonitoringConfig(),
+                    new FileCacheProbe[] {new MetricsFileCacheProbe()});
+        }
+    }
+    
+    void attachHttpServerFilter(final HttpServerFilter httpServerFilter) {
+        if (httpServerFilter != null) {
+            attach(httpServerFilter.getMonitoringConfig(),
+                    new HttpServerProbe[] {new MetricsHttpServerProbe()});
+        }
+    }
+    
+    void detach() {
+        for (AttachedProbe<?> attachedProbe : attachedProbes) {
+            attachedProbe.detach();
+        }
+        
+        attachedProbes.clear();
+    }
+    
+    private <E> void attach(final MonitoringConfig<E> config, final E[] probes) {
+        config.addProbes(probes);
+        attachedProbes.add(new AttachedProbe<E>(config, probes));
+    }
+    
+    private StripedCounter counter(final String name, final String help) {
+        return registry.counter(this, name, help, labels);
+    }
+    
+    private void gauge(final String name, final String help,
+            final LongGauge gauge) {
+        registry.gauge(this, name, help, gauge, labels);
+    }
+    
+    private static final class AttachedProbe<E> {
+        private final MonitoringConfig<E> config;
+        private final E[] probes;
+
+        private AttachedProbe(final MonitoringConfig<E> config, final E[] probes) {
+            this.config = config;
+            this.probes = probes;
+        }
+        
+        private void detach() {
+            config.removeProbes(probes);
+        }
+    }
+    
+    private final class TransportConnectionProbe extends ConnectionProbe.Adapter {
+        private final StripedCounter accepted = counter(
+                "grizzly_connections_accepted", "Accepted connections.");
+        private final StripedCounter connected = counter(
+                "grizzly_connections_connected", "Client connections established.");
+        private final StripedCounter closed = counter(
+                "grizzly_connections_closed", "Closed connections.");
+        private final StripedCounter errors = counter(
+                "grizzly_connection_errors", "Connection errors.");
+        private final StripedCounter bytesRead = counter(
+                "grizzly_read_bytes", "Bytes read.");
+        private final StripedCounter bytesWritten = counter(
+                "grizzly_written_bytes", "Bytes written.");
+
+        private TransportConnectionProbe() {
+            gauge("grizzly_connections_open", "Open connections.",
+                    new LongGauge() {
+                @Override
+                public long get() {
+                    return Math.max(0, accepted.get() + connected.get()
+                            - closed.get());
+                }
+            });
+        }
+        
+        @Override
+        public void onAcceptEvent(final Connection serverConnection,
+                final Connection clientConnection) {
+            accepted.increment();
+        }
+
+        @Override
+        public void onConnectEvent(final Connection connection) {
+            connected.increment();
+        }
+
+        @Override
+        public void onCloseEvent(final Connection connection) {
+            closed.increment();
+        }
+
+        @Override
+        public void onErrorEvent(final Connection connection,
+                final Throwable error) {
+            errors.increment();
+        }
+
+        @Override
+        public void onReadEvent(final Connection connection,
+                final Buffer data, final int size) {
+            bytesRead.add(size);
+        }
+
+        @Override
+        public void onWriteEvent(final Connection connection,
+                final Buffer data, final long size) {
+            bytesWritten.add(size);
+        }
+    }
+    
+    private final class TransportMemoryProbe extends MemoryProbe.Adapter {
+        private final StripedCounter allocated = counter(
+                "grizzly_memory_allocated_bytes",
+                "Bytes allocated by the memory manager.");
+        private final StripedCounter allocatedFromPool = counter(
+                "grizzly_memory_pool_allocated_bytes",
+                "Bytes taken from the memory manager pool.");
+        private final StripedCounter releasedToPool = counter(
+                "grizzly_memory_pool_released_bytes",
+                "Bytes returned to the memory manager pool.");
+        private final StripedCounter copied = counter(
+                "grizzly_memory_copied_bytes",
+                "Bytes copied between buffers on the I/O path.");
+
+        @Override
+        public void onBufferAllocateEvent(final int size) {
+            allocated.add(size);
+        }
+
+        @Override
+        public void onBufferAllocateFromPoolEvent(final int size) {
+            allocatedFromPool.add(size);
+        }
+
+        @Override
+        public void onBufferReleaseToPoolEvent(final int size) {
+            releasedToPool.add(size);
+        }
+
+        @Override
+        public void onBufferCopyEvent(final int size) {
+            copied.add(size);
+        }
+    }
+    
+    private final class WorkerThreadPoolProbe extends ThreadPoolProbe.Adapter {
+        private final StripedCounter threadsAllocated = counter(
+                "grizzly_threadpool_threads_allocated", "Worker threads allocated.");
+        private final StripedCounter threadsReleased = counter(
+                "grizzly_threadpool_threads_released", "Worker threads released.");
+        private final StripedCounter tasksQueued = counter(
+                "grizzly_threadpool_tasks_queued", "Tasks queued.");
+        private final StripedCounter tasksDequeued = counter(
+                "grizzly_threadpool_tasks_dequeued", "Tasks dequeued.");
+        private final StripedCounter tasksCompleted = counter(
+                "grizzly_threadpool_tasks_completed", "Tasks completed.");
+        private final StripedCounter tasksCancelled = counter(
+                "grizzly_threadpool_tasks_cancelled", "Tasks cancelled.");
+        private final StripedCounter queueOverflows = counter(
+                "grizzly_threadpool_queue_overflows", "Task queue overflows.");
+
+        private WorkerThreadPoolProbe() {
+            gauge("grizzly_threadpool_threads", "Worker threads.",
+                    new LongGauge() {
+                @Override
+                public long get() {
+                    return Math.max(0, threadsAllocated.get() - threadsReleased.get());
+                }
+            });
+            gauge("grizzly_threadpool_busy_threads", "Busy worker threads.",
+                    new LongGauge() {
+                @Override
+                public long get() {
+                    return Math.max(0, tasksDequeued.get() - tasksCompleted.get()
+                            - tasksCancelled.get());
+                }
+            });
+            gauge("grizzly_threadpool_queue_size", "Queued tasks.",
+                    new LongGauge() {
+                @Override
+                public long get() {
+                    return Math.max(0, tasksQueued.get() - tasksDequeued.get());
+                }
+            });
+        }
+        
+        @Override
+        public void onThreadAllocateEvent(final AbstractThreadPool threadPool,
+                final Thread thread) {
+            threadsAllocated.increment();
+        }
+
+        @Override
+        public void onThreadReleaseEvent(final AbstractThreadPool threadPool,
+                final Thread thread) {
+            threadsReleased.increment();
+        }
+
+        @Override
+        public void onTaskQueueEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            tasksQueued.increment();
+        }
+
+        @Override
+        public void onTaskDequeueEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            tasksDequeued.increment();
+        }
+
+        @Override
+        public void onTaskCancelEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            tasksCancelled.increment();
+        }
+
+        @Override
+        public void onTaskCompleteEvent(final AbstractThreadPool threadPool,
+                final Runnable task) {
+            tasksCompleted.increment();
+        }
+
+        @Override
+        public void onTaskQueueOverflowEvent(final AbstractThreadPool threadPool) {
+            queueOverflows.increment();
+        }
+    }
+    
+    private final class MetricsKeepAliveProbe extends KeepAliveProbe.Adapter {
+        private final StripedCounter connections = counter(
+                "grizzly_keepalive_connections", "Keep-alive connections accepted.");
+        private final StripedCounter hits = counter(
+                "grizzly_keepalive_hits", "Requests served on keep-alive connections.");
+        private final StripedCounter refusals = counter(
+                "grizzly_keepalive_refusals", "Keep-alive refusals.");
+        private final StripedCounter timeouts = counter(
+                "grizzly_keepalive_timeouts", "Keep-alive idle timeouts.");
+
+        @Override
+        public void onConnectionAcceptEvent(final Connection connection) {
+            connections.increment();
+        }
+
+        @Override
+        public void onHitEvent(final Connection connection,
+                final int requestNumber) {
+            hits.increment();
+        }
+
+        @Override
+        public void onRefuseEvent(final Connection connection) {
+            refusals.increment();
+        }
+
+        @Override
+        public void onTimeoutEvent(final Connection connection) {
+            timeouts.increment();
+        }
+    }
+    
+    private final class MetricsFileCacheProbe extends FileCacheProbe.Adapter {
+        private final StripedCounter added = counter(
+                "grizzly_filecache_entries_added", "File cache entries added.");
+        private final StripedCounter removed = counter(
+                "grizzly_filecache_entries_removed", "File cache entries removed.");
+        private final StripedCounter hits = counter(
+                "grizzly_filecache_hits", "File cache hits.");
+        private final StripedCounter misses = counter(
+                "grizzly_filecache_misses", "File cache misses.");
+        private final StripedCounter errors = counter(
+                "grizzly_filecache_errors", "File cache errors.");
+
+        private MetricsFileCacheProbe() {
+            gauge("grizzly_filecache_entries", "File cache entries.",
+                    new LongGauge() {
+                @Override
+                public long get() {
+                    return Math.max(0, added.get() - removed.get());
+                }
+            });
+        }
+        
+        @Override
+        public void onEntryAddedEvent(final FileCache fileCache,
+                final FileCacheEntry entry) {
+            added.increment();
+        }
+
+        @Override
+        public void onEntryRemovedEvent(final FileCache fileCache,
+                final FileCacheEntry entry) {
+            removed.increment();
+        }
+
+        @Override
+        public void onEntryHitEvent(final FileCache fileCache,
+                final FileCacheEntry entry) {
+            hits.increment();
+        }
+
+        @Override
+        public void onEntryMissedEvent(final FileCache fileCache,
+                final String host, final String requestURI) {
+            misses.increment();
+        }
+
+        @Override
+        public void onErrorEvent(final FileCache fileCache,
+                final Throwable error) {
+            errors.increment();
+        }
+    }
+    
+    private final class MetricsHttpServerProbe extends HttpServerProbe.Adapter {
+        private final StripedCounter received = counter(
+                "grizzly_http_requests_received", "HTTP requests received.");
+        private final StripedCounter completed = counter(
+                "grizzly_http_requests_completed", "HTTP requests completed.");
+        private final StripedCounter suspended = counter(
+                "grizzly_http_requests_suspended", "HTTP requests suspended.");
+        private final StripedCounter timeouts = counter(
+                "grizzly_http_requests_timeouts", "Suspended HTTP requests timed out.");
+        private final StripedCounter cancelled = counter(
+                "grizzly_http_requests_cancelled", "HTTP requests cancelled.");
+        private final StripedCounter rejected = counter(
+                "grizzly_http_requests_rejected",
+                "HTTP requests rejected by the admission controller.");
+        
+        private volatile int admissionLimit = -1;
+        
+        // the responses counters per status class 1xx..5xx
+        private final StripedCounter[] responses = new StripedCounter[5];
+
+        private MetricsHttpServerProbe() {
+            for (int i = 0; i < responses.length; i++) {
+                final String[] statusLabels = new String[labels.length + 2];
+                System.arraycopy(labels, 0, statusLabels, 0, labels.length);
+                statusLabels[labels.length] = "code";
+                statusLabels[labels.length + 1] = (i + 1) + "xx";
+                
+                responses[i] = registry.counter(NetworkListenerMetrics.this,
+                        "grizzly_http_responses", "HTTP responses by status class.",
+                        statusLabels);
+            }
+            
+            gauge("grizzly_http_requests_in_progress", "HTTP requests in progress.",
+                    new LongGauge() {
+                @Override
+                public long get() {
+                    return Math.max(0, received.get() - completed.get());
+                }
+            });
+            
+            gauge("grizzly_http_admission_limit",
+                    "Admission controller concurrency limit.",
+                    new LongGauge() {
+                @Override
+                public long get() {
+                    return admissionLimit;
+                }
+            });
+        }
+        
+        @Override
+        public void onRequestReceiveEvent(final HttpServerFilter filter,
+                final Connection connection, final Request request) {
+            received.increment();
+        }
+
+        @Override
+        public void onRequestCompleteEvent(final HttpServerFilter filter,
+                final Connection connection, final Response response) {
+            completed.increment();
+            
+            final int statusClass = response.getStatus() / 100;
+            if (statusClass >= 1 && statusClass <= responses.length) {
+                responses[statusClass - 1].increment();
+            }
+        }
+
+        @Override
+        public void onRequestSuspendEvent(final HttpServerFilter filter,
+                final Connection connection, final Request request) {
+            suspended.increment();
+        }
+
+        @Override
+        public void onRequestTimeoutEvent(final HttpServerFilter filter,
+                final Connection connection, final Request request) {
+            timeouts.increment();
+        }
+
+        @Override
+        public void onRequestCancelEvent(final HttpServerFilter filter,
+                final Connection connection, final Request request) {
+            cancelled.increment();
+        }
+
+        @Override
+        public void onRequestRejectEvent(final HttpServerFilter filter,
+                final Connection connection, final Request request) {
+            rejected.increment();
+        }
+
+        @Override
+        public void onAdmissionLimitChangeEvent(final HttpServerFilter filter,
+                final int limit) {
+            admissionLimit = limit;
+        }
+    }
+}
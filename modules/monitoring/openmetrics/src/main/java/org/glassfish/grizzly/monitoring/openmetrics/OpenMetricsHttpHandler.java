@@ -0,0 +1,129 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring.openmetrics;
+
+import org.glassfish.grizzly.http.Method;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+/**
+ * The {@link HttpHandler}, which exposes the {@link OpenMetricsRegistry}
+ * metrics either in OpenMetrics or Prometheus text format, depending on
+ * the request's <tt>Accept</tt> header.
+ * 
+ * <pre>
+ * final OpenMetricsRegistry registry = new OpenMetricsRegistry();
+ * httpServer.getServerConfiguration().addHttpHandler(
+ *         new OpenMetricsHttpHandler(registry), "/metrics");
+ * httpServer.start();
+ * registry.register(httpServer);
+ * </pre>
+ */
+public class OpenMetricsHttpHandler extends HttpHandler {
+    public static final String OPENMETRICS_MEDIA_TYPE =
+            "application/openmetrics-text";
+    
+    private static final String OPENMETRICS_CONTENT_TYPE =
+            OPENMETRICS_MEDIA_TYPE + "; version=1.0.0; charset=utf-8";
+    private static final String PROMETHEUS_CONTENT_TYPE =
+            "text/plain; version=0.0.4; charset=utf-8";
+    
+    private static final int INITIAL_ENCODER_SIZE = 8192;
+    
+    private final OpenMetricsRegistry registry;
+    
+    private final ThreadLocal<MetricsEncoder> encoders =
+            new ThreadLocal<MetricsEncoder>() {
+        @Override
+        protected MetricsEncoder initialValue() {
+            return new MetricsEncoder(INITIAL_ENCODER_SIZE);
+        }
+    };
+
+    public OpenMetricsHttpHandler(final OpenMetricsRegistry registry) {
+        super("OpenMetricsHttpHandler");
+        
+        if (registry == null) {
+            throw new IllegalArgumentException("registry can't be null");
+        }
+        
+        this.registry = registry;
+    }
+
+    /**
+     * @return the {@link OpenMetricsRegistry} exposed by this handler.
+     */
+    public OpenMetricsRegistry getRegistry() {
+        return registry;
+    }
+    
+    @Override
+    public void service(final Request request, final Response response)
+            throws Exception {
+        final Method method = request.getMethod();
+        if (method != Method.GET && method != Method.HEAD) {
+            response.setStatus(HttpStatus.METHOD_NOT_ALLOWED_405);
+            response.setHeader(Header.Allow, "GET, HEAD");
+            return;
+        }
+        
+        final String accept = request.getHeader(Header.Accept);
+        final boolean isOpenMetrics = accept != null
+                && accept.contains(OPENMETRICS_MEDIA_TYPE);
+        
+        final MetricsEncoder encoder = encoders.get();
+        encoder.reset();
+        registry.encode(encoder, isOpenMetrics);
+        
+        response.setContentType(isOpenMetrics
+                ? OPENMETRICS_CONTENT_TYPE
+                : PROMETHEUS_CONTENT_TYPE);
+        response.setContentLength(encoder.size());
+        
+        if (method == Method.GET) {
+            // OutputBuffer copies the array, so it's safe to reuse the encoder
+            response.getOutputStream().write(encoder.array(), 0, encoder.size());
+        }
+    }
+}
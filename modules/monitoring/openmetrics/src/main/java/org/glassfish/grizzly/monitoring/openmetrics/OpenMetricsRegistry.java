@@ -0,0 +1,646 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring.openmetrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.glassfish.grizzly.compression.zip.ZLibPool;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.monitoring.LatencyHistogram;
+import org.glassfish.grizzly.monitoring.LatencyRecorder;
+import org.glassfish.grizzly.nio.NIOTransport;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * The registry of metrics, which could be exposed using
+ * the Prometheus text or OpenMetrics format by {@link OpenMetricsHttpHandler}.
+ * 
+ * Grizzly components are registered using {@link #register(NetworkListener)},
+ * {@link #register(HttpServer)}, {@link #register(NIOTransport, String)}
+ * or {@link #register(ZLibPool, String)};
+ * the registry attaches the probes to the components' monitoring configs
+ * and aggregates the probe events using {@link StripedCounter}s.
+ * Custom metrics could be registered using
+ * {@link #counter(Object, String, String, String...)} and
+ * {@link #gauge(Object, String, String, LongGauge, String...)}.
+ * 
+ * The metric names and labels are pre-encoded at registration time,
+ * so the page encoding doesn't create garbage per metric.
+ */
+public class OpenMetricsRegistry {
+    private static final Pattern NAME_PATTERN =
+            Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    
+    private static final byte[] EOF = ascii("# EOF\n");
+    
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    
+    /**
+     * The gauge value source.
+     */
+    public interface LongGauge {
+        /**
+         * @return the current gauge value.
+         */
+        long get();
+    }
+    
+    enum Type {
+        COUNTER, GAUGE, SUMMARY;
+        
+        private final String typeName = name().toLowerCase();
+    }
+    
+    private final Object sync = new Object();
+    
+    // the families map is guarded by sync, the array is used by the encoder
+    private final Map<String, MetricFamily> familiesMap =
+            new LinkedHashMap<String, MetricFamily>();
+    private volatile MetricFamily[] families = new MetricFamily[0];
+    
+    private final Map<Object, NetworkListenerMetrics> registeredComponents =
+            new HashMap<Object, NetworkListenerMetrics>();
+    
+    /**
+     * Registers the metrics of all the {@link HttpServer}'s
+     * {@link NetworkListener}s. The {@link HttpServer} has to be started.
+     * 
+     * @param httpServer {@link HttpServer}
+     */
+    public void register(final HttpServer httpServer) {
+        for (NetworkListener listener : httpServer.getListeners()) {
+            register(listener);
+        }
+    }
+    
+    /**
+     * Unregisters the metrics of all the {@link HttpServer}'s
+     * {@link NetworkListener}s.
+     * 
+     * @param httpServer {@link HttpServer}
+     */
+    public void unregister(final HttpServer httpServer) {
+        for (NetworkListener listener : httpServer.getListeners()) {
+            unregister(listener);
+        }
+    }
+    
+    /**
+     * Registers the metrics of the {@link NetworkListener} components:
+     * transport, memory manager, worker thread pool, keep-alive, file cache
+     * and HTTP server filter. The metrics are labeled with the listener name.
+     * The {@link NetworkListener} has to be started.
+     * 
+     * Please note, the connection probes are propagated to the connections
+     * created after the registration, so the server connections bound before
+     * don't report the accept events.
+     * 
+     * @param listener {@link NetworkListener}
+     */
+    public void register(final NetworkListener listener) {
+        if (!listener.isStarted()) {
+            throw new IllegalStateException("NetworkListener "
+                    + listener.getName() + " has to be started");
+        }
+        
+        synchronized (sync) {
+            if (registeredComponents.containsKey(listener)) {
+                return;
+            }
+            
+            final NetworkListenerMetrics metrics =
+                    new NetworkListenerMetrics(this, "listener", listener.getName());
+            metrics.attachTransport(listener.getTransport());
+            metrics.attachKeepAlive(listener.getKeepAlive());
+            metrics.attachFileCache(listener.getFileCache());
+            metrics.attachHttpServerFilter(listener.getHttpServerFilter());
+            
+            registeredComponents.put(listener, metrics);
+        }
+    }
+
+    /**
+     * Unregisters the {@link NetworkListener} metrics.
+     * 
+     * @param listener {@link NetworkListener}
+     */
+    public void unregister(final NetworkListener listener) {
+        unregisterComponent(listener);
+    }
+    
+    /**
+     * Registers the metrics of the {@link NIOTransport}, its memory manager
+     * and worker thread pool. The metrics are labeled with the given name.
+     * Registering the transport before binding makes it possible to monitor
+     * the accepted connections as well.
+     * 
+     * @param transport {@link NIOTransport}
+     * @param name the value of the "transport" label.
+     */
+    public void register(final NIOTransport transport, final String name) {
+        synchronized (sync) {
+            if (registeredComponents.containsKey(transport)) {
+                return;
+            }
+            
+            final NetworkListenerMetrics metrics =
+                    new NetworkListenerMetrics(this, "transport", name);
+            metrics.attachTransport(transport);
+            
+            registeredComponents.put(transport, metrics);
+        }
+    }
+    
+    /**
+     * Unregisters the {@link NIOTransport} metrics.
+     * 
+     * @param transport {@link NIOTransport}
+     */
+    public void unregister(final NIOTransport transport) {
+        unregisterComponent(transport);
+    }
+    
+    /**
+     * Registers the {@link ZLibPool} metrics: the pool hits and misses,
+     * the number of pooled and in-use deflaters/inflaters and the estimated
+     * native memory footprint. The metrics are labeled with the given name.
+     * 
+     * @param pool {@link ZLibPool}, for example {@link ZLibPool#getDefault()}.
+     * @param name the value of the "pool" label.
+     * 
+     * @since 2.3.23
+     */
+    public void register(final ZLibPool pool, final String name) {
+        final String[] labels = {"pool", name};
+        
+        counter(pool, "grizzly_zlib_pool_hits",
+                "Deflaters/inflaters taken from the pool.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getHitCount();
+            }
+        }, labels);
+        counter(pool, "grizzly_zlib_pool_misses",
+                "Deflaters/inflaters created because the pool was empty.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getMissCount();
+            }
+        }, labels);
+        counter(pool, "grizzly_zlib_pool_discarded",
+                "Deflaters/inflaters released because the pool was full.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getDiscardedCount();
+            }
+        }, labels);
+        gauge(pool, "grizzly_zlib_pooled_deflaters", "Idle pooled deflaters.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getPooledDeflatersCount();
+            }
+        }, labels);
+        gauge(pool, "grizzly_zlib_pooled_inflaters", "Idle pooled inflaters.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getPooledInflatersCount();
+            }
+        }, labels);
+        gauge(pool, "grizzly_zlib_deflaters_in_use", "Deflaters in use.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getDeflatersInUseCount();
+            }
+        }, labels);
+        gauge(pool, "grizzly_zlib_inflaters_in_use", "Inflaters in use.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getInflatersInUseCount();
+            }
+        }, labels);
+        gauge(pool, "grizzly_zlib_native_memory_bytes",
+                "Estimated zlib native memory held by pooled and in-use deflaters/inflaters.",
+                new LongGauge() {
+            @Override
+            public long get() {
+                return pool.getEstimatedNativeMemory();
+            }
+        }, labels);
+    }
+    
+    /**
+     * Unregisters the {@link ZLibPool} metrics.
+     * 
+     * @param pool {@link ZLibPool}
+     * 
+     * @since 2.3.23
+     */
+    public void unregister(final ZLibPool pool) {
+        unregister((Object) pool);
+    }
+    
+    /**
+     * Registers the counter.
+     * 
+     * @param owner the owner, which could be used to {@link #unregister(Object)} the counter.
+     * @param name the metric name without the "_total" suffix.
+     * @param help the metric description.
+     * @param labels the label name/value pairs.
+     * 
+     * @return the {@link StripedCounter} to be updated.
+     */
+    public StripedCounter counter(final Object owner, final String name,
+            final String help, final String... labels) {
+        final StripedCounter counter = new StripedCounter();
+        addSample(owner, name, Type.COUNTER, help,
+                new LongSample(owner, prefix(name + "_total", labels, null, null)) {
+            @Override
+            long value() {
+                return counter.get();
+            }
+        });
+        
+        return counter;
+    }
+    
+    /**
+     * Registers the counter, which value is provided by the {@link LongGauge}.
+     * Could be used to expose the counters maintained by the component itself.
+     * 
+     * @param owner the owner, which could be used to {@link #unregister(Object)} the counter.
+     * @param name the metric name without the "_total" suffix.
+     * @param help the metric description.
+     * @param source the {@link LongGauge}, which provides the monotonic counter value.
+     * @param labels the label name/value pairs.
+     * 
+     * @since 2.3.23
+     */
+    public void counter(final Object owner, final String name,
+            final String help, final LongGauge source, final String... labels) {
+        addSample(owner, name, Type.COUNTER, help,
+                new LongSample(owner, prefix(name + "_total", labels, null, null)) {
+            @Override
+            long value() {
+                return source.get();
+            }
+        });
+    }
+    
+    /**
+     * Registers the gauge.
+     * 
+     * @param owner the owner, which could be used to {@link #unregister(Object)} the gauge.
+     * @param name the metric name.
+     * @param help the metric description.
+     * @param gauge the {@link LongGauge}, which provides the value.
+     * @param labels the label name/value pairs.
+     */
+    public void gauge(final Object owner, final String name, final String help,
+            final LongGauge gauge, final String... labels) {
+        addSample(owner, name, Type.GAUGE, help,
+                new LongSample(owner, prefix(name, labels, null, null)) {
+            @Override
+            long value() {
+                return gauge.get();
+            }
+        });
+    }
+    
+    /**
+     * Registers the {@link LatencyRecorder} stages as "grizzly_latency_seconds"
+     * summary, labeled with the "stage" label.
+     * 
+     * @param owner the owner, which could be used to {@link #unregister(Object)} the summary.
+     * @param recorder {@link LatencyRecorder}
+     * @param labels the label name/value pairs.
+     */
+    public void latency(final Object owner, final LatencyRecorder recorder,
+            final String... labels) {
+        for (LatencyRecorder.Stage stage : LatencyRecorder.Stage.values()) {
+            final LatencyHistogram histogram = recorder.getHistogram(stage);
+            final String[] stageLabels = Arrays.copyOf(labels, labels.length + 2);
+            stageLabels[labels.length] = "stage";
+            stageLabels[labels.length + 1] = histogram.getName();
+            
+            addSample(owner, "grizzly_latency_seconds", Type.SUMMARY,
+                    "Request processing stages latency.",
+                    new SummarySample(owner, "grizzly_latency_seconds",
+                    stageLabels, recorder, histogram));
+        }
+    }
+    
+    /**
+     * Unregisters all the metrics registered with the given owner.
+     * 
+     * @param owner the metrics owner.
+     */
+    public void unregister(final Object owner) {
+        synchronized (sync) {
+            for (MetricFamily family : familiesMap.values()) {
+                family.removeSamples(owner);
+            }
+        }
+    }
+    
+    /**
+     * Encodes the metrics page.
+     */
+    void encode(final MetricsEncoder encoder, final boolean isOpenMetrics) {
+        final MetricFamily[] familiesLocal = families;
+        for (MetricFamily family : familiesLocal) {
+            family.encode(encoder, isOpenMetrics);
+        }
+        
+        if (isOpenMetrics) {
+            encoder.write(EOF);
+        }
+    }
+    
+    private void unregisterComponent(final Object component) {
+        final NetworkListenerMetrics metrics;
+        synchronized (sync) {
+            metrics = registeredComponents.remove(component);
+        }
+        
+        if (metrics != null) {
+            metrics.detach();
+            unregister(metrics);
+        }
+    }
+    
+    private void addSample(final Object owner, final String name,
+            final Type type, final String help, final Sample sample) {
+        if (!NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        
+        synchronized (sync) {
+            MetricFamily family = familiesMap.get(name);
+            if (family == null) {
+                family = new MetricFamily(name, type, help);
+                familiesMap.put(name, family);
+                families = familiesMap.values().toArray(
+                        new MetricFamily[familiesMap.size()]);
+            } else if (family.type != type) {
+                throw new IllegalArgumentException("Metric " + name
+                        + " is already registered with type " + family.type);
+            }
+            
+            family.addSample(sample);
+        }
+    }
+    
+    private static byte[] prefix(final String name, final String[] labels,
+            final String extraLabelName, final String extraLabelValue) {
+        if ((labels.length & 1) != 0) {
+            throw new IllegalArgumentException(
+                    "Labels have to be passed as name/value pairs");
+        }
+        
+        final StringBuilder sb = new StringBuilder(64);
+        sb.append(name);
+        
+        if (labels.length > 0 || extraLabelName != null) {
+            sb.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                
+                appendLabel(sb, labels[i], labels[i + 1]);
+            }
+            
+            if (extraLabelName != null) {
+                if (labels.length > 0) {
+                    sb.append(',');
+                }
+                
+                appendLabel(sb, extraLabelName, extraLabelValue);
+            }
+            
+            sb.append('}');
+        }
+        
+        sb.append(' ');
+        
+        return sb.toString().getBytes(Charsets.UTF8_CHARSET);
+    }
+    
+    private static void appendLabel(final StringBuilder sb, final String name,
+            final String value) {
+        if (!NAME_PATTERN.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid label name: " + name);
+        }
+        
+        sb.append(name).append("=\"");
+        
+        final int len = value.length();
+        for (int i = 0; i < len; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"': sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                default: sb.append(c);
+            }
+        }
+        
+        sb.append('"');
+    }
+    
+    private static String escapeHelp(final String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+    
+    private static byte[] ascii(final String s) {
+        return s.getBytes(Charsets.ASCII_CHARSET);
+    }
+    
+    /**
+     * The metric family: the set of samples with the same name and type.
+     */
+    private static final class MetricFamily {
+        private final Type type;
+        private final byte[] prometheusHeader;
+        private final byte[] openMetricsHeader;
+        
+        // copy-on-write, modified under the registry sync
+        private volatile Sample[] samples = new Sample[0];
+
+        private MetricFamily(final String name, final Type type,
+                final String help) {
+            this.type = type;
+            
+            final String escapedHelp = escapeHelp(help);
+            final String prometheusName = type == Type.COUNTER
+                    ? name + "_total"
+                    : name;
+            
+            prometheusHeader = ("# HELP " + prometheusName + ' ' + escapedHelp
+                    + "\n# TYPE " + prometheusName + ' ' + type.typeName + '\n')
+                    .getBytes(Charsets.UTF8_CHARSET);
+            openMetricsHeader = ("# TYPE " + name + ' ' + type.typeName
+                    + "\n# HELP " + name + ' ' + escapedHelp + '\n')
+                    .getBytes(Charsets.UTF8_CHARSET);
+        }
+        
+        private void addSample(final Sample sample) {
+            final Sample[] newSamples = Arrays.copyOf(samples, samples.length + 1);
+            newSamples[samples.length] = sample;
+            samples = newSamples;
+        }
+        
+        private void removeSamples(final Object owner) {
+            final Sample[] oldSamples = samples;
+            final Sample[] newSamples = new Sample[oldSamples.length];
+            int count = 0;
+            for (Sample sample : oldSamples) {
+                if (sample.owner != owner) {
+                    newSamples[count++] = sample;
+                }
+            }
+            
+            if (count != oldSamples.length) {
+                samples = Arrays.copyOf(newSamples, count);
+            }
+        }
+
+        private void encode(final MetricsEncoder encoder,
+                final boolean isOpenMetrics) {
+            final Sample[] samplesLocal = samples;
+            if (samplesLocal.length == 0) {
+                return;
+            }
+            
+            encoder.write(isOpenMetrics ? openMetricsHeader : prometheusHeader);
+            for (Sample sample : samplesLocal) {
+                sample.encode(encoder);
+            }
+        }
+    }
+    
+    private abstract static class Sample {
+        final Object owner;
+
+        Sample(final Object owner) {
+            this.owner = owner;
+        }
+        
+        abstract void encode(MetricsEncoder encoder);
+    }
+    
+    private abstract static class LongSample extends Sample {
+        private final byte[] prefix;
+
+        LongSample(final Object owner, final byte[] prefix) {
+            super(owner);
+            this.prefix = prefix;
+        }
+
+        abstract long value();
+        
+        @Override
+        void encode(final MetricsEncoder encoder) {
+            encoder.write(prefix);
+            encoder.writeLong(value());
+            encoder.write((byte) '\n');
+        }
+    }
+    
+    private static final class SummarySample extends Sample {
+        private final LatencyRecorder recorder;
+        private final LatencyHistogram histogram;
+        private final byte[][] quantilePrefixes;
+        private final byte[] sumPrefix;
+        private final byte[] countPrefix;
+        
+        SummarySample(final Object owner, final String name,
+                final String[] labels, final LatencyRecorder recorder,
+                final LatencyHistogram histogram) {
+            super(owner);
+            this.recorder = recorder;
+            this.histogram = histogram;
+            
+            quantilePrefixes = new byte[QUANTILES.length][];
+            for (int i = 0; i < QUANTILES.length; i++) {
+                quantilePrefixes[i] = prefix(name, labels, "quantile", QUANTILES[i]);
+            }
+            
+            sumPrefix = prefix(name + "_sum", labels, null, null);
+            countPrefix = prefix(name + "_count", labels, null, null);
+        }
+
+        @Override
+        void encode(final MetricsEncoder encoder) {
+            if (!recorder.isEnabled()) {
+                return;
+            }
+            
+            final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            for (int i = 0; i < quantilePrefixes.length; i++) {
+                encoder.write(quantilePrefixes[i]);
+                encoder.writeMicrosAsSeconds(
+                        snapshot.getValueAtPercentile(PERCENTILES[i]));
+                encoder.write((byte) '\n');
+            }
+            
+            encoder.write(sumPrefix);
+            encoder.writeMicrosAsSeconds(snapshot.getSum());
+            encoder.write((byte) '\n');
+            
+            encoder.write(countPrefix);
+            encoder.writeLong(snapshot.getCount());
+            encoder.write((byte) '\n');
+        }
+    }
+}
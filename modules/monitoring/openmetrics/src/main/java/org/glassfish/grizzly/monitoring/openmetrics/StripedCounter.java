@@ -0,0 +1,106 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring.openmetrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low-contention counter, which spreads the updates across several
+ * cache-line padded cells. The cell is chosen based on the updating thread,
+ * so different threads rarely contend on the same cell.
+ * The current value is calculated by summing up all the cells.
+ */
+public final class StripedCounter {
+    private static final int STRIPES;
+    
+    // the number of longs, which occupy one cache line
+    private static final int PADDING = 8;
+    
+    static {
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < cpus * 2 && stripes < 64) {
+            stripes <<= 1;
+        }
+        
+        STRIPES = stripes;
+    }
+    
+    private final AtomicLongArray cells =
+            new AtomicLongArray((STRIPES + 1) * PADDING);
+    
+    /**
+     * Increments the counter.
+     */
+    public void increment() {
+        add(1);
+    }
+    
+    /**
+     * Adds the value to the counter.
+     * 
+     * @param delta the value to add.
+     */
+    public void add(final long delta) {
+        cells.getAndAdd(cellIndex(), delta);
+    }
+    
+    /**
+     * @return the current counter value.
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 1; i <= STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        
+        return sum;
+    }
+    
+    private static int cellIndex() {
+        final long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        h ^= h >>> 16;
+        
+        // the first cell line is skipped to avoid false sharing with the array header
+        return ((h & (STRIPES - 1)) + 1) * PADDING;
+    }
+}
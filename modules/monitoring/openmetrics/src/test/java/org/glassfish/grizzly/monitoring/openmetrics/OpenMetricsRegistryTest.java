@@ -0,0 +1,162 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.monitoring.openmetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link OpenMetricsRegistry} encoding tests.
+ */
+public class OpenMetricsRegistryTest {
+    
+    @Test
+    public void testPrometheusFormat() {
+        final OpenMetricsRegistry registry = new OpenMetricsRegistry();
+        final Object owner = new Object();
+        
+        final StripedCounter counter = registry.counter(owner,
+                "test_requests", "Test requests.", "listener", "l1");
+        counter.increment();
+        counter.add(41);
+        
+        final AtomicLong gaugeValue = new AtomicLong(-7);
+        registry.gauge(owner, "test_open", "Open things.",
+                new OpenMetricsRegistry.LongGauge() {
+            @Override
+            public long get() {
+                return gaugeValue.get();
+            }
+        });
+        
+        assertEquals("# HELP test_requests_total Test requests.\n"
+                + "# TYPE test_requests_total counter\n"
+                + "test_requests_total{listener=\"l1\"} 42\n"
+                + "# HELP test_open Open things.\n"
+                + "# TYPE test_open gauge\n"
+                + "test_open -7\n",
+                encode(registry, false));
+    }
+
+    @Test
+    public void testOpenMetricsFormat() {
+        final OpenMetricsRegistry registry = new OpenMetricsRegistry();
+        final Object owner = new Object();
+        
+        registry.counter(owner, "test_requests", "Test requests.",
+                "listener", "l1").increment();
+        registry.counter(owner, "test_requests", "Test requests.",
+                "listener", "l2").add(Long.MAX_VALUE);
+        
+        assertEquals("# TYPE test_requests counter\n"
+                + "# HELP test_requests Test requests.\n"
+                + "test_requests_total{listener=\"l1\"} 1\n"
+                + "test_requests_total{listener=\"l2\"} " + Long.MAX_VALUE + "\n"
+                + "# EOF\n",
+                encode(registry, true));
+    }
+    
+    @Test
+    public void testLabelEscaping() {
+        final OpenMetricsRegistry registry = new OpenMetricsRegistry();
+        registry.counter(this, "test_escaped", "Multi\nline \\ help.",
+                "a", "quote\"", "b", "back\\slash", "c", "new\nline");
+        
+        assertEquals("# HELP test_escaped_total Multi\\nline \\\\ help.\n"
+                + "# TYPE test_escaped_total counter\n"
+                + "test_escaped_total{a=\"quote\\\"\",b=\"back\\\\slash\",c=\"new\\nline\"} 0\n",
+                encode(registry, false));
+    }
+    
+    @Test
+    public void testInvalidNames() {
+        final OpenMetricsRegistry registry = new OpenMetricsRegistry();
+        try {
+            registry.counter(this, "1invalid", "help");
+            fail("Invalid metric name was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        
+        try {
+            registry.counter(this, "valid", "help", "in-valid", "value");
+            fail("Invalid label name was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        try {
+            registry.counter(this, "valid", "help", "odd");
+            fail("Odd number of label arguments was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+    
+    @Test
+    public void testUnregister() {
+        final OpenMetricsRegistry registry = new OpenMetricsRegistry();
+        final Object owner1 = new Object();
+        final Object owner2 = new Object();
+        
+        registry.counter(owner1, "test_counter", "help", "owner", "1").increment();
+        registry.counter(owner2, "test_counter", "help", "owner", "2").increment();
+        
+        registry.unregister(owner1);
+        
+        assertEquals("# HELP test_counter_total help\n"
+                + "# TYPE test_counter_total counter\n"
+                + "test_counter_total{owner=\"2\"} 1\n",
+                encode(registry, false));
+        
+        registry.unregister(owner2);
+        assertEquals("# EOF\n", encode(registry, true));
+    }
+    
+    private static String encode(final OpenMetricsRegistry registry,
+            final boolean isOpenMetrics) {
+        // small initial size to check the buffer growth
+        final MetricsEncoder encoder = new MetricsEncoder(16);
+        registry.encode(encoder, isOpenMetrics);
+        return new String(encoder.array(), 0, encoder.size(),
+                Charsets.UTF8_CHARSET);
+    }
+}
@@ -42,8 +42,10 @@ package org.glassfish.grizzly.portunif;
 import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Context;
@@ -53,6 +55,7 @@ import org.glassfish.grizzly.IOEventLifeCycleListener;
 import org.glassfish.grizzly.ProcessorExecutor;
 import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.DefaultFilterChain;
 import org.glassfish.grizzly.filterchain.Filter;
 import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.filterchain.FilterChainBuilder;
@@ -60,6 +63,7 @@ import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.FilterChainContext.CopyListener;
 import org.glassfish.grizzly.filterchain.FilterChainEvent;
 import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.monitoring.LatencyHistogram;
 import org.glassfish.grizzly.utils.ArraySet;
 
 /**
@@ -83,6 +87,14 @@ public class PUFilter extends BaseFilter {
 
     private final boolean isCloseUnrecognizedConnection;
     
+    private volatile boolean isRewireStickyProtocol;
+    
+    private volatile ProtocolSignatureTable signatureTable;
+    
+    private final LatencyHistogram detectionLatency =
+            new LatencyHistogram("protocol-detection");
+    private final AtomicLong unrecognizedConnectionsCount = new AtomicLong();
+    
     public PUFilter() {
         this(true);
     }
@@ -193,6 +205,67 @@ public class PUFilter extends BaseFilter {
     public boolean isCloseUnrecognizedConnection() {
         return isCloseUnrecognizedConnection;
     }
+
+    /**
+     * Returns <tt>true</tt> if, once a sticky protocol is found, the
+     * {@link Connection}'s {@link org.glassfish.grizzly.Processor} is switched
+     * to the {@link FilterChain}, which consists of the {@link Filter}s
+     * preceding <tt>PUFilter</tt> followed by the protocol {@link Filter}s,
+     * so the next {@link Connection} reads bypass <tt>PUFilter</tt>.
+     * 
+     * @since 2.3.23
+     */
+    public boolean isRewireStickyProtocol() {
+        return isRewireStickyProtocol;
+    }
+
+    /**
+     * If <tt>true</tt>, once a sticky protocol is found, the {@link Connection}'s
+     * {@link org.glassfish.grizzly.Processor} is switched to the
+     * {@link FilterChain}, which consists of the {@link Filter}s preceding
+     * <tt>PUFilter</tt> followed by the protocol {@link Filter}s
+     * (the {@link BackChannelFilter} is not needed, because the protocol
+     * {@link Filter}s write directly to the preceding {@link Filter}s).
+     * This way the next {@link Connection} reads bypass <tt>PUFilter</tt>
+     * and don't pay for the protocol sub-chain context switch, which matters
+     * for long-living connections like HTTP/2 or WebSockets.
+     * 
+     * The mode is applied only if <tt>PUFilter</tt> is used in the
+     * {@link DefaultFilterChain}, which is the {@link Connection}'s
+     * {@link org.glassfish.grizzly.Processor}. Once the {@link Connection}
+     * is switched, later {@link FilterChain} modifications or protocol
+     * deregistration don't affect it.
+     * 
+     * @param isRewireStickyProtocol <tt>true</tt> to switch the
+     *        {@link Connection} to the sticky protocol {@link FilterChain}.
+     * 
+     * @since 2.3.23
+     */
+    public void setRewireStickyProtocol(final boolean isRewireStickyProtocol) {
+        this.isRewireStickyProtocol = isRewireStickyProtocol;
+    }
+    
+    /**
+     * Returns the {@link LatencyHistogram} of the time spent in
+     * {@link #findProtocol(PUContext, FilterChainContext)}, which is
+     * recorded for each read until the {@link Connection} protocol is
+     * either found or not recognized.
+     * 
+     * @since 2.3.23
+     */
+    public LatencyHistogram getDetectionLatency() {
+        return detectionLatency;
+    }
+
+    /**
+     * Returns the number of {@link Connection}s, whose protocol has not
+     * been recognized by any of the registered {@link ProtocolFinder}s.
+     * 
+     * @since 2.3.23
+     */
+    public long getUnrecognizedConnectionsCount() {
+        return unrecognizedConnectionsCount.get();
+    }
     
     @Override
     public NextAction handleRead(final FilterChainContext ctx) throws IOException {
@@ -206,11 +279,15 @@ public class PUFilter extends BaseFilter {
         }
 
         PUProtocol protocol = puContext.protocol;
+        boolean isFoundNow = false;
 
         if (protocol == null) {
             // try to find appropriate protocol
+            final long startNanos = System.nanoTime();
             findProtocol(puContext, ctx);
+            detectionLatency.recordSince(startNanos);
             protocol = puContext.protocol;
+            isFoundNow = true;
         }
         
         if (protocol != null) {
@@ -220,8 +297,16 @@ public class PUFilter extends BaseFilter {
                 puContext.reset();
             }
             
+            final FilterChain rewiredFilterChain =
+                    isFoundNow && puContext.isSticky && isRewireStickyProtocol
+                    ? rewire(protocol, connection, ctx)
+                    : null;
+            
             final FilterChainContext filterChainContext =
-                    obtainChildFilterChainContext(protocol, connection, ctx);
+                    rewiredFilterChain == null
+                    ? obtainChildFilterChainContext(protocol, connection, ctx)
+                    : obtainRewiredFilterChainContext(rewiredFilterChain,
+                            connection, ctx);
             
             filterChainContext.addCopyListener(suspendedContextCopyListener);
             suspendedContextAttribute.set(filterChainContext, ctx);
@@ -236,6 +321,8 @@ public class PUFilter extends BaseFilter {
         // no matching protocols within the set of known protocols were found,
         // pass the message to the next filter in the chain
         if (puContext.noProtocolsFound()) {
+            unrecognizedConnectionsCount.incrementAndGet();
+            
             if (isCloseUnrecognizedConnection) {
                 connection.closeSilently();
                 return ctx.getStopAction();
@@ -265,6 +352,52 @@ public class PUFilter extends BaseFilter {
         return filterChainContext;
     }
 
+    /**
+     * Switches the {@link Connection}'s {@link org.glassfish.grizzly.Processor}
+     * to the protocol's rewired {@link FilterChain}.
+     * 
+     * @return the rewired {@link FilterChain}, or <tt>null</tt>, if the
+     *         {@link Connection} can't be switched
+     */
+    private FilterChain rewire(final PUProtocol protocol,
+            final Connection connection, final FilterChainContext ctx) {
+        final FilterChain parentFilterChain = ctx.getFilterChain();
+        if (!isUpstream(ctx)
+                || connection.getProcessor() != parentFilterChain
+                || !(parentFilterChain instanceof DefaultFilterChain)) {
+            return null;
+        }
+        
+        final int puFilterIdx = ctx.getFilterIdx();
+        final DefaultFilterChain rewiredFilterChain =
+                protocol.getRewiredFilterChain(parentFilterChain, puFilterIdx);
+        
+        // the preceding filters' remainders have to survive the switch
+        ((DefaultFilterChain) parentFilterChain).moveFiltersState(
+                connection, rewiredFilterChain, puFilterIdx);
+        connection.setProcessor(rewiredFilterChain);
+        
+        return rewiredFilterChain;
+    }
+    
+    private FilterChainContext obtainRewiredFilterChainContext(
+            final FilterChain rewiredFilterChain,
+            final Connection connection,
+            final FilterChainContext ctx) {
+        
+        // continue processing from the first protocol filter
+        final FilterChainContext filterChainContext =
+                rewiredFilterChain.obtainFilterChainContext(connection,
+                ctx.getStartIdx(), rewiredFilterChain.size(),
+                ctx.getFilterIdx());
+        final Context context = filterChainContext.getInternalContext();
+        context.setIoEvent(IOEvent.READ);
+        context.addLifeCycleListener(new InternalProcessingHandler(ctx));
+        filterChainContext.setAddressHolder(ctx.getAddressHolder());
+        filterChainContext.setMessage(ctx.getMessage());
+        return filterChainContext;
+    }
+
     @Override
     public NextAction handleEvent(final FilterChainContext ctx,
             final FilterChainEvent event) throws IOException {
@@ -302,13 +435,40 @@ public class PUFilter extends BaseFilter {
 
     protected void findProtocol(final PUContext puContext,
                                 final FilterChainContext ctx) {
-        final PUProtocol[] protocolArray = protocols.getArray();
-
+        final ProtocolSignatureTable table = getSignatureTable();
+        final PUProtocol[] protocolArray = table.protocols;
+        if (protocolArray == null) {
+            return;
+        }
+        
+        // match all the compiled signatures in one pass, the signatures
+        // are applicable only if the message is a Buffer
+        final Object message = ctx.getMessage();
+        final boolean isBuffer = message instanceof Buffer;
+        final long matchState = isBuffer ? table.match((Buffer) message) : 0;
+        final int remaining = isBuffer ? ((Buffer) message).remaining() : 0;
+        
         for (int i = 0; i < protocolArray.length; i++) {
             final PUProtocol protocol = protocolArray[i];
             if ((puContext.skippedProtocolFinders & 1 << i) != 0) {
                 continue;
             }
+            
+            final int signatureMatch = isBuffer
+                    ? table.classify(i, matchState, remaining)
+                    : ProtocolSignatureTable.NO_SIGNATURES;
+            
+            switch (signatureMatch) {
+                case ProtocolSignatureTable.NOT_MATCHED:
+                    puContext.skippedProtocolFinders ^= 1 << i;
+                    continue;
+                case ProtocolSignatureTable.PENDING:
+                    continue;
+                case ProtocolSignatureTable.MATCHED_CONCLUSIVE:
+                    puContext.protocol = protocol;
+                    return;
+            }
+            
             try {
                 final ProtocolFinder.Result result =
                         protocol.getProtocolFinder().find(puContext, ctx);
@@ -328,6 +488,22 @@ public class PUFilter extends BaseFilter {
         }
     }
 
+    /**
+     * Returns the {@link ProtocolSignatureTable} compiled for the currently
+     * registered protocols. The table is recompiled lazily, once the
+     * protocols set is changed.
+     */
+    private ProtocolSignatureTable getSignatureTable() {
+        final PUProtocol[] protocolArray = protocols.getArray();
+        ProtocolSignatureTable table = signatureTable;
+        if (table == null || table.protocols != protocolArray) {
+            table = ProtocolSignatureTable.compile(protocolArray);
+            signatureTable = table;
+        }
+        
+        return table;
+    }
+
     private static boolean isUpstream(final FilterChainContext context) {
         return context.getStartIdx() < context.getEndIdx();
     }
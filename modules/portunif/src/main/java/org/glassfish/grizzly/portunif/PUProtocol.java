@@ -40,6 +40,10 @@
 
 package org.glassfish.grizzly.portunif;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.glassfish.grizzly.filterchain.DefaultFilterChain;
+import org.glassfish.grizzly.filterchain.Filter;
 import org.glassfish.grizzly.filterchain.FilterChain;
 
 /**
@@ -51,6 +55,8 @@ import org.glassfish.grizzly.filterchain.FilterChain;
 public class PUProtocol {
     private final ProtocolFinder finder;
     private final FilterChain filterChain;
+    
+    private volatile RewiredFilterChain rewiredFilterChain;
 
     public PUProtocol(final ProtocolFinder finder, final FilterChain processor) {
         this.finder = finder;
@@ -64,4 +70,46 @@ public class PUProtocol {
     public FilterChain getFilterChain() {
         return filterChain;
     }
+
+    /**
+     * Returns the {@link FilterChain}, which consists of the parent chain
+     * {@link Filter}s preceding the {@link PUFilter} and this protocol's
+     * {@link Filter}s following the {@link BackChannelFilter}.
+     * 
+     * @param parentFilterChain the {@link FilterChain} the {@link PUFilter}
+     *        belongs to
+     * @param puFilterIdx the {@link PUFilter} index in the parent chain
+     */
+    DefaultFilterChain getRewiredFilterChain(
+            final FilterChain parentFilterChain, final int puFilterIdx) {
+        final RewiredFilterChain rewired = rewiredFilterChain;
+        if (rewired != null && rewired.parentFilterChain == parentFilterChain
+                && rewired.puFilterIdx == puFilterIdx) {
+            return rewired.filterChain;
+        }
+        
+        final List<Filter> filters = new ArrayList<Filter>(
+                puFilterIdx + filterChain.size() - 1);
+        filters.addAll(parentFilterChain.subList(0, puFilterIdx));
+        filters.addAll(filterChain.subList(1, filterChain.size()));
+        
+        final RewiredFilterChain newRewired = new RewiredFilterChain(
+                parentFilterChain, puFilterIdx, new DefaultFilterChain(filters));
+        rewiredFilterChain = newRewired;
+        
+        return newRewired.filterChain;
+    }
+    
+    private static final class RewiredFilterChain {
+        private final FilterChain parentFilterChain;
+        private final int puFilterIdx;
+        private final DefaultFilterChain filterChain;
+
+        private RewiredFilterChain(final FilterChain parentFilterChain,
+                final int puFilterIdx, final DefaultFilterChain filterChain) {
+            this.parentFilterChain = parentFilterChain;
+            this.puFilterIdx = puFilterIdx;
+            this.filterChain = filterChain;
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.portunif;
+
+import java.nio.charset.Charset;
+
+/**
+ * The byte-prefix signature of a protocol: a pattern of bytes, which is
+ * expected at the beginning of the {@link org.glassfish.grizzly.Connection}
+ * input. Each pattern byte is compared with the input byte using the
+ * corresponding mask byte: <tt>(input &amp; mask) == pattern</tt>, so
+ * a zero mask byte matches any input byte.
+ * 
+ * A conclusive signature is enough to recognize the protocol, otherwise
+ * the {@link ProtocolFinder} is asked to verify the matched input.
+ * 
+ * @see SignatureProtocolFinder
+ * 
+ * @since 2.3.23
+ */
+public final class ProtocolSignature {
+    /**
+     * The max signature length.
+     */
+    public static final int MAX_LENGTH = 32;
+    
+    private static final Charset ASCII_CHARSET = Charset.forName("ASCII");
+    
+    private final byte[] pattern;
+    private final byte[] mask;
+    private final boolean isConclusive;
+
+    /**
+     * Constructs the non-conclusive signature, which exactly matches the
+     * pattern bytes.
+     * 
+     * @param pattern the signature bytes.
+     */
+    public ProtocolSignature(final byte... pattern) {
+        this(pattern, null, false);
+    }
+
+    /**
+     * Constructs the signature.
+     * 
+     * @param pattern the signature bytes.
+     * @param mask the mask bytes, or <tt>null</tt> to exactly match the
+     *        pattern bytes.
+     * @param isConclusive <tt>true</tt> if the match is enough to recognize
+     *        the protocol, or <tt>false</tt> if the {@link ProtocolFinder}
+     *        should verify the matched input.
+     */
+    public ProtocolSignature(final byte[] pattern, final byte[] mask,
+            final boolean isConclusive) {
+        if (pattern == null || pattern.length == 0
+                || pattern.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("The pattern length has to be in [1, "
+                    + MAX_LENGTH + "] range");
+        }
+        
+        if (mask != null && mask.length != pattern.length) {
+            throw new IllegalArgumentException("The mask and pattern lengths don't match");
+        }
+        
+        this.pattern = new byte[pattern.length];
+        this.mask = new byte[pattern.length];
+        for (int i = 0; i < pattern.length; i++) {
+            this.mask[i] = mask != null ? mask[i] : (byte) 0xff;
+            this.pattern[i] = (byte) (pattern[i] & this.mask[i]);
+        }
+        
+        this.isConclusive = isConclusive;
+    }
+
+    /**
+     * Creates the signature, which exactly matches the ASCII string bytes.
+     * 
+     * @param prefix the ASCII prefix.
+     * @param isConclusive <tt>true</tt> if the match is enough to recognize
+     *        the protocol.
+     * @return the {@link ProtocolSignature}.
+     */
+    public static ProtocolSignature prefix(final String prefix,
+            final boolean isConclusive) {
+        return new ProtocolSignature(prefix.getBytes(ASCII_CHARSET), null,
+                isConclusive);
+    }
+    
+    /**
+     * @return the signature length.
+     */
+    public int length() {
+        return pattern.length;
+    }
+
+    /**
+     * @return <tt>true</tt> if the match is enough to recognize the protocol,
+     *         or <tt>false</tt> if the {@link ProtocolFinder} should verify
+     *         the matched input.
+     */
+    public boolean isConclusive() {
+        return isConclusive;
+    }
+    
+    /**
+     * @param idx the byte index.
+     * @param b the input byte.
+     * @return <tt>true</tt>, if the input byte matches the signature byte
+     *         at the given index.
+     */
+    public boolean matches(final int idx, final byte b) {
+        return (b & mask[idx]) == pattern[idx];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(pattern.length * 5 + 32);
+        sb.append("ProtocolSignature{pattern=");
+        for (int i = 0; i < pattern.length; i++) {
+            if (mask[i] == 0) {
+                sb.append("??");
+            } else {
+                sb.append(Character.forDigit((pattern[i] >> 4) & 0xf, 16))
+                        .append(Character.forDigit(pattern[i] & 0xf, 16));
+                if (mask[i] != (byte) 0xff) {
+                    sb.append('/').append(Character.forDigit((mask[i] >> 4) & 0xf, 16))
+                            .append(Character.forDigit(mask[i] & 0xf, 16));
+                }
+            }
+            
+            if (i < pattern.length - 1) {
+                sb.append(' ');
+            }
+        }
+        
+        return sb.append(", isConclusive=").append(isConclusive)
+                .append('}').toString();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.portunif;
+
+import org.glassfish.grizzly.Buffer;
+
+/**
+ * The decision table compiled from the {@link ProtocolSignature}s of the
+ * registered {@link SignatureProtocolFinder}s.
+ * 
+ * Each signature is represented by a bit in a <tt>long</tt> mask, and the
+ * table contains the mask of the signatures, which accept the given byte
+ * at the given position. This way all the signatures are matched in
+ * parallel during the single pass over the first input bytes, which
+ * doesn't change the input {@link Buffer} position and doesn't allocate.
+ * 
+ * @since 2.3.23
+ */
+final class ProtocolSignatureTable {
+    static final int MAX_SIGNATURES = 64;
+    
+    /**
+     * The protocol has no compiled signatures,
+     * so the {@link ProtocolFinder} has to be called.
+     */
+    static final int NO_SIGNATURES = 0;
+    /**
+     * None of the protocol signatures matches the input.
+     */
+    static final int NOT_MATCHED = 1;
+    /**
+     * The input matches the beginning of the protocol signature(s),
+     * more data is needed.
+     */
+    static final int PENDING = 2;
+    /**
+     * The input matches the protocol signature,
+     * the {@link ProtocolFinder} has to verify the input.
+     */
+    static final int MATCHED = 3;
+    /**
+     * The input matches the conclusive protocol signature.
+     */
+    static final int MATCHED_CONCLUSIVE = 4;
+    
+    private static final long[][] EMPTY_TABLE = new long[0][];
+    
+    /**
+     * The protocols the table has been compiled for.
+     */
+    final PUProtocol[] protocols;
+    
+    // the signatures mask per protocol
+    private final long[] protocolSignatures;
+    // the accepting signatures mask per [position][byte]
+    private final long[][] table;
+    // the signatures mask with length <= idx
+    private final long[] completeSignatures;
+    private final long conclusiveSignatures;
+    private final long allSignatures;
+    
+    private ProtocolSignatureTable(final PUProtocol[] protocols,
+            final long[] protocolSignatures, final long[][] table,
+            final long[] completeSignatures, final long conclusiveSignatures,
+            final long allSignatures) {
+        this.protocols = protocols;
+        this.protocolSignatures = protocolSignatures;
+        this.table = table;
+        this.completeSignatures = completeSignatures;
+        this.conclusiveSignatures = conclusiveSignatures;
+        this.allSignatures = allSignatures;
+    }
+    
+    /**
+     * Compiles the table for the given protocols. The protocols, whose
+     * finder doesn't declare signatures, or whose signatures don't fit
+     * the table, are left to their {@link ProtocolFinder}s.
+     * 
+     * @param protocols the registered protocols (might be <tt>null</tt>).
+     * @return the compiled {@link ProtocolSignatureTable}.
+     */
+    static ProtocolSignatureTable compile(final PUProtocol[] protocols) {
+        final int protocolsCount = protocols != null ? protocols.length : 0;
+        final long[] protocolSignatures = new long[protocolsCount];
+        final ProtocolSignature[] signatures =
+                new ProtocolSignature[MAX_SIGNATURES];
+        
+        int signaturesCount = 0;
+        int depth = 0;
+        
+        for (int i = 0; i < protocolsCount; i++) {
+            final ProtocolFinder finder = protocols[i].getProtocolFinder();
+            if (!(finder instanceof SignatureProtocolFinder)) {
+                continue;
+            }
+            
+            final ProtocolSignature[] finderSignatures =
+                    ((SignatureProtocolFinder) finder).getSignatures();
+            if (finderSignatures == null || finderSignatures.length == 0
+                    || signaturesCount + finderSignatures.length > MAX_SIGNATURES) {
+                continue;
+            }
+            
+            for (ProtocolSignature signature : finderSignatures) {
+                protocolSignatures[i] |= 1L << signaturesCount;
+                signatures[signaturesCount++] = signature;
+                depth = Math.max(depth, signature.length());
+            }
+        }
+        
+        final long[][] table = depth > 0 ? new long[depth][256] : EMPTY_TABLE;
+        final long[] completeSignatures = new long[depth + 1];
+        long conclusiveSignatures = 0;
+        long allSignatures = 0;
+        
+        for (int s = 0; s < signaturesCount; s++) {
+            final ProtocolSignature signature = signatures[s];
+            final long bit = 1L << s;
+            final int length = signature.length();
+            
+            for (int pos = 0; pos < depth; pos++) {
+                final long[] row = table[pos];
+                for (int b = 0; b < 256; b++) {
+                    // the signature accepts any byte after its end
+                    if (pos >= length || signature.matches(pos, (byte) b)) {
+                        row[b] |= bit;
+                    }
+                }
+            }
+            
+            for (int len = length; len <= depth; len++) {
+                completeSignatures[len] |= bit;
+            }
+            
+            if (signature.isConclusive()) {
+                conclusiveSignatures |= bit;
+            }
+            
+            allSignatures |= bit;
+        }
+        
+        return new ProtocolSignatureTable(protocols, protocolSignatures,
+                table, completeSignatures, conclusiveSignatures, allSignatures);
+    }
+
+    /**
+     * @return the number of the first input bytes the table looks at.
+     */
+    int getDepth() {
+        return table.length;
+    }
+    
+    /**
+     * Matches all the signatures against the first {@link Buffer} bytes.
+     * The {@link Buffer} position is not changed.
+     * 
+     * @param buffer the input {@link Buffer}.
+     * @return the mask of the signatures, which match the input so far.
+     */
+    long match(final Buffer buffer) {
+        final long[][] localTable = table;
+        long state = allSignatures;
+        
+        final int count = Math.min(buffer.remaining(), localTable.length);
+        if (buffer.hasArray()) {
+            final byte[] array = buffer.array();
+            final int offset = buffer.arrayOffset() + buffer.position();
+            for (int i = 0; i < count && state != 0; i++) {
+                state &= localTable[i][array[offset + i] & 0xff];
+            }
+        } else {
+            final int position = buffer.position();
+            for (int i = 0; i < count && state != 0; i++) {
+                state &= localTable[i][buffer.get(position + i) & 0xff];
+            }
+        }
+        
+        return state;
+    }
+    
+    /**
+     * Classifies the protocol using the {@link #match(Buffer)} result.
+     * 
+     * @param protocolIdx the protocol index.
+     * @param state the {@link #match(Buffer)} result.
+     * @param remaining the number of the input bytes available.
+     * @return one of {@link #NO_SIGNATURES}, {@link #NOT_MATCHED},
+     *         {@link #PENDING}, {@link #MATCHED} or {@link #MATCHED_CONCLUSIVE}.
+     */
+    int classify(final int protocolIdx, final long state, final int remaining) {
+        final long signatures = protocolSignatures[protocolIdx];
+        if (signatures == 0) {
+            return NO_SIGNATURES;
+        }
+        
+        final long matched = state & signatures;
+        if (matched == 0) {
+            return NOT_MATCHED;
+        }
+        
+        final long complete = matched &
+                completeSignatures[Math.min(remaining, table.length)];
+        if (complete == 0) {
+            return PENDING;
+        }
+        
+        return (complete & conclusiveSignatures) != 0
+                ? MATCHED_CONCLUSIVE
+                : MATCHED;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.portunif;
+
+/**
+ * The {@link ProtocolFinder}, which declares the byte-prefix
+ * {@link ProtocolSignature}s of its protocol. {@link PUFilter} compiles the
+ * signatures of all the registered finders into one decision table,
+ * which is consulted in a single pass over the first input bytes, so
+ * the finder is called only if one of its signatures is matched and the
+ * signature is not conclusive.
+ * 
+ * The signatures are the necessary condition: the protocol input is
+ * expected to start with one of the signatures, otherwise the protocol is
+ * considered as not found without calling {@link #find(PUContext, org.glassfish.grizzly.filterchain.FilterChainContext)}.
+ * 
+ * @since 2.3.23
+ */
+public interface SignatureProtocolFinder extends ProtocolFinder {
+    /**
+     * @return the protocol {@link ProtocolSignature}s, or <tt>null</tt>
+     *         if the finder has to be always called.
+     */
+    public ProtocolSignature[] getSignatures();
+}
@@ -47,6 +47,8 @@ import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.portunif.PUContext;
 import org.glassfish.grizzly.portunif.ProtocolFinder;
+import org.glassfish.grizzly.portunif.ProtocolSignature;
+import org.glassfish.grizzly.portunif.SignatureProtocolFinder;
 
 /**
  * A {@link ProtocolFinder} implementation that parse the available
@@ -62,8 +64,17 @@ import org.glassfish.grizzly.portunif.ProtocolFinder;
  * @author Jeanfrancois Arcand
  * @author Alexey Stashok
  */
-public class HttpProtocolFinder implements ProtocolFinder {
+public class HttpProtocolFinder implements SignatureProtocolFinder {
     private static final char[] METHOD_FIRST_LETTERS = new char[] {'G', 'P', 'O', 'H', 'D', 'T', 'C'};
+    private static final ProtocolSignature[] SIGNATURES =
+            new ProtocolSignature[METHOD_FIRST_LETTERS.length];
+    
+    static {
+        for (int i = 0; i < METHOD_FIRST_LETTERS.length; i++) {
+            SIGNATURES[i] = new ProtocolSignature((byte) METHOD_FIRST_LETTERS[i]);
+        }
+    }
+    
     private final Attribute<ParsingState> parsingStateAttribute =
             Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
                     HttpProtocolFinder.class + "-" + hashCode()
@@ -79,6 +90,20 @@ public class HttpProtocolFinder implements ProtocolFinder {
         this.maxRequestLineSize = maxRequestLineSize;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * The HTTP request is expected to start with one of the known method
+     * first letters, the request line is verified by
+     * {@link #find(PUContext, FilterChainContext)}.
+     * 
+     * @since 2.3.23
+     */
+    @Override
+    public ProtocolSignature[] getSignatures() {
+        return SIGNATURES.clone();
+    }
+
     @Override
     public Result find(final PUContext puContext, final FilterChainContext ctx) {
         final Connection connection = ctx.getConnection();
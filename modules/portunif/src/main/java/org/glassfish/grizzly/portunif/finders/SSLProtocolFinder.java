@@ -49,7 +49,8 @@ import org.glassfish.grizzly.Buffer;
 import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.portunif.PUContext;
-import org.glassfish.grizzly.portunif.ProtocolFinder;
+import org.glassfish.grizzly.portunif.ProtocolSignature;
+import org.glassfish.grizzly.portunif.SignatureProtocolFinder;
 import org.glassfish.grizzly.ssl.SSLConnectionContext;
 import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
 import static org.glassfish.grizzly.ssl.SSLUtils.*;
@@ -58,16 +59,42 @@ import static org.glassfish.grizzly.ssl.SSLUtils.*;
  *
  * @author Alexey Stashok
  */
-public class SSLProtocolFinder implements ProtocolFinder {
+public class SSLProtocolFinder implements SignatureProtocolFinder {
 
     private static final Logger LOGGER = Grizzly.logger(SSLProtocolFinder.class);
 
+    private static final ProtocolSignature[] SIGNATURES = {
+        // SSLv3/TLS records: change_cipher_spec, alert, handshake, application_data
+        new ProtocolSignature((byte) 20, (byte) 3),
+        new ProtocolSignature((byte) 21, (byte) 3),
+        new ProtocolSignature((byte) 22, (byte) 3),
+        new ProtocolSignature((byte) 23, (byte) 3),
+        // SSLv2 short header client/server hello
+        new ProtocolSignature(new byte[] {(byte) 0x80, 0, 1},
+                new byte[] {(byte) 0x80, 0, (byte) 0xff}, false),
+        new ProtocolSignature(new byte[] {(byte) 0x80, 0, 4},
+                new byte[] {(byte) 0x80, 0, (byte) 0xff}, false)
+    };
+
     private final SSLEngineConfigurator sslEngineConfigurator;
 
     public SSLProtocolFinder(final SSLEngineConfigurator sslEngineConfigurator) {
         this.sslEngineConfigurator = sslEngineConfigurator;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * The SSL/TLS record header is verified by
+     * {@link #find(PUContext, FilterChainContext)}.
+     * 
+     * @since 2.3.23
+     */
+    @Override
+    public ProtocolSignature[] getSignatures() {
+        return SIGNATURES.clone();
+    }
+
     @Override
     public Result find(final PUContext puContext, final FilterChainContext ctx) {
         final Buffer buffer = ctx.getMessage();
@@ -40,8 +40,11 @@
 
 package org.glassfish.grizzly.portunif;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.net.Socket;
 import java.nio.charset.Charset;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -236,6 +239,70 @@ public class BasicPUTest {
         }
     }
     
+    @Test
+    public void stickyProtocolRewire() throws Exception {
+        final AtomicInteger puFilterReadsCounter = new AtomicInteger();
+        
+        final PUFilter puFilter = new PUFilter() {
+            @Override
+            public NextAction handleRead(FilterChainContext ctx) throws IOException {
+                puFilterReadsCounter.incrementAndGet();
+                return super.handleRead(ctx);
+            }
+        };
+        puFilter.setRewireStickyProtocol(true);
+        assertTrue(puFilter.isRewireStickyProtocol());
+        
+        puFilter.register(createProtocol(puFilter, "X"));
+        puFilter.register(createProtocol(puFilter, "Y"));
+
+        FilterChainBuilder puFilterChainBuilder = FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(new StringFilter(CHARSET))
+                .add(puFilter);
+
+        TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(puFilterChainBuilder.build());
+
+        Socket socket = null;
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            socket = new Socket("localhost", PORT);
+            socket.setSoTimeout(10000);
+            final DataOutputStream dos =
+                    new DataOutputStream(socket.getOutputStream());
+            final DataInputStream dis =
+                    new DataInputStream(socket.getInputStream());
+            
+            // the second message comes as the remainder of the first read,
+            // it has to be processed by the rewired chain
+            final byte[] messages = {0, 0, 0, 1, 'X', 0, 0, 0, 1, 'Y'};
+            dos.write(messages);
+            dos.flush();
+            
+            assertEquals(makeResponseMessage("X"), readString(dis));
+            assertEquals(makeResponseMessage("X"), readString(dis));
+            
+            for (int i = 0; i < 5; i++) {
+                dos.writeInt(1);
+                dos.write('Y');
+                dos.flush();
+                
+                assertEquals(makeResponseMessage("X"), readString(dis));
+            }
+            
+            assertEquals(1, puFilterReadsCounter.get());
+        } finally {
+            if (socket != null) {
+                socket.close();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+    
     @Test
     public void testGrizzly1031_001() throws Exception {
 
@@ -480,6 +547,13 @@ public class BasicPUTest {
         }
     }
 
+    private static String readString(final DataInputStream dis)
+            throws IOException {
+        final byte[] bytes = new byte[dis.readInt()];
+        dis.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+    
     private static String makeResponseMessage(String protocolName) {
         return "Protocol-" + protocolName;
     }
@@ -0,0 +1,275 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.portunif;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.portunif.finders.HttpProtocolFinder;
+import org.glassfish.grizzly.portunif.finders.SSLProtocolFinder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ProtocolSignature} decision table tests.
+ */
+public class ProtocolSignatureTest {
+    public static final int PORT = 17402;
+    public static final Charset CHARSET = Charset.forName("ASCII");
+    
+    @Test
+    public void testSignatureTable() {
+        final PUFilter puFilter = new PUFilter();
+        final PUProtocol[] protocols = {
+            new PUProtocol(new SSLProtocolFinder(null),
+                    puFilter.getPUFilterChainBuilder().build()),
+            new PUProtocol(new HttpProtocolFinder(),
+                    puFilter.getPUFilterChainBuilder().build()),
+            new PUProtocol(new SignatureFinder(
+                    ProtocolSignature.prefix("PRI * HTTP/2.0", true)),
+                    puFilter.getPUFilterChainBuilder().build()),
+            new PUProtocol(new CountingFinder(),
+                    puFilter.getPUFilterChainBuilder().build())
+        };
+        
+        final ProtocolSignatureTable table =
+                ProtocolSignatureTable.compile(protocols);
+        assertEquals("PRI * HTTP/2.0".length(), table.getDepth());
+        
+        // HTTP/1.1 request
+        Buffer buffer = wrap("GET / HTTP/1.1\r\n");
+        long state = table.match(buffer);
+        assertEquals(ProtocolSignatureTable.NOT_MATCHED,
+                table.classify(0, state, buffer.remaining()));
+        assertEquals(ProtocolSignatureTable.MATCHED,
+                table.classify(1, state, buffer.remaining()));
+        assertEquals(ProtocolSignatureTable.NOT_MATCHED,
+                table.classify(2, state, buffer.remaining()));
+        assertEquals(ProtocolSignatureTable.NO_SIGNATURES,
+                table.classify(3, state, buffer.remaining()));
+        assertEquals(0, buffer.position());
+        
+        // HTTP/2 preface, which is not complete yet
+        buffer = wrap("PRI * HT");
+        state = table.match(buffer);
+        assertEquals(ProtocolSignatureTable.MATCHED,
+                table.classify(1, state, buffer.remaining()));
+        assertEquals(ProtocolSignatureTable.PENDING,
+                table.classify(2, state, buffer.remaining()));
+        
+        buffer = wrap("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n");
+        state = table.match(buffer);
+        assertEquals(ProtocolSignatureTable.MATCHED_CONCLUSIVE,
+                table.classify(2, state, buffer.remaining()));
+        
+        // TLS client hello record header
+        buffer = Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER,
+                new byte[] {0x16, 0x03, 0x01, 0x00, 0x40});
+        state = table.match(buffer);
+        assertEquals(ProtocolSignatureTable.MATCHED,
+                table.classify(0, state, buffer.remaining()));
+        assertEquals(ProtocolSignatureTable.NOT_MATCHED,
+                table.classify(1, state, buffer.remaining()));
+        
+        // SSLv2 client hello
+        buffer = Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER,
+                new byte[] {(byte) 0x80, 0x2e, 0x01, 0x03, 0x01});
+        state = table.match(buffer);
+        assertEquals(ProtocolSignatureTable.MATCHED,
+                table.classify(0, state, buffer.remaining()));
+        
+        // no protocols
+        final ProtocolSignatureTable emptyTable =
+                ProtocolSignatureTable.compile(null);
+        assertEquals(0, emptyTable.getDepth());
+        assertEquals(0, emptyTable.match(wrap("GET")));
+    }
+    
+    @Test
+    public void testDetection() throws Exception {
+        final PUFilter puFilter = new PUFilter();
+        final CountingSSLProtocolFinder sslFinder =
+                new CountingSSLProtocolFinder();
+        final CountingFinder genericFinder = new CountingFinder();
+        
+        puFilter.register(sslFinder, puFilter.getPUFilterChainBuilder()
+                .add(new ResponseFilter("ssl")).build());
+        puFilter.register(new HttpProtocolFinder(), puFilter.getPUFilterChainBuilder()
+                .add(new ResponseFilter("http")).build());
+        puFilter.register(genericFinder, puFilter.getPUFilterChainBuilder()
+                .add(new ResponseFilter("generic")).build());
+        
+        final TCPNIOTransport transport =
+                TCPNIOTransportBuilder.newInstance().build();
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(puFilter)
+                .build());
+        
+        try {
+            transport.bind(PORT);
+            transport.start();
+            
+            assertEquals("http", request("GET / HTTP/1.1\r\n\r\n"));
+            // the SSL finder has not been called, because
+            // the HTTP request doesn't match the SSL signatures
+            assertEquals(0, sslFinder.invocationCount.get());
+            
+            assertEquals("generic", request("#generic"));
+            assertEquals(0, sslFinder.invocationCount.get());
+            
+            assertNull(request("unknown"));
+            assertEquals(1, puFilter.getUnrecognizedConnectionsCount());
+            assertEquals(2, genericFinder.invocationCount.get());
+            
+            assertTrue(puFilter.getDetectionLatency().snapshot().getCount() >= 3);
+        } finally {
+            transport.shutdownNow();
+        }
+    }
+    
+    private static String request(final String message) throws IOException {
+        final Socket socket = new Socket("localhost", PORT);
+        try {
+            socket.setSoTimeout(10000);
+            final OutputStream os = socket.getOutputStream();
+            final InputStream is = socket.getInputStream();
+            os.write(message.getBytes(CHARSET));
+            os.flush();
+            
+            final StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = is.read()) != -1 && b != '\n') {
+                sb.append((char) b);
+            }
+            
+            return b == -1 && sb.length() == 0 ? null : sb.toString();
+        } finally {
+            socket.close();
+        }
+    }
+    
+    private static Buffer wrap(final String s) {
+        return Buffers.wrap(MemoryManager.DEFAULT_MEMORY_MANAGER, s, CHARSET);
+    }
+    
+    private static final class SignatureFinder implements SignatureProtocolFinder {
+        private final ProtocolSignature[] signatures;
+
+        public SignatureFinder(final ProtocolSignature... signatures) {
+            this.signatures = signatures;
+        }
+
+        @Override
+        public ProtocolSignature[] getSignatures() {
+            return signatures;
+        }
+
+        @Override
+        public Result find(final PUContext puContext,
+                final FilterChainContext ctx) {
+            return Result.FOUND;
+        }
+    }
+    
+    private static final class CountingFinder implements ProtocolFinder {
+        private final AtomicInteger invocationCount = new AtomicInteger();
+        
+        @Override
+        public Result find(final PUContext puContext,
+                final FilterChainContext ctx) {
+            invocationCount.incrementAndGet();
+            
+            final Buffer buffer = ctx.getMessage();
+            return buffer.get(buffer.position()) == '#'
+                    ? Result.FOUND
+                    : Result.NOT_FOUND;
+        }
+    }
+    
+    private static final class CountingSSLProtocolFinder extends SSLProtocolFinder {
+        private final AtomicInteger invocationCount = new AtomicInteger();
+
+        public CountingSSLProtocolFinder() {
+            super(null);
+        }
+        
+        @Override
+        public Result find(final PUContext puContext,
+                final FilterChainContext ctx) {
+            invocationCount.incrementAndGet();
+            return super.find(puContext, ctx);
+        }
+    }
+    
+    private static final class ResponseFilter extends BaseFilter {
+        private final String response;
+
+        public ResponseFilter(final String response) {
+            this.response = response;
+        }
+        
+        @Override
+        public NextAction handleRead(final FilterChainContext ctx)
+                throws IOException {
+            final Buffer message = ctx.getMessage();
+            message.tryDispose();
+            
+            ctx.write(Buffers.wrap(ctx.getMemoryManager(),
+                    response + "\n", CHARSET));
+            return ctx.getStopAction();
+        }
+    }
+}